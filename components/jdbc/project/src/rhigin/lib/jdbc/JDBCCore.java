@@ -233,6 +233,21 @@ public class JDBCCore {
 		return k;
 	}
 	
+	/**
+	 * コネクションプーリングの状態を取得.
+	 * @param name
+	 * @return
+	 */
+	public Map<Object, Object> getStatus(String name) {
+		check();
+		final AtomicPooling p = man.get(name);
+		if(p == null) {
+			throw new JDBCException(
+				"Connection information with the specified name does not exist:" + name);
+		}
+		return p.getStatus();
+	}
+	
 	/**
 	 * 指定名が登録されているかチェック.
 	 * @param name
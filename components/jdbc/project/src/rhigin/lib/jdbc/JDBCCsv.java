@@ -1,14 +1,10 @@
 package rhigin.lib.jdbc;
 
-import java.util.Map;
-
 import rhigin.lib.JDBC;
-import rhigin.lib.jdbc.runner.JDBCConnect;
+import rhigin.lib.jdbc.runner.JDBCKind;
 import rhigin.lib.jdbc.runner.JDBCException;
-import rhigin.util.Alphabet;
 import rhigin.util.Args;
 import rhigin.util.Converter;
-import rhigin.util.CsvReader;
 import rhigin.util.FileUtil;
 
 /**
@@ -25,6 +21,8 @@ public class JDBCCsv {
 	 * 
 	 * ３：指定テーブルをクリアせずにインサート処理を行うモードがある。
 	 * 
+	 * ４：複数コネクションで並列にインサート処理を行うモードがある。
+	 * 
 	 */
 	
 	//private static final String DEF_CHARSET = "Windows-31J";
@@ -35,7 +33,7 @@ public class JDBCCsv {
 		final Args params = Args.set(args);
 		// help表示.
 		if(params.isValue("-h", "--help")) {
-			System.out.println("jcsv [-c] [-j] [-t] [-s] [-d] [-e] [-n] {file}");
+			System.out.println("jcsv [-c] [-j] [-t] [-s] [-d] [-e] [-n] [-p] [-b] [-i] {file}");
 			System.out.println(" Read CSV and insert into database table.");
 			System.out.println("  [-c] [--conf] [--config] {args}");
 			System.out.println("    Set the configuration definition file name.");
@@ -66,6 +64,19 @@ public class JDBCCsv {
 			System.out.println("    Set the start number of the numeric sequence ID.");
 			System.out.println("    If not set, start from 1.");
 			//System.out.println();
+			System.out.println("  [-p] [--parallel] {number}");
+			System.out.println("    Set the number of threads (connections) to insert in parallel.");
+			System.out.println("    If not set, insert in one transaction with 1 connection.");
+			System.out.println("    When 2 or more are set, each connection commits individually.");
+			//System.out.println();
+			System.out.println("  [-b] [--batch] {number}");
+			System.out.println("    Set the number of rows to send in one batch.");
+			System.out.println("    If not set, " + JDBCCsvLoader.DEF_BATCH_SIZE + " is set.");
+			//System.out.println();
+			System.out.println("  [-i] [--interval] {number}");
+			System.out.println("    Set the number of rows to commit at intervals.");
+			System.out.println("    If not set, commit only at the end.");
+			//System.out.println();
 			System.out.println("  {file}");
 			System.out.println("    If [-j or -t] is omitted, each is interpreted by the file name.");
 			System.out.println("      {file} = [jdbc name].[table name].csv");
@@ -85,7 +96,6 @@ public class JDBCCsv {
 			final String confName = params.get("-c", "--conf", "--config");
 			
 			// JDBCパラメータを取得.
-			final JDBCCsv o = new JDBCCsv();
 			String jdbc = params.get("-j", "--jdbc");
 			String table = params.get("-t", "--table");
 			boolean deleteFlag = params.isValue("-d", "--delete");
@@ -97,6 +107,18 @@ public class JDBCCsv {
 			if(startNumber == null) {
 				startNumber = 1L;
 			}
+			Integer parallel = params.getInt("-p", "--parallel");
+			if(parallel == null || parallel <= 0) {
+				parallel = 1;
+			}
+			Integer batchSize = params.getInt("-b", "--batch");
+			if(batchSize == null || batchSize <= 0) {
+				batchSize = JDBCCsvLoader.DEF_BATCH_SIZE;
+			}
+			Integer commitCount = params.getInt("-i", "--interval");
+			if(commitCount == null || commitCount <= 0) {
+				commitCount = 0;
+			}
 			
 			// ファイル名を取得.
 			String fileName = params.getLast();
@@ -126,15 +148,32 @@ public class JDBCCsv {
 			System.out.println("jdbc define: " + jdbc);
 			System.out.println("table name : " + table);
 			System.out.println("delete flag: " + deleteFlag);
+			System.out.println("parallel   : " + parallel);
+			System.out.println("batch size : " + batchSize);
+			System.out.println("commit     : " + (commitCount == 0 ? "end" : "" + commitCount));
 			System.out.println();
 			
 			// JDBCコアを生成.
 			core = new JDBCCore();
 			core.startup(confName, args);
 			
+			// ドライバ固有のバッチ高速化設定が無い場合は表示.
+			final String hint = batchHint(core.getKind(jdbc));
+			if(hint != null) {
+				System.out.println("hint       : " + hint);
+				System.out.println();
+			}
+			
 			// CSV実行.
-			int resCount = o.execute(core, jdbc, table, deleteFlag, charset, startNumber, fileName);
+			final JDBCCsvLoader loader = new JDBCCsvLoader()
+				.setParallel(parallel)
+				.setBatchSize(batchSize)
+				.setCommitCount(commitCount)
+				.setProgress(System.out, JDBCCsvLoader.DEF_PROGRESS_INTERVAL);
+			long resCount = loader.execute(core, jdbc, table, deleteFlag, charset, startNumber, fileName);
 			System.out.println("success    : " + resCount);
+			System.out.println("time       : " + loader.getTime() + " msec (" +
+				loader.getThroughput() + " rows/sec)");
 		} catch(Throwable e) {
 			System.out.println("error      : " + e);
 			e.printStackTrace();
@@ -148,6 +187,24 @@ public class JDBCCsv {
 		System.exit(ret);
 	}
 	
+	// ドライバのバッチ高速化設定を確認.
+	private static final String batchHint(JDBCKind kind) {
+		if(kind == null || kind.getUrl() == null) {
+			return null;
+		}
+		final String url = kind.getUrl() + kind.getUrlParams();
+		if(url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:")) {
+			if(url.indexOf("rewriteBatchedStatements=true") == -1) {
+				return "Setting \"rewriteBatchedStatements=true\" in the url makes batch insert faster.";
+			}
+		} else if(url.startsWith("jdbc:postgresql:")) {
+			if(url.indexOf("reWriteBatchedInserts=true") == -1) {
+				return "Setting \"reWriteBatchedInserts=true\" in the url makes batch insert faster.";
+			}
+		}
+		return null;
+	}
+	
 	// ファイル名からJSON接続先名を取得.
 	private static final String csvFileNameByJdbcDefine(String jdbc, String name) {
 		if(jdbc != null && !jdbc.isEmpty()) {
@@ -174,50 +231,6 @@ public class JDBCCsv {
 		return name.substring(p + 1, name.indexOf(".", p + 1));
 	}
 	
-	// insert文を生成.
-	private static final String createInsert(CsvReader csv, String table) {
-		StringBuilder buf = new StringBuilder();
-		buf.append("INSERT INTO ").append(table).append("(");
-		final int len = csv.getHeaderSize();
-		for(int i = 0; i < len; i ++) {
-			if(i != 0) {
-				buf.append(",");
-			}
-			buf.append(csv.getHeader(i));
-		}
-		buf.append(") VALUES (");
-		for(int i = 0; i < len; i ++) {
-			if(i != 0) {
-				buf.append(",");
-			}
-			buf.append("?");
-		}
-		buf.append(");");
-		return buf.toString();
-	}
-	
-	// オブジェクトの内容をリスト変換.
-	private static final Object[] getSqlParams(JDBCConnect conns, long[] counter, Map<String, Object> row) {
-		String c;
-		final int len = row.size();
-		Object[] ret = new Object[len];
-		for(int i = 0; i < len; i ++) {
-			c = (String)row.get(""+i);
-			// １６文字のシーケンスIDを付与する場合。
-			if(Alphabet.eq("{seq}", c) || Alphabet.eq("{sequence}", c)) {
-				c = conns.TIME12();
-			// 数値のシーケンスIDを付与する場合。
-			} else if(Alphabet.eq("{num}", c) || Alphabet.eq("{number}", c)) {
-				c = "" + (counter[0] ++);
-			}
-			ret[i] = c;
-		}
-		return ret;
-	}
-	
-	// バッチ送信タイミング.
-	private static final int SEND_BATCH_COUNT = 50;
-	
 	/**
 	 * CSVインサート実行.
 	 * @param core
@@ -233,45 +246,7 @@ public class JDBCCsv {
 	public int execute(JDBCCore core, String jdbc, String table, boolean deleteFlag,
 		String charset, long startNumber, String fileName)
 		throws Exception {
-		int ret = 0;
-		CsvReader csv = null;
-		try {
-			final JDBCConnect conns = core.getConnect(jdbc);
-			conns.setAutoCommit(false);
-			csv = new CsvReader(fileName, charset, ",");
-			final String sql = createInsert(csv, table);
-			int cnt = 0;
-			
-			// テーブル内のデータを全削除する場合.
-			if(deleteFlag) {
-				conns.addBatch("DELETE FROM " + table + ";");
-				cnt ++;
-			}
-			
-			// カウンター.
-			long[] counter = new long[] { startNumber };
-			
-			// insert処理.
-			while(csv.hasNext()) {
-				conns.addBatch(sql, getSqlParams(conns, counter, csv.next()));
-				cnt ++;
-				// 一定数のバッチ実行が終わったら、データベースに一斉送信.
-				if(cnt > SEND_BATCH_COUNT) {
-					conns.executeBatch();
-					cnt = 0;
-				}
-				ret ++;
-			}
-			if(cnt > 0) {
-				conns.executeBatch();
-			}
-			// コミット処理.
-			conns.commit();
-		} finally {
-			if(csv != null) {
-				csv.close();
-			}
-		}
-		return ret;
+		return (int)new JDBCCsvLoader().execute(
+			core, jdbc, table, deleteFlag, charset, startNumber, fileName);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,396 @@
+package rhigin.lib.jdbc;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rhigin.lib.jdbc.runner.JDBCConnect;
+import rhigin.lib.jdbc.runner.JDBCException;
+import rhigin.util.Alphabet;
+import rhigin.util.CsvReader;
+
+/**
+ * CSVデータの一括インサート処理.
+ *
+ * １つの読み込みスレッドでCSVを行のバッチに変換し、複数の書き込みスレッドが
+ * それぞれプーリングのコネクションを利用して、並列にインサートします.
+ *
+ * 並列数が[1]の場合は、呼び出し元のスレッドで１つのトランザクションとして処理します.
+ * 並列数が[2]以上の場合は、書き込みスレッド毎にコミットするので、
+ * エラー時にはコミット済みの内容は戻りません.
+ */
+public class JDBCCsvLoader {
+
+	/** デフォルトのバッチ送信行数. **/
+	public static final int DEF_BATCH_SIZE = 50;
+
+	/** デフォルトの進捗表示間隔(ミリ秒). **/
+	public static final long DEF_PROGRESS_INTERVAL = 5000L;
+
+	// キュー取得待ちのタイムアウト.
+	private static final long QUEUE_TIMEOUT = 100L;
+
+	// 書き込み終了を示すバッチ.
+	private static final Object[][] END = new Object[0][];
+
+	// シーケンスIDの置き換え対象を示すオブジェクト.
+	private static final Object SEQUENCE = new Object();
+
+	private int parallel = 1;
+	private int batchSize = DEF_BATCH_SIZE;
+	private int commitCount = 0;
+	private PrintStream progress = null;
+	private long progressInterval = DEF_PROGRESS_INTERVAL;
+
+	private final AtomicLong writeCount = new AtomicLong(0L);
+	private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+	private long startTime = 0L;
+	private long progressTime = 0L;
+
+	/**
+	 * コンストラクタ.
+	 */
+	public JDBCCsvLoader() {
+	}
+
+	/**
+	 * 書き込みスレッド数を設定.
+	 *
+	 * @param parallel 書き込みスレッド数を設定します.
+	 *                 接続定義の[poolingMaxActive]以下で設定してください.
+	 * @return JDBCCsvLoader
+	 */
+	public JDBCCsvLoader setParallel(int parallel) {
+		this.parallel = parallel <= 0 ? 1 : parallel;
+		return this;
+	}
+
+	/**
+	 * バッチ送信行数を設定.
+	 *
+	 * @param batchSize バッチ送信行数を設定します.
+	 * @return JDBCCsvLoader
+	 */
+	public JDBCCsvLoader setBatchSize(int batchSize) {
+		this.batchSize = batchSize <= 0 ? DEF_BATCH_SIZE : batchSize;
+		return this;
+	}
+
+	/**
+	 * コミット間隔の行数を設定.
+	 *
+	 * @param commitCount コミットする行数の間隔を設定します.
+	 *                    [0]の場合は、終了時のみコミットします.
+	 * @return JDBCCsvLoader
+	 */
+	public JDBCCsvLoader setCommitCount(int commitCount) {
+		this.commitCount = commitCount <= 0 ? 0 : commitCount;
+		return this;
+	}
+
+	/**
+	 * 進捗の出力先を設定.
+	 *
+	 * @param out      出力先を設定します. [null]の場合は出力しません.
+	 * @param interval 出力間隔(ミリ秒)を設定します.
+	 * @return JDBCCsvLoader
+	 */
+	public JDBCCsvLoader setProgress(PrintStream out, long interval) {
+		this.progress = out;
+		this.progressInterval = interval <= 0L ? DEF_PROGRESS_INTERVAL : interval;
+		return this;
+	}
+
+	/**
+	 * 書き込み済みの行数を取得.
+	 *
+	 * @return long
+	 */
+	public long getWriteCount() {
+		return writeCount.get();
+	}
+
+	/**
+	 * 処理開始からの経過時間を取得.
+	 *
+	 * @return long ミリ秒で返却されます.
+	 */
+	public long getTime() {
+		return startTime == 0L ? 0L : System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * １秒間の書き込み行数を取得.
+	 *
+	 * @return long
+	 */
+	public long getThroughput() {
+		final long time = getTime();
+		return time <= 0L ? 0L : (writeCount.get() * 1000L) / time;
+	}
+
+	/**
+	 * CSVインサート実行.
+	 *
+	 * @param core        JDBCCoreを設定します.
+	 * @param jdbc        接続定義名を設定します.
+	 * @param table       テーブル名を設定します.
+	 * @param deleteFlag  テーブルの内容を全削除する場合は[true]を設定します.
+	 * @param charset     CSVの文字コードを設定します.
+	 * @param startNumber 数値シーケンスIDの開始番号を設定します.
+	 * @param fileName    CSVファイル名を設定します.
+	 * @return long インサートした行数が返却されます.
+	 * @throws Exception 例外.
+	 */
+	public long execute(JDBCCore core, String jdbc, String table, boolean deleteFlag, String charset,
+			long startNumber, String fileName) throws Exception {
+		CsvReader csv = null;
+		writeCount.set(0L);
+		error.set(null);
+		startTime = System.currentTimeMillis();
+		progressTime = startTime;
+		try {
+			csv = new CsvReader(fileName, charset, ",");
+			final String sql = createInsert(csv, table);
+			if (parallel <= 1) {
+				single(core, jdbc, table, deleteFlag, sql, csv, startNumber);
+			} else {
+				parallel(core, jdbc, table, deleteFlag, sql, csv, startNumber);
+			}
+		} finally {
+			if (csv != null) {
+				csv.close();
+			}
+		}
+		return writeCount.get();
+	}
+
+	// 呼び出し元スレッドで処理.
+	private final void single(JDBCCore core, String jdbc, String table, boolean deleteFlag, String sql,
+			CsvReader csv, long startNumber) {
+		final JDBCConnect conns = core.getConnect(jdbc);
+		conns.setAutoCommit(false);
+		// テーブル内のデータを全削除する場合.
+		if (deleteFlag) {
+			conns.addBatch("DELETE FROM " + table + ";");
+		}
+		final long[] counter = new long[] { startNumber };
+		final Object[][] rows = new Object[batchSize][];
+		long commitRows = 0L;
+		int len;
+		while ((len = readBatch(csv, counter, rows)) > 0) {
+			write(conns, sql, rows, len);
+			if (commitCount > 0 && (commitRows += len) >= commitCount) {
+				conns.commit();
+				commitRows = 0L;
+			}
+			progress();
+		}
+		conns.commit();
+	}
+
+	// 書き込みスレッドで並列処理.
+	private final void parallel(JDBCCore core, String jdbc, String table, boolean deleteFlag, String sql,
+			CsvReader csv, long startNumber) throws Exception {
+		// テーブル内のデータを全削除する場合は、先にコミットする.
+		if (deleteFlag) {
+			try {
+				final JDBCConnect conns = core.getConnect(jdbc);
+				conns.setAutoCommit(false);
+				conns.addBatch("DELETE FROM " + table + ";");
+				conns.commit();
+			} finally {
+				core.close();
+			}
+		}
+		final ArrayBlockingQueue<Object[][]> queue = new ArrayBlockingQueue<Object[][]>(parallel * 2);
+		final Writer[] writers = new Writer[parallel];
+		for (int i = 0; i < parallel; i++) {
+			writers[i] = new Writer(core, jdbc, sql, queue);
+			writers[i].start();
+		}
+		try {
+			final long[] counter = new long[] { startNumber };
+			Object[][] rows;
+			int len;
+			while (error.get() == null) {
+				rows = new Object[batchSize][];
+				if ((len = readBatch(csv, counter, rows)) <= 0) {
+					break;
+				} else if (len < batchSize) {
+					final Object[][] n = new Object[len][];
+					System.arraycopy(rows, 0, n, 0, len);
+					rows = n;
+				}
+				offer(queue, rows);
+			}
+		} catch (Throwable t) {
+			// 読み込みエラーの場合は、書き込みスレッドでコミットさせない.
+			error.compareAndSet(null, t);
+		} finally {
+			// 書き込みスレッドの終了.
+			for (int i = 0; i < parallel; i++) {
+				offer(queue, END);
+			}
+			for (int i = 0; i < parallel; i++) {
+				writers[i].join();
+			}
+		}
+		final Throwable t = error.get();
+		if (t != null) {
+			if (t instanceof Exception) {
+				throw (Exception) t;
+			}
+			throw new JDBCException(t);
+		}
+	}
+
+	// キューにバッチを追加.
+	private final void offer(ArrayBlockingQueue<Object[][]> queue, Object[][] rows) throws InterruptedException {
+		while (!queue.offer(rows, QUEUE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+			// エラーで書き込みスレッドが終了している場合は、キューを破棄.
+			if (error.get() != null) {
+				queue.clear();
+			}
+			progress();
+		}
+		progress();
+	}
+
+	// CSVからバッチ行数分を読み込む.
+	private static final int readBatch(CsvReader csv, long[] counter, Object[][] rows) {
+		int n = 0;
+		final int len = rows.length;
+		while (n < len && csv.hasNext()) {
+			rows[n++] = getSqlParams(counter, csv.nextRow());
+		}
+		return n;
+	}
+
+	// バッチ送信.
+	private final void write(JDBCConnect conns, String sql, Object[][] rows, int len) {
+		Object[] params;
+		for (int i = 0; i < len; i++) {
+			params = rows[i];
+			for (int j = 0; j < params.length; j++) {
+				if (params[j] == SEQUENCE) {
+					params[j] = conns.TIME12();
+				}
+			}
+			conns.addBatch(sql, params);
+		}
+		conns.executeBatch();
+		writeCount.addAndGet(len);
+	}
+
+	// 進捗を出力.
+	private final void progress() {
+		if (progress == null) {
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		if (now - progressTime >= progressInterval) {
+			progressTime = now;
+			progress.println("progress   : " + writeCount.get() + " rows (" + getThroughput() + " rows/sec)");
+		}
+	}
+
+	// insert文を生成.
+	private static final String createInsert(CsvReader csv, String table) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("INSERT INTO ").append(table).append("(");
+		final int len = csv.getHeaderSize();
+		for (int i = 0; i < len; i++) {
+			if (i != 0) {
+				buf.append(",");
+			}
+			buf.append(csv.getHeader(i));
+		}
+		buf.append(") VALUES (");
+		for (int i = 0; i < len; i++) {
+			if (i != 0) {
+				buf.append(",");
+			}
+			buf.append("?");
+		}
+		buf.append(");");
+		return buf.toString();
+	}
+
+	// CSVの１行をパラメータに変換.
+	// シーケンスIDは書き込み側のコネクションで生成する.
+	private static final Object[] getSqlParams(long[] counter, List<String> row) {
+		String c;
+		final int len = row.size();
+		Object[] ret = new Object[len];
+		for (int i = 0; i < len; i++) {
+			c = row.get(i);
+			// １６文字のシーケンスIDを付与する場合。
+			if (Alphabet.eq("{seq}", c) || Alphabet.eq("{sequence}", c)) {
+				ret[i] = SEQUENCE;
+				continue;
+			// 数値のシーケンスIDを付与する場合。
+			} else if (Alphabet.eq("{num}", c) || Alphabet.eq("{number}", c)) {
+				c = "" + (counter[0]++);
+			}
+			ret[i] = c;
+		}
+		return ret;
+	}
+
+	// 書き込みスレッド.
+	private final class Writer extends Thread {
+		private final JDBCCore core;
+		private final String jdbc;
+		private final String sql;
+		private final ArrayBlockingQueue<Object[][]> queue;
+
+		Writer(JDBCCore core, String jdbc, String sql, ArrayBlockingQueue<Object[][]> queue) {
+			this.core = core;
+			this.jdbc = jdbc;
+			this.sql = sql;
+			this.queue = queue;
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			Object[][] rows;
+			long commitRows = 0L;
+			try {
+				final JDBCConnect conns = core.getConnect(jdbc);
+				conns.setAutoCommit(false);
+				while (true) {
+					if ((rows = queue.poll(QUEUE_TIMEOUT, TimeUnit.MILLISECONDS)) == null) {
+						if (error.get() != null) {
+							break;
+						}
+						continue;
+					} else if (rows == END || error.get() != null) {
+						break;
+					}
+					write(conns, sql, rows, rows.length);
+					if (commitCount > 0 && (commitRows += rows.length) >= commitCount) {
+						conns.commit();
+						commitRows = 0L;
+					}
+				}
+				// エラーが無い場合のみコミット.
+				if (error.get() == null) {
+					conns.commit();
+				}
+			} catch (Throwable t) {
+				error.compareAndSet(null, t);
+			} finally {
+				// ロールバックしてコネクションを返却.
+				try {
+					core.close();
+				} catch (Throwable t) {
+				}
+			}
+		}
+	}
+}
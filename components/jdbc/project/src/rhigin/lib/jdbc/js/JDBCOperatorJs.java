@@ -27,7 +27,7 @@ public class JDBCOperatorJs {
 	protected static final RhiginObject JDBC_INSTANCE = new RhiginObject("JDBC", new RhiginFunction[] {
 		new JDBCFunctions(0), new JDBCFunctions(1), new JDBCFunctions(2), new JDBCFunctions(3),
 		new JDBCFunctions(4), new JDBCFunctions(5), new JDBCFunctions(6), new JDBCFunctions(7),
-		new JDBCFunctions(8), new JDBCFunctions(9)
+		new JDBCFunctions(8), new JDBCFunctions(9), new JDBCFunctions(10)
 	});
 	
 	/**
@@ -128,6 +128,16 @@ public class JDBCOperatorJs {
 					{
 						return core.names();
 					}
+				case 10: // status.
+					{
+						if(args.length > 0) {
+							return core.getStatus("" + args[0]);
+						} else if(core.size() > 0) {
+							// 一番最初に定義されている定義情報のプーリング状態を取得.
+							return core.getStatus(core.getName(0));
+						}
+						argsException("JDBC");
+					}
 				}
 				
 			} catch (RhiginException re) {
@@ -151,6 +161,7 @@ public class JDBCOperatorJs {
 			case 7: return "isRegister";
 			case 8: return "length";
 			case 9: return "names";
+			case 10: return "status";
 			}
 			return "unknown";
 		}
@@ -382,6 +393,9 @@ public class JDBCOperatorJs {
 		,"next"
 		,"rows"
 		,"toString"
+		,"streaming"
+		,"json"
+		,"csv"
 	};
 	
 	// JDBC行情報メソッド生成処理.
@@ -447,6 +461,25 @@ public class JDBCOperatorJs {
 					{
 						return row.toString();
 					}
+				case 6: // streaming.
+					{
+						if(args.length > 0 && Converter.isNumeric(args[0])) {
+							row.streaming(Converter.convertInt(args[0]));
+						} else {
+							row.streaming(0);
+						}
+						return thisObj;
+					}
+				case 7: // json.
+					{
+						return row.toJson();
+					}
+				case 8: // csv.
+					{
+						final String cut = args.length > 0 && args[0] != null ? "" + args[0] : ",";
+						final boolean header = args.length > 1 ? Converter.convertBool(args[1]) : true;
+						return row.toCsv(cut.length() == 0 ? ',' : cut.charAt(0), header);
+					}
 				}
 			} catch (RhiginException re) {
 				throw re;
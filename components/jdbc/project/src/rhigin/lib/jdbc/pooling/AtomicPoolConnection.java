@@ -28,6 +28,13 @@ public interface AtomicPoolConnection extends Connection {
 	 */
 	public long lastTime();
 
+	/**
+	 * コネクションの妥当性チェック.
+	 * 
+	 * @return boolean [true]の場合、利用可能なコネクションです.
+	 */
+	public boolean validate();
+
 	/**
 	 * JDBCKindを取得.
 	 * 
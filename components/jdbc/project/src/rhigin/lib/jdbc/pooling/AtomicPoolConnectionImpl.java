@@ -0,0 +1,549 @@
+package rhigin.lib.jdbc.pooling;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+import rhigin.lib.jdbc.runner.JDBCException;
+import rhigin.lib.jdbc.runner.JDBCKind;
+import rhigin.util.Flag;
+
+/**
+ * プーリング対応コネクションの実装.
+ *
+ * 物理コネクションに処理を委譲します.
+ * closeの場合は物理クローズせずにプーリングに戻します(論理close).
+ */
+final class AtomicPoolConnectionImpl implements AtomicPoolConnection {
+	/** 妥当性チェックのタイムアウト(秒). **/
+	private static final int VALIDATION_TIMEOUT = 5;
+
+	private final boolean notPool;
+	private final Flag poolCloseFlag = new Flag(); // 論理Open.
+	private final AtomicPooling pool;
+	private final Connection src;
+	private final JDBCKind kind;
+	private final AtomicStatementCache statementCache;
+	private volatile long lastTime;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param np   [true]の場合、プーリングしないコネクションです.
+	 * @param k    対象のJDBCKindを設定します.
+	 * @param conn 物理コネクションを設定します.
+	 * @param p    プーリングオブジェクトを設定します.
+	 */
+	AtomicPoolConnectionImpl(final boolean np, final JDBCKind k, final Connection conn, final AtomicPooling p) {
+		notPool = np;
+		pool = p;
+		kind = k;
+		src = conn;
+		lastTime = -1L;
+		poolCloseFlag.set(false);
+		// プーリング対象のコネクションは、PreparedStatementをキャッシュする.
+		final int cacheSize = np ? 0 : AtomicStatementCache.cacheSize(k);
+		statementCache = cacheSize <= 0 ? null :
+			new AtomicStatementCache(conn, k, cacheSize, p.statementHits, p.statementMisses);
+
+		// AutoCommitは基本OFF.
+		try {
+			src.setAutoCommit(false);
+		} catch(Exception e) {
+			throw new JDBCException(e);
+		}
+	}
+
+	// クローズチェック.
+	private final void check() throws SQLException {
+		if ((notPool && src.isClosed()) || poolCloseFlag.get()) {
+			throw new SQLException("Connection is closed");
+		}
+	}
+
+	// statementの基本条件を設定.
+	private final <T extends Statement> T statement(final T stmt) throws SQLException {
+		// busyTimeout と fetchSizeを設定.
+		kind.setBusyTimeout(stmt);
+		kind.setFetchSize(stmt);
+		return stmt;
+	}
+
+	@Override
+	public void destroy() {
+		poolCloseFlag.set(true); // 論理close.
+		if (statementCache != null) {
+			statementCache.destroy();
+		}
+		try {
+			src.close();
+		} catch (Throwable e) {
+		}
+	}
+
+	@Override
+	public AtomicPoolConnection recreate() {
+		if (notPool) {
+			// プーリングしない場合.
+			throw new JDBCException("not pooling Connection");
+		}
+		try {
+			if (src.isClosed()) {
+				throw new JDBCException("Connection is closed");
+			}
+		} catch (SQLException e) {
+			throw new JDBCException(e);
+		}
+		poolCloseFlag.set(false); // 論理open.
+		return this;
+	}
+
+	@Override
+	public long lastTime() {
+		return lastTime;
+	}
+
+	@Override
+	public boolean validate() {
+		return kind.validate(src, VALIDATION_TIMEOUT);
+	}
+
+	@Override
+	public JDBCKind getKind() {
+		return kind;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (notPool) {
+			poolCloseFlag.set(true); // 論理close.
+			// プーリングしない場合.
+			if (!src.getAutoCommit()) {
+				try {
+					src.rollback();
+				} catch (Throwable e) {
+				}
+			}
+			try {
+				src.close();
+			} catch (Throwable e) {
+			}
+			return;
+		} else if (poolCloseFlag.setToGetBefore(true)) {
+			// 既に論理closeされている場合.
+			return;
+		}
+		boolean reuse = false;
+		try {
+			if (statementCache != null) {
+				// 利用中のPreparedStatementを返却して再利用可能にする.
+				statementCache.clear();
+			}
+			if (!src.isClosed()) {
+				if (!src.getAutoCommit()) {
+					src.rollback();
+				}
+				// 基本条件を再設定.
+				src.setAutoCommit(false);
+				reuse = true;
+			}
+		} catch (Throwable e) {
+		} finally {
+			// 同時利用数の制限を解除.
+			// プーリングに戻した直後に別の利用者が取得する場合があるので、
+			// 必ずプーリングに戻す前に解除する.
+			pool.release(this);
+		}
+		// プーリング可能な場合は、セット.
+		lastTime = System.currentTimeMillis();
+		if (!reuse || !pool.offer(this)) {
+			// プーリングしない場合は削除.
+			// 最大コネクション管理数を越える場合は削除.
+			// オブジェクトが破棄されている場合も同様.
+			pool.destroyCount.incrementAndGet();
+			if (statementCache != null) {
+				statementCache.destroy();
+			}
+			try {
+				src.close();
+			} catch (Throwable e) {
+			}
+		}
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		if (notPool) {
+			return src.isClosed();
+		} else if (!poolCloseFlag.get()) { // 論理open状態の場合.
+			// 実際のConnection状態を反映.
+			poolCloseFlag.set(src.isClosed());
+		}
+		return poolCloseFlag.get();
+	}
+
+	@Override
+	public String toString() {
+		return src.toString();
+	}
+
+	// statement系.
+
+	@Override
+	public Statement createStatement() throws SQLException {
+		check();
+		return statement(src.createStatement());
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		check();
+		return statement(src.createStatement(resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+			throws SQLException {
+		check();
+		return statement(src.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		check();
+		if (statementCache != null) {
+			// キャッシュ対象の場合は、キャッシュから取得.
+			final PreparedStatement ret = statementCache.prepare(this, sql);
+			if (ret != null) {
+				return ret;
+			}
+		}
+		return statement(src.prepareStatement(sql));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		check();
+		if (statementCache != null) {
+			final PreparedStatement ret = statementCache.prepare(this, sql, autoGeneratedKeys);
+			if (ret != null) {
+				return ret;
+			}
+		}
+		return statement(src.prepareStatement(sql, autoGeneratedKeys));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+			throws SQLException {
+		check();
+		if (statementCache != null) {
+			final PreparedStatement ret = statementCache.prepare(this, sql, resultSetType, resultSetConcurrency);
+			if (ret != null) {
+				return ret;
+			}
+		}
+		return statement(src.prepareStatement(sql, resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+			int resultSetHoldability) throws SQLException {
+		check();
+		if (statementCache != null) {
+			final PreparedStatement ret = statementCache.prepare(this, sql, resultSetType, resultSetConcurrency,
+				resultSetHoldability);
+			if (ret != null) {
+				return ret;
+			}
+		}
+		return statement(src.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		check();
+		return statement(src.prepareStatement(sql, columnIndexes));
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		check();
+		return statement(src.prepareStatement(sql, columnNames));
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		check();
+		return statement(src.prepareCall(sql));
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+			throws SQLException {
+		check();
+		return statement(src.prepareCall(sql, resultSetType, resultSetConcurrency));
+	}
+
+	@Override
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+			int resultSetHoldability) throws SQLException {
+		check();
+		return statement(src.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	// 以下、物理コネクションに委譲.
+
+	@Override
+	public String nativeSQL(String sql) throws SQLException {
+		check();
+		return src.nativeSQL(sql);
+	}
+
+	@Override
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		check();
+		src.setAutoCommit(autoCommit);
+	}
+
+	@Override
+	public boolean getAutoCommit() throws SQLException {
+		check();
+		return src.getAutoCommit();
+	}
+
+	@Override
+	public void commit() throws SQLException {
+		check();
+		src.commit();
+	}
+
+	@Override
+	public void rollback() throws SQLException {
+		check();
+		src.rollback();
+	}
+
+	@Override
+	public DatabaseMetaData getMetaData() throws SQLException {
+		check();
+		return src.getMetaData();
+	}
+
+	@Override
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		check();
+		src.setReadOnly(readOnly);
+	}
+
+	@Override
+	public boolean isReadOnly() throws SQLException {
+		check();
+		return src.isReadOnly();
+	}
+
+	@Override
+	public void setCatalog(String catalog) throws SQLException {
+		check();
+		src.setCatalog(catalog);
+	}
+
+	@Override
+	public String getCatalog() throws SQLException {
+		check();
+		return src.getCatalog();
+	}
+
+	@Override
+	public void setTransactionIsolation(int level) throws SQLException {
+		check();
+		src.setTransactionIsolation(level);
+	}
+
+	@Override
+	public int getTransactionIsolation() throws SQLException {
+		check();
+		return src.getTransactionIsolation();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		check();
+		return src.getWarnings();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		check();
+		src.clearWarnings();
+	}
+
+	@Override
+	public Map<String, Class<?>> getTypeMap() throws SQLException {
+		check();
+		return src.getTypeMap();
+	}
+
+	@Override
+	public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+		check();
+		src.setTypeMap(map);
+	}
+
+	@Override
+	public void setHoldability(int holdability) throws SQLException {
+		check();
+		src.setHoldability(holdability);
+	}
+
+	@Override
+	public int getHoldability() throws SQLException {
+		check();
+		return src.getHoldability();
+	}
+
+	@Override
+	public Savepoint setSavepoint() throws SQLException {
+		check();
+		return src.setSavepoint();
+	}
+
+	@Override
+	public Savepoint setSavepoint(String name) throws SQLException {
+		check();
+		return src.setSavepoint(name);
+	}
+
+	@Override
+	public void rollback(Savepoint savepoint) throws SQLException {
+		check();
+		src.rollback(savepoint);
+	}
+
+	@Override
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		check();
+		src.releaseSavepoint(savepoint);
+	}
+
+	@Override
+	public Clob createClob() throws SQLException {
+		check();
+		return src.createClob();
+	}
+
+	@Override
+	public Blob createBlob() throws SQLException {
+		check();
+		return src.createBlob();
+	}
+
+	@Override
+	public NClob createNClob() throws SQLException {
+		check();
+		return src.createNClob();
+	}
+
+	@Override
+	public SQLXML createSQLXML() throws SQLException {
+		check();
+		return src.createSQLXML();
+	}
+
+	@Override
+	public boolean isValid(int timeout) throws SQLException {
+		check();
+		return src.isValid(timeout);
+	}
+
+	@Override
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		src.setClientInfo(name, value);
+	}
+
+	@Override
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		src.setClientInfo(properties);
+	}
+
+	@Override
+	public String getClientInfo(String name) throws SQLException {
+		check();
+		return src.getClientInfo(name);
+	}
+
+	@Override
+	public Properties getClientInfo() throws SQLException {
+		check();
+		return src.getClientInfo();
+	}
+
+	@Override
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		check();
+		return src.createArrayOf(typeName, elements);
+	}
+
+	@Override
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		check();
+		return src.createStruct(typeName, attributes);
+	}
+
+	@Override
+	public void setSchema(String schema) throws SQLException {
+		check();
+		src.setSchema(schema);
+	}
+
+	@Override
+	public String getSchema() throws SQLException {
+		check();
+		return src.getSchema();
+	}
+
+	@Override
+	public void abort(Executor executor) throws SQLException {
+		check();
+		src.abort(executor);
+	}
+
+	@Override
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		check();
+		src.setNetworkTimeout(executor, milliseconds);
+	}
+
+	@Override
+	public int getNetworkTimeout() throws SQLException {
+		check();
+		return src.getNetworkTimeout();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		check();
+		return src.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		check();
+		return src.isWrapperFor(iface);
+	}
+}
@@ -0,0 +1,762 @@
+package rhigin.lib.jdbc.pooling;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * キャッシュされたPreparedStatementの利用側ハンドル.
+ *
+ * 物理PreparedStatementに処理を委譲します.
+ * closeの場合は物理クローズせずに、状態をクリアしてキャッシュに戻します.
+ * ハンドルは取得毎に生成されるので、close後に同じハンドルを操作しても、次の利用者には影響しません.
+ */
+final class AtomicPoolStatement implements PreparedStatement {
+	private final AtomicStatementCache cache;
+	private final Connection conn;
+	final AtomicStatementCache.Entry entry;
+	final PreparedStatement stmt;
+	ResultSet result = null;
+	boolean batch = false;
+	boolean dirty = false;
+	boolean unsafe = false;
+	volatile boolean closed = false;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param cache 対象のキャッシュを設定します.
+	 * @param conn  利用側に返却しているコネクションを設定します.
+	 * @param entry キャッシュ要素を設定します.
+	 */
+	AtomicPoolStatement(AtomicStatementCache cache, Connection conn, AtomicStatementCache.Entry entry) {
+		this.cache = cache;
+		this.conn = conn;
+		this.entry = entry;
+		this.stmt = entry.stmt;
+	}
+
+	// クローズチェック.
+	private final void check() throws SQLException {
+		if (closed) {
+			throw new SQLException("Statement is closed");
+		}
+	}
+
+	// 取得したResultSetを保持.
+	private final ResultSet result(ResultSet rs) {
+		result = rs;
+		return rs;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (!closed) {
+			closed = true;
+			cache.release(this);
+		}
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return closed;
+	}
+
+	@Override
+	public String toString() {
+		return stmt.toString();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		check();
+		return conn;
+	}
+
+	@Override
+	public ParameterMetaData getParameterMetaData() throws SQLException {
+		check();
+		// パラメータ情報は同一SQLで変わらないので保持する.
+		if (entry.meta == null) {
+			entry.meta = stmt.getParameterMetaData();
+		}
+		return entry.meta;
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		check();
+		return result(stmt.executeQuery());
+	}
+
+	@Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		check();
+		return result(stmt.executeQuery(sql));
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		check();
+		return result(stmt.getResultSet());
+	}
+
+	@Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		check();
+		return result(stmt.getGeneratedKeys());
+	}
+
+	@Override
+	public void addBatch() throws SQLException {
+		check();
+		batch = true;
+		stmt.addBatch();
+	}
+
+	@Override
+	public void addBatch(String sql) throws SQLException {
+		check();
+		batch = true;
+		stmt.addBatch(sql);
+	}
+
+	// 返却時に元に戻す状態変更.
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		check();
+		dirty = true;
+		stmt.setMaxRows(max);
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		check();
+		dirty = true;
+		stmt.setFetchSize(rows);
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		check();
+		dirty = true;
+		stmt.setQueryTimeout(seconds);
+	}
+
+	// 返却時に元に戻せない状態変更(返却時に物理クローズ).
+
+	@Override
+	public void setCursorName(String name) throws SQLException {
+		check();
+		unsafe = true;
+		stmt.setCursorName(name);
+	}
+
+	@Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		check();
+		unsafe = true;
+		stmt.setEscapeProcessing(enable);
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		check();
+		unsafe = true;
+		stmt.setFetchDirection(direction);
+	}
+
+	@Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		check();
+		unsafe = true;
+		stmt.setMaxFieldSize(max);
+	}
+
+	@Override
+	public void setLargeMaxRows(long max) throws SQLException {
+		check();
+		unsafe = true;
+		stmt.setLargeMaxRows(max);
+	}
+
+	@Override
+	public void setPoolable(boolean poolable) throws SQLException {
+		check();
+		unsafe = true;
+		stmt.setPoolable(poolable);
+	}
+
+	@Override
+	public void closeOnCompletion() throws SQLException {
+		check();
+		unsafe = true;
+		stmt.closeOnCompletion();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		check();
+		return stmt.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		check();
+		return stmt.isWrapperFor(iface);
+	}
+
+	// 以下、物理PreparedStatementに委譲.
+
+	@Override
+	public int executeUpdate(String sql) throws SQLException {
+		check();
+		return stmt.executeUpdate(sql);
+	}
+
+	@Override
+	public int getMaxFieldSize() throws SQLException {
+		check();
+		return stmt.getMaxFieldSize();
+	}
+
+	@Override
+	public int getMaxRows() throws SQLException {
+		check();
+		return stmt.getMaxRows();
+	}
+
+	@Override
+	public int getQueryTimeout() throws SQLException {
+		check();
+		return stmt.getQueryTimeout();
+	}
+
+	@Override
+	public void cancel() throws SQLException {
+		check();
+		stmt.cancel();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		check();
+		return stmt.getWarnings();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		check();
+		stmt.clearWarnings();
+	}
+
+	@Override
+	public boolean execute(String sql) throws SQLException {
+		check();
+		return stmt.execute(sql);
+	}
+
+	@Override
+	public int getUpdateCount() throws SQLException {
+		check();
+		return stmt.getUpdateCount();
+	}
+
+	@Override
+	public boolean getMoreResults() throws SQLException {
+		check();
+		return stmt.getMoreResults();
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		check();
+		return stmt.getFetchDirection();
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		check();
+		return stmt.getFetchSize();
+	}
+
+	@Override
+	public int getResultSetConcurrency() throws SQLException {
+		check();
+		return stmt.getResultSetConcurrency();
+	}
+
+	@Override
+	public int getResultSetType() throws SQLException {
+		check();
+		return stmt.getResultSetType();
+	}
+
+	@Override
+	public void clearBatch() throws SQLException {
+		check();
+		stmt.clearBatch();
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		check();
+		return stmt.executeBatch();
+	}
+
+	@Override
+	public boolean getMoreResults(int current) throws SQLException {
+		check();
+		return stmt.getMoreResults(current);
+	}
+
+	@Override
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		check();
+		return stmt.executeUpdate(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		check();
+		return stmt.executeUpdate(sql, columnIndexes);
+	}
+
+	@Override
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		check();
+		return stmt.executeUpdate(sql, columnNames);
+	}
+
+	@Override
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		check();
+		return stmt.execute(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		check();
+		return stmt.execute(sql, columnIndexes);
+	}
+
+	@Override
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		check();
+		return stmt.execute(sql, columnNames);
+	}
+
+	@Override
+	public int getResultSetHoldability() throws SQLException {
+		check();
+		return stmt.getResultSetHoldability();
+	}
+
+	@Override
+	public boolean isPoolable() throws SQLException {
+		check();
+		return stmt.isPoolable();
+	}
+
+	@Override
+	public boolean isCloseOnCompletion() throws SQLException {
+		check();
+		return stmt.isCloseOnCompletion();
+	}
+
+	@Override
+	public long getLargeUpdateCount() throws SQLException {
+		check();
+		return stmt.getLargeUpdateCount();
+	}
+
+	@Override
+	public long getLargeMaxRows() throws SQLException {
+		check();
+		return stmt.getLargeMaxRows();
+	}
+
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+		check();
+		return stmt.executeLargeBatch();
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql) throws SQLException {
+		check();
+		return stmt.executeLargeUpdate(sql);
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		check();
+		return stmt.executeLargeUpdate(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		check();
+		return stmt.executeLargeUpdate(sql, columnIndexes);
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+		check();
+		return stmt.executeLargeUpdate(sql, columnNames);
+	}
+
+	@Override
+	public int executeUpdate() throws SQLException {
+		check();
+		return stmt.executeUpdate();
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		check();
+		stmt.setNull(parameterIndex, sqlType);
+	}
+
+	@Override
+	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		check();
+		stmt.setBoolean(parameterIndex, x);
+	}
+
+	@Override
+	public void setByte(int parameterIndex, byte x) throws SQLException {
+		check();
+		stmt.setByte(parameterIndex, x);
+	}
+
+	@Override
+	public void setShort(int parameterIndex, short x) throws SQLException {
+		check();
+		stmt.setShort(parameterIndex, x);
+	}
+
+	@Override
+	public void setInt(int parameterIndex, int x) throws SQLException {
+		check();
+		stmt.setInt(parameterIndex, x);
+	}
+
+	@Override
+	public void setLong(int parameterIndex, long x) throws SQLException {
+		check();
+		stmt.setLong(parameterIndex, x);
+	}
+
+	@Override
+	public void setFloat(int parameterIndex, float x) throws SQLException {
+		check();
+		stmt.setFloat(parameterIndex, x);
+	}
+
+	@Override
+	public void setDouble(int parameterIndex, double x) throws SQLException {
+		check();
+		stmt.setDouble(parameterIndex, x);
+	}
+
+	@Override
+	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+		check();
+		stmt.setBigDecimal(parameterIndex, x);
+	}
+
+	@Override
+	public void setString(int parameterIndex, String x) throws SQLException {
+		check();
+		stmt.setString(parameterIndex, x);
+	}
+
+	@Override
+	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		check();
+		stmt.setBytes(parameterIndex, x);
+	}
+
+	@Override
+	public void setDate(int parameterIndex, Date x) throws SQLException {
+		check();
+		stmt.setDate(parameterIndex, x);
+	}
+
+	@Override
+	public void setTime(int parameterIndex, Time x) throws SQLException {
+		check();
+		stmt.setTime(parameterIndex, x);
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+		check();
+		stmt.setTimestamp(parameterIndex, x);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		check();
+		stmt.setAsciiStream(parameterIndex, x, length);
+	}
+
+	@Override
+	@Deprecated
+	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		check();
+		stmt.setUnicodeStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		check();
+		stmt.setBinaryStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void clearParameters() throws SQLException {
+		check();
+		stmt.clearParameters();
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+		check();
+		stmt.setObject(parameterIndex, x, targetSqlType);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x) throws SQLException {
+		check();
+		stmt.setObject(parameterIndex, x);
+	}
+
+	@Override
+	public boolean execute() throws SQLException {
+		check();
+		return stmt.execute();
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+		check();
+		stmt.setCharacterStream(parameterIndex, reader, length);
+	}
+
+	@Override
+	public void setRef(int parameterIndex, Ref x) throws SQLException {
+		check();
+		stmt.setRef(parameterIndex, x);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, Blob x) throws SQLException {
+		check();
+		stmt.setBlob(parameterIndex, x);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Clob x) throws SQLException {
+		check();
+		stmt.setClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setArray(int parameterIndex, Array x) throws SQLException {
+		check();
+		stmt.setArray(parameterIndex, x);
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		check();
+		return stmt.getMetaData();
+	}
+
+	@Override
+	public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+		check();
+		stmt.setDate(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+		check();
+		stmt.setTime(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+		check();
+		stmt.setTimestamp(parameterIndex, x, cal);
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		check();
+		stmt.setNull(parameterIndex, sqlType, typeName);
+	}
+
+	@Override
+	public void setURL(int parameterIndex, URL x) throws SQLException {
+		check();
+		stmt.setURL(parameterIndex, x);
+	}
+
+	@Override
+	public void setRowId(int parameterIndex, RowId x) throws SQLException {
+		check();
+		stmt.setRowId(parameterIndex, x);
+	}
+
+	@Override
+	public void setNString(int parameterIndex, String x) throws SQLException {
+		check();
+		stmt.setNString(parameterIndex, x);
+	}
+
+	@Override
+	public void setNCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+		check();
+		stmt.setNCharacterStream(parameterIndex, reader, length);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, NClob x) throws SQLException {
+		check();
+		stmt.setNClob(parameterIndex, x);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		check();
+		stmt.setClob(parameterIndex, reader, length);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, InputStream x, long length) throws SQLException {
+		check();
+		stmt.setBlob(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		check();
+		stmt.setNClob(parameterIndex, reader, length);
+	}
+
+	@Override
+	public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+		check();
+		stmt.setSQLXML(parameterIndex, x);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength)
+			throws SQLException {
+		check();
+		stmt.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		check();
+		stmt.setAsciiStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		check();
+		stmt.setBinaryStream(parameterIndex, x, length);
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+		check();
+		stmt.setCharacterStream(parameterIndex, reader, length);
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+		check();
+		stmt.setAsciiStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+		check();
+		stmt.setBinaryStream(parameterIndex, x);
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+		check();
+		stmt.setCharacterStream(parameterIndex, reader);
+	}
+
+	@Override
+	public void setNCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+		check();
+		stmt.setNCharacterStream(parameterIndex, reader);
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Reader reader) throws SQLException {
+		check();
+		stmt.setClob(parameterIndex, reader);
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, InputStream x) throws SQLException {
+		check();
+		stmt.setBlob(parameterIndex, x);
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+		check();
+		stmt.setNClob(parameterIndex, reader);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength)
+			throws SQLException {
+		check();
+		stmt.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
+		check();
+		stmt.setObject(parameterIndex, x, targetSqlType);
+	}
+
+	@Override
+	public long executeLargeUpdate() throws SQLException {
+		check();
+		return stmt.executeLargeUpdate();
+	}
+}
@@ -1,19 +1,18 @@
 package rhigin.lib.jdbc.pooling;
 
 import java.io.PrintWriter;
-import java.lang.ref.SoftReference;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
-import java.sql.Statement;
 import java.util.Iterator;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -22,12 +21,20 @@ import rhigin.http.HttpConstants;
 import rhigin.lib.jdbc.runner.JDBCDriverManager;
 import rhigin.lib.jdbc.runner.JDBCException;
 import rhigin.lib.jdbc.runner.JDBCKind;
+import rhigin.logs.Log;
+import rhigin.logs.LogFactory;
+import rhigin.scripts.JsMap;
+import rhigin.util.AtomicNumber;
 import rhigin.util.Flag;
+import rhigin.util.Histogram;
 
 /**
  * １データベースのAtomicなプーリング管理.
+ *
+ * 同時利用コネクション数は[maxActive]で制限され、超えた場合は取得順(FIFO)に待機します.
  */
 public class AtomicPooling implements DataSource {
+	private static final Log LOG = LogFactory.create();
 
 	/**
 	 * プーリング最大管理数. 最大数は、スレッド数＊４.
@@ -48,8 +55,29 @@ public class AtomicPooling implements DataSource {
 	/** 1分. **/
 	public static final long DEF_TIMEOUT = 60000L;
 
+	/** デフォルトのコネクション取得待ちタイムアウト(ミリ秒). **/
+	public static final long DEF_WAIT_TIMEOUT = 30000L;
+
+	/** デフォルトのアイドルコネクション妥当性チェック間隔(ミリ秒). **/
+	public static final long DEF_IDLE_TEST_TIME = 60000L;
+
+	/** 直前に利用されていたコネクションは、取得時の妥当性チェックを行わない(ミリ秒). **/
+	private static final long VALIDATION_BYPASS_TIME = 500L;
+
+	/** 取得待ち時間のパーセンタイル. **/
+	private static final double[] PERCENTILES = new double[] { 0.5d, 0.9d, 0.99d };
+
 	/** プーリングデータ格納用. **/
-	protected final Queue<SoftReference<AtomicPoolConnection>> pooling = new ConcurrentLinkedQueue<SoftReference<AtomicPoolConnection>>();
+	protected final ConcurrentLinkedDeque<AtomicPoolConnection> pooling = new ConcurrentLinkedDeque<AtomicPoolConnection>();
+
+	/** プーリング数. **/
+	private final AtomicNumber poolingSize = new AtomicNumber(0);
+
+	/** 利用中のコネクション. **/
+	private final Map<AtomicPoolConnection, BorrowInfo> active = new ConcurrentHashMap<AtomicPoolConnection, BorrowInfo>();
+
+	/** 同時利用数の制限(FIFO). **/
+	private Semaphore semaphore;
 
 	/** オブジェクト破棄チェック. **/
 	private final Flag destroyFlag = new Flag();
@@ -60,21 +88,67 @@ public class AtomicPooling implements DataSource {
 	/** 最大プーリング数. **/
 	private int maxPool;
 
+	/** 最大同時利用コネクション数. **/
+	private int maxActive;
+
+	/** 最小アイドルコネクション数. **/
+	private int minIdle;
+
 	/** タイムアウト値. **/
 	protected long timeout;
-	
+
+	/** コネクション取得待ちタイムアウト値. **/
+	private long waitTimeout;
+
+	/** アイドルコネクションの妥当性チェック間隔. **/
+	private long idleTestTime;
+
+	/** コネクションリーク検出時間. **/
+	private long leakDetectionTime;
+
+	/** 取得時の妥当性チェック. **/
+	private boolean testOnBorrow;
+
+	/** 最後にアイドルコネクションの妥当性チェックを行った時間. **/
+	private long lastIdleTest = System.currentTimeMillis();
+
+	/** 統計情報. **/
+	private final AtomicLong createCount = new AtomicLong(0L);
+	protected final AtomicLong destroyCount = new AtomicLong(0L);
+	private final AtomicLong timeoutCount = new AtomicLong(0L);
+	private final AtomicLong invalidCount = new AtomicLong(0L);
+	private final AtomicLong leakCount = new AtomicLong(0L);
+	protected final AtomicLong statementHits = new AtomicLong(0L);
+	protected final AtomicLong statementMisses = new AtomicLong(0L);
+	private final Histogram waitTime = new Histogram();
+
 	/** プーリング管理. **/
 	protected AtomicPoolingMonitor monitor = null;
 
+	/** 貸し出し情報. **/
+	private static final class BorrowInfo {
+		final long time;
+		final String thread;
+		final Throwable stack;
+		volatile boolean leak;
+
+		BorrowInfo(long time, boolean trace) {
+			this.time = time;
+			this.thread = Thread.currentThread().getName();
+			this.stack = trace ? new Exception("connection borrowed here") : null;
+			this.leak = false;
+		}
+	}
+
 	/**
 	 * コンストラクタ.
 	 */
 	protected AtomicPooling() {
 	}
-	
+
 	/**
 	 * コンストラクタ.
-	 * 
+	 *
 	 * @param kind    対象のDbKindを設定します.
 	 * @param mon     プーリング管理オブジェクトを設定します.
 	 */
@@ -86,7 +160,7 @@ public class AtomicPooling implements DataSource {
 
 	/**
 	 * コンストラクタ.
-	 * 
+	 *
 	 * @param kind    対象のDbKindを設定します.
 	 * @param mon     プーリング管理オブジェクトを設定します.
 	 * @param maxPool プーリング最大管理数を設定します.
@@ -104,12 +178,43 @@ public class AtomicPooling implements DataSource {
 			timeout = DEF_TIMEOUT;
 		}
 
+		// 最大同時利用コネクション数.
+		int maxActive = kind.getPoolingMaxActive() == null ? -1 : kind.getPoolingMaxActive();
+		if (maxActive <= 0) {
+			maxActive = maxPool;
+		} else if (maxActive < maxPool) {
+			maxPool = maxActive;
+		}
+		// 最小アイドルコネクション数.
+		int minIdle = kind.getPoolingMinIdle() == null ? 0 : kind.getPoolingMinIdle();
+		if (minIdle < 0) {
+			minIdle = 0;
+		} else if (minIdle > maxPool) {
+			minIdle = maxPool;
+		}
+		// コネクション取得待ちタイムアウト.
+		long waitTimeout = kind.getPoolingWaitTimeout() == null ? -1L : kind.getPoolingWaitTimeout();
+		if (waitTimeout <= 0L) {
+			waitTimeout = DEF_WAIT_TIMEOUT;
+		} else if (waitTimeout > MAX_TIMEOUT) {
+			waitTimeout = MAX_TIMEOUT;
+		}
+		// アイドルコネクションの妥当性チェック間隔.
+		long idleTestTime = kind.getIdleTestTime() == null ? DEF_IDLE_TEST_TIME : kind.getIdleTestTime();
+
 		this.kind = kind;
 		this.maxPool = maxPool;
+		this.maxActive = maxActive;
+		this.minIdle = minIdle;
 		this.timeout = timeout;
+		this.waitTimeout = waitTimeout;
+		this.idleTestTime = idleTestTime;
+		this.leakDetectionTime = kind.getLeakDetectionTime() == null ? 0L : kind.getLeakDetectionTime();
+		this.testOnBorrow = kind.isTestOnBorrow();
+		this.semaphore = new Semaphore(maxActive, true);
 
 		this.destroyFlag.set(false);
-		
+
 		this.monitor = mon;
 
 		// プーリング監視オブジェクトに登録.
@@ -126,27 +231,19 @@ public class AtomicPooling implements DataSource {
 			monitor.clearPooling(this);
 
 			// 保持しているコネクションを全て破棄.
-			if (pooling.size() > 0) {
-				SoftReference<AtomicPoolConnection> n;
-				Iterator<SoftReference<AtomicPoolConnection>> it = pooling.iterator();
-				while (it.hasNext()) {
-					try {
-						n = it.next();
-						if (n.get() != null) {
-							n.get().destroy();
-						}
-					} catch (Exception e) {
-					}
+			AtomicPoolConnection c;
+			while ((c = pollPooling()) != null) {
+				try {
+					c.destroy();
+				} catch (Exception e) {
 				}
-				pooling.clear();
 			}
-
 		}
 	}
 
 	/**
 	 * オブジェクトが既に破棄されているかチェック.
-	 * 
+	 *
 	 * @return boolean [true]の場合、既に破棄されています.
 	 */
 	public boolean isDestroy() {
@@ -160,202 +257,259 @@ public class AtomicPooling implements DataSource {
 		}
 	}
 
-	/** プーリングコネクションクラス. **/
-	@SuppressWarnings("rawtypes")
-	private static final Class[] POOL_CONN_CLASS = new Class[] { AtomicPoolConnection.class };
-
-	/** ConnectionProxyクラス. **/
-	private static class AtomicPoolConnectionImpl implements InvocationHandler {
-		private final boolean notPool;
-		private final Flag poolCloseFlag = new Flag(); // 論理Open.
-		private final Queue<SoftReference<AtomicPoolConnection>> resource;
-		private final Flag destroyFlag;
-		private final int max;
-		private final Connection src;
-		private final JDBCKind kind;
-		private long lastTime;
-
-		/** コンストラクタ. **/
-		private AtomicPoolConnectionImpl(final boolean np, final JDBCKind k, final Connection conn, final int mx,
-				final Queue<SoftReference<AtomicPoolConnection>> pl, final Flag df) {
-			notPool = np;
-			resource = pl;
-			destroyFlag = df;
-			max = mx;
-			kind = k;
-			src = conn;
-			lastTime = -1L;
-			poolCloseFlag.set(false);
-			
-			// AutoCommitは基本OFF.
-			try {
-				src.setAutoCommit(false);
-			} catch(Exception e) {
-				throw new JDBCException(e);
-			}
+	/** プーリングからコネクションを取得. **/
+	private final AtomicPoolConnection pollPooling() {
+		final AtomicPoolConnection ret = pooling.pollLast();
+		if (ret != null) {
+			poolingSize.dec();
 		}
+		return ret;
+	}
 
-		/**
-		 * メソッド呼び出し.
-		 */
-		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			try {
-				String name = method.getName();
-				if ("destroy".equals(name)) {
-					poolCloseFlag.set(true); // 論理close.
-					try {
-						src.close();
-					} catch (Throwable e) {
-					}
-					return null;
-				} else if ("recreate".equals(name)) {
-					if (notPool) {
-						// プーリングしない場合.
-						throw new SQLException("not pooling Connection");
-					} else if (src.isClosed()) {
-						throw new SQLException("Connection is closed");
-					}
-					poolCloseFlag.set(false); // 論理open.
-					return this;
-				} else if ("lastTime".equals(name)) {
-					return lastTime;
-				} else if ("close".equals(name)) {
-					poolCloseFlag.set(true); // 論理close.
-					if (notPool) {
-						// プーリングしない場合.
-						if (!src.getAutoCommit()) {
-							try {
-								src.rollback();
-							} catch (Throwable e) {
-							}
-						}
-						try {
-							src.close();
-						} catch (Throwable e) {
-						}
-						return null;
-					} else if (src.isClosed()) {
-						return null;
-					} else if (!src.getAutoCommit()) {
-						src.rollback();
-					}
-					if (destroyFlag.get() || max < resource.size()) {
-						// プーリングしない場合は削除.
-						// 最大コネクション管理数を越える場合は削除.
-						// オブジェクトが破棄されている場合も同様.
-						try {
-							src.close();
-						} catch (Throwable e) {
-						}
-					} else {
-						// 基本条件を再設定.
-						src.setAutoCommit(false);
-						// プーリング可能な場合は、セット.
-						lastTime = System.currentTimeMillis();
-						resource.offer(new SoftReference<AtomicPoolConnection>((AtomicPoolConnection) proxy));
-					}
-					return null;
-				} else if ("isClosed".equals(name)) {
-					if (notPool) {
-						return src.isClosed();
-					} else if (!poolCloseFlag.get()) { // 論理open状態の場合.
-						// 実際のConnection状態を反映.
-						poolCloseFlag.set(src.isClosed());
-					}
-					return poolCloseFlag.get();
-				} else if ("getKind".equals(name)) {
-					// getKind.
-					return kind;
-				}
-				
-				// クローズの場合.
-				if ((notPool && src.isClosed()) || poolCloseFlag.get()) {
-					throw new SQLException("Connection is closed");
-				}
+	/** 指定コネクションをプーリングから削除. **/
+	private final boolean removePooling(AtomicPoolConnection c) {
+		if (pooling.removeFirstOccurrence(c)) {
+			poolingSize.dec();
+			return true;
+		}
+		return false;
+	}
 
-				// statement系の処理.
-				if ("prepareStatement".equals(name) || "prepareCall".equals(name) || "createStatement".equals(name)) {
-					// statement系.
-					Statement ret = (Statement) method.invoke(src, args);
-					// busyTimeout と fetchSizeを設定.
-					kind.setBusyTimeout(ret);
-					kind.setFetchSize(ret);
-					return ret;
-				}
-				// 通常コネクション命令はリフレクション呼び出し.
-				return method.invoke(src, args);
-			} catch (JDBCException je) {
-				throw je;
-			} catch (SQLException e) {
-				throw e;
-			} catch (InvocationTargetException ex) {
-				throw ex.getCause();
-			}
+	/**
+	 * 利用終了したコネクションをプーリングに戻す.
+	 *
+	 * @param c 対象のコネクションを設定します.
+	 * @return boolean [false]の場合、プーリングされなかったので物理クローズが必要です.
+	 */
+	protected boolean offer(AtomicPoolConnection c) {
+		// オブジェクトが破棄されている場合、最大コネクション管理数を越える場合はプーリングしない.
+		if (destroyFlag.get() || poolingSize.get() >= maxPool) {
+			return false;
+		}
+		poolingSize.inc();
+		pooling.offerLast(c);
+		return true;
+	}
+
+	/**
+	 * 利用中コネクションの返却.
+	 *
+	 * @param c 対象のコネクションを設定します.
+	 */
+	protected void release(AtomicPoolConnection c) {
+		if (active.remove(c) != null) {
+			semaphore.release();
+		}
+	}
+
+	/** 物理コネクション破棄. **/
+	private final void destroyConnection(AtomicPoolConnection c) {
+		destroyCount.incrementAndGet();
+		try {
+			c.destroy();
+		} catch (Exception e) {
 		}
 	}
 
 	/** 対象コネクションオブジェクトを取得. **/
 	private static final AtomicPoolConnection createPoolConnection(final boolean np, final JDBCKind k,
-			final Connection conn, final int mx, final Queue<SoftReference<AtomicPoolConnection>> pl, final Flag df)
+			final Connection conn, final AtomicPooling p)
 			throws SQLException {
 
-		// proxy返却.
-		return (AtomicPoolConnection) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(),
-				POOL_CONN_CLASS, new AtomicPoolConnectionImpl(np, k, conn, mx, pl, df));
+		return new AtomicPoolConnectionImpl(np, k, conn, p);
+	}
+
+	/** 新しい物理コネクションを生成. **/
+	private final AtomicPoolConnection createConnection() throws Exception {
+		Connection ret;
+		try {
+			ret = JDBCDriverManager.readWrite(kind);
+		} catch (Exception e) {
+			// エラーの場合は、ドライバー登録して、再取得.
+			JDBCDriverManager.regDriver(kind.getDriver());
+			ret = JDBCDriverManager.readWrite(kind);
+		}
+		createCount.incrementAndGet();
+		// プーリングコネクションオブジェクトに変換.
+		return AtomicPooling.createPoolConnection(false, kind, ret, this);
 	}
 
 	/**
 	 * コネクションオブジェクトを取得.
-	 * 
+	 *
+	 * 同時利用コネクション数が上限に達している場合は、返却されるまで待機します.
+	 *
 	 * @return Connection コネクションオブジェクトが返却されます.
 	 * @exception Exception 例外.
 	 */
 	@Override
 	public Connection getConnection() {
 		check();
+		// 同時利用数の制限.
+		final long begin = System.nanoTime();
+		boolean acquire;
 		try {
-
-			// プーリング領域からコネクションオブジェクトを取得.
-			SoftReference<AtomicPoolConnection> conn;
-			Connection ret = null;
+			acquire = semaphore.tryAcquire(waitTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ie) {
+			throw new JDBCException(ie);
+		}
+		waitTime.record((System.nanoTime() - begin) / 1000L);
+		if (!acquire) {
+			timeoutCount.incrementAndGet();
+			throw new JDBCException("Timed out waiting for a connection [" + kind.getName() + "] active:"
+				+ active.size() + " maxActive:" + maxActive + " waiters:" + semaphore.getQueueLength());
+		}
+		try {
+			AtomicPoolConnection ret;
+			final long now = System.currentTimeMillis();
 
 			// Pooling先から取得.
-			while ((conn = pooling.poll()) != null) {
-				if ((ret = conn.get()) != null) {
-					return ((AtomicPoolConnection) ret).recreate();
+			while ((ret = pollPooling()) != null) {
+				// 一定時間利用されていないコネクションは、妥当性チェック.
+				if (testOnBorrow && now - ret.lastTime() > VALIDATION_BYPASS_TIME && !ret.validate()) {
+					invalidCount.incrementAndGet();
+					destroyConnection(ret);
+					continue;
+				}
+				try {
+					ret.recreate();
+				} catch (Exception e) {
+					destroyConnection(ret);
+					continue;
 				}
+				active.put(ret, new BorrowInfo(now, leakDetectionTime > 0L));
+				return ret;
 			}
 
 			// 存在しない場合は、新規コネクションを生成.
+			ret = createConnection();
+			active.put(ret, new BorrowInfo(now, leakDetectionTime > 0L));
+			return ret;
+		} catch (Throwable e) {
+			semaphore.release();
+			if (e instanceof JDBCException) {
+				throw (JDBCException) e;
+			}
+			throw new JDBCException(e);
+		}
+	}
+
+	/**
+	 * プーリングの定期処理.
+	 *
+	 * タイムアウトしたアイドルコネクションの破棄、妥当性チェック、最小アイドル数の確保、
+	 * コネクションリークの検出を行います.
+	 * この処理はプーリング監視スレッドから呼び出されます.
+	 */
+	protected void maintenance() {
+		if (isDestroy()) {
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		AtomicPoolConnection c;
+
+		// タイムアウト値を越えたアイドルコネクションを削除.
+		Iterator<AtomicPoolConnection> it = pooling.iterator();
+		while (!isDestroy() && poolingSize.get() > minIdle && it.hasNext()) {
+			c = it.next();
+			if (c.lastTime() + timeout < now && removePooling(c)) {
+				destroyConnection(c);
+			}
+		}
+
+		// アイドルコネクションの妥当性チェック.
+		if (idleTestTime > 0L && now - lastIdleTest >= idleTestTime) {
+			lastIdleTest = now;
+			it = pooling.iterator();
+			while (!isDestroy() && it.hasNext()) {
+				c = it.next();
+				if (now - c.lastTime() >= idleTestTime && removePooling(c)) {
+					if (c.validate()) {
+						if (!offer(c)) {
+							destroyConnection(c);
+						}
+					} else {
+						invalidCount.incrementAndGet();
+						destroyConnection(c);
+					}
+				}
+			}
+		}
+
+		// 最小アイドル数を確保.
+		while (!isDestroy() && poolingSize.get() < minIdle && poolingSize.get() + active.size() < maxActive) {
 			try {
-				ret = JDBCDriverManager.readWrite(kind);
+				c = createConnection();
+				c.close();
 			} catch (Exception e) {
-				// エラーの場合は、ドライバー登録して、再取得.
-				JDBCDriverManager.regDriver(kind.getDriver());
-				ret = JDBCDriverManager.readWrite(kind);
+				break;
 			}
+		}
 
-			// プーリングコネクションオブジェクトに変換.
-			return AtomicPooling.createPoolConnection(false, kind, ret, maxPool, pooling, destroyFlag);
-		} catch (JDBCException je) {
-			throw je;
-		} catch (Exception e) {
-			throw new JDBCException(e);
+		// コネクションリークの検出.
+		if (leakDetectionTime > 0L) {
+			BorrowInfo info;
+			final Iterator<Entry<AtomicPoolConnection, BorrowInfo>> ait = active.entrySet().iterator();
+			while (ait.hasNext()) {
+				info = ait.next().getValue();
+				if (!info.leak && now - info.time > leakDetectionTime) {
+					info.leak = true;
+					leakCount.incrementAndGet();
+					LOG.warn("Connection leak detected [" + kind.getName() + "] thread:" + info.thread
+						+ " time:" + (now - info.time) + "ms", info.stack);
+				}
+			}
 		}
 	}
 
 	/**
 	 * 現在のプーリングコネクション数を取得.
-	 * 
+	 *
 	 * @return int 現在のプーリングコネクション数が返却されます.
 	 */
 	public int size() {
-		return pooling.size();
+		return poolingSize.get();
+	}
+
+	/**
+	 * 利用中のコネクション数を取得.
+	 *
+	 * @return int 利用中のコネクション数が返却されます.
+	 */
+	public int activeSize() {
+		return active.size();
+	}
+
+	/**
+	 * コネクション取得待ちのスレッド数を取得.
+	 *
+	 * @return int コネクション取得待ちのスレッド数が返却されます.
+	 */
+	public int waiters() {
+		return semaphore.getQueueLength();
+	}
+
+	/**
+	 * プーリング状態を取得.
+	 *
+	 * @return Map プーリング状態が返却されます. 待ち時間はマイクロ秒です.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Object, Object> getStatus() {
+		final long[] p = waitTime.getPercentiles(PERCENTILES);
+		return new JsMap(
+			"name", kind.getName(), "active", active.size(), "idle", poolingSize.get(),
+			"waiters", semaphore.getQueueLength(), "maxActive", maxActive, "maxIdle", maxPool,
+			"minIdle", minIdle, "created", createCount.get(), "destroyed", destroyCount.get(),
+			"timeouts", timeoutCount.get(), "invalid", invalidCount.get(), "leaks", leakCount.get(),
+			"statementHits", statementHits.get(), "statementMisses", statementMisses.get(),
+			"waitTime", new JsMap("count", waitTime.getCount(), "sum", waitTime.getSum(),
+				"max", waitTime.getMax(), "p50", p[0], "p90", p[1], "p99", p[2]));
 	}
 
 	/**
 	 * JDBCKindを取得.
-	 * 
+	 *
 	 * @return JDBCKind JDBCKindが返却されます.
 	 */
 	public JDBCKind getKind() {
@@ -364,16 +518,25 @@ public class AtomicPooling implements DataSource {
 
 	/**
 	 * 最大プーリング数を取得.
-	 * 
+	 *
 	 * @return int 最大プーリング数が返却されます.
 	 */
 	public int getMaxPool() {
 		return maxPool;
 	}
 
+	/**
+	 * 最大同時利用コネクション数を取得.
+	 *
+	 * @return int 最大同時利用コネクション数が返却されます.
+	 */
+	public int getMaxActive() {
+		return maxActive;
+	}
+
 	/**
 	 * コネクション待機タイムアウト値を取得.
-	 * 
+	 *
 	 * @return long コネクション待機タイムアウト値が返却されます.
 	 */
 	public long getTimeout() {
@@ -382,13 +545,14 @@ public class AtomicPooling implements DataSource {
 
 	/**
 	 * 文字変換.
-	 * 
+	 *
 	 * @return String 登録されている情報内容が文字で返却されます.
 	 */
 	public String toString() {
 		return new StringBuilder().append("name:").append(kind.getName()).append(" ").append("url:")
 				.append(kind.getUrl()).append(" ").append("user:").append(kind.getUser()).append(" ")
 				.append("password:").append(kind.getPassword()).append(" ").append("maxPool:").append(maxPool)
+				.append(" ").append("maxActive:").append(maxActive)
 				.append(" ").append("timeout:").append(timeout).toString();
 	}
 
@@ -426,12 +590,12 @@ public class AtomicPooling implements DataSource {
 			}
 			ret = JDBCDriverManager.readWrite(kind, kind.getUrl(), user, password);
 		}
-		return AtomicPooling.createPoolConnection(true, kind, ret, maxPool, pooling, destroyFlag);
+		return AtomicPooling.createPoolConnection(true, kind, ret, null);
 	}
-	
+
 	/**
 	 * プーリングなしのコネクション生成.
-	 * 
+	 *
 	 * @param driver
 	 * @param url
 	 * @param user
@@ -455,7 +619,7 @@ public class AtomicPooling implements DataSource {
 			}
 			ret = JDBCDriverManager.readWrite(kind, kind.getUrl(), user, password);
 		}
-		return AtomicPooling.createPoolConnection(true, kind, ret, -1, null, new Flag(false));
+		return AtomicPooling.createPoolConnection(true, kind, ret, null);
 
 	}
 
@@ -1,6 +1,5 @@
 package rhigin.lib.jdbc.pooling;
 
-import java.lang.ref.SoftReference;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -72,7 +71,6 @@ public class AtomicPoolingMonitor extends Thread {
 		}
 	}
 
-	private static final long DEF_SLEEP = 50;
 	private static final long NO_DATA_SLEEP = 100;
 
 	/**
@@ -84,9 +82,7 @@ public class AtomicPoolingMonitor extends Thread {
 		boolean endFlag = false;
 
 		AtomicPooling man;
-		AtomicPoolConnection c;
 		Iterator<AtomicPooling> mans;
-		Iterator<SoftReference<AtomicPoolConnection>> conns;
 
 		while (!stopFlag.get()) {
 			try {
@@ -102,35 +98,12 @@ public class AtomicPoolingMonitor extends Thread {
 
 					while (mans.hasNext()) {
 
-						// 一定時間待機.
-						Thread.sleep(DEF_SLEEP);
-
 						// プーリングマネージャを取得.
 						// オブジェクトが既に破棄されている場合は処理しない.
-						if ((man = mans.next()).size() > 0 && !man.isDestroy()) {
-
+						if (!(man = mans.next()).isDestroy()) {
 							try {
-
-								// プーリングオブジェクト群を処理.
-								conns = man.pooling.iterator();
-
-								// オブジェクトが既に破棄されている場合は処理しない.
-								while (!man.isDestroy() && conns.hasNext()) {
-
-									// 一定時間待機.
-									Thread.sleep(DEF_SLEEP);
-
-									// 定義されたコネクション条件のタイムアウトチェック.
-									if ((c = (conns.next()).get()) == null) {
-										conns.remove();
-									} else if (c.lastTime() + man.timeout < System.currentTimeMillis()) {
-										// タイムアウト値を越えた場合は、削除処理.
-										conns.remove();
-										c.destroy();
-									}
-
-								}
-
+								// タイムアウト、妥当性チェック、最小アイドル数の確保、リーク検出.
+								man.maintenance();
 							} catch (Exception e) {
 							}
 						}
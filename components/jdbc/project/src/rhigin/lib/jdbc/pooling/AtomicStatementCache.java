@@ -0,0 +1,379 @@
+package rhigin.lib.jdbc.pooling;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rhigin.lib.jdbc.runner.JDBCKind;
+
+/**
+ * 物理コネクション単位のPreparedStatementキャッシュ.
+ *
+ * SQL文と結果セットのオプションをキーに、生成したPreparedStatementをLRUで保持します.
+ * 利用側でcloseされた場合は物理クローズせずに状態をクリアして、同一SQLの次の呼び出しで再利用します.
+ */
+class AtomicStatementCache {
+
+	/** デフォルトのキャッシュ数. **/
+	public static final int DEF_CACHE_SIZE = 64;
+
+	/** デフォルトのキャッシュ対象SQLの最大長. **/
+	public static final int DEF_SQL_LENGTH = 8192;
+
+	// prepareStatementの呼び出し種類.
+	private static final int TYPE_SQL = 1;
+	private static final int TYPE_KEYS = 2;
+	private static final int TYPE_RESULT_SET = 3;
+	private static final int TYPE_HOLDABILITY = 4;
+
+	/** キャッシュキー. **/
+	private static final class Key {
+		final String sql;
+		final int type;
+		final int a;
+		final int b;
+		final int c;
+		final int hash;
+
+		Key(String sql, int type, int a, int b, int c) {
+			this.sql = sql;
+			this.type = type;
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.hash = ((((sql.hashCode() * 31) + type) * 31 + a) * 31 + b) * 31 + c;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			} else if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key k = (Key) o;
+			return hash == k.hash && type == k.type && a == k.a && b == k.b && c == k.c && sql.equals(k.sql);
+		}
+	}
+
+	/** キャッシュ要素. **/
+	static final class Entry {
+		final PreparedStatement stmt;
+		final int maxRows;
+		final int fetchSize;
+		final int queryTimeout;
+		ParameterMetaData meta = null;
+		AtomicPoolStatement owner = null;
+		boolean evicted = false;
+
+		Entry(PreparedStatement stmt) throws SQLException {
+			this.stmt = stmt;
+			this.maxRows = stmt.getMaxRows();
+			this.fetchSize = stmt.getFetchSize();
+			this.queryTimeout = stmt.getQueryTimeout();
+		}
+	}
+
+	private final Connection src;
+	private final JDBCKind kind;
+	private final int maxSqlLength;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final LinkedHashMap<Key, Entry> cache;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param src     物理コネクションを設定します.
+	 * @param kind    対象のJDBCKindを設定します.
+	 * @param size    キャッシュ数を設定します.
+	 * @param hits    キャッシュヒット数のカウンタを設定します.
+	 * @param misses  キャッシュミス数のカウンタを設定します.
+	 */
+	AtomicStatementCache(final Connection src, final JDBCKind kind, final int size, final AtomicLong hits,
+			final AtomicLong misses) {
+		final Integer len = kind.getStatementCacheSqlLength();
+		this.src = src;
+		this.kind = kind;
+		this.maxSqlLength = len == null || len <= 0 ? DEF_SQL_LENGTH : len;
+		this.hits = hits;
+		this.misses = misses;
+		this.cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				if (size() > size) {
+					// 利用中の場合は、返却時にクローズする.
+					evict(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * キャッシュ数を取得.
+	 *
+	 * @param kind 対象のJDBCKindを設定します.
+	 * @return int キャッシュ数が返却されます. [0]の場合はキャッシュしません.
+	 */
+	static final int cacheSize(JDBCKind kind) {
+		final Integer ret = kind.getStatementCacheSize();
+		if (ret == null) {
+			return DEF_CACHE_SIZE;
+		}
+		return ret < 0 ? 0 : ret;
+	}
+
+	/**
+	 * PreparedStatementを取得.
+	 *
+	 * @param conn 利用側に返却しているコネクションを設定します.
+	 * @param sql  SQL文を設定します.
+	 * @return PreparedStatement キャッシュ対象外の場合は[null]が返却されます.
+	 * @exception SQLException 例外.
+	 */
+	PreparedStatement prepare(final Connection conn, final String sql) throws SQLException {
+		if (sql == null || sql.length() > maxSqlLength) {
+			return null;
+		}
+		return prepare(conn, new Key(sql, TYPE_SQL, 0, 0, 0));
+	}
+
+	/**
+	 * PreparedStatementを取得.
+	 *
+	 * @param conn              利用側に返却しているコネクションを設定します.
+	 * @param sql               SQL文を設定します.
+	 * @param autoGeneratedKeys 自動生成キーの取得有無を設定します.
+	 * @return PreparedStatement キャッシュ対象外の場合は[null]が返却されます.
+	 * @exception SQLException 例外.
+	 */
+	PreparedStatement prepare(final Connection conn, final String sql, final int autoGeneratedKeys)
+			throws SQLException {
+		if (sql == null || sql.length() > maxSqlLength) {
+			return null;
+		}
+		return prepare(conn, new Key(sql, TYPE_KEYS, autoGeneratedKeys, 0, 0));
+	}
+
+	/**
+	 * PreparedStatementを取得.
+	 *
+	 * @param conn                 利用側に返却しているコネクションを設定します.
+	 * @param sql                  SQL文を設定します.
+	 * @param resultSetType        結果セットのタイプを設定します.
+	 * @param resultSetConcurrency 結果セットの並行処理モードを設定します.
+	 * @return PreparedStatement キャッシュ対象外の場合は[null]が返却されます.
+	 * @exception SQLException 例外.
+	 */
+	PreparedStatement prepare(final Connection conn, final String sql, final int resultSetType,
+			final int resultSetConcurrency) throws SQLException {
+		if (sql == null || sql.length() > maxSqlLength) {
+			return null;
+		}
+		return prepare(conn, new Key(sql, TYPE_RESULT_SET, resultSetType, resultSetConcurrency, 0));
+	}
+
+	/**
+	 * PreparedStatementを取得.
+	 *
+	 * @param conn                 利用側に返却しているコネクションを設定します.
+	 * @param sql                  SQL文を設定します.
+	 * @param resultSetType        結果セットのタイプを設定します.
+	 * @param resultSetConcurrency 結果セットの並行処理モードを設定します.
+	 * @param resultSetHoldability 結果セットの保持機能を設定します.
+	 * @return PreparedStatement キャッシュ対象外の場合は[null]が返却されます.
+	 * @exception SQLException 例外.
+	 */
+	PreparedStatement prepare(final Connection conn, final String sql, final int resultSetType,
+			final int resultSetConcurrency, final int resultSetHoldability) throws SQLException {
+		if (sql == null || sql.length() > maxSqlLength) {
+			return null;
+		}
+		return prepare(conn,
+			new Key(sql, TYPE_HOLDABILITY, resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	// キャッシュから取得、存在しない場合は生成.
+	private final synchronized PreparedStatement prepare(final Connection conn, final Key key)
+			throws SQLException {
+		Entry e = cache.get(key);
+		if (e != null) {
+			if (e.owner != null) {
+				// 同一SQLを同時に利用している場合はキャッシュしない.
+				return null;
+			}
+			hits.incrementAndGet();
+			return borrow(conn, e);
+		}
+		misses.incrementAndGet();
+		PreparedStatement stmt;
+		switch (key.type) {
+		case TYPE_KEYS:
+			stmt = src.prepareStatement(key.sql, key.a);
+			break;
+		case TYPE_RESULT_SET:
+			stmt = src.prepareStatement(key.sql, key.a, key.b);
+			break;
+		case TYPE_HOLDABILITY:
+			stmt = src.prepareStatement(key.sql, key.a, key.b, key.c);
+			break;
+		default:
+			stmt = src.prepareStatement(key.sql);
+		}
+		try {
+			// busyTimeout と fetchSizeを設定.
+			kind.setBusyTimeout(stmt);
+			kind.setFetchSize(stmt);
+			e = new Entry(stmt);
+		} catch (SQLException se) {
+			close(stmt);
+			throw se;
+		}
+		cache.put(key, e);
+		return borrow(conn, e);
+	}
+
+	// 利用側のハンドルを生成.
+	private final PreparedStatement borrow(final Connection conn, final Entry e) {
+		final AtomicPoolStatement h = new AtomicPoolStatement(this, conn, e);
+		e.owner = h;
+		return h;
+	}
+
+	/**
+	 * 利用側からの返却.
+	 *
+	 * @param h 返却するハンドルを設定します.
+	 */
+	synchronized void release(final AtomicPoolStatement h) {
+		final Entry e = h.entry;
+		if (e.owner != h) {
+			return;
+		}
+		e.owner = null;
+		if (e.evicted || !reset(h)) {
+			// 既にキャッシュから外れている、もしくは再利用できない場合.
+			remove(e);
+			close(e.stmt);
+		}
+	}
+
+	// 再利用の為に状態をクリア.
+	private static final boolean reset(final AtomicPoolStatement h) {
+		final Entry e = h.entry;
+		final PreparedStatement stmt = e.stmt;
+		try {
+			if (h.result != null) {
+				h.result.close();
+				h.result = null;
+			}
+			stmt.clearParameters();
+			if (h.batch) {
+				stmt.clearBatch();
+			}
+			stmt.clearWarnings();
+			if (h.dirty) {
+				if (stmt.getMaxRows() != e.maxRows) {
+					stmt.setMaxRows(e.maxRows);
+				}
+				if (stmt.getFetchSize() != e.fetchSize) {
+					stmt.setFetchSize(e.fetchSize);
+				}
+				if (stmt.getQueryTimeout() != e.queryTimeout) {
+					stmt.setQueryTimeout(e.queryTimeout);
+				}
+			}
+			return !h.unsafe;
+		} catch (Throwable t) {
+			return false;
+		}
+	}
+
+	// キャッシュから外す.
+	private final void evict(final Entry e) {
+		e.evicted = true;
+		if (e.owner == null) {
+			close(e.stmt);
+		}
+	}
+
+	// 指定要素をキャッシュから削除.
+	private final void remove(final Entry e) {
+		final Iterator<Entry> it = cache.values().iterator();
+		while (it.hasNext()) {
+			if (it.next() == e) {
+				it.remove();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * コネクションをプーリングに戻す時の処理.
+	 * 利用中のPreparedStatementを全て返却して、再利用できる状態にします.
+	 */
+	synchronized void clear() {
+		Entry e;
+		AtomicPoolStatement h;
+		final Iterator<Entry> it = cache.values().iterator();
+		while (it.hasNext()) {
+			e = it.next();
+			if ((h = e.owner) != null) {
+				h.closed = true;
+				e.owner = null;
+				if (!reset(h)) {
+					it.remove();
+					close(e.stmt);
+				}
+			}
+		}
+	}
+
+	/**
+	 * キャッシュを破棄.
+	 * 保持している全てのPreparedStatementを物理クローズします.
+	 */
+	synchronized void destroy() {
+		final Iterator<Entry> it = cache.values().iterator();
+		while (it.hasNext()) {
+			final Entry e = it.next();
+			if (e.owner != null) {
+				e.owner.closed = true;
+				e.owner = null;
+			}
+			close(e.stmt);
+		}
+		cache.clear();
+	}
+
+	/**
+	 * キャッシュ数を取得.
+	 *
+	 * @return int
+	 */
+	synchronized int size() {
+		return cache.size();
+	}
+
+	// 物理クローズ.
+	private static final void close(final PreparedStatement stmt) {
+		try {
+			stmt.close();
+		} catch (Throwable t) {
+		}
+	}
+}
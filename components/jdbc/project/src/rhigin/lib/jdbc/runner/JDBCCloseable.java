@@ -221,6 +221,50 @@ public class JDBCCloseable implements RhiginEndScriptCall {
 		return this;
 	}
 	
+	/**
+	 * 指定コネクション関連のオブジェクトを管理対象から外す.
+	 * スクリプト終了後も利用するオブジェクト(ストリーミングでのレスポンス等)に対して利用します.
+	 * この場合、クローズ処理は呼び出し元で行う必要があります.
+	 * @param conn 対象のコネクションを設定します.
+	 * @param stmt 対象のステートメントを設定します.
+	 * @param rset 対象のリザルトセットを設定します.
+	 * @return
+	 */
+	public final JDBCCloseable detach(JDBCConnect conn, Statement stmt, ResultSet rset) {
+		Entity et;
+		if((et = lo.get()) != null) {
+			remove(et.batchs, conn.batch);
+			remove(et.connections, conn.conn);
+			remove(et.statements, stmt);
+			remove(et.resultSets, rset);
+			final Map<String, JDBCConnect> c = et.useConnects;
+			if(c instanceof ArrayMap) {
+				final ArrayMap<String, JDBCConnect> m = (ArrayMap<String, JDBCConnect>)c;
+				final int len = m.size();
+				for(int i = 0; i < len; i ++) {
+					if(m.getValue(i) == conn) {
+						m.remove(m.getKey(i));
+						break;
+					}
+				}
+			}
+		}
+		return this;
+	}
+	
+	// 指定オブジェクトをリストから削除.
+	private static final <T> void remove(OList<T> list, T o) {
+		if(list == null || o == null) {
+			return;
+		}
+		final int len = list.size();
+		for(int i = len - 1; i >= 0; i --) {
+			if(list.get(i) == o) {
+				list.remove(i);
+			}
+		}
+	}
+	
 	/**
 	 * 今回のスクリプト実行で利用したJDBCオブジェクト関連のクローズ処理.
 	 * @params cache
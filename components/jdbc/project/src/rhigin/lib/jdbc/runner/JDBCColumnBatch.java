@@ -0,0 +1,349 @@
+package rhigin.lib.jdbc.runner;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.Arrays;
+
+import rhigin.scripts.RhiginWrapUtil;
+import rhigin.util.DateConvert;
+
+/**
+ * JDBC-Rowのカラム単位バッチ.
+ *
+ * ResultSetから指定行数分を、SQLタイプ毎のプリミティブ配列に読み込みます.
+ * 読み込み領域は次のバッチ読み込みで再利用されるので、保持する行数は最大でもバッチサイズ分となります.
+ */
+final class JDBCColumnBatch {
+	// カラムの格納タイプ.
+	private static final int KIND_OBJECT = 0;
+	private static final int KIND_BOOLEAN = 1;
+	private static final int KIND_BYTE = 2;
+	private static final int KIND_INT = 3;
+	private static final int KIND_LONG = 4;
+	private static final int KIND_FLOAT = 5;
+	private static final int KIND_DOUBLE = 6;
+
+	private final int batchSize;
+	private final int[] metaTypes;
+	private final int[] kinds;
+	private final Object[] columns;
+	private final boolean[][] nulls;
+	private int size = 0;
+	private boolean eof = false;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param metaTypes カラムのSQLタイプ群を設定します.
+	 * @param batchSize １度に読み込む行数を設定します.
+	 */
+	JDBCColumnBatch(int[] metaTypes, int batchSize) {
+		final int len = metaTypes.length;
+		this.batchSize = batchSize;
+		this.metaTypes = metaTypes;
+		this.kinds = new int[len];
+		this.columns = new Object[len];
+		this.nulls = new boolean[len][];
+		for (int i = 0; i < len; i++) {
+			switch (metaTypes[i]) {
+			case Types.BOOLEAN:
+				kinds[i] = KIND_BOOLEAN;
+				columns[i] = new boolean[batchSize];
+				break;
+			case Types.BIT:
+			case Types.TINYINT:
+				kinds[i] = KIND_BYTE;
+				columns[i] = new int[batchSize];
+				break;
+			case Types.SMALLINT:
+				kinds[i] = KIND_INT;
+				columns[i] = new int[batchSize];
+				break;
+			case Types.INTEGER:
+			case Types.BIGINT:
+				kinds[i] = KIND_LONG;
+				columns[i] = new long[batchSize];
+				break;
+			case Types.FLOAT:
+			case Types.REAL:
+				kinds[i] = KIND_FLOAT;
+				columns[i] = new float[batchSize];
+				break;
+			case Types.DOUBLE:
+				kinds[i] = KIND_DOUBLE;
+				columns[i] = new double[batchSize];
+				break;
+			default:
+				kinds[i] = KIND_OBJECT;
+				columns[i] = new Object[batchSize];
+				break;
+			}
+			nulls[i] = new boolean[batchSize];
+		}
+	}
+
+	/**
+	 * 次のバッチを読み込み.
+	 *
+	 * @param rs 対象のResultSetを設定します.
+	 * @return int 読み込んだ行数が返却されます. [0]の場合は終端です.
+	 * @exception Exception 例外.
+	 */
+	int fill(final ResultSet rs) throws Exception {
+		int n, no;
+		final int len = kinds.length;
+		final Object[] cols = columns;
+		// 前回の参照を解放.
+		for (int i = 0; i < len; i++) {
+			if (kinds[i] == KIND_OBJECT) {
+				Arrays.fill((Object[]) cols[i], 0, size, null);
+			}
+		}
+		size = 0;
+		if (eof) {
+			return 0;
+		}
+		for (n = 0; n < batchSize; n++) {
+			if (!rs.next()) {
+				eof = true;
+				break;
+			}
+			for (int i = 0; i < len; i++) {
+				no = i + 1;
+				switch (kinds[i]) {
+				case KIND_BOOLEAN:
+					((boolean[]) cols[i])[n] = rs.getBoolean(no);
+					break;
+				case KIND_BYTE:
+					((int[]) cols[i])[n] = (int) rs.getByte(no);
+					break;
+				case KIND_INT:
+					((int[]) cols[i])[n] = rs.getInt(no);
+					break;
+				case KIND_LONG:
+					((long[]) cols[i])[n] = rs.getLong(no);
+					break;
+				case KIND_FLOAT:
+					((float[]) cols[i])[n] = rs.getFloat(no);
+					break;
+				case KIND_DOUBLE:
+					((double[]) cols[i])[n] = rs.getDouble(no);
+					break;
+				default:
+					((Object[]) cols[i])[n] = JDBCUtils.getResultColumnValue(rs, metaTypes[i], no);
+					nulls[i][n] = ((Object[]) cols[i])[n] == null;
+					continue;
+				}
+				nulls[i][n] = rs.wasNull();
+			}
+		}
+		size = n;
+		return n;
+	}
+
+	/**
+	 * 現在のバッチの行数を取得.
+	 *
+	 * @return int
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * 値を取得.
+	 *
+	 * @param row 行番号を設定します.
+	 * @param col カラム番号を設定します.
+	 * @return Object rhigin向けにラップされた値が返却されます.
+	 */
+	Object get(final int row, final int col) {
+		if (nulls[col][row]) {
+			return null;
+		}
+		switch (kinds[col]) {
+		case KIND_BOOLEAN:
+			return ((boolean[]) columns[col])[row];
+		case KIND_BYTE:
+		case KIND_INT:
+			return ((int[]) columns[col])[row];
+		case KIND_LONG:
+			return ((long[]) columns[col])[row];
+		case KIND_FLOAT:
+			return ((float[]) columns[col])[row];
+		case KIND_DOUBLE:
+			return ((double[]) columns[col])[row];
+		}
+		return RhiginWrapUtil.wrapJavaObject(((Object[]) columns[col])[row]);
+	}
+
+	/**
+	 * JSON形式で値を出力.
+	 *
+	 * @param buf 出力先を設定します.
+	 * @param row 行番号を設定します.
+	 * @param col カラム番号を設定します.
+	 */
+	void json(final StringBuilder buf, final int row, final int col) {
+		if (nulls[col][row]) {
+			buf.append("null");
+			return;
+		}
+		switch (kinds[col]) {
+		case KIND_BOOLEAN:
+			buf.append(((boolean[]) columns[col])[row]);
+			return;
+		case KIND_BYTE:
+		case KIND_INT:
+			buf.append(((int[]) columns[col])[row]);
+			return;
+		case KIND_LONG:
+			buf.append(((long[]) columns[col])[row]);
+			return;
+		case KIND_FLOAT:
+			number(buf, ((float[]) columns[col])[row]);
+			return;
+		case KIND_DOUBLE:
+			number(buf, ((double[]) columns[col])[row]);
+			return;
+		}
+		final Object o = ((Object[]) columns[col])[row];
+		if (o instanceof Number || o instanceof Boolean) {
+			buf.append(o);
+		} else if (o instanceof java.util.Date) {
+			buf.append("\"").append(DateConvert.getISO8601((java.util.Date) o)).append("\"");
+		} else if (o instanceof byte[]) {
+			buf.append("null");
+		} else {
+			jsonString(buf, o.toString());
+		}
+	}
+
+	/**
+	 * CSV形式で値を出力.
+	 *
+	 * @param buf 出力先を設定します.
+	 * @param row 行番号を設定します.
+	 * @param col カラム番号を設定します.
+	 * @param cut 区切り文字を設定します.
+	 */
+	void csv(final StringBuilder buf, final int row, final int col, final char cut) {
+		if (nulls[col][row]) {
+			return;
+		}
+		switch (kinds[col]) {
+		case KIND_BOOLEAN:
+			buf.append(((boolean[]) columns[col])[row]);
+			return;
+		case KIND_BYTE:
+		case KIND_INT:
+			buf.append(((int[]) columns[col])[row]);
+			return;
+		case KIND_LONG:
+			buf.append(((long[]) columns[col])[row]);
+			return;
+		case KIND_FLOAT:
+			buf.append(((float[]) columns[col])[row]);
+			return;
+		case KIND_DOUBLE:
+			buf.append(((double[]) columns[col])[row]);
+			return;
+		}
+		final Object o = ((Object[]) columns[col])[row];
+		if (o instanceof Number || o instanceof Boolean) {
+			buf.append(o);
+		} else if (o instanceof java.util.Date) {
+			buf.append(DateConvert.getISO8601((java.util.Date) o));
+		} else if (!(o instanceof byte[])) {
+			csvString(buf, o.toString(), cut);
+		}
+	}
+
+	// JSONの数値出力(NaN, Infinityはnull).
+	private static final void number(final StringBuilder buf, final float v) {
+		if (Float.isNaN(v) || Float.isInfinite(v)) {
+			buf.append("null");
+		} else {
+			buf.append(v);
+		}
+	}
+
+	// JSONの数値出力(NaN, Infinityはnull).
+	private static final void number(final StringBuilder buf, final double v) {
+		if (Double.isNaN(v) || Double.isInfinite(v)) {
+			buf.append("null");
+		} else {
+			buf.append(v);
+		}
+	}
+
+	/**
+	 * JSON文字列を出力.
+	 *
+	 * @param buf 出力先を設定します.
+	 * @param s   対象の文字列を設定します.
+	 */
+	static final void jsonString(final StringBuilder buf, final String s) {
+		char c;
+		final int len = s.length();
+		buf.append('\"');
+		for (int i = 0; i < len; i++) {
+			switch (c = s.charAt(i)) {
+			case '\"':
+				buf.append("\\\"");
+				break;
+			case '\\':
+				buf.append("\\\\");
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			case '\r':
+				buf.append("\\r");
+				break;
+			case '\t':
+				buf.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					buf.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 15, 16));
+				} else {
+					buf.append(c);
+				}
+			}
+		}
+		buf.append('\"');
+	}
+
+	/**
+	 * CSV文字列を出力.
+	 * 区切り文字、改行、ダブルクォーテーションが含まれる場合はダブルクォーテーションで囲みます.
+	 *
+	 * @param buf 出力先を設定します.
+	 * @param s   対象の文字列を設定します.
+	 * @param cut 区切り文字を設定します.
+	 */
+	static final void csvString(final StringBuilder buf, final String s, final char cut) {
+		char c;
+		final int len = s.length();
+		boolean quote = false;
+		for (int i = 0; i < len; i++) {
+			if ((c = s.charAt(i)) == cut || c == '\"' || c == '\n' || c == '\r') {
+				quote = true;
+				break;
+			}
+		}
+		if (!quote) {
+			buf.append(s);
+			return;
+		}
+		buf.append('\"');
+		for (int i = 0; i < len; i++) {
+			if ((c = s.charAt(i)) == '\"') {
+				buf.append('\"');
+			}
+			buf.append(c);
+		}
+		buf.append('\"');
+	}
+}
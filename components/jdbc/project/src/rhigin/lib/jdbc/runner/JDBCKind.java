@@ -1,6 +1,7 @@
 package rhigin.lib.jdbc.runner;
 
 import java.sql.Connection;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
 import java.util.Iterator;
 import java.util.Map;
@@ -31,6 +32,19 @@ public class JDBCKind {
 	
 	private Integer poolingSize = null;
 	private Integer poolingTimeout = null;
+	private Integer poolingMaxActive = null;
+	private Integer poolingWaitTimeout = null;
+	private Integer poolingMinIdle = null;
+	private Integer leakDetectionTime = null;
+	
+	// コネクションの妥当性チェック.
+	private String validationQuery = null;
+	private boolean testOnBorrow = true;
+	private Integer idleTestTime = null;
+	
+	// PreparedStatementキャッシュ.
+	private Integer statementCacheSize = null;
+	private Integer statementCacheSqlLength = null;
 	
 	// oracle の jdbc接続など、末尾に；を付けるとエラーになるものは[true].
 	// oracleやderbyなど.
@@ -88,6 +102,32 @@ public class JDBCKind {
 		if(ret.poolingTimeout == null) {
 			ret.poolingTimeout = Converter.convertInt(conf.get("poolTimeout"));
 		}
+		ret.poolingMaxActive = Converter.convertInt(conf.get("poolingMaxActive"));
+		if(ret.poolingMaxActive == null) {
+			ret.poolingMaxActive = Converter.convertInt(conf.get("maxActive"));
+		}
+		ret.poolingWaitTimeout = Converter.convertInt(conf.get("poolingWaitTimeout"));
+		if(ret.poolingWaitTimeout == null) {
+			ret.poolingWaitTimeout = Converter.convertInt(conf.get("poolWaitTimeout"));
+		}
+		ret.poolingMinIdle = Converter.convertInt(conf.get("poolingMinIdle"));
+		if(ret.poolingMinIdle == null) {
+			ret.poolingMinIdle = Converter.convertInt(conf.get("minIdle"));
+		}
+		ret.leakDetectionTime = Converter.convertInt(conf.get("leakDetectionTime"));
+		ret.validationQuery = Converter.convertString(conf.get("validationQuery"));
+		if(ret.validationQuery != null && ret.validationQuery.trim().isEmpty()) {
+			ret.validationQuery = null;
+		}
+		if(conf.get("testOnBorrow") != null) {
+			ret.testOnBorrow = Converter.convertBool(conf.get("testOnBorrow"));
+		}
+		ret.idleTestTime = Converter.convertInt(conf.get("idleTestTime"));
+		ret.statementCacheSize = Converter.convertInt(conf.get("statementCacheSize"));
+		if(ret.statementCacheSize == null) {
+			ret.statementCacheSize = Converter.convertInt(conf.get("psCacheSize"));
+		}
+		ret.statementCacheSqlLength = Converter.convertInt(conf.get("statementCacheSqlLength"));
 		if(conf.get("params") instanceof Map) {
 			ret.params = new ArrayMap((Map)conf.get("params"));
 		}
@@ -424,6 +464,117 @@ public class JDBCKind {
 		return poolingTimeout;
 	}
 	
+	/**
+	 * 最大同時利用コネクション数を取得.
+	 * @return
+	 */
+	public Integer getPoolingMaxActive() {
+		return poolingMaxActive;
+	}
+	
+	/**
+	 * コネクション取得待ちのタイムアウト(ミリ秒)を取得.
+	 * @return
+	 */
+	public Integer getPoolingWaitTimeout() {
+		return poolingWaitTimeout;
+	}
+	
+	/**
+	 * 最小アイドルコネクション数を取得.
+	 * @return
+	 */
+	public Integer getPoolingMinIdle() {
+		return poolingMinIdle;
+	}
+	
+	/**
+	 * コネクションリーク検出時間(ミリ秒)を取得.
+	 * @return
+	 */
+	public Integer getLeakDetectionTime() {
+		return leakDetectionTime;
+	}
+	
+	/**
+	 * 妥当性チェック用のSQLを取得.
+	 * @return
+	 */
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+	
+	/**
+	 * プーリングからの取得時に妥当性チェックを行うか取得.
+	 * @return
+	 */
+	public boolean isTestOnBorrow() {
+		return testOnBorrow;
+	}
+	
+	/**
+	 * アイドルコネクションの妥当性チェック間隔(ミリ秒)を取得.
+	 * @return
+	 */
+	public Integer getIdleTestTime() {
+		return idleTestTime;
+	}
+	
+	/**
+	 * コネクション単位のPreparedStatementキャッシュ数を取得.
+	 * @return
+	 */
+	public Integer getStatementCacheSize() {
+		return statementCacheSize;
+	}
+	
+	/**
+	 * PreparedStatementキャッシュ対象となるSQLの最大長を取得.
+	 * @return
+	 */
+	public Integer getStatementCacheSqlLength() {
+		return statementCacheSqlLength;
+	}
+	
+	/**
+	 * コネクションの妥当性チェック.
+	 * [validationQuery]が設定されている場合はSQLを実行し、設定されていない場合は Connection.isValid で確認します.
+	 * @param connection 対象のコネクションオブジェクトを設定します.
+	 * @param timeout タイムアウト(秒)を設定します.
+	 * @return boolean [true]の場合、利用可能なコネクションです.
+	 */
+	public boolean validate(Connection connection, int timeout) {
+		try {
+			if(connection.isClosed()) {
+				return false;
+			} else if(validationQuery == null) {
+				try {
+					return connection.isValid(timeout);
+				} catch(SQLFeatureNotSupportedException e) {
+					// isValidに対応していないドライバの場合.
+					return true;
+				} catch(AbstractMethodError e) {
+					return true;
+				}
+			}
+			final Statement stmt = connection.createStatement();
+			try {
+				stmt.setQueryTimeout(timeout);
+				stmt.execute(validationQuery);
+			} finally {
+				try {
+					stmt.close();
+				} catch(Exception e) {}
+			}
+			if(!connection.getAutoCommit()) {
+				connection.rollback();
+			}
+			return true;
+		} catch(Throwable t) {
+			return false;
+		}
+	}
+	
 	/**
 	 * SQLの末端にセミコロンを付与させない場合は「true」が返却されます.
 	 * @return
@@ -451,6 +602,10 @@ public class JDBCKind {
 			"password", password, "readOnly", readOnly, "urlParams", urlParams,
 			"busyTimeout", busyTimeout, "transactionLevel", transactionLevel, "fetchSize", fetchSize,
 			"params", new JsMap(params), "poolingSize", poolingSize, "poolingTimeout", poolingTimeout,
+			"poolingMaxActive", poolingMaxActive, "poolingWaitTimeout", poolingWaitTimeout,
+			"poolingMinIdle", poolingMinIdle, "leakDetectionTime", leakDetectionTime,
+			"validationQuery", validationQuery, "testOnBorrow", testOnBorrow, "idleTestTime", idleTestTime,
+			"statementCacheSize", statementCacheSize, "statementCacheSqlLength", statementCacheSqlLength,
 			"notSemicolon", notSemicolon, "machineId", machineId);
 	}
 	
@@ -1,5 +1,6 @@
 package rhigin.lib.jdbc.runner;
 
+import java.io.InputStream;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -23,6 +24,9 @@ import rhigin.util.FixedSearchArray;
  * JDBC-Row.
  */
 public class JDBCRow implements Iterator<Map<String, Object>> {
+	/** デフォルトのストリーミング読み込み行数. **/
+	public static final int DEF_STREAMING_SIZE = 100;
+	
 	private JDBCConnect conn = null;
 	private Statement stmt = null;
 	private ResultSet rs = null;
@@ -31,6 +35,8 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 	private int[] metaTypes = null;
 	private JDBCOneLine baseRow = null;
 	private JDBCOneLine row = null;
+	private JDBCColumnBatch batch = null;
+	private int batchPos = -1;
 	
 	// メタデータの中身を取得.
 	private final void getMeta(final ResultSetMetaData data)
@@ -86,6 +92,7 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 		rs = null;
 		stmt = null;
 		row = null;
+		batch = null;
 		metaColumns = null;
 		metaTypes = null;
 	}
@@ -135,6 +142,78 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 		return ret;
 	}
 	
+	/**
+	 * ストリーミング読み込みを設定.
+	 * 指定行数単位でカラム毎の配列に読み込み、取得する行は読み込み済みの領域を参照します.
+	 * そのため、保持されるデータは最大でも指定行数分となります.
+	 * @param size １度に読み込む行数を設定します. [0]以下の場合はフェッチサイズ、
+	 *             フェッチサイズも設定されていない場合は[100]が設定されます.
+	 * @return JDBCRow
+	 */
+	public JDBCRow streaming(int size) {
+		check();
+		if(batch != null) {
+			return this;
+		} else if(row != null) {
+			throw new JDBCException("Streaming must be set before reading the next row.");
+		}
+		try {
+			if(size <= 0) {
+				size = stmt.getFetchSize();
+				size = size > 0 ? size : DEF_STREAMING_SIZE;
+			}
+			try {
+				rs.setFetchSize(size);
+			} catch(Exception e) {}
+			batch = new JDBCColumnBatch(metaTypes, size);
+			batchPos = -1;
+		} catch(JDBCException je) {
+			throw je;
+		} catch(Exception e) {
+			throw new JDBCException(e);
+		}
+		return this;
+	}
+	
+	/**
+	 * ストリーミング読み込み中か取得.
+	 * @return boolean
+	 */
+	public boolean isStreaming() {
+		return batch != null;
+	}
+	
+	/**
+	 * 残りの行をJSON配列として読み込むInputStreamを取得.
+	 * 返却されたInputStreamは、このRowとコネクションを占有し、読み込み終了かクローズで
+	 * 両方をクローズ(コネクションはロールバック後にプーリングに返却)します.
+	 * @return InputStream
+	 */
+	public InputStream toJson() {
+		return toStream(JDBCRowInputStream.TYPE_JSON, ',', false);
+	}
+	
+	/**
+	 * 残りの行をCSVとして読み込むInputStreamを取得.
+	 * 返却されたInputStreamは、このRowとコネクションを占有し、読み込み終了かクローズで
+	 * 両方をクローズ(コネクションはロールバック後にプーリングに返却)します.
+	 * @param cut 区切り文字を設定します.
+	 * @param header ヘッダ(カラム名)を出力する場合は[true]を設定します.
+	 * @return InputStream
+	 */
+	public InputStream toCsv(char cut, boolean header) {
+		return toStream(JDBCRowInputStream.TYPE_CSV, cut, header);
+	}
+	
+	// InputStreamを生成.
+	private InputStream toStream(int type, char cut, boolean header) {
+		check();
+		streaming(0);
+		// スクリプト終了時のクローズ対象から外す.
+		conn.closeable.detach(conn, stmt, rs);
+		return new JDBCRowInputStream(this, conn, type, cut, header);
+	}
+	
 	/**
 	 * 全情報をListとして取得.
 	 * @return
@@ -175,7 +254,17 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 	// 1行の情報を取得.
 	private boolean _row() {
 		try {
-			if(rs.next()) {
+			if(batch != null) {
+				// ストリーミング読み込み.
+				if(++ batchPos >= batch.size()) {
+					batchPos = 0;
+					if(batch.fill(rs) == 0) {
+						return false;
+					}
+				}
+				row = baseRow;
+				return true;
+			} else if(rs.next()) {
 				row = baseRow;
 				return true;
 			}
@@ -185,6 +274,38 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 		}
 	}
 	
+	// 現在行の指定カラムの値を取得.
+	private final Object value(int no) throws Exception {
+		if(batch != null) {
+			return batch.get(batchPos, no);
+		}
+		return JDBCUtils.getResultColumn(rs, metaTypes[no], no + 1);
+	}
+	
+	// 次の行に移動(ストリーミング読み込み用).
+	final boolean nextRow() {
+		if(!hasNext()) {
+			return false;
+		}
+		row = null;
+		return true;
+	}
+	
+	// 現在行の指定カラムをJSONで出力(ストリーミング読み込み用).
+	final void json(StringBuilder buf, int no) {
+		batch.json(buf, batchPos, no);
+	}
+	
+	// 現在行の指定カラムをCSVで出力(ストリーミング読み込み用).
+	final void csv(StringBuilder buf, int no, char cut) {
+		batch.csv(buf, batchPos, no, cut);
+	}
+	
+	// カラム名群を取得.
+	final String[] names() {
+		return metaNames;
+	}
+	
 	// 1行のデータ.
 	@SuppressWarnings("rawtypes")
 	private static final class JDBCOneLine extends JavaScriptable.Map
@@ -220,7 +341,7 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 			int no = parent.metaColumns.search(key.toString().toLowerCase());
 			if(no != -1) {
 				try {
-					return JDBCUtils.getResultColumn(parent.rs, parent.metaTypes[no], no + 1);
+					return parent.value(no);
 				} catch(Exception e) {
 					throw new JDBCException(e);
 				}
@@ -245,20 +366,19 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 		@Override
 		public boolean containsValue(Object value) {
 			Object o;
-			ResultSet rs = parent.rs;
 			int[] metaTypes = parent.metaTypes;
 			final int len = metaTypes.length;
 			try {
 				if (value == null) {
 					for (int i = 0; i < len; i++) {
-						o = JDBCUtils.getResultColumn(rs, metaTypes[i], i + 1);
+						o = parent.value(i);
 						if(o == null) {
 							return true;
 						}
 					}
 				} else {
 					for (int i = 0; i < len; i++) {
-						o = JDBCUtils.getResultColumn(rs, metaTypes[i], i + 1);
+						o = parent.value(i);
 						if (value.equals(o)) {
 							return true;
 						}
@@ -278,7 +398,6 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 		@Override
 		public String toString() {
 			Object o;
-			ResultSet rs = parent.rs;
 			int[] metaTypes = parent.metaTypes;
 			String[] metaNames = parent.metaNames;
 			final int len = metaTypes.length;
@@ -288,7 +407,7 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 					if (i != 0) {
 						buf.append(",");
 					}
-					o = JDBCUtils.getResultColumn(rs, metaTypes[i], i + 1);
+					o = parent.value(i);
 					buf.append("\"").append(metaNames[i]).append("\": \"").append(o).append("\"");
 				}
 				return buf.append("}").toString();
@@ -300,13 +419,12 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 		@Override
 		public Collection<Object> values() {
 			Object o;
-			ResultSet rs = parent.rs;
 			int[] metaTypes = parent.metaTypes;
 			final int len = metaTypes.length;
 			final ArrayList<Object> ret = new ArrayList<Object>(len);
 			try {
 				for (int i = 0; i < len; i++) {
-					o = JDBCUtils.getResultColumn(rs, metaTypes[i], i + 1);
+					o = parent.value(i);
 					ret.add(o);
 				}
 				return ret;
@@ -339,7 +457,7 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 		@Override
 		public Object getValue(int no) {
 			try {
-				return JDBCUtils.getResultColumn(parent.rs, parent.metaTypes[no], no + 1);
+				return parent.value(no);
 			} catch(Exception e) {
 				throw new JDBCException(e);
 			}
@@ -362,13 +480,11 @@ public class JDBCRow implements Iterator<Map<String, Object>> {
 		private final Object[] values;
 		
 		private JDBCCopyLine(JDBCRow p) {
-			ResultSet rs = p.rs;
-			int[] metaTypes = p.metaTypes;
-			final int len = metaTypes.length;
+			final int len = p.metaTypes.length;
 			Object[] vs = new Object[len];
 			try {
 				for(int i = 0; i < len; i ++) {
-					vs[i] = JDBCUtils.getResultColumn(rs, metaTypes[i], i + 1);
+					vs[i] = p.value(i);
 				}
 				this.parent = p;
 				this.values = vs;
@@ -0,0 +1,168 @@
+package rhigin.lib.jdbc.runner;
+
+import rhigin.net.NioAsyncInputStream;
+
+/**
+ * JDBC-Rowの内容をJSON又はCSVで読み込むInputStream.
+ *
+ * ストリーミング読み込みのRowから一定サイズ単位で変換するので、
+ * 大きなSELECT結果でも全件をメモリに保持せずにレスポンス等に出力できます.
+ * 読み込み終了、もしくはクローズで、対象のRowとコネクションをクローズします.
+ * Rowの読み込みと変換は実行スレッドで行うので、Nioスレッドで送信する場合もJDBCの処理は実行されません.
+ */
+public class JDBCRowInputStream extends NioAsyncInputStream {
+	/** JSON配列で出力. **/
+	public static final int TYPE_JSON = 0;
+
+	/** CSVで出力. **/
+	public static final int TYPE_CSV = 1;
+
+	/** １度に変換する文字数の目安. **/
+	private static final int CHUNK_LENGTH = 8192;
+
+	// 状態.
+	private static final int STATE_START = 0;
+	private static final int STATE_BODY = 1;
+	private static final int STATE_END = 2;
+
+	private JDBCRow row;
+	private JDBCConnect conn;
+	private final int type;
+	private final char cut;
+	private final boolean header;
+	private final String[] names;
+	private final StringBuilder buf = new StringBuilder(CHUNK_LENGTH + 1024);
+	private int state = STATE_START;
+	private volatile int count = 0;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param row    ストリーミング読み込みのRowを設定します.
+	 * @param conn   対象のコネクションを設定します.
+	 * @param type   出力形式を設定します.
+	 * @param cut    CSVの区切り文字を設定します.
+	 * @param header CSVのヘッダを出力する場合は[true]を設定します.
+	 */
+	protected JDBCRowInputStream(JDBCRow row, JDBCConnect conn, int type, char cut, boolean header) {
+		this.row = row;
+		this.conn = conn;
+		this.type = type;
+		this.cut = cut;
+		this.header = header;
+		this.names = type == TYPE_JSON ? jsonNames(row.names()) : row.names();
+	}
+
+	// JSONのキー名を生成.
+	private static final String[] jsonNames(String[] n) {
+		final int len = n.length;
+		final String[] ret = new String[len];
+		final StringBuilder b = new StringBuilder();
+		for (int i = 0; i < len; i++) {
+			b.setLength(0);
+			JDBCColumnBatch.jsonString(b, n[i]);
+			ret[i] = b.append(":").toString();
+		}
+		return ret;
+	}
+
+	/**
+	 * 出力した行数を取得.
+	 *
+	 * @return int
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	@Override
+	protected byte[] produce() throws Exception {
+		if (state == STATE_END) {
+			return null;
+		}
+		buf.setLength(0);
+		if (state == STATE_START) {
+			start();
+			state = STATE_BODY;
+		}
+		while (buf.length() < CHUNK_LENGTH) {
+			if (!row.nextRow()) {
+				end();
+				break;
+			}
+			if (type == TYPE_JSON) {
+				json();
+			} else {
+				csv();
+			}
+			count++;
+		}
+		return buf.toString().getBytes("UTF8");
+	}
+
+	@Override
+	protected void cleanup() {
+		state = STATE_END;
+		if (row != null) {
+			row.close();
+			row = null;
+		}
+		if (conn != null) {
+			conn.close();
+			conn = null;
+		}
+	}
+
+	// 開始処理.
+	private final void start() {
+		if (type == TYPE_JSON) {
+			buf.append("[");
+		} else if (header) {
+			final int len = names.length;
+			for (int i = 0; i < len; i++) {
+				if (i != 0) {
+					buf.append(cut);
+				}
+				JDBCColumnBatch.csvString(buf, names[i], cut);
+			}
+			buf.append("\r\n");
+		}
+	}
+
+	// 終了処理.
+	private final void end() {
+		if (type == TYPE_JSON) {
+			buf.append("]");
+		}
+		state = STATE_END;
+	}
+
+	// JSONで１行出力.
+	private final void json() {
+		final int len = names.length;
+		if (count != 0) {
+			buf.append(",");
+		}
+		buf.append("{");
+		for (int i = 0; i < len; i++) {
+			if (i != 0) {
+				buf.append(",");
+			}
+			buf.append(names[i]);
+			row.json(buf, i);
+		}
+		buf.append("}");
+	}
+
+	// CSVで１行出力.
+	private final void csv() {
+		final int len = names.length;
+		for (int i = 0; i < len; i++) {
+			if (i != 0) {
+				buf.append(cut);
+			}
+			row.csv(buf, i, cut);
+		}
+		buf.append("\r\n");
+	}
+}
@@ -243,6 +243,19 @@ public final class JDBCUtils {
 	 * @param no     対象の項番を設定します. この番号は１から開始されます.
 	 */
 	public static final Object getResultColumn(final ResultSet result, final int type, final int no) throws Exception {
+		// rhigin向けのラップ処理.
+		return RhiginWrapUtil.wrapJavaObject(getResultColumnValue(result, type, no));
+	}
+
+	/**
+	 * 結果のカラム情報をラップせずに取得.
+	 * 
+	 * @param result 対象の結果オブジェクトを設定します.
+	 * @param type   対象のSQLタイプを設定します.
+	 * @param no     対象の項番を設定します. この番号は１から開始されます.
+	 */
+	public static final Object getResultColumnValue(final ResultSet result, final int type, final int no)
+		throws Exception {
 		if (result.getObject(no) == null) {
 			return null;
 		}
@@ -326,8 +339,7 @@ public final class JDBCUtils {
 			bo.close();
 			bo = null;
 		}
-		// rhigin向けのラップ処理.
-		return RhiginWrapUtil.wrapJavaObject(data);
+		return data;
 	}
 
 	/** 小文字大文字差分. **/
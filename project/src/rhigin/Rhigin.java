@@ -11,8 +11,11 @@ import rhigin.logs.Log;
 import rhigin.logs.LogFactory;
 import rhigin.net.NioUtil;
 import rhigin.scripts.ExecuteScript;
+import rhigin.scripts.compile.CompileCache;
+import rhigin.scripts.compile.Precompile;
 import rhigin.util.Args;
 import rhigin.util.Converter;
+import rhigin.util.WatchPath;
 
 /**
  * rhiginメインオブジェクト.
@@ -118,6 +121,17 @@ public class Rhigin {
 		// Httpの生成.
 		http = new Http(httpInfo, mime);
 
+		// 起動時に全スクリプトをコンパイル.
+		if (httpInfo.isPrecompile()) {
+			Precompile.Result r = Precompile.execute(CompileCache.getCache(), WatchPath.getInstance(),
+				httpInfo.getPrecompileThread());
+			LOG.info(r);
+			int len = r.getErrors().size();
+			for (int i = 0; i < len; i ++) {
+				LOG.warn("precompile error: " + r.getErrors().get(i));
+			}
+		}
+
 		// 終了コールバック処理をセット.
 		http.exitCall(exitCall());
 
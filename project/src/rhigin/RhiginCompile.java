@@ -0,0 +1,100 @@
+package rhigin;
+
+import java.util.List;
+
+import rhigin.http.HttpInfo;
+import rhigin.scripts.compile.CompileCache;
+import rhigin.scripts.compile.CompileClassCache;
+import rhigin.scripts.compile.Precompile;
+import rhigin.util.Args;
+import rhigin.util.Converter;
+import rhigin.util.WatchPath;
+
+/**
+ * Rhiginスクリプトの事前コンパイル.
+ *
+ * [./application]と[./lib]配下の全てのスクリプトをコンパイルして、コンパイルエラーを表示します.
+ * コンパイル結果の永続キャッシュ先が設定されている場合は、classファイルをキャッシュ先に出力するので
+ * 次回のサーバ起動時にはコンパイル処理が行われません.
+ */
+public class RhiginCompile {
+	public static final void main(String[] args) throws Exception {
+		Args params = Args.set(args);
+		if(viewArgs()) {
+			System.exit(0);
+			return;
+		}
+		int ret = 0;
+		try {
+			RhiginConfig conf = RhiginStartup.init(false, false);
+			RhiginCompile o = new RhiginCompile();
+			// コンパイル実行.
+			if (!o.compile(conf, params.get("-d", "--dir"), params.get("-t", "--thread"))) {
+				ret = 1;
+			}
+		} catch(Throwable t) {
+			t.printStackTrace();
+			ret = 1;
+		}
+		System.exit(ret);
+	}
+
+	// プログラム引数による命令.
+	private static final boolean viewArgs() {
+		Args params = Args.getInstance();
+		if(params.isValue("-v", "--version")) {
+			System.out.println(RhiginConstants.VERSION);
+			return true;
+		} else if(params.isValue("-h", "--help")) {
+			System.out.println("rcompile [-e] [-d] [-t]");
+			System.out.println(" Compile all rhigin scripts in `./application` and `./lib`.");
+			System.out.println("  [-e] [--env]");
+			System.out.println("    Set the environment name for reading the configuration.");
+			System.out.println("    For example, when `-e hoge` is specified, the configuration ");
+			System.out.println("    information under `./conf/hoge/` is read.");
+			System.out.println("  [-d] [--dir] {directory}");
+			System.out.println("    Set the output directory of the compiled class cache.");
+			System.out.println("    If omitted, `compileClassCacheDir` of http.json is used.");
+			System.out.println("  [-t] [--thread] {count}");
+			System.out.println("    Set the number of compile threads.");
+			return true;
+		}
+		return false;
+	}
+
+	public boolean compile(RhiginConfig conf, String dir, String thread) throws Exception {
+		final WatchPath wp = WatchPath.getInstance();
+		if (wp == null) {
+			System.err.println("Application path does not exist.");
+			return false;
+		}
+		// コンパイル条件を取得.
+		final HttpInfo info = new HttpInfo();
+		HttpInfo.load(info, conf.get("http"));
+		if (dir == null || dir.isEmpty()) {
+			dir = info.getCompileClassCacheDir();
+		}
+		int threadCount = info.getPrecompileThread();
+		if (thread != null && Converter.isNumeric(thread)) {
+			threadCount = Converter.convertInt(thread);
+		}
+		CompileCache.setBaseCache(info.getCompileCacheSize(), info.getCompileCacheRootDir());
+		CompileCache.setBaseClassCache(dir);
+		final CompileCache cache = CompileCache.getCache();
+
+		// 全てのスクリプトをコンパイル.
+		final Precompile.Result r = Precompile.execute(cache, wp, threadCount);
+		final List<String> errors = r.getErrors();
+		final int len = errors.size();
+		for (int i = 0; i < len; i ++) {
+			System.err.println(errors.get(i));
+		}
+		System.out.println(r);
+		final CompileClassCache cc = cache.getClassCache();
+		if (cc != null) {
+			System.out.println("classCache: " + cc.getDir() + " (load: " + cc.getLoadCount() +
+				", store: " + cc.getStoreCount() + ")");
+		}
+		return len == 0;
+	}
+}
@@ -66,6 +66,7 @@ public class RhiginProject {
 		FileUtil.rcpy("res/rhigin/projects/conf/accessKey.json", RhiginConstants.DIR_CONFIG + "accessKey.json");
 		FileUtil.rcpy("res/rhigin/projects/conf/ipPermission.json", RhiginConstants.DIR_CONFIG + "ipPermission.json");
 		FileUtil.rcpy("res/rhigin/projects/conf/http.json", RhiginConstants.DIR_CONFIG + "http.json");
+		FileUtil.rcpy("res/rhigin/projects/conf/httpClient.json", RhiginConstants.DIR_CONFIG + "httpClient.json");
 		FileUtil.rcpy("res/rhigin/projects/conf/log.json", RhiginConstants.DIR_CONFIG + "log.json");
 		FileUtil.rcpy("res/rhigin/projects/conf/rhigin.json", RhiginConstants.DIR_CONFIG + "rhigin.json");
 
@@ -83,8 +84,10 @@ public class RhiginProject {
 			// linux用.
 			FileUtil.rcpy("res/rhigin/projects/rhigin", "./rhigin");
 			FileUtil.rcpy("res/rhigin/projects/rbatch", "./rbatch");
+			FileUtil.rcpy("res/rhigin/projects/rcompile", "./rcompile");
 			setExecPermission("./rhigin");
 			setExecPermission("./rbatch");
+			setExecPermission("./rcompile");
 		//}
 
 		// プロジェクト作成完了.
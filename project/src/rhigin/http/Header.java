@@ -38,21 +38,15 @@ public class Header extends JavaScriptable.Map
 	// http のendpointが検知された場合にコンストラクタ呼び出し.
 	public Header(NioReadBuffer buffer, int endPoint) throws IOException {
 		int firstPoint = buffer.indexOf(Analysis.ONE_LINE);
-		byte[] b = new byte[firstPoint];
-		buffer.read(b);
+		// 受信バッファから直接文字列変換.
+		String v = buffer.readString(firstPoint, "UTF8");
 		buffer.skip(Analysis.ONE_LINE_LENGTH);
-
-		String v = new String(b, "UTF8");
-		b = null;
 		analysisFirst(v);
 		v = null;
 
 		int len = endPoint + Analysis.END_LINE_LENGTH - (firstPoint + Analysis.ONE_LINE_LENGTH);
-		b = new byte[len];
-		buffer.read(b);
-
-		this.headers = b;
-		this.headersString = null;
+		this.headers = null;
+		this.headersString = buffer.readString(len, "UTF8");
 	}
 
 	// url method version を取得.
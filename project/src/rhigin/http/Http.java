@@ -4,7 +4,9 @@ import java.nio.channels.ServerSocketChannel;
 
 import rhigin.net.NioCore;
 import rhigin.net.NioUtil;
+import rhigin.scripts.compile.SourceCompileCache;
 import rhigin.util.FileUtil;
+import rhigin.util.WatchPath;
 
 /**
  * Httpオブジェクト.
@@ -23,6 +25,15 @@ public final class Http {
 	/** HttpInfo. **/
 	private static HttpInfo httpInfo = null;
 
+	/** 静的ファイルキャッシュ. **/
+	private static StaticFileCache staticFileCache = null;
+
+	/** URLパスの振り分け先テーブル. **/
+	private static HttpRouteTable routeTable = null;
+
+	/** executejsで受信したスクリプトのコンパイルキャッシュ. **/
+	private static SourceCompileCache executeJsCache = null;
+
 	/** webサーバモード. **/
 	private static boolean webServer = false;
 	
@@ -41,6 +52,33 @@ public final class Http {
 		return httpInfo;
 	}
 
+	/**
+	 * 静的ファイルキャッシュを取得.
+	 * 
+	 * @return
+	 */
+	public static final StaticFileCache getStaticFileCache() {
+		return staticFileCache;
+	}
+
+	/**
+	 * URLパスの振り分け先テーブルを取得.
+	 * 
+	 * @return
+	 */
+	public static final HttpRouteTable getRouteTable() {
+		return routeTable;
+	}
+
+	/**
+	 * executejsで受信したスクリプトのコンパイルキャッシュを取得.
+	 * 
+	 * @return
+	 */
+	public static final SourceCompileCache getExecuteJsCache() {
+		return executeJsCache;
+	}
+
 	/**
 	 * 起動モードを設定.
 	 * 
@@ -89,6 +127,22 @@ public final class Http {
 			httpInfo = info;
 		}
 
+		// 静的ファイルキャッシュを生成.
+		if (staticFileCache == null && info.getStaticCacheSize() > 0L && WatchPath.getInstance() != null) {
+			staticFileCache = new StaticFileCache(info.getStaticCacheSize(), info.getStaticCacheFileSize(),
+					WatchPath.getInstance());
+		}
+
+		// URLパスの振り分け先テーブルを生成.
+		if (routeTable == null && WatchPath.getInstance() != null) {
+			routeTable = new HttpRouteTable(WatchPath.getInstance());
+		}
+
+		// executejsで受信したスクリプトのコンパイルキャッシュを生成.
+		if (executeJsCache == null && info.getExecuteJsCacheSize() > 0) {
+			executeJsCache = new SourceCompileCache(info.getExecuteJsCacheSize());
+		}
+
 		// bodyファイル格納先のフォルダを作成.
 		if (!FileUtil.isDir(HttpConstants.POST_FILE_OUT_ROOT_DIR)) {
 			FileUtil.mkdirs(HttpConstants.POST_FILE_OUT_ROOT_DIR);
@@ -100,7 +154,7 @@ public final class Http {
 
 		// nio処理を生成.
 		this.nio = new NioCore(info.getByteBufferLength(), info.getSocketSendBuffer(), info.getSocketReceiveBuffer(),
-				KEEP_ALIVE, TCP_NO_DELAY, ch, new HttpCall(info, mime, info.getWorkerThread()));
+				KEEP_ALIVE, TCP_NO_DELAY, ch, new HttpCall(info, mime, info.getWorkerThread()), info.getNioThread());
 	}
 
 	public void start() {
@@ -0,0 +1,202 @@
+package rhigin.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.locks.LockSupport;
+
+import rhigin.net.NioReadBuffer;
+
+/**
+ * 受信中のBodyを読み込むInputStream.
+ *
+ * Nioスレッドでの受信に合わせて、ワーカースレッド(スクリプト)からBodyを逐次読み込みます.
+ * 受信バッファが一定サイズを超えた場合は、読み込まれるまでNioでの受信を停止します.
+ */
+public class HttpBodyInputStream extends InputStream {
+	/** 受信を停止する受信バッファサイズ. **/
+	private static final int HIGH_WATER_MARK = HttpConstants.BODY_STREAM_BUFFER_LENGTH;
+
+	/** 受信を再開する受信バッファサイズ. **/
+	private static final int LOW_WATER_MARK = HttpConstants.BODY_STREAM_BUFFER_LENGTH >> 1;
+
+	/** 受信待ちの１回の待機時間(ナノ秒). **/
+	private static final long PARK_TIME = 100000000L;
+
+	private final HttpElement em;
+	private final NioReadBuffer buffer;
+	private final HttpChunkedDecoder chunked;
+	private final long timeout;
+	private long remaining;
+	private byte[] head;
+	private int headPosition;
+	private boolean eof = false;
+	private boolean pause = false;
+	private volatile boolean closed = false;
+	private volatile Thread reader = null;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param em
+	 *            対象のHttp要素を設定します.
+	 * @param contentLength
+	 *            Body長を設定します. chunkedの場合は[-1]を設定します.
+	 * @param chunked
+	 *            chunkedの場合はデコーダを設定します.
+	 * @param head
+	 *            既に受信済みのBodyが存在する場合は設定します.
+	 * @param timeout
+	 *            受信待ちのタイムアウト(ミリ秒)を設定します.
+	 */
+	public HttpBodyInputStream(HttpElement em, long contentLength, HttpChunkedDecoder chunked, byte[] head,
+			long timeout) {
+		this.em = em;
+		this.buffer = em.getBuffer();
+		this.chunked = chunked;
+		this.remaining = contentLength;
+		this.head = head;
+		this.headPosition = 0;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Nioスレッドでの受信通知.
+	 * 受信バッファが一定サイズを超えた場合は、受信を停止します.
+	 */
+	protected void receive() {
+		// クローズ済みの場合は、受信内容を破棄.
+		if (closed) {
+			buffer.skip(buffer.size());
+			return;
+		}
+		if (buffer.size() > HIGH_WATER_MARK) {
+			synchronized (this) {
+				if (!pause && !eof && buffer.size() > HIGH_WATER_MARK) {
+					pause = true;
+					interestOps(false);
+				}
+			}
+		}
+		wakeup();
+	}
+
+	/**
+	 * 受信停止中の場合、受信を再開.
+	 */
+	private final void resume() {
+		synchronized (this) {
+			if (pause && buffer.size() <= LOW_WATER_MARK) {
+				pause = false;
+				interestOps(true);
+			}
+		}
+	}
+
+	// Nioの受信有無を変更.
+	private final void interestOps(boolean read) {
+		try {
+			if (read) {
+				em.interestOps(em.interestOps() | SelectionKey.OP_READ);
+			} else {
+				em.interestOps(em.interestOps() & ~SelectionKey.OP_READ);
+			}
+		} catch (Exception e) {
+		}
+	}
+
+	/**
+	 * Bodyの終端まで読み込んだかチェック.
+	 *
+	 * @return boolean
+	 */
+	public boolean isEof() {
+		return eof;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final byte[] b = new byte[1];
+		if (read(b, 0, 1) <= 0) {
+			return -1;
+		}
+		return b[0] & 0x00ff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len <= 0) {
+			return 0;
+		} else if (eof) {
+			return -1;
+		}
+		// 受信済みのBodyが存在する場合.
+		if (head != null) {
+			final int n = Math.min(len, head.length - headPosition);
+			System.arraycopy(head, headPosition, b, off, n);
+			if ((headPosition += n) >= head.length) {
+				head = null;
+			}
+			return n;
+		}
+		int n;
+		long time = 0L;
+		reader = Thread.currentThread();
+		try {
+			while (true) {
+				if (chunked != null) {
+					n = chunked.read(buffer, b, off, len);
+				} else if (remaining <= 0L) {
+					n = -1;
+				} else {
+					n = buffer.read(b, off, (int) Math.min((long) len, remaining));
+					remaining -= n;
+				}
+				if (n != 0) {
+					if (n == -1 || (chunked == null && remaining <= 0L)) {
+						eof = true;
+					}
+					resume();
+					return n;
+				}
+				// 受信待ち.
+				if (!em.isConnection()) {
+					throw new IOException("Connection has been closed while receiving the body.");
+				} else if (time == 0L) {
+					time = System.currentTimeMillis();
+				} else if (System.currentTimeMillis() - time > timeout) {
+					throw new IOException("Timeout while receiving the body.");
+				}
+				resume();
+				LockSupport.parkNanos(PARK_TIME);
+			}
+		} finally {
+			reader = null;
+		}
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (head != null) {
+			return head.length - headPosition;
+		} else if (eof || chunked != null) {
+			return 0;
+		}
+		return (int) Math.min((long) buffer.size(), remaining);
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+	}
+
+	/**
+	 * 受信待ちのスレッドを起こす.
+	 */
+	protected void wakeup() {
+		final Thread t = reader;
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package rhigin.http;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
 
 import rhigin.logs.Log;
 import rhigin.logs.LogFactory;
@@ -18,6 +19,7 @@ public final class HttpCall extends NioCall {
 	private HttpInfo info = null;
 	private MimeType mime = null;
 	private HttpWorkerThread[] worker = null;
+	private HttpScriptExecutor scriptExecutor = null;
 	private final AtomicNumber counter = new AtomicNumber(0);
 
 	/**
@@ -51,15 +53,29 @@ public final class HttpCall extends NioCall {
 	 * @return boolean [true]の場合、正常に処理されました.
 	 */
 	public boolean startNio() {
-		LOG.info(" start Http nio: " + workerLength + " threads.");
+		LOG.info(" start Http nio: " + workerLength + " threads (" +
+			(info.isWorkerSteal() ? HttpConstants.WORKER_DISPATCH_STEAL : HttpConstants.WORKER_DISPATCH_PINNED) +
+			").");
+
+		// 仮想スレッドでスクリプトを実行する場合.
+		final HttpScriptExecutor se = info.isVirtualThread() ? HttpScriptExecutor.create(info, mime) : null;
+		scriptExecutor = se;
 
 		// ワーカースレッドを生成.
 		HttpWorkerThread[] w = new HttpWorkerThread[workerLength];
 		for (int i = 0; i < workerLength; i++) {
 			w[i] = new HttpWorkerThread(info, mime, i);
+		}
+		for (int i = 0; i < workerLength; i++) {
+			// 横取りを行う場合は、ワーカースレッド群を設定.
+			if (info.isWorkerSteal()) {
+				w[i].setPeers(w);
+			}
+			w[i].setScriptExecutor(se);
 			w[i].startThread();
 		}
 		worker = w;
+		HttpMetrics.getInstance().setWorkers(w);
 		return true;
 	}
 
@@ -72,6 +88,7 @@ public final class HttpCall extends NioCall {
 		// ワーカースレッドを破棄.
 		HttpWorkerThread[] w = worker;
 		worker = null;
+		HttpMetrics.getInstance().setWorkers(null);
 		for (int i = 0; i < workerLength; i++) {
 			w[i].stopThread();
 		}
@@ -94,6 +111,12 @@ public final class HttpCall extends NioCall {
 			}
 		}
 
+		// 仮想スレッドのスクリプト実行を終了.
+		if (scriptExecutor != null) {
+			scriptExecutor.shutdown();
+			scriptExecutor = null;
+		}
+
 		LOG.info(" exit Http nio");
 	}
 
@@ -115,9 +138,73 @@ public final class HttpCall extends NioCall {
 	 */
 	public boolean accept(NioElement em) throws IOException {
 		// LOG.debug(" accept Http nio");
+		// 最初のリクエスト受信までをアイドル扱いにする.
+		((HttpElement) em).setIdleTime(System.currentTimeMillis());
 		return true;
 	}
 
+	/**
+	 * Send処理.
+	 * 
+	 * @param em
+	 *            対象のBaseNioElementオブジェクトが設定されます.
+	 * @param buf
+	 *            対象のByteBufferを設定します.
+	 * @return boolean [true]の場合、正常に処理されました.
+	 * @exception IOException
+	 *                IO例外.
+	 */
+	public boolean send(NioElement em, ByteBuffer buf) throws IOException {
+		if (sendInputStream(em, buf)) {
+			return true;
+		}
+		// レスポンス送信完了.
+		final HttpElement rem = (HttpElement) em;
+		if (!rem.isKeepAlive() || !rem.isEndSend()) {
+			// keep-aliveでない場合はクローズ.
+			return false;
+		}
+		// keep-aliveの場合は、次のリクエスト受信状態にする.
+		rem.resetKeepAlive();
+		rem.interestOps(SelectionKey.OP_READ);
+
+		// パイプライン化された次のリクエストを受信済みの場合.
+		if (rem.getBuffer().size() > 0) {
+			rem.setIdleTime(0L);
+			worker[rem.getWorkerNo()].signal(rem);
+		}
+		return true;
+	}
+
+	/**
+	 * アイドルタイムアウトチェック.
+	 * 
+	 * @param em
+	 *            対象のBaseNioElementオブジェクトが設定されます.
+	 * @param now
+	 *            現在時間(ミリ秒)が設定されます.
+	 * @return boolean [true]の場合、対象の要素はクローズされます.
+	 */
+	public boolean isIdleTimeout(NioElement em, long now) {
+		final long idleTime = ((HttpElement) em).getIdleTime();
+		return idleTime > 0L && now - idleTime > info.getKeepAliveTimeout();
+	}
+
+	// 負荷の少ないワーカースレッドを取得.
+	private final int leastLoaded(int start) {
+		int n, load;
+		int ret = start;
+		int min = worker[start].getLoad();
+		for (int i = 1; i < workerLength && min > 0; i++) {
+			n = (start + i) % workerLength;
+			if ((load = worker[n].getLoad()) < min) {
+				min = load;
+				ret = n;
+			}
+		}
+		return ret;
+	}
+
 	/**
 	 * Receive処理.
 	 * 
@@ -134,6 +221,14 @@ public final class HttpCall extends NioCall {
 
 		// 受信バッファに今回分の情報をセット.
 		rem.getBuffer().write(buf);
+		rem.setIdleTime(0L);
+
+		// Bodyを逐次受信中の場合は、読み込み側に通知.
+		final HttpBodyInputStream in = rem.getBodyInputStream();
+		if (in != null) {
+			in.receive();
+			return true;
+		}
 
 		// ワーカーNoがElementに設定されてない場合はセットさせる.
 		int no = rem.getWorkerNo();
@@ -141,6 +236,10 @@ public final class HttpCall extends NioCall {
 			// ワーカースレッドに新規登録される場合.
 			no = counter.inc() % workerLength;
 			counter.set(no);
+			if (info.isWorkerSteal()) {
+				// 負荷の少ないワーカースレッドを選択.
+				no = leastLoaded(no);
+			}
 
 			// 対象のワーカースレッドに登録.
 			worker[no].register(rem);
@@ -0,0 +1,153 @@
+package rhigin.http;
+
+import java.io.IOException;
+
+import rhigin.net.NioReadBuffer;
+
+/**
+ * Http chunked 受信処理.
+ *
+ * [Transfer-Encoding: chunked]で受信したBodyを、受信バッファから逐次デコードします.
+ * 受信途中の場合は、続きのデータを受信した後に再度呼び出すことで処理を継続します.
+ * また、Bodyの終端以降(パイプライン化された次のリクエスト)は読み込みません.
+ */
+public class HttpChunkedDecoder {
+	private static final byte[] CFLF = ("\r\n").getBytes();
+
+	/** chunkedサイズ行、トレーラー行の最大長. **/
+	private static final int MAX_LINE_LENGTH = 4096;
+
+	// 処理状態.
+	private static final int STATE_SIZE = 0;
+	private static final int STATE_DATA = 1;
+	private static final int STATE_DATA_END = 2;
+	private static final int STATE_TRAILER = 3;
+	private static final int STATE_END = 4;
+
+	private int state = STATE_SIZE;
+	private long remaining = 0L;
+	private long length = 0L;
+
+	/**
+	 * デコード処理.
+	 *
+	 * @param buffer
+	 *            受信バッファを設定します.
+	 * @param b
+	 *            デコード結果を格納するバイナリを設定します.
+	 * @param off
+	 *            格納開始位置を設定します.
+	 * @param len
+	 *            格納する最大長を設定します.
+	 * @return int デコードされた長さが返却されます. [0]の場合は受信途中、[-1]の場合はBodyの終端です.
+	 * @exception IOException
+	 *                chunkedの形式が不正な場合.
+	 */
+	public int read(NioReadBuffer buffer, byte[] b, int off, int len) throws IOException {
+		int p, n;
+		while (true) {
+			switch (state) {
+			case STATE_SIZE:
+				if ((p = line(buffer)) == -1) {
+					return 0;
+				}
+				remaining = parseSize(buffer.readString(p, "ISO-8859-1"));
+				buffer.skip(CFLF.length);
+				state = remaining == 0L ? STATE_TRAILER : STATE_DATA;
+				break;
+			case STATE_DATA:
+				if (len <= 0) {
+					return 0;
+				}
+				n = buffer.read(b, off, (int) Math.min((long) len, remaining));
+				if (n > 0) {
+					remaining -= n;
+					length += n;
+					if (remaining == 0L) {
+						state = STATE_DATA_END;
+					}
+				}
+				return n;
+			case STATE_DATA_END:
+				if (buffer.size() < CFLF.length) {
+					return 0;
+				} else if (buffer.indexOf(CFLF) != 0) {
+					throw new IOException("Invalid chunked data.");
+				}
+				buffer.skip(CFLF.length);
+				state = STATE_SIZE;
+				break;
+			case STATE_TRAILER:
+				// トレーラーヘッダは読み飛ばす.
+				if ((p = line(buffer)) == -1) {
+					return 0;
+				}
+				buffer.skip(p + CFLF.length);
+				if (p == 0) {
+					state = STATE_END;
+				}
+				break;
+			default:
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Bodyの終端まで受信したかチェック.
+	 *
+	 * @return boolean [true]の場合、受信完了しています.
+	 */
+	public boolean isEnd() {
+		return state == STATE_END;
+	}
+
+	/**
+	 * デコード済みのBody長を取得.
+	 *
+	 * @return long
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	// 改行までの長さを取得.
+	private static final int line(NioReadBuffer buffer) throws IOException {
+		final int p = buffer.indexOf(CFLF);
+		if (p == -1 && buffer.size() > MAX_LINE_LENGTH) {
+			throw new IOException("chunked line is too long.");
+		} else if (p > MAX_LINE_LENGTH) {
+			throw new IOException("chunked line is too long.");
+		}
+		return p;
+	}
+
+	// chunkedサイズを解析.
+	private static final long parseSize(String line) throws IOException {
+		int p = line.indexOf(";");
+		if (p != -1) {
+			// chunked拡張は無視.
+			line = line.substring(0, p);
+		}
+		line = line.trim();
+		final int len = line.length();
+		if (len == 0 || len > 15) {
+			throw new IOException("Invalid chunked size: " + line);
+		}
+		char c;
+		long ret = 0L;
+		for (int i = 0; i < len; i++) {
+			c = line.charAt(i);
+			if (c >= '0' && c <= '9') {
+				ret = (ret << 4L) | (long) (c - '0');
+			} else if (c >= 'a' && c <= 'f') {
+				ret = (ret << 4L) | (long) (c - 'a' + 10);
+			} else if (c >= 'A' && c <= 'F') {
+				ret = (ret << 4L) | (long) (c - 'A' + 10);
+			} else {
+				throw new IOException("Invalid chunked size: " + line);
+			}
+		}
+		return ret;
+	}
+}
@@ -85,9 +85,10 @@ public class HttpChunkedInputStream extends InputStream {
 	// chunked出力.
 	private static final int chunkedWrite(byte[] out, int len, int chunkedLength) throws IOException {
 		int position = chunkedLength - chunkedHeadLength(len);
-		int off = position;
+		// 上位桁から出力するので、下位桁を後ろから書き込む.
+		int off = chunkedLength - 1;
 		int shift = 0;
-		for (; off < chunkedLength; off++, shift += 4) {
+		for (; off >= position; off--, shift += 4) {
 			switch ((len & (0x0f << shift)) >> shift) {
 			case 0:
 				out[off] = (byte) ('0');
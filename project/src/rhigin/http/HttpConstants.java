@@ -10,6 +10,12 @@ public class HttpConstants {
 	/** メモリで受け取るContent-Type最大値. **/
 	public static final int MAX_CONTENT_LENGTH = 5 * 0x00100000;
 
+	/** Bodyを逐次受信する場合の、受信を一時停止する受信バッファサイズ. **/
+	public static final int BODY_STREAM_BUFFER_LENGTH = 0x00100000;
+
+	/** Bodyを逐次受信する場合の、受信待ちタイムアウト(ミリ秒). **/
+	public static final long BODY_STREAM_TIMEOUT = 30000L;
+
 	/** 送信Body情報をGZIP圧縮させないサイズ. **/
 	public static final int NOT_GZIP_BODY_LENGTH = 128;
 
@@ -28,9 +34,39 @@ public class HttpConstants {
 	/** CPU数に応じたワーカースレッド係数(1cpuに４スレッド). **/
 	public static final int WORKER_CPU_COEFFICIENT = 4;
 
+	/** ワーカースレッドの振り分け: 接続毎に固定のワーカースレッドで処理. **/
+	public static final String WORKER_DISPATCH_PINNED = "pinned";
+
+	/** ワーカースレッドの振り分け: 負荷の少ないワーカースレッドに登録して、空いているワーカースレッドが横取りして処理. **/
+	public static final String WORKER_DISPATCH_STEAL = "steal";
+
+	/** デフォルトのワーカースレッドの振り分け. **/
+	public static final String WORKER_DISPATCH = WORKER_DISPATCH_PINNED;
+
+	/** デフォルトの仮想スレッドでのスクリプト同時実行数. **/
+	public static final int VIRTUAL_THREAD_LIMIT = 1024;
+
+	/** デフォルトのNioスレッド数. **/
+	public static final int NIO_THREAD = 1; // accept,read,writeを１つのスレッドで処理する.
+
+	/** デフォルトのkeep-aliveアイドルタイムアウト(ミリ秒). **/
+	public static final int KEEP_ALIVE_TIMEOUT = 15000;
+
+	/** デフォルトの１コネクションでのkeep-alive最大リクエスト数. **/
+	public static final int KEEP_ALIVE_MAX_REQUESTS = 100;
+
+	/** デフォルトの静的ファイルキャッシュサイズ(byte). **/
+	public static final long STATIC_CACHE_SIZE = 16L * 0x00100000;
+
+	/** デフォルトの静的ファイルキャッシュ対象の最大ファイルサイズ(byte). **/
+	public static final long STATIC_CACHE_FILE_SIZE = 0x00100000;
+
 	/** デフォルトのコンパイルキャッシュ数. **/
 	public static final int COMPILE_CACHE_SIZE = 128;
 
+	/** デフォルトのexecutejsコンパイルキャッシュ数. **/
+	public static final int EXECUTE_JS_CACHE_SIZE = 64;
+
 	/** デフォルトのコンパイルルートフォルダ. **/
 	public static final String COMPILE_ROOT_DIR = ".";
 	
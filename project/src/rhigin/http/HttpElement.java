@@ -1,21 +1,33 @@
 package rhigin.http;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import rhigin.net.NioElement;
+import rhigin.net.NioReadBuffer;
 import rhigin.util.Xor128;
 
 /**
  * Http要素.
  */
 public final class HttpElement extends NioElement {
-	protected Request request = null;
+	protected volatile Request request = null;
 	protected int workerNo = -1;
-	protected boolean endReceive = false;
-	protected boolean endSend = false;
+	protected volatile boolean endReceive = false;
+	protected volatile boolean endSend = false;
+	protected volatile boolean keepAlive = false;
+	protected volatile long idleTime = 0L;
+	protected int requestCount = 0;
 
 	protected HttpPostBodyFile httpPostBodyFile = null;
+	protected HttpChunkedDecoder chunkedDecoder = null;
+	protected ByteArrayOutputStream chunkedBody = null;
+	protected volatile HttpBodyInputStream bodyInputStream = null;
+
+	// ワーカースレッドでの実行状態(0: 待機, 1: 実行中, 2: 実行中に再実行要求あり).
+	private final AtomicInteger executeState = new AtomicInteger(0);
 
 	public void clear() {
 		super.clear();
@@ -24,13 +36,68 @@ public final class HttpElement extends NioElement {
 			httpPostBodyFile.close();
 		}
 		httpPostBodyFile = null;
+		chunkedDecoder = null;
+		chunkedBody = null;
+		// Body受信待ちのスレッドを起こす.
+		final HttpBodyInputStream in = bodyInputStream;
+		if (in != null) {
+			in.wakeup();
+		}
 	}
 
 	/**
 	 * 受信バッファを破棄.
+	 * keep-aliveの場合は、次のリクエストを受信するため破棄しない.
 	 */
 	public void destroyBuffer() {
-		super.buffer = null;
+		// Bodyを逐次受信している場合も破棄しない.
+		if (!keepAlive && bodyInputStream == null) {
+			final NioReadBuffer b = super.buffer;
+			super.buffer = null;
+			// スラブをフリーリストに戻す.
+			if (b != null) {
+				b.clear();
+			}
+		}
+	}
+
+	/**
+	 * keep-alive用に次のリクエスト受信状態にリセット.
+	 * この処理はレスポンス送信が完了した後に呼び出されます.
+	 */
+	public void resetKeepAlive() {
+		request = null;
+		chunkedDecoder = null;
+		chunkedBody = null;
+		bodyInputStream = null;
+		endReceive = false;
+		idleTime = System.currentTimeMillis();
+		endSend = false;
+	}
+
+	public void setKeepAlive(boolean f) {
+		keepAlive = f;
+	}
+
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setIdleTime(long t) {
+		idleTime = t;
+	}
+
+	public long getIdleTime() {
+		return idleTime;
+	}
+
+	/**
+	 * 受信したリクエスト数をカウントアップ.
+	 * 
+	 * @return int 今回を含めたリクエスト数が返却されます.
+	 */
+	public int incRequestCount() {
+		return ++requestCount;
 	}
 
 	public void setRequest(Request request) {
@@ -49,6 +116,34 @@ public final class HttpElement extends NioElement {
 		return workerNo;
 	}
 
+	/**
+	 * ワーカースレッドでの実行開始.
+	 * 既に他のワーカースレッドで実行中の場合は、再実行要求を設定します.
+	 * 
+	 * @return boolean [true]の場合、実行可能です.
+	 */
+	protected boolean startExecute() {
+		int s;
+		while (true) {
+			if ((s = executeState.get()) == 0) {
+				if (executeState.compareAndSet(0, 1)) {
+					return true;
+				}
+			} else if (s == 2 || executeState.compareAndSet(1, 2)) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * ワーカースレッドでの実行終了.
+	 * 
+	 * @return boolean [true]の場合、実行中に再実行要求がありました.
+	 */
+	protected boolean endExecute() {
+		return executeState.getAndSet(0) == 2;
+	}
+
 	public void setEndReceive(boolean f) {
 		endReceive = f;
 	}
@@ -84,4 +179,72 @@ public final class HttpElement extends NioElement {
 	public boolean isHttpPostBodyFile() {
 		return httpPostBodyFile != null;
 	}
+
+	/**
+	 * 大容量Body受付情報の後片付け.
+	 */
+	public void closeHttpPostBodyFile() {
+		if (httpPostBodyFile != null) {
+			httpPostBodyFile.close();
+			httpPostBodyFile = null;
+		}
+	}
+
+	/**
+	 * chunked受信用のデコーダを取得.
+	 * 
+	 * @return HttpChunkedDecoder
+	 */
+	public HttpChunkedDecoder getChunkedDecoder() {
+		if (chunkedDecoder == null) {
+			chunkedDecoder = new HttpChunkedDecoder();
+		}
+		return chunkedDecoder;
+	}
+
+	/**
+	 * chunked受信したBodyの格納先を取得.
+	 * 
+	 * @return ByteArrayOutputStream
+	 */
+	public ByteArrayOutputStream getChunkedBody() {
+		if (chunkedBody == null) {
+			chunkedBody = new ByteArrayOutputStream();
+		}
+		return chunkedBody;
+	}
+
+	/**
+	 * chunked受信情報をクリア.
+	 */
+	public void clearChunked() {
+		chunkedDecoder = null;
+		chunkedBody = null;
+	}
+
+	public void setBodyInputStream(HttpBodyInputStream in) {
+		bodyInputStream = in;
+	}
+
+	public HttpBodyInputStream getBodyInputStream() {
+		return bodyInputStream;
+	}
+
+	public boolean isBodyInputStream() {
+		return bodyInputStream != null;
+	}
+
+	/**
+	 * Body逐次受信の後片付け.
+	 * 以降の受信データは破棄されます.
+	 */
+	public void closeBodyInputStream() {
+		final HttpBodyInputStream in = bodyInputStream;
+		if (in != null) {
+			try {
+				in.close();
+			} catch (Exception e) {
+			}
+		}
+	}
 }
@@ -30,15 +30,54 @@ public class HttpInfo {
 	/** ワーカースレッド数. **/
 	private int workerThread = HttpConstants.WORKER_THREAD;
 
+	/** ワーカースレッドの振り分け方法(pinned or steal). **/
+	private String workerDispatch = HttpConstants.WORKER_DISPATCH;
+
+	/** スクリプトを仮想スレッドで実行するか(仮想スレッドが利用できるJDKのみ). **/
+	private boolean virtualThread = false;
+
+	/** 仮想スレッドでのスクリプト同時実行数. **/
+	private int virtualThreadLimit = HttpConstants.VIRTUAL_THREAD_LIMIT;
+
+	/** Nioスレッド数(read,writeを処理するSelector数). **/
+	private int nioThread = HttpConstants.NIO_THREAD;
+
+	/** HTTP keep-aliveを有効にするか. **/
+	private boolean keepAlive = true;
+
+	/** keep-aliveのアイドルタイムアウト(ミリ秒). **/
+	private int keepAliveTimeout = HttpConstants.KEEP_ALIVE_TIMEOUT;
+
+	/** １コネクションでのkeep-alive最大リクエスト数. **/
+	private int keepAliveMaxRequests = HttpConstants.KEEP_ALIVE_MAX_REQUESTS;
+
 	/** コンパイルキャッシュサイズ. **/
 	private int compileCacheSize = HttpConstants.COMPILE_CACHE_SIZE;
 
 	/** コンパイルキャッシュルートディレクトリ. **/
 	private String compileCacheRootDir = HttpConstants.COMPILE_ROOT_DIR;
+
+	/** 起動時に全スクリプトをコンパイルするか. **/
+	private boolean precompile = true;
+
+	/** 起動時コンパイルのスレッド数(0以下の場合はCPU数). **/
+	private int precompileThread = 0;
+
+	/** コンパイル結果(classファイル)の永続キャッシュ先. **/
+	private String compileClassCacheDir = null;
+	
+	/** executejsで受信したスクリプトのコンパイルキャッシュ数(0以下の場合は無効). **/
+	private int executeJsCacheSize = HttpConstants.EXECUTE_JS_CACHE_SIZE;
 	
 	/** 固定ファイル送信の場合の、キャッシュモード. **/
 	private boolean sendFileCacheMode = true;
 
+	/** 静的ファイルのメモリキャッシュサイズ(byte). **/
+	private long staticCacheSize = HttpConstants.STATIC_CACHE_SIZE;
+
+	/** 静的ファイルのメモリキャッシュ対象の最大ファイルサイズ(byte). **/
+	private long staticCacheFileSize = HttpConstants.STATIC_CACHE_FILE_SIZE;
+
 	public int getBacklog() {
 		return backlog;
 	}
@@ -95,6 +134,71 @@ public class HttpInfo {
 		this.workerThread = workerThread;
 	}
 
+	public String getWorkerDispatch() {
+		return workerDispatch;
+	}
+
+	public void setWorkerDispatch(String workerDispatch) {
+		this.workerDispatch = workerDispatch;
+	}
+
+	/**
+	 * ワーカースレッドの横取り(work stealing)を行うか取得.
+	 * 
+	 * @return boolean [true]の場合、横取りを行います.
+	 */
+	public boolean isWorkerSteal() {
+		return HttpConstants.WORKER_DISPATCH_STEAL.equalsIgnoreCase(workerDispatch);
+	}
+
+	public boolean isVirtualThread() {
+		return virtualThread;
+	}
+
+	public void setVirtualThread(boolean virtualThread) {
+		this.virtualThread = virtualThread;
+	}
+
+	public int getVirtualThreadLimit() {
+		return virtualThreadLimit;
+	}
+
+	public void setVirtualThreadLimit(int virtualThreadLimit) {
+		this.virtualThreadLimit = virtualThreadLimit;
+	}
+
+	public int getNioThread() {
+		return nioThread;
+	}
+
+	public void setNioThread(int nioThread) {
+		this.nioThread = nioThread;
+	}
+
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	public int getKeepAliveTimeout() {
+		return keepAliveTimeout;
+	}
+
+	public void setKeepAliveTimeout(int keepAliveTimeout) {
+		this.keepAliveTimeout = keepAliveTimeout;
+	}
+
+	public int getKeepAliveMaxRequests() {
+		return keepAliveMaxRequests;
+	}
+
+	public void setKeepAliveMaxRequests(int keepAliveMaxRequests) {
+		this.keepAliveMaxRequests = keepAliveMaxRequests;
+	}
+
 	public int getCompileCacheSize() {
 		return compileCacheSize;
 	}
@@ -110,6 +214,30 @@ public class HttpInfo {
 	public void setCompileCacheRootDir(String compileCacheRootDir) {
 		this.compileCacheRootDir = compileCacheRootDir;
 	}
+
+	public boolean isPrecompile() {
+		return precompile;
+	}
+
+	public void setPrecompile(boolean precompile) {
+		this.precompile = precompile;
+	}
+
+	public int getPrecompileThread() {
+		return precompileThread;
+	}
+
+	public void setPrecompileThread(int precompileThread) {
+		this.precompileThread = precompileThread;
+	}
+
+	public String getCompileClassCacheDir() {
+		return compileClassCacheDir;
+	}
+
+	public void setCompileClassCacheDir(String compileClassCacheDir) {
+		this.compileClassCacheDir = compileClassCacheDir;
+	}
 	
 	public boolean isSendFileCacheMode() {
 		return sendFileCacheMode;
@@ -118,6 +246,30 @@ public class HttpInfo {
 	public void setSendFileCacheMode(boolean sendFileCacheMode) {
 		this.sendFileCacheMode = sendFileCacheMode;
 	}
+
+	public int getExecuteJsCacheSize() {
+		return executeJsCacheSize;
+	}
+
+	public void setExecuteJsCacheSize(int executeJsCacheSize) {
+		this.executeJsCacheSize = executeJsCacheSize;
+	}
+
+	public long getStaticCacheSize() {
+		return staticCacheSize;
+	}
+
+	public void setStaticCacheSize(long staticCacheSize) {
+		this.staticCacheSize = staticCacheSize;
+	}
+
+	public long getStaticCacheFileSize() {
+		return staticCacheFileSize;
+	}
+
+	public void setStaticCacheFileSize(long staticCacheFileSize) {
+		this.staticCacheFileSize = staticCacheFileSize;
+	}
 	
 	/**
 	 * Http設定データを取得.
@@ -174,6 +326,46 @@ public class HttpInfo {
 					java.lang.Runtime.getRuntime().availableProcessors() * HttpConstants.WORKER_CPU_COEFFICIENT);
 		}
 
+		o = conf.get("workerDispatch");
+		if (o != null) {
+			// 不明な値の場合は[pinned].
+			info.setWorkerDispatch(("" + o).trim());
+		}
+
+		o = conf.get("virtualThread");
+		if (o != null && Converter.isBool(o)) {
+			info.setVirtualThread(Converter.convertBool(o));
+		}
+
+		o = conf.get("virtualThreadLimit");
+		if (o != null && Converter.isNumeric(o)) {
+			info.setVirtualThreadLimit(Converter.convertInt(o));
+		}
+
+		o = conf.get("nioThread");
+		if (o != null && Converter.isNumeric(o)) {
+			info.setNioThread(Converter.convertInt(o));
+		}
+		// Nioスレッドが 0以下 の場合は、CPU数に応じて割当を行う.
+		if (info.getNioThread() <= 0) {
+			info.setNioThread(java.lang.Runtime.getRuntime().availableProcessors());
+		}
+
+		o = conf.get("keepAlive");
+		if (o != null && Converter.isBool(o)) {
+			info.setKeepAlive(Converter.convertBool(o));
+		}
+
+		o = conf.get("keepAliveTimeout");
+		if (o != null && Converter.isNumeric(o)) {
+			info.setKeepAliveTimeout(Converter.convertInt(o));
+		}
+
+		o = conf.get("keepAliveMaxRequests");
+		if (o != null && Converter.isNumeric(o)) {
+			info.setKeepAliveMaxRequests(Converter.convertInt(o));
+		}
+
 		o = conf.get("compileCacheSize");
 		if (o != null && Converter.isNumeric(o)) {
 			info.setCompileCacheSize(Converter.convertInt(o));
@@ -183,9 +375,39 @@ public class HttpInfo {
 		if (o != null) {
 			info.setCompileCacheRootDir("" + o);
 		}
+
+		o = conf.get("precompile");
+		if (o != null && Converter.isBool(o)) {
+			info.setPrecompile(Converter.convertBool(o));
+		}
+
+		o = conf.get("precompileThread");
+		if (o != null && Converter.isNumeric(o)) {
+			info.setPrecompileThread(Converter.convertInt(o));
+		}
+
+		o = conf.get("compileClassCacheDir");
+		if (o != null && !("" + o).isEmpty()) {
+			info.setCompileClassCacheDir("" + o);
+		}
 		o = conf.get("sendFileCacheMode");
 		if (o != null && Converter.isBool(o)) {
 			info.setSendFileCacheMode(Converter.convertBool(o));
 		}
+
+		o = conf.get("executeJsCacheSize");
+		if (o != null && Converter.isNumeric(o)) {
+			info.setExecuteJsCacheSize(Converter.convertInt(o));
+		}
+
+		o = conf.get("staticCacheSize");
+		if (o != null && Converter.isNumeric(o)) {
+			info.setStaticCacheSize(Converter.convertLong(o));
+		}
+
+		o = conf.get("staticCacheFileSize");
+		if (o != null && Converter.isNumeric(o)) {
+			info.setStaticCacheFileSize(Converter.convertLong(o));
+		}
 	}
 }
@@ -0,0 +1,451 @@
+package rhigin.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import rhigin.http.client.HttpClientPool;
+import rhigin.logs.LogFactory;
+import rhigin.net.NioReadBuffer;
+import rhigin.scripts.compile.CompileCache;
+import rhigin.scripts.compile.CompileClassCache;
+import rhigin.scripts.compile.SourceCompileCache;
+import rhigin.util.ArrayMap;
+import rhigin.util.Histogram;
+
+/**
+ * Httpリクエストのメトリクス.
+ *
+ * URLパスとHTTPステータス毎に、処理件数と処理時間のヒストグラムを保持します.
+ * カウンタはストライプ化(LongAdder)し、ヒストグラムは対数バケットで記録するので、
+ * ワーカースレッドからの記録はロックなしで行われます.
+ */
+public final class HttpMetrics {
+
+	/** 保持する最大URLパス数. これを超えた場合は[OTHER_PATH]にまとめます. **/
+	private static final int MAX_PATH_LENGTH = 1024;
+
+	/** 最大パス数を超えた場合のパス名. **/
+	private static final String OTHER_PATH = "_other";
+
+	/** 取得するパーセンタイル. **/
+	private static final double[] PERCENTILES = new double[] { 0.5d, 0.9d, 0.99d, 0.999d };
+	private static final String[] PERCENTILE_NAMES = new String[] { "p50", "p90", "p99", "p999" };
+
+	/** シングルトン. **/
+	private static final HttpMetrics INSTANCE = new HttpMetrics();
+
+	/**
+	 * オブジェクトを取得.
+	 *
+	 * @return HttpMetrics
+	 */
+	public static final HttpMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/** URLパス単位のメトリクス. **/
+	private static final class PathMetrics {
+		// HTTPステータス(0 - 599)毎のヒストグラム.
+		final AtomicReferenceArray<Histogram> status = new AtomicReferenceArray<Histogram>(600);
+
+		Histogram get(int s) {
+			if (s < 0 || s >= 600) {
+				s = 0;
+			}
+			Histogram ret = status.get(s);
+			if (ret == null) {
+				status.compareAndSet(s, null, new Histogram());
+				ret = status.get(s);
+			}
+			return ret;
+		}
+	}
+
+	private final ConcurrentHashMap<String, PathMetrics> paths = new ConcurrentHashMap<String, PathMetrics>();
+	private final LongAdder requestCount = new LongAdder();
+	private final LongAdder errorCount = new LongAdder();
+	private final AtomicLong inFlight = new AtomicLong(0L);
+	private volatile long startTime = System.currentTimeMillis();
+	private volatile HttpWorkerThread[] workers = null;
+
+	private HttpMetrics() {
+	}
+
+	/**
+	 * メトリクスをリセット.
+	 */
+	public void reset() {
+		paths.clear();
+		requestCount.reset();
+		errorCount.reset();
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * ワーカースレッド群を設定.
+	 *
+	 * @param w
+	 *            キュー数を取得するワーカースレッド群を設定します.
+	 */
+	protected void setWorkers(HttpWorkerThread[] w) {
+		workers = w;
+	}
+
+	/**
+	 * リクエスト処理開始.
+	 *
+	 * @return long 開始時間(ナノ秒)が返却されます.
+	 */
+	public long start() {
+		inFlight.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	/**
+	 * リクエスト処理終了.
+	 *
+	 * @param path
+	 *            URLパスを設定します.
+	 * @param status
+	 *            HTTPステータスを設定します.
+	 * @param startTime
+	 *            [start]で取得した開始時間(ナノ秒)を設定します.
+	 */
+	public void end(String path, int status, long startTime) {
+		final long micros = (System.nanoTime() - startTime) / 1000L;
+		inFlight.decrementAndGet();
+		requestCount.increment();
+		if (status >= 500 || status <= 0) {
+			errorCount.increment();
+		}
+		if (path == null) {
+			path = OTHER_PATH;
+		}
+		PathMetrics p = paths.get(path);
+		if (p == null) {
+			if (paths.size() >= MAX_PATH_LENGTH) {
+				path = OTHER_PATH;
+			}
+			p = new PathMetrics();
+			final PathMetrics old = paths.putIfAbsent(path, p);
+			if (old != null) {
+				p = old;
+			}
+		}
+		p.get(status).record(micros);
+	}
+
+	/**
+	 * 総リクエスト数を取得.
+	 *
+	 * @return long
+	 */
+	public long getRequestCount() {
+		return requestCount.sum();
+	}
+
+	/**
+	 * 処理中のリクエスト数を取得.
+	 *
+	 * @return long
+	 */
+	public long getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * ワーカースレッド毎のキュー数を取得.
+	 *
+	 * @return int[]
+	 */
+	public int[] getWorkerQueueSizes() {
+		final HttpWorkerThread[] w = workers;
+		if (w == null) {
+			return new int[0];
+		}
+		final int len = w.length;
+		final int[] ret = new int[len];
+		for (int i = 0; i < len; i++) {
+			ret[i] = w[i].getQueueSize();
+		}
+		return ret;
+	}
+
+	/**
+	 * ワーカースレッド毎の横取り(work stealing)数を取得.
+	 *
+	 * @return long[]
+	 */
+	public long[] getWorkerStealCounts() {
+		final HttpWorkerThread[] w = workers;
+		if (w == null) {
+			return new long[0];
+		}
+		final int len = w.length;
+		final long[] ret = new long[len];
+		for (int i = 0; i < len; i++) {
+			ret[i] = w[i].getStealCount();
+		}
+		return ret;
+	}
+
+	/**
+	 * メトリクスをMap形式で取得.
+	 *
+	 * @return Map
+	 */
+	@SuppressWarnings("rawtypes")
+	public Map toMap() {
+		final long now = System.currentTimeMillis();
+		final long count = requestCount.sum();
+		final long uptime = Math.max(1L, now - startTime);
+		final Map<String, Object> ret = new ArrayMap<String, Object>();
+		ret.put("uptime", uptime);
+		ret.put("requests", count);
+		ret.put("errors", errorCount.sum());
+		ret.put("inFlight", inFlight.get());
+		ret.put("requestsPerSecond", (double) count * 1000d / (double) uptime);
+
+		final int[] qs = getWorkerQueueSizes();
+		final List<Object> queues = new ArrayList<Object>(qs.length);
+		for (int i = 0; i < qs.length; i++) {
+			queues.add(qs[i]);
+		}
+		ret.put("workerQueues", queues);
+
+		final long[] ss = getWorkerStealCounts();
+		final List<Object> steals = new ArrayList<Object>(ss.length);
+		for (int i = 0; i < ss.length; i++) {
+			steals.add(ss[i]);
+		}
+		ret.put("workerSteals", steals);
+
+		// 処理時間.
+		final List<Object> list = new ArrayList<Object>();
+		final List<String> names = sortPaths();
+		final int len = names.size();
+		for (int i = 0; i < len; i++) {
+			final String name = names.get(i);
+			final PathMetrics p = paths.get(name);
+			if (p == null) {
+				continue;
+			}
+			for (int s = 0; s < 600; s++) {
+				final Histogram h = p.status.get(s);
+				if (h == null) {
+					continue;
+				}
+				final long[] pv = h.getPercentiles(PERCENTILES);
+				final Map<String, Object> m = new ArrayMap<String, Object>();
+				m.put("path", name);
+				m.put("status", s);
+				m.put("count", h.getCount());
+				m.put("sum", h.getSum());
+				m.put("max", h.getMax());
+				for (int j = 0; j < pv.length; j++) {
+					m.put(PERCENTILE_NAMES[j], pv[j]);
+				}
+				list.add(m);
+			}
+		}
+		ret.put("latency", list);
+
+		// コンパイルキャッシュ.
+		final CompileCache cc = CompileCache.getCache();
+		if (cc != null) {
+			final Map<String, Object> m = new ArrayMap<String, Object>();
+			m.put("size", cc.size());
+			m.put("hit", cc.getHitCount());
+			m.put("miss", cc.getMissCount());
+			m.put("compile", cc.getCompileCount());
+			m.put("compileTime", cc.getCompileTime());
+			final CompileClassCache ccc = cc.getClassCache();
+			if (ccc != null) {
+				m.put("classCacheLoad", ccc.getLoadCount());
+				m.put("classCacheStore", ccc.getStoreCount());
+			}
+			ret.put("compileCache", m);
+		}
+
+		// 静的ファイルキャッシュ.
+		final StaticFileCache sfc = Http.getStaticFileCache();
+		if (sfc != null) {
+			final Map<String, Object> m = new ArrayMap<String, Object>();
+			m.put("count", sfc.count());
+			m.put("size", sfc.size());
+			m.put("hit", sfc.getHitCount());
+			m.put("miss", sfc.getMissCount());
+			ret.put("staticFileCache", m);
+		}
+
+		// URLパスの振り分け先テーブル.
+		final HttpRouteTable rt = Http.getRouteTable();
+		if (rt != null) {
+			final Map<String, Object> m = new ArrayMap<String, Object>();
+			m.put("size", rt.size());
+			m.put("hit", rt.getHitCount());
+			m.put("miss", rt.getMissCount());
+			ret.put("routeTable", m);
+		}
+
+		// executejsのコンパイルキャッシュ.
+		final SourceCompileCache ejc = Http.getExecuteJsCache();
+		if (ejc != null) {
+			final Map<String, Object> m = new ArrayMap<String, Object>();
+			m.put("size", ejc.size());
+			m.put("hit", ejc.getHitCount());
+			m.put("miss", ejc.getMissCount());
+			ret.put("executeJsCache", m);
+		}
+		ret.put("httpClient", HttpClientPool.getInstance().toMap());
+		ret.put("readBufferPool", NioReadBuffer.poolSize());
+		ret.put("logDropped", LogFactory.getDroppedCount());
+		return ret;
+	}
+
+	/**
+	 * メトリクスをPrometheusのテキスト形式で取得.
+	 *
+	 * @return String
+	 */
+	public String toPrometheus() {
+		final StringBuilder buf = new StringBuilder(4096);
+		final long count = requestCount.sum();
+		gauge(buf, "rhigin_http_uptime_seconds", "gauge", (System.currentTimeMillis() - startTime) / 1000L);
+		gauge(buf, "rhigin_http_requests_total", "counter", count);
+		gauge(buf, "rhigin_http_errors_total", "counter", errorCount.sum());
+		gauge(buf, "rhigin_http_in_flight", "gauge", inFlight.get());
+
+		final int[] qs = getWorkerQueueSizes();
+		buf.append("# TYPE rhigin_http_worker_queue gauge\n");
+		for (int i = 0; i < qs.length; i++) {
+			buf.append("rhigin_http_worker_queue{worker=\"").append(i).append("\"} ").append(qs[i]).append("\n");
+		}
+		final long[] ss = getWorkerStealCounts();
+		buf.append("# TYPE rhigin_http_worker_steals_total counter\n");
+		for (int i = 0; i < ss.length; i++) {
+			buf.append("rhigin_http_worker_steals_total{worker=\"").append(i).append("\"} ").append(ss[i]).append("\n");
+		}
+
+		// 処理時間(秒).
+		buf.append("# TYPE rhigin_http_request_duration_seconds summary\n");
+		final List<String> names = sortPaths();
+		final int len = names.size();
+		for (int i = 0; i < len; i++) {
+			final String name = names.get(i);
+			final PathMetrics p = paths.get(name);
+			if (p == null) {
+				continue;
+			}
+			final String label = escapeLabel(name);
+			for (int s = 0; s < 600; s++) {
+				final Histogram h = p.status.get(s);
+				if (h == null) {
+					continue;
+				}
+				final long[] pv = h.getPercentiles(PERCENTILES);
+				final String lb = "path=\"" + label + "\",status=\"" + s + "\"";
+				for (int j = 0; j < pv.length; j++) {
+					buf.append("rhigin_http_request_duration_seconds{").append(lb).append(",quantile=\"")
+							.append(PERCENTILES[j]).append("\"} ").append(seconds(pv[j])).append("\n");
+				}
+				buf.append("rhigin_http_request_duration_seconds_sum{").append(lb).append("} ")
+						.append(seconds(h.getSum())).append("\n");
+				buf.append("rhigin_http_request_duration_seconds_count{").append(lb).append("} ")
+						.append(h.getCount()).append("\n");
+			}
+		}
+
+		// コンパイルキャッシュ.
+		final CompileCache cc = CompileCache.getCache();
+		if (cc != null) {
+			gauge(buf, "rhigin_compile_cache_size", "gauge", cc.size());
+			gauge(buf, "rhigin_compile_cache_hit_total", "counter", cc.getHitCount());
+			gauge(buf, "rhigin_compile_cache_miss_total", "counter", cc.getMissCount());
+			gauge(buf, "rhigin_compile_cache_compile_total", "counter", cc.getCompileCount());
+		}
+
+		// 静的ファイルキャッシュ.
+		final StaticFileCache sfc = Http.getStaticFileCache();
+		if (sfc != null) {
+			gauge(buf, "rhigin_static_cache_files", "gauge", sfc.count());
+			gauge(buf, "rhigin_static_cache_bytes", "gauge", sfc.size());
+			gauge(buf, "rhigin_static_cache_hit_total", "counter", sfc.getHitCount());
+			gauge(buf, "rhigin_static_cache_miss_total", "counter", sfc.getMissCount());
+		}
+		// URLパスの振り分け先テーブル.
+		final HttpRouteTable rt = Http.getRouteTable();
+		if (rt != null) {
+			gauge(buf, "rhigin_route_table_size", "gauge", rt.size());
+			gauge(buf, "rhigin_route_table_hit_total", "counter", rt.getHitCount());
+			gauge(buf, "rhigin_route_table_miss_total", "counter", rt.getMissCount());
+		}
+		// executejsのコンパイルキャッシュ.
+		final SourceCompileCache ejc = Http.getExecuteJsCache();
+		if (ejc != null) {
+			gauge(buf, "rhigin_execute_js_cache_size", "gauge", ejc.size());
+			gauge(buf, "rhigin_execute_js_cache_hit_total", "counter", ejc.getHitCount());
+			gauge(buf, "rhigin_execute_js_cache_miss_total", "counter", ejc.getMissCount());
+		}
+		// HttpClient接続プール.
+		final HttpClientPool hcp = HttpClientPool.getInstance();
+		gauge(buf, "rhigin_http_client_idle_connections", "gauge", hcp.getIdleCount());
+		gauge(buf, "rhigin_http_client_connect_total", "counter", hcp.getConnectCount());
+		gauge(buf, "rhigin_http_client_reuse_total", "counter", hcp.getReuseCount());
+		gauge(buf, "rhigin_http_client_evict_total", "counter", hcp.getEvictCount());
+		gauge(buf, "rhigin_http_client_connect_timeout_total", "counter", hcp.getConnectTimeoutCount());
+		gauge(buf, "rhigin_http_client_read_timeout_total", "counter", hcp.getReadTimeoutCount());
+		gauge(buf, "rhigin_http_client_dns_hit_total", "counter", hcp.getDnsHitCount());
+		gauge(buf, "rhigin_http_client_dns_miss_total", "counter", hcp.getDnsMissCount());
+		gauge(buf, "rhigin_read_buffer_pool", "gauge", NioReadBuffer.poolSize());
+		gauge(buf, "rhigin_log_dropped_total", "counter", LogFactory.getDroppedCount());
+		return buf.toString();
+	}
+
+	// パス名をソートして取得.
+	private final List<String> sortPaths() {
+		final List<String> ret = new ArrayList<String>(paths.size());
+		final Iterator<String> it = paths.keySet().iterator();
+		while (it.hasNext()) {
+			ret.add(it.next());
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	// Prometheusの１行出力.
+	private static final void gauge(StringBuilder buf, String name, String type, long value) {
+		buf.append("# TYPE ").append(name).append(" ").append(type).append("\n");
+		buf.append(name).append(" ").append(value).append("\n");
+	}
+
+	// マイクロ秒を秒に変換.
+	private static final String seconds(long micros) {
+		return String.valueOf((double) micros / 1000000d);
+	}
+
+	// Prometheusのラベル値をエスケープ.
+	private static final String escapeLabel(String v) {
+		final int len = v.length();
+		final StringBuilder buf = new StringBuilder(len + 8);
+		char c;
+		for (int i = 0; i < len; i++) {
+			c = v.charAt(i);
+			if (c == '\\' || c == '\"') {
+				buf.append('\\').append(c);
+			} else if (c == '\n') {
+				buf.append("\\n");
+			} else {
+				buf.append(c);
+			}
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,277 @@
+package rhigin.http;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rhigin.RhiginConstants;
+import rhigin.util.FileUtil;
+import rhigin.util.WatchPath;
+
+/**
+ * URLパスの振り分け先テーブル.
+ *
+ * URLパスに対する振り分け先(スクリプト、静的ファイル、gzipファイル、main.js、404)を
+ * 解決済みのフルパスで保持して、リクエスト毎のフルパス変換とファイル存在チェックを省略します.
+ * 存在しないURLパスも404として保持します(ネガティブキャッシュ).
+ * WatchPathの監視スレッドからの更新通知で、テーブル全体を作り直します.
+ */
+public class HttpRouteTable implements WatchPath.Listener {
+
+	/** 振り分け先：実行スクリプト. **/
+	public static final int SCRIPT = 0;
+
+	/** 振り分け先：main.js. **/
+	public static final int MAIN_JS = 1;
+
+	/** 振り分け先：静的ファイル(gzipファイルを含む). **/
+	public static final int FILE = 2;
+
+	/** 振り分け先：存在しない. **/
+	public static final int NOT_FOUND = 3;
+
+	/** デフォルトの最大管理数. **/
+	private static final int DEF_MAX_SIZE = 8192;
+
+	/** ブラウザ用のレスポンス返却を行うJSのパス. **/
+	private static final String[] HTML_JS_HEADS = new String[] {"/$", "/@"};
+
+	/** 振り分け先. **/
+	public static final class Route {
+		private final int type;
+		private final String path;
+
+		Route(int type, String path) {
+			this.type = type;
+			this.path = path;
+		}
+
+		/**
+		 * 振り分け先の種類を取得.
+		 *
+		 * @return int
+		 */
+		public int getType() {
+			return type;
+		}
+
+		/**
+		 * 振り分け先のフルパスを取得.
+		 *
+		 * @return String
+		 */
+		public String getPath() {
+			return path;
+		}
+	}
+
+	// テーブル(gzip対応有無で振り分け先が異なるので別管理).
+	private static final class Table {
+		final Map<String, Route> plain = new ConcurrentHashMap<String, Route>();
+		final Map<String, Route> gzip = new ConcurrentHashMap<String, Route>();
+
+		int size() {
+			return plain.size() + gzip.size();
+		}
+	}
+
+	// 現在のテーブル.
+	// 更新通知時は新しいテーブルに差し替えるので、解決中の古い結果は登録されない.
+	private volatile Table table = new Table();
+
+	// 最大管理数.
+	private final int maxSize;
+
+	// 統計情報.
+	private final AtomicLong hitCount = new AtomicLong(0L);
+	private final AtomicLong missCount = new AtomicLong(0L);
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param wp
+	 *            更新通知を受けるWatchPathを設定します.
+	 */
+	public HttpRouteTable(WatchPath wp) {
+		this(DEF_MAX_SIZE, wp);
+	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param maxSize
+	 *            最大管理数を設定します.
+	 * @param wp
+	 *            更新通知を受けるWatchPathを設定します.
+	 */
+	public HttpRouteTable(int maxSize, WatchPath wp) {
+		this.maxSize = maxSize <= 0 ? DEF_MAX_SIZE : maxSize;
+		if (wp != null) {
+			wp.addListener(this);
+		}
+	}
+
+	/**
+	 * WatchPathからの更新通知.
+	 *
+	 * @param name
+	 *            更新されたファイルのフルパスが設定されます.
+	 */
+	@Override
+	public void update(String name) {
+		clear();
+	}
+
+	/**
+	 * テーブルを全て削除.
+	 */
+	public void clear() {
+		table = new Table();
+	}
+
+	/**
+	 * 管理数を取得.
+	 *
+	 * @return int
+	 */
+	public int size() {
+		return table.size();
+	}
+
+	/**
+	 * ヒット数を取得.
+	 *
+	 * @return long
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * ミス数を取得.
+	 *
+	 * @return long
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * URLパスの振り分け先を取得.
+	 *
+	 * @param wp
+	 *            WatchPathを設定します.
+	 * @param urlPath
+	 *            URLパスを設定します.
+	 * @param gzip
+	 *            クライアントがgzipに対応している場合は[true].
+	 * @return Route 振り分け先が返却されます.
+	 * @exception Exception
+	 *                例外.
+	 */
+	public Route get(WatchPath wp, String urlPath, boolean gzip) throws Exception {
+		final Table t = table;
+		final Map<String, Route> m = gzip ? t.gzip : t.plain;
+		Route ret = m.get(urlPath);
+		if (ret != null) {
+			hitCount.incrementAndGet();
+			return ret;
+		}
+		missCount.incrementAndGet();
+		ret = resolve(wp, urlPath, gzip);
+		// 存在しないURLパスが大量にアクセスされた場合に備えて、最大管理数を超えたら作り直す.
+		if (t.size() >= maxSize) {
+			if (table == t) {
+				table = new Table();
+			}
+		} else {
+			m.put(urlPath, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * ブラウザ用のレスポンス返却を行うJSのパスであるか判別.
+	 *
+	 * @param path
+	 *            対象のパスを設定します.
+	 * @return boolean [true]の場合、ブラウザ用のJSです.
+	 */
+	public static final boolean isBrowserJsPath(String path) {
+		int len = HTML_JS_HEADS.length;
+		for (int i = 0; i < len; i++) {
+			if (path.indexOf(HTML_JS_HEADS[i]) != -1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// URLパスの振り分け先を解決.
+	private final Route resolve(WatchPath wp, String urlPath, boolean gzip) throws Exception {
+		// アクセス対象のパスを取得.
+		String path = FileUtil.getFullPath(HttpConstants.ACCESS_PATH + urlPath);
+
+		// main.jsが存在する場合は、urlに関係なくmain.jsを実行.
+		if (path.endsWith("/") && wp.isFile(path + RhiginConstants.MAIN_JS)) {
+			return new Route(MAIN_JS, path + RhiginConstants.MAIN_JS);
+		}
+		// 最後が / で終わっている場合.
+		if (path.endsWith("/")) {
+			path += "index";
+		}
+		// 普通にファイル名として存在するかチェック.
+		if (gzip) {
+			// gzip対応.
+			if (path.endsWith("/index")) {
+				if (wp.isFile(path + ".html.gz")) {
+					return new Route(FILE, path + ".html.gz");
+				} else if (wp.isFile(path + ".htm.gz")) {
+					return new Route(FILE, path + ".htm.gz");
+				} else if (wp.isFile(path + ".html")) {
+					return new Route(FILE, path + ".html");
+				} else if (wp.isFile(path + ".htm")) {
+					return new Route(FILE, path + ".htm");
+				}
+			} else if (path.endsWith(".js")) {
+				// ただし[.js]に対しては、サーバ実行なので、中身が見れないようにする.
+				// 例外としてブラウザのJSとしてアクセス許可されているパスの場合はファイル返却として処理する.
+				if (isBrowserJsPath(path)) {
+					if (wp.isFile(path + ".gz")) {
+						return new Route(FILE, path + ".gz");
+					} else if (wp.isFile(path)) {
+						return new Route(FILE, path);
+					}
+				}
+			// その他ファイルが存在する場合.
+			} else if (wp.isFile(path)) {
+				return new Route(FILE, path);
+			}
+		} else {
+			// gzip非対応.
+			if (path.endsWith("/index")) {
+				if (wp.isFile(path + ".html")) {
+					return new Route(FILE, path + ".html");
+				} else if (wp.isFile(path + ".htm")) {
+					return new Route(FILE, path + ".htm");
+				}
+			} else if (path.endsWith(".js")) {
+				// ただし[.js]に対しては、サーバ実行なので、中身が見れないようにする.
+				// 例外としてブラウザのJSとしてアクセス許可されているパスの場合はファイル返却として処理する.
+				if (isBrowserJsPath(path) && wp.isFile(path)) {
+					return new Route(FILE, path);
+				}
+			// その他ファイルが存在する場合.
+			} else if (wp.isFile(path)) {
+				return new Route(FILE, path);
+			}
+		}
+		// 実行スクリプトで処理する.
+		path += ".js";
+		if (!wp.isFile(path)) {
+			// 存在しない場合.
+			return new Route(NOT_FOUND, path);
+		}
+		return new Route(SCRIPT, path);
+	}
+}
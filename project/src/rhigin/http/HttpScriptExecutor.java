@@ -0,0 +1,109 @@
+package rhigin.http;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import rhigin.logs.Log;
+import rhigin.logs.LogFactory;
+import rhigin.scripts.ScriptThreadState;
+import rhigin.util.VirtualThreads;
+
+/**
+ * 仮想スレッドでのスクリプト実行.
+ *
+ * ワーカースレッドで受信したリクエストのスクリプト実行を、リクエスト毎の仮想スレッドで処理します.
+ * 同時実行数は上限で制限され、上限に達した場合はワーカースレッドが空きを待ちます.
+ */
+final class HttpScriptExecutor {
+	private static final Log LOG = LogFactory.create();
+
+	private final ExecutorService executor;
+	private final Semaphore limit;
+	private final int limitLength;
+	private final MimeType mime;
+
+	private HttpScriptExecutor(ExecutorService executor, int limit, MimeType mime) {
+		this.executor = executor;
+		this.limit = new Semaphore(limit);
+		this.limitLength = limit;
+		this.mime = mime;
+	}
+
+	/**
+	 * 仮想スレッドでのスクリプト実行オブジェクトを生成.
+	 *
+	 * @param info
+	 *            Http情報を設定します.
+	 * @param mime
+	 *            MimeTypeオブジェクトを設定します.
+	 * @return HttpScriptExecutor 仮想スレッドが利用できない場合は[null]が返却されます.
+	 */
+	static final HttpScriptExecutor create(HttpInfo info, MimeType mime) {
+		final ExecutorService e = VirtualThreads.newExecutor();
+		if (e == null) {
+			LOG.warn(" virtual threads are not supported by this JDK, scripts run on worker threads.");
+			return null;
+		}
+		final int limit = info.getVirtualThreadLimit() <= 0 ? HttpConstants.VIRTUAL_THREAD_LIMIT
+				: info.getVirtualThreadLimit();
+		LOG.info(" start virtual thread execution: limit " + limit + ".");
+		return new HttpScriptExecutor(e, limit, mime);
+	}
+
+	/**
+	 * スクリプト実行.
+	 * 同時実行数が上限の場合は、空きが出るまで待機します.
+	 *
+	 * @param worker
+	 *            呼び出し元のワーカースレッドを設定します.
+	 * @param em
+	 *            受信完了した要素を設定します.
+	 * @throws InterruptedException
+	 *             割り込み例外.
+	 */
+	void execute(final HttpWorkerThread worker, final HttpElement em) throws InterruptedException {
+		limit.acquire();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					final ScriptThreadState state = ScriptThreadState.acquire();
+					try {
+						HttpWorkerThread.executeScript(em, mime);
+					} catch (Throwable t) {
+						em.clear();
+						LOG.debug("error", t);
+					} finally {
+						// 大容量Body受付情報が存在する場合は、後片付けをする.
+						em.closeHttpPostBodyFile();
+						// Bodyを逐次受信している場合は、後片付けをする.
+						em.closeBodyInputStream();
+						state.release();
+						limit.release();
+						worker.endExecute(em);
+					}
+				}
+			});
+		} catch (RejectedExecutionException re) {
+			limit.release();
+			throw re;
+		}
+	}
+
+	/**
+	 * 実行中のスクリプト数を取得.
+	 *
+	 * @return int
+	 */
+	int getRunning() {
+		return limitLength - limit.availablePermits();
+	}
+
+	/**
+	 * 終了処理.
+	 */
+	void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -5,10 +5,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.util.Date;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPOutputStream;
 
 import org.mozilla.javascript.Context;
@@ -28,6 +29,7 @@ import rhigin.logs.Log;
 import rhigin.logs.LogFactory;
 import rhigin.net.IpPermission;
 import rhigin.net.NetConstants;
+import rhigin.net.NioAsyncInputStream;
 import rhigin.net.NioReadBuffer;
 import rhigin.scripts.ExecuteScript;
 import rhigin.scripts.Json;
@@ -39,10 +41,10 @@ import rhigin.scripts.compile.CompileCache;
 import rhigin.scripts.function.RandomFunction;
 import rhigin.util.Alphabet;
 import rhigin.util.ArrayMap;
+import rhigin.util.AtomicNumber;
 import rhigin.util.Converter;
 import rhigin.util.DateConvert;
 import rhigin.util.FCipher;
-import rhigin.util.FileUtil;
 import rhigin.util.Wait;
 import rhigin.util.WatchPath;
 import rhigin.util.Xor128;
@@ -53,8 +55,8 @@ import rhigin.util.Xor128;
 public class HttpWorkerThread extends Thread {
 	private static final Log LOG = LogFactory.create();
 	private static final int TIMEOUT = 1000;
+	private static final int STEAL_TIMEOUT = 50;
 	private static final byte[] BLANK_BINARY = new byte[0];
-	private static final String[] HTML_JS_HEADS = new String[] {"/$", "/@"};
 	
 	// 初期化処理.
 	static {
@@ -65,12 +67,16 @@ public class HttpWorkerThread extends Thread {
 	}
 	
 	private final int no;
-	private final Queue<HttpElement> queue;
+	private final ConcurrentLinkedDeque<HttpElement> queue;
 	private final Wait wait;
 	private final MimeType mime;
 	private final byte[] tmpBuffer;
 	private final Xor128 xor128;
-
+	private final AtomicNumber queueSize = new AtomicNumber(0);
+	private final AtomicLong stealCount = new AtomicLong(0L);
+	private volatile boolean busy = false;
+	private HttpWorkerThread[] peers = null;
+	private HttpScriptExecutor scriptExecutor = null;
 
 	private volatile boolean stopFlag = true;
 	private volatile boolean endThreadFlag = false;
@@ -80,7 +86,7 @@ public class HttpWorkerThread extends Thread {
 		mime = m;
 
 		// HttpElement受付用.
-		queue = new ConcurrentLinkedQueue<HttpElement>();
+		queue = new ConcurrentLinkedDeque<HttpElement>();
 		wait = new Wait();
 
 		// テンポラリバッファを生成.
@@ -100,7 +106,10 @@ public class HttpWorkerThread extends Thread {
 	public void register(HttpElement em) throws IOException {
 		// ワーカースレッドに登録.
 		em.setWorkerNo(no);
-		em.setSendTempBinary(tmpBuffer);
+		// NioReactorで送信テンポラリバッファが設定されていない場合のみセット.
+		if (em.getSendTempBinary() == null) {
+			em.setSendTempBinary(tmpBuffer);
+		}
 		signal(em);
 	}
 
@@ -111,8 +120,108 @@ public class HttpWorkerThread extends Thread {
 	 * @throws IOException
 	 */
 	public void signal(HttpElement em) throws IOException {
+		queueSize.inc();
 		queue.offer(em);
 		wait.signal();
+		// 処理中の場合は、空いているワーカースレッドに横取りさせる.
+		if (busy && peers != null) {
+			wakeupIdle();
+		}
+	}
+
+	/**
+	 * 横取り(work stealing)対象のワーカースレッド群を設定.
+	 * 
+	 * @param w
+	 *            全ワーカースレッドを設定します. [null]の場合は横取りを行いません.
+	 */
+	protected void setPeers(HttpWorkerThread[] w) {
+		peers = w;
+	}
+
+	/**
+	 * 仮想スレッドでのスクリプト実行オブジェクトを設定.
+	 * 
+	 * @param e
+	 *            [null]の場合は、このワーカースレッドでスクリプトを実行します.
+	 */
+	protected void setScriptExecutor(HttpScriptExecutor e) {
+		scriptExecutor = e;
+	}
+
+	/**
+	 * 要素の実行終了.
+	 * 実行中に再実行要求があった場合は、再登録します.
+	 * 
+	 * @param em
+	 *            対象の要素を設定します.
+	 */
+	protected void endExecute(HttpElement em) {
+		if (em.endExecute()) {
+			try {
+				signal(em);
+			} catch (Exception e) {
+				LOG.debug("error", e);
+			}
+		}
+	}
+
+	/**
+	 * 処理中の要素と処理待ちのキュー数の合計を取得.
+	 * 
+	 * @return int
+	 */
+	public int getLoad() {
+		return queueSize.get() + (busy ? 1 : 0);
+	}
+
+	/**
+	 * 他のワーカースレッドから横取りした数を取得.
+	 * 
+	 * @return long
+	 */
+	public long getStealCount() {
+		return stealCount.get();
+	}
+
+	// 他のワーカースレッドのキューから横取り.
+	private final HttpElement steal() {
+		HttpElement em;
+		HttpWorkerThread w;
+		final HttpWorkerThread[] p = peers;
+		final int len = p.length;
+		for (int i = 1; i < len; i++) {
+			w = p[(no + i) % len];
+			if (w.queueSize.get() > 0 && (em = w.queue.pollLast()) != null) {
+				w.queueSize.dec();
+				stealCount.incrementAndGet();
+				return em;
+			}
+		}
+		return null;
+	}
+
+	// 空いているワーカースレッドを１つ起こす.
+	private final void wakeupIdle() throws IOException {
+		HttpWorkerThread w;
+		final HttpWorkerThread[] p = peers;
+		final int len = p.length;
+		for (int i = 1; i < len; i++) {
+			w = p[(no + i) % len];
+			if (!w.busy && w.queueSize.get() == 0) {
+				w.wait.signal();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 処理待ちのキュー数を取得.
+	 * 
+	 * @return int
+	 */
+	public int getQueueSize() {
+		return queueSize.get();
 	}
 
 	public void startThread() {
@@ -156,19 +265,28 @@ public class HttpWorkerThread extends Thread {
 		while (!endFlag && !stopFlag) {
 			try {
 				while (!endFlag && !stopFlag) {
-					if ((em = queue.poll()) == null) {
-						wait.await(TIMEOUT);
+					if ((em = queue.poll()) != null) {
+						queueSize.dec();
+					} else if (peers == null || (em = steal()) == null) {
+						wait.await(peers == null ? TIMEOUT : STEAL_TIMEOUT);
 						continue;
 					}
-					if (executionRequest(em, tmpBuffer, xor128)) {
+					if (scriptExecutor != null) {
+						// 仮想スレッドでスクリプトを実行.
+						if (em.startExecute()) {
+							executeVirtual(em);
+						}
+					} else if (peers == null) {
+						executeElement(em);
+					} else if (em.startExecute()) {
+						// 同一要素は複数のワーカースレッドで同時に処理しない.
+						busy = true;
 						try {
-							executeScript(em, mime);
+							executeElement(em);
 						} finally {
-							// 大容量Body受付情報が存在する場合は、後片付けをする.
-							if (em.isHttpPostBodyFile()) {
-								HttpPostBodyFile f = em.getHttpPostBodyFile();
-								f.close();
-							}
+							busy = false;
+							// 実行中に再実行要求があった場合は、再登録.
+							endExecute(em);
 						}
 					}
 					em = null;
@@ -189,6 +307,35 @@ public class HttpWorkerThread extends Thread {
 		return ret;
 	}
 
+	// 要素の処理.
+	private final void executeElement(HttpElement em) throws IOException {
+		if (executionRequest(em, tmpBuffer, xor128)) {
+			try {
+				executeScript(em, mime);
+			} finally {
+				// 大容量Body受付情報が存在する場合は、後片付けをする.
+				em.closeHttpPostBodyFile();
+				// Bodyを逐次受信している場合は、後片付けをする.
+				em.closeBodyInputStream();
+			}
+		}
+	}
+
+	// 受信完了した要素のスクリプトを仮想スレッドで実行.
+	private final void executeVirtual(HttpElement em) throws Exception {
+		boolean submit = false;
+		try {
+			if (executionRequest(em, tmpBuffer, xor128)) {
+				scriptExecutor.execute(this, em);
+				submit = true;
+			}
+		} finally {
+			if (!submit) {
+				endExecute(em);
+			}
+		}
+	}
+
 	/** Request処理. **/
 	protected static final boolean executionRequest(HttpElement em, byte[] tmpBuffer, Xor128 xor128)
 		throws IOException {
@@ -214,10 +361,19 @@ public class HttpWorkerThread extends Thread {
 			request = Analysis.getRequest(buffer, endPoint);
 			em.setRequest(request);
 			request.setElement(em);
+			// keep-aliveで処理するかセット.
+			em.setKeepAlive(isKeepAlive(request, em.incRequestCount()));
 		}
 
 		final String method = request.getMethod();
 
+		// POST以外でBodyが存在する場合は、Bodyを次のリクエストとして解析させないため、エラーで切断する.
+		if (!Alphabet.eq("post", method) && (request.getContentLength() > 0L || isChunked(request))) {
+			em.setKeepAlive(false);
+			errorResponse(request, em, 400, "Request body is not allowed for " + method + ".");
+			return false;
+		}
+
 		// OPTIONの場合は、Optionヘッダを返却.
 		if (Alphabet.eq("options", method)) {
 
@@ -229,9 +385,15 @@ public class HttpWorkerThread extends Thread {
 		else if (Alphabet.eq("post", method)) {
 			// ContentLengthを取得.
 			long contentLength = request.getContentLength();
-			if (contentLength <= -1L) {
-				// 存在しない場合はコネクション強制クローズ.
-				// chunkedの受信は対応しない.
+			// Transfer-EncodingがContentLengthより優先(RFC7230 3.3.3).
+			final boolean chunked = isChunked(request);
+			if (chunked && contentLength > -1L) {
+				// 両方存在する場合はContentLengthを無視して、処理後に切断する.
+				contentLength = -1L;
+				em.setKeepAlive(false);
+			}
+			if (contentLength <= -1L && !chunked) {
+				// ContentLengthもchunkedも存在しない場合はコネクション強制クローズ.
 				// 通信クローズ.
 				if (em != null) {
 					em.clear();
@@ -245,14 +407,27 @@ public class HttpWorkerThread extends Thread {
 				HttpPostBodyFile file = em.getHttpPostBodyFile(xor128);
 				if (buffer.size() > 0) {
 					int len;
+					long less;
 					final byte[] buf = tmpBuffer;
-					while ((len = buffer.read(buf)) > 0) {
-						file.write(buf, len);
+					if (chunked) {
+						// chunkedの場合は、終端までデコードして取得する.
+						final HttpChunkedDecoder decoder = em.getChunkedDecoder();
+						while ((len = decoder.read(buffer, buf, 0, buf.length)) > 0) {
+							file.write(buf, len);
+						}
+						contentLength = decoder.isEnd() ? file.getFileLength() : Long.MAX_VALUE;
+					} else {
+						// 次のリクエストを読み込まないようにContentLength分だけ取得する.
+						while ((less = contentLength - file.getFileLength()) > 0L &&
+							(len = buffer.read(buf, 0, (int) Math.min(less, (long) buf.length))) > 0) {
+							file.write(buf, len);
+						}
 					}
 					// 受信完了の場合.
 					if (file.getFileLength() >= contentLength) {
 						file.endWrite();
 						request.setBody(null);
+						em.clearChunked();
 						em.setEndReceive(true);
 						em.destroyBuffer();
 						return true;
@@ -262,13 +437,34 @@ public class HttpWorkerThread extends Thread {
 				return false;
 			}
 
-			// 制限以上のBodyデータを超える場合は通信切断する.
-			if (contentLength > HttpConstants.MAX_CONTENT_LENGTH) {
-				// 通信クローズ.
-				if (em != null) {
-					em.clear();
+			// chunkedの場合.
+			if (chunked) {
+				final HttpChunkedDecoder decoder = em.getChunkedDecoder();
+				final ByteArrayOutputStream body = em.getChunkedBody();
+				int len;
+				while ((len = decoder.read(buffer, tmpBuffer, 0, tmpBuffer.length)) > 0) {
+					body.write(tmpBuffer, 0, len);
+					// 制限以上のBodyデータを超える場合は、逐次受信に切り替える.
+					if (body.size() > HttpConstants.MAX_CONTENT_LENGTH) {
+						startBodyInputStream(em, request, -1L, decoder, body.toByteArray());
+						return true;
+					}
 				}
-				return false;
+				if (!decoder.isEnd()) {
+					// PostのBody受信中.
+					return false;
+				}
+				request.setBody(body.toByteArray());
+				em.clearChunked();
+				em.setEndReceive(true);
+				em.destroyBuffer();
+				return true;
+			}
+
+			// 制限以上のBodyデータを超える場合は、逐次受信する.
+			if (contentLength > HttpConstants.MAX_CONTENT_LENGTH) {
+				startBodyInputStream(em, request, contentLength, null, null);
+				return true;
 			}
 
 			// Body情報が受信完了かチェック.
@@ -296,33 +492,74 @@ public class HttpWorkerThread extends Thread {
 		return true;
 	}
 	
-	/** ブラウザ用のレスポンス返却を行うJSのパスであるか判別. **/
-	private static final boolean browserJsPath(String path) {
-		int len = HTML_JS_HEADS.length;
-		for(int i = 0; i < len; i ++) {
-			if(path.indexOf(HTML_JS_HEADS[i]) != -1) {
-				return true;
-			}
+	/** Transfer-Encodingがchunkedかチェック. **/
+	protected static final boolean isChunked(Request request) throws IOException {
+		final String te = request.getHeader("transfer-encoding");
+		return te != null && Alphabet.indexOf(te, "chunked") != -1;
+	}
+
+	/** Bodyを逐次受信するInputStreamを生成して、スクリプトを実行させる. **/
+	private static final void startBodyInputStream(HttpElement em, Request request, long contentLength,
+		HttpChunkedDecoder decoder, byte[] head) {
+		request.setBody(null);
+		// スクリプトでBodyが全て読み込まれるとは限らないので、keep-aliveは行わない.
+		em.setKeepAlive(false);
+		em.setBodyInputStream(new HttpBodyInputStream(em, contentLength, decoder, head,
+			HttpConstants.BODY_STREAM_TIMEOUT));
+		em.clearChunked();
+		em.setEndReceive(true);
+	}
+
+	/** keep-aliveで処理するかチェック. **/
+	protected static final boolean isKeepAlive(Request request, int requestCount) throws IOException {
+		final HttpInfo info = Http.getHttpInfo();
+		if (info == null || !info.isKeepAlive()) {
+			return false;
+		// 最大リクエスト数に達した場合.
+		} else if (info.getKeepAliveMaxRequests() > 0 && requestCount >= info.getKeepAliveMaxRequests()) {
+			return false;
 		}
-		return false;
+		final String connection = request.getHeader("connection");
+		// HTTP/1.1以降はcloseが指定されていない場合はkeep-alive.
+		if (!Alphabet.eq("HTTP/1.0", request.getVersion())) {
+			return connection == null || Alphabet.indexOf(connection, "close") == -1;
+		}
+		// HTTP/1.0はkeep-aliveが指定されている場合のみ.
+		return connection != null && Alphabet.indexOf(connection, "keep-alive") != -1;
 	}
 
 	/** Response処理. **/
-	@SuppressWarnings("rawtypes")
 	protected static final void executeScript(HttpElement em, MimeType mime) {
 		// 既に送信処理が終わっている場合.
 		if (em.isEndSend()) {
 			return;
 		}
-		final WatchPath wp = WatchPath.getInstance();
 		final Request req = em.getRequest();
+		// keep-aliveでリセット済みの場合.
+		if (req == null) {
+			return;
+		}
+		// 処理時間をメトリクスに記録.
+		final HttpMetrics metrics = HttpMetrics.getInstance();
+		final long startTime = metrics.start();
+		try {
+			executeRequest(em, req, mime);
+		} finally {
+			metrics.end(getPath(req.getUrl()), req.getResponseStatus(), startTime);
+		}
+	}
+
+	/** Request内容に対する処理. **/
+	@SuppressWarnings("rawtypes")
+	private static final void executeRequest(HttpElement em, Request req, MimeType mime) {
+		final WatchPath wp = WatchPath.getInstance();
 		final boolean minHeader = req.isMinHeader();
 		em.setRequest(null);
 		try {
 			
 			// AccessKeyが付与されていてrequestMethodがPOSTの場合.
 			String accessKey = req.getHeader(RhiginAccessKeyConstants.RHIGIN_ACCESSKEY_HTTP_HEADER);
-			if(accessKey != null && Alphabet.eq("post", req.getMethod())) {
+			if(accessKey != null && Alphabet.eq("post", req.getMethod()) && req.getBody() != null) {
 				// 暗号を解析.
 				byte[] b = RhiginAccessKeyByFCipher.decode(accessKey, req.getBody());
 				req.setBody(b);
@@ -411,114 +648,53 @@ public class HttpWorkerThread extends Thread {
 				return;
 			}
 
-			// アクセス対象のパスを取得.
-			String path = FileUtil.getFullPath(HttpConstants.ACCESS_PATH + urlPath);
-
-			// main.jsが存在する場合は、urlに関係なくmain.jsを実行.
-			if (!(path.endsWith("/") && wp.isFile(path + RhiginConstants.MAIN_JS))) {
-				// 最後が / で終わっている場合.
-				if (path.endsWith("/")) {
-					path += "index";
-				}
-				boolean useFlag = false;
-				// 普通にファイル名として存在するかチェック.
-				if (gzip) {
-					// gzip対応.
-					if (path.endsWith("/index")) {
-						if (wp.isFile(path + ".html.gz")) {
-							path += ".html.gz";
-							useFlag = true;
-						} else if (wp.isFile(path + ".htm.gz")) {
-							path += ".htm.gz";
-							useFlag = true;
-						} else if (wp.isFile(path + ".html")) {
-							path += ".html";
-							useFlag = true;
-						} else if (wp.isFile(path + ".htm")) {
-							path += ".htm";
-							useFlag = true;
-						}
-					} else {
-						// ただし[.js]に対しては、サーバ実行なので、中身が見れないようにする.
-						// 例外としてブラウザのJSとしてアクセス許可されているパスの場合はファイル返却として処理する.
-						if (path.endsWith(".js")) {
-							if(browserJsPath(path)) {
-								if (wp.isFile(path + ".gz")) {
-									path += ".gz";
-									useFlag = true;
-								} else if(wp.isFile(path)) {
-									useFlag = true;
-								}
-							}
-						// その他ファイルが存在する場合.
-						} else if(wp.isFile(path) || wp.isFile(".gz")) {
-							useFlag = true;
-						}
-					}
-				} else {
-					// gzip非対応.
-					if (path.endsWith("/index")) {
-						if (wp.isFile(path + ".html")) {
-							path += ".html";
-							useFlag = true;
-						} else if (wp.isFile(path + ".htm")) {
-							path += ".htm";
-							useFlag = true;
-						}
-					} else if(path.endsWith(".js")) {
-						// ただし[.js]に対しては、サーバ実行なので、中身が見れないようにする.
-						// 例外としてブラウザのJSとしてアクセス許可されているパスの場合はファイル返却として処理する.
-						if (browserJsPath(path) && wp.isFile(path)) {
-							useFlag = true;
-						}
-					// その他ファイルが存在する場合.
-					} else if(wp.isFile(path)) {
-						useFlag = true;
-					}
-				}
+			// URLパスの振り分け先を取得.
+			final HttpRouteTable.Route route = Http.getRouteTable().get(wp, urlPath, gzip);
+			final String path = route.getPath();
+			switch (route.getType()) {
+			case HttpRouteTable.NOT_FOUND:
+				// 存在しない場合.
+				errorResponse(req, em, 404);
+				return;
+			case HttpRouteTable.FILE:
 				// 存在する場合は、ファイル転送.
-				if (useFlag) {
-					Response res = new Response();
-					// キャッシュ通信が許可されている場合.
-					if(Http.getHttpInfo().isSendFileCacheMode()) {
-						// rfc822形式用にミリ秒を０で丸める.
-						long localFileTime = wp.getMtime(path);
-						localFileTime = (localFileTime / 1000L) * 1000L;
-						Date localFileDate = new Date(localFileTime);
-						// RequesのtHeaderに「if-modified-since」が存在する場合は、キャッシュ扱いで返却.
-						Object ifModifiedSince = req.get("if-modified-since");
-						if(ifModifiedSince != null && ifModifiedSince instanceof String) {
-							Date cacheDate = DateConvert.toRfc822((String)ifModifiedSince);
-							if(localFileDate.equals(cacheDate)) {
-								res.put("Last-Modified:", DateConvert.toRfc822(true, localFileDate));
-								if(gzip) {
-									res.put("Content-Type", mime.getUrl(path.substring(0, path.length() - 3)));
-								} else {
-									res.put("Content-Type", mime.getUrl(path.substring(0, path.length())));
-								}
-								res.setStatus(304);
-								sendResponse(req, gzip, em, 304, res, "");
-								return;
+				// 静的ファイルキャッシュで処理できる場合.
+				final StaticFileCache sfc = Http.getStaticFileCache();
+				final StaticFileCache.Element ce = sfc == null ? null : sfc.get(wp, mime, path);
+				if (ce != null) {
+					sendCacheFile(req, gzip, em, ce);
+					return;
+				}
+				Response res = new Response();
+				// キャッシュ通信が許可されている場合.
+				if(Http.getHttpInfo().isSendFileCacheMode()) {
+					// rfc822形式用にミリ秒を０で丸める.
+					long localFileTime = wp.getMtime(path);
+					localFileTime = (localFileTime / 1000L) * 1000L;
+					Date localFileDate = new Date(localFileTime);
+					// RequesのtHeaderに「if-modified-since」が存在する場合は、キャッシュ扱いで返却.
+					Object ifModifiedSince = req.get("if-modified-since");
+					if(ifModifiedSince != null && ifModifiedSince instanceof String) {
+						Date cacheDate = DateConvert.toRfc822((String)ifModifiedSince);
+						if(localFileDate.equals(cacheDate)) {
+							res.put("Last-Modified:", DateConvert.toRfc822(true, localFileDate));
+							if(gzip) {
+								res.put("Content-Type", mime.getUrl(path.substring(0, path.length() - 3)));
+							} else {
+								res.put("Content-Type", mime.getUrl(path.substring(0, path.length())));
 							}
+							res.setStatus(304);
+							sendResponse(req, gzip, em, 304, res, "");
+							return;
 						}
-						// キャッシュ情報じゃない場合は、最終更新日をセット.
-						// 現在のファイル日付をセット.
-						res.put("Last-Modified:", DateConvert.toRfc822(true, localFileDate));
 					}
-					res.setStatus(200);
-					sendFile(req, gzip, path, em, mime, 200, res);
-					return;
-				}
-				// 実行スクリプトで処理する.
-				path += ".js";
-				if(!wp.isFile(path)) {
-					// 存在しない場合.
-					errorResponse(req, em, 404);
-					return;
+					// キャッシュ情報じゃない場合は、最終更新日をセット.
+					// 現在のファイル日付をセット.
+					res.put("Last-Modified:", DateConvert.toRfc822(true, localFileDate));
 				}
-			} else {
-				// main.jsを実行させる.
-				path = path + RhiginConstants.MAIN_JS;
+				res.setStatus(200);
+				sendFile(req, gzip, path, em, mime, 200, res);
+				return;
 			}
 
 			String method = req.getMethod();
@@ -551,8 +727,8 @@ public class HttpWorkerThread extends Thread {
 				Response res = new Response();
 				res.setStatus(200);
 
-				// コンテキスト生成・設定.
-				RhiginContext context = new RhiginContext();
+				// コンテキスト取得・設定(スレッド単位で再利用).
+				RhiginContext context = ExecuteScript.recycleContext();
 				context.setAttribute("params", params);
 				context.setAttribute("request", req);
 				context.setAttribute("response", res);
@@ -563,7 +739,7 @@ public class HttpWorkerThread extends Thread {
 				try {
 					// スクリプトの実行.
 					ret = ExecuteScript.execute(context,
-							CompileCache.getCache().get(path, ScriptConstants.HEADER, ScriptConstants.FOOTER).getScript());
+							CompileCache.getCache().getByFullPath(path, ScriptConstants.HEADER, ScriptConstants.FOOTER).getScript());
 				} catch (Redirect redirect) {
 					// リダイレクト.
 					redirectResponse(req, em, redirect);
@@ -654,18 +830,20 @@ public class HttpWorkerThread extends Thread {
 
 	/** POSTパラメータを取得. **/
 	public static final Object postParams(Request req) throws IOException {
-		// 大容量ファイルの受け取りの場合は、パラメータ解析を行わない.
-		if (HttpConstants.POST_FILE_OUT_CONTENT_TYPE.equals(req.get("Content-Type"))) {
+		// 大容量ファイル、逐次受信の場合は、パラメータ解析を行わない.
+		if (HttpConstants.POST_FILE_OUT_CONTENT_TYPE.equals(req.get("Content-Type")) || req.getBody() == null) {
 			return null;
 		}
-		String v = req.getBodyText();
-		req.setBody(null);
-
-		// Body内容がJSON形式の場合.
+		// Body内容がJSON形式の場合は、文字列変換せずに直接解析.
 		String contentType = (String) req.get("content-type");
 		if (contentType.indexOf("application/json") == 0) {
-			return Json.decode(v);
-		} else if ("application/x-www-form-urlencoded".equals(contentType)) {
+			final Reader r = req.getBodyReader();
+			req.setBody(null);
+			return Json.decode(r);
+		}
+		String v = req.getBodyText();
+		req.setBody(null);
+		if ("application/x-www-form-urlencoded".equals(contentType)) {
 			return Analysis.paramsAnalysis(v, 0);
 		} else {
 			return Analysis.paramsAnalysis(v, 0);
@@ -708,15 +886,106 @@ public class HttpWorkerThread extends Thread {
 		em.destroyBuffer();
 		em.setEndReceive(true);
 		em.setEndSend(true);
+		final int ka = em.isKeepAlive() ? 1 : 0;
 		if(req.isMinHeader()) {
-			em.setSendBinary(OPSIONS_RESPONSE_M);
+			em.setSendBinary(OPSIONS_RESPONSE_M[ka]);
 		} else if(!req.isBlowserHeader()) {
-			em.setSendBinary(OPSIONS_RESPONSE_NB);
+			em.setSendBinary(OPSIONS_RESPONSE_NB[ka]);
 		} else {
-			em.setSendBinary(OPSIONS_RESPONSE);
+			em.setSendBinary(OPSIONS_RESPONSE[ka]);
 		}
 	}
 
+	/** キャッシュファイル送信. **/
+	protected static final void sendCacheFile(Request req, boolean gzip, HttpElement em, StaticFileCache.Element ce)
+		throws IOException {
+		final boolean cacheMode = Http.getHttpInfo().isSendFileCacheMode();
+		// gzip対応のクライアントのみgzipで送信(gzipファイルは非対応の場合、そのまま送信).
+		final boolean useGzip = gzip && ce.isGzip();
+		final String etag = ce.getEtag(useGzip);
+		// RequestのHeaderに「if-none-match」が存在する場合は、ETagで比較.
+		boolean notModified = false;
+		Object v = req.get("if-none-match");
+		if (v != null && v instanceof String) {
+			notModified = matchEtag((String) v, etag);
+		} else if (cacheMode) {
+			// RequestのHeaderに「if-modified-since」が存在する場合は、最終更新日で比較.
+			v = req.get("if-modified-since");
+			if (v != null && v instanceof String) {
+				final Date cacheDate = DateConvert.toRfc822((String) v);
+				notModified = cacheDate != null && cacheDate.getTime() == ce.getLastModifiedTime();
+			}
+		}
+		if (notModified) {
+			Response res = cacheFileResponse(ce, useGzip, etag, cacheMode);
+			res.remove("Content-Encoding");
+			res.setStatus(304);
+			sendResponse(req, false, em, 304, res, "");
+			return;
+		}
+		final byte[] body = ce.getBody(useGzip);
+		// ヘッダの種類毎に生成済みのヘッダを利用.
+		final int no = (req.isMinHeader() ? 0 : (!req.isBlowserHeader() ? 4 : 8)) + (useGzip ? 2 : 0)
+				+ (em.isKeepAlive() ? 1 : 0);
+		byte[] header = ce.getHeader(no);
+		if (header == null) {
+			header = stateResponse(req, 200, cacheFileResponse(ce, useGzip, etag, cacheMode), BLANK_BINARY,
+					(long) body.length);
+			ce.setHeader(no, header);
+		}
+		req.setResponseStatus(200);
+		em.setRequest(null);
+		em.destroyBuffer();
+		em.setEndReceive(true);
+		em.setEndSend(true);
+		em.setSendData(new ByteArrayInputStream(header));
+		em.setSendData(new ByteArrayInputStream(body));
+		em.startWrite();
+	}
+
+	/** キャッシュファイル送信用のResponseヘッダを生成. **/
+	private static final Response cacheFileResponse(StaticFileCache.Element ce, boolean useGzip, String etag,
+		boolean cacheMode) {
+		Response res = new Response();
+		if (useGzip) {
+			res.put("Content-Type", ce.getContentType());
+			res.put("Content-Encoding", "gzip");
+		} else {
+			res.put("Content-Type", ce.getFileContentType());
+		}
+		if (ce.isGzip()) {
+			res.put("Vary", "Accept-Encoding");
+		}
+		res.put("ETag", etag);
+		if (cacheMode) {
+			res.put("Last-Modified:", ce.getLastModified());
+		}
+		return res;
+	}
+
+	/** If-None-Matchの内容とETagを比較. **/
+	private static final boolean matchEtag(String ifNoneMatch, String etag) {
+		int p;
+		int b = 0;
+		String n;
+		final int len = ifNoneMatch.length();
+		while (b < len) {
+			if ((p = ifNoneMatch.indexOf(",", b)) == -1) {
+				p = len;
+			}
+			n = ifNoneMatch.substring(b, p).trim();
+			// 弱い比較.
+			if (n.startsWith("W/")) {
+				n = n.substring(2);
+			}
+			if ("*".equals(n) || etag.equals(n)) {
+				return true;
+			}
+			b = p + 1;
+		}
+		return false;
+	}
+
 	/** ファイル送信. **/
 	protected static final void sendFile(Request req, boolean gzip, String fileName, HttpElement em, MimeType mime, int status, Response header)
 		throws IOException {
@@ -770,6 +1039,10 @@ public class HttpWorkerThread extends Thread {
 			// 直接ファイルの場合は、そのまま転送.
 			if (body instanceof FileInputStream) {
 				len = (long) body.available();
+				// 別スレッドで生成するデータは、生成処理側でchunked形式にする.
+			} else if (body instanceof NioAsyncInputStream) {
+				len = null;
+				((NioAsyncInputStream) body).setChunked(true);
 				// それ以外の場合はchunked転送.
 			} else {
 				len = null;
@@ -864,6 +1137,7 @@ public class HttpWorkerThread extends Thread {
 	/** ステータス指定Response返却用バイナリの生成. **/
 	protected static final byte[] stateResponse(Request req, int state, Response header, byte[] b, Long contentLength)
 		throws IOException {
+		req.setResponseStatus(state);
 		// ContentLengthが-1で設定されている場合は、バイナリ長の長さをセットする.
 		if (contentLength != null && contentLength == -1L) {
 			contentLength = (long) b.length;
@@ -907,6 +1181,12 @@ public class HttpWorkerThread extends Thread {
 			// ContentLengthヘッダをセット.
 			buf.append("Content-Length:").append(contentLength).append("\r\n");
 		}
+		// keep-aliveの場合はコネクションを維持する.
+		if (req.element instanceof HttpElement && ((HttpElement) req.element).isKeepAlive()) {
+			buf.append("Connection:keep-alive\r\n");
+		} else {
+			buf.append("Connection:close\r\n");
+		}
 		buf.append("\r\n");
 		final byte[] foot = buf.toString().getBytes("UTF8");
 		buf = null;
@@ -966,10 +1246,10 @@ public class HttpWorkerThread extends Thread {
 		return ret;
 	}
 
-	/** Optionsレスポンス. **/
-	private static final byte[] OPSIONS_RESPONSE;
-	private static final byte[] OPSIONS_RESPONSE_NB;
-	private static final byte[] OPSIONS_RESPONSE_M;
+	/** Optionsレスポンス([0]:close, [1]:keep-alive). **/
+	private static final byte[][] OPSIONS_RESPONSE;
+	private static final byte[][] OPSIONS_RESPONSE_NB;
+	private static final byte[][] OPSIONS_RESPONSE_M;
 
 	/** ステータス指定レスポンス. **/
 	private static final byte[] STATE_RESPONSE_1;
@@ -978,21 +1258,29 @@ public class HttpWorkerThread extends Thread {
 	private static final byte[] STATE_RESPONSE_2_NB;
 	private static final byte[] STATE_RESPONSE_2_M;
 
+	/** Optionsレスポンスを[close], [keep-alive]で生成. **/
+	private static final byte[][] optionsResponse(String head) throws IOException {
+		return new byte[][] {
+			(head + "Connection:close\r\n" + "Content-Length:0\r\n\r\n").getBytes("UTF8"),
+			(head + "Connection:keep-alive\r\n" + "Content-Length:0\r\n\r\n").getBytes("UTF8")
+		};
+	}
+
 	static {
-		byte[] op;
+		byte[][] op;
 		byte[] s1;
 		byte[] s2;
 		byte[] c2;
-		byte[] op_nb;
+		byte[][] op_nb;
 		byte[] s2_nb;
-		byte[] op_m;
+		byte[][] op_m;
 		byte[] s2_m;
 		try {
 			final String serverName = RhiginConstants.NAME + "(" + RhiginConstants.VERSION + ")";
 			final String serverName_m = RhiginConstants.NAME + "_m(" + RhiginConstants.VERSION + ")";
 			
 			// ブラウザ用.
-			op = ("HTTP/1.1 200 OK\r\n"
+			op = optionsResponse("HTTP/1.1 200 OK\r\n"
 					+ "Allow:GET,POST,HEAD,OPTIONS\r\n"
 					+ "Cache-Control:no-cache\r\n"
 					+ "Pragma:no-cache\r\n"
@@ -1002,9 +1290,7 @@ public class HttpWorkerThread extends Thread {
 					+ "Access-Control-Allow-Headers:content-type,x-accel-buffering,*\r\n"
 					+ "Access-Control-Allow-Methods:GET,POST,HEAD,OPTIONS\r\n"
 					+ "Server:" + serverName + "\r\n"
-					+ "Connection:close\r\n"
-					+ "Content-Length:0\r\n\r\n"
-			).getBytes("UTF8");
+			);
 			s1 = ("HTTP/1.1 ").getBytes("UTF8");
 			// js返却用の出力.
 			s2 = ("\r\n"
@@ -1016,7 +1302,6 @@ public class HttpWorkerThread extends Thread {
 					+ "Access-Control-Allow-Headers:content-type,x-sccel-buffering,*\r\n"
 					+ "Access-Control-Allow-Methods:GET,POST,HEAD,OPTIONS\r\n"
 					+ "Server:" + serverName + "\r\n"
-					+ "Connection:close\r\n"
 			).getBytes("UTF8");
 			// 固定ファイルの出力.
 			c2 = ("\r\n"
@@ -1026,33 +1311,26 @@ public class HttpWorkerThread extends Thread {
 					+ "Access-Control-Allow-Headers:content-type,x-sccel-buffering,*\r\n"
 					+ "Access-Control-Allow-Methods:GET,POST,HEAD,OPTIONS\r\n"
 					+ "Server:" + serverName + "\r\n"
-					+ "Connection:close\r\n"
 			).getBytes("UTF8");
 			
 			// ブラウザアクセス以外.
-			op_nb = ("HTTP/1.1 200 OK\r\n"
+			op_nb = optionsResponse("HTTP/1.1 200 OK\r\n"
 					+ "Allow:GET,POST,HEAD,OPTIONS\r\n"
 					+ "X-Accel-Buffering:no\r\n"
 					+ "Server:" + serverName + "\r\n"
-					+ "Connection:close\r\n"
-					+ "Content-Length:0\r\n\r\n"
-			).getBytes("UTF8");
+			);
 			s2_nb = ("\r\n"
 					+ "X-Accel-Buffering:no\r\n"
 					+ "Server:" + serverName + "\r\n"
-					+ "Connection:close\r\n"
 			).getBytes("UTF8");
 			
 			// 最小ヘッダ.
-			op_m = ("HTTP/1.1 200 OK\r\n"
+			op_m = optionsResponse("HTTP/1.1 200 OK\r\n"
 					+ "Allow:GET,POST,HEAD,OPTIONS\r\n"
 					+ "Server:" + serverName_m + "\r\n"
-					+ "Connection:close\r\n"
-					+ "Content-Length:0\r\n\r\n"
-			).getBytes("UTF8");
+			);
 			s2_m = ("\r\n"
 					+ "Server:" + serverName_m + "\r\n"
-					+ "Connection:close\r\n"
 			).getBytes("UTF8");
 		} catch (Exception e) {
 			op = null;
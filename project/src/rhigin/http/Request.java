@@ -1,6 +1,10 @@
 package rhigin.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
 import rhigin.RhiginConstants;
 import rhigin.RhiginException;
@@ -16,6 +20,7 @@ public class Request extends Header {
 	protected static final String MIN_HEADER = RhiginConstants.NAME + "_m";
 	protected byte[] body = null;
 	protected Long contentLength = null;
+	protected int responseStatus = 0;
 
 	protected Request() {
 		super();
@@ -43,6 +48,29 @@ public class Request extends Header {
 		}
 	}
 
+	public Reader getBodyReader() {
+		try {
+			return new InputStreamReader(new ByteArrayInputStream(body), charset((String) get("content-type")));
+		} catch (RhiginException re) {
+			throw re;
+		} catch (Exception e) {
+			throw new RhiginException(500, e);
+		}
+	}
+
+	/**
+	 * Bodyを読み込むInputStreamを取得.
+	 * 大容量Body受付、またはBodyを逐次受信している場合のみ取得できます.
+	 * @return InputStream 存在しない場合は[null]が返却されます.
+	 */
+	public InputStream getBodyInputStream() {
+		HttpElement em = (HttpElement) element;
+		if (em.isHttpPostBodyFile()) {
+			return em.getHttpPostBodyFile().getInputStream();
+		}
+		return em.getBodyInputStream();
+	}
+
 	private static final String charset(String contentType) {
 		int p = Alphabet.indexOf(contentType, ";charset=");
 		if (p == -1) {
@@ -59,6 +87,22 @@ public class Request extends Header {
 		return contentType.substring(b, p).trim();
 	}
 
+	/**
+	 * 返却したHTTPステータスを設定.
+	 * @param status
+	 */
+	public void setResponseStatus(int status) {
+		this.responseStatus = status;
+	}
+
+	/**
+	 * 返却したHTTPステータスを取得.
+	 * @return int レスポンス未送信の場合は[0]が返却されます.
+	 */
+	public int getResponseStatus() {
+		return responseStatus;
+	}
+
 	public long getContentLength() throws IOException {
 		if (contentLength != null) {
 			return contentLength;
@@ -73,9 +117,15 @@ public class Request extends Header {
 
 	@Override
 	public Object get(Object key) {
-		if ("isBodyInputStream".equals(key) || "isBodyFile".equals(key)) {
+		if ("isBodyInputStream".equals(key)) {
+			HttpElement em = (HttpElement) element;
+			return em.isHttpPostBodyFile() || em.isBodyInputStream();
+		} else if ("isBodyFile".equals(key)) {
 			return ((HttpElement) element).isHttpPostBodyFile();
-		} else if ("inputStream".equals(key) || "body".equals(key) || "bodyFile".equals(key)) {
+		} else if ("inputStream".equals(key) || "body".equals(key)) {
+			InputStream in = getBodyInputStream();
+			return in == null ? null : JavaObject.wrapObject(in);
+		} else if ("bodyFile".equals(key)) {
 			HttpElement em = (HttpElement) element;
 			if (em.isHttpPostBodyFile()) {
 				return JavaObject.wrapObject(em.getHttpPostBodyFile().getInputStream());
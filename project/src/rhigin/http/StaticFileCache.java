@@ -0,0 +1,396 @@
+package rhigin.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import rhigin.util.DateConvert;
+import rhigin.util.WatchPath;
+
+/**
+ * 静的ファイルのメモリキャッシュ.
+ *
+ * アクセスされた静的ファイルの内容(通常とgzip圧縮)、ETag、生成済みレスポンスヘッダを保持します.
+ * キャッシュ内容はWatchPathの監視スレッドから更新通知を受けて破棄されます.
+ */
+public class StaticFileCache implements WatchPath.Listener {
+
+	/** gzip圧縮対象のmimeType. **/
+	private static final String[] GZIP_MIME = new String[] { "text/", "application/javascript",
+			"application/json", "application/xml", "image/svg+xml" };
+
+	/** キャッシュ要素. **/
+	protected static final class Element {
+		final WatchPath.StatObject stat;
+		final byte[] body;
+		final byte[] gzipBody;
+		final boolean gzipFile;
+		final String etag;
+		final String gzipEtag;
+		final String lastModified;
+		final long lastModifiedTime;
+		final String contentType;
+		final String fileContentType;
+		final long size;
+		// [ヘッダモード(3) * gzip有無(2) * keep-alive有無(2)]の生成済みヘッダ.
+		final byte[][] headers = new byte[12][];
+		volatile long accessTime;
+
+		Element(WatchPath.StatObject stat, byte[] body, byte[] gzipBody, boolean gzipFile, String contentType,
+				String fileContentType) {
+			final CRC32 crc = new CRC32();
+			crc.update(body, 0, body.length);
+			final String hash = new StringBuilder(Long.toHexString(crc.getValue())).append("-")
+					.append(Integer.toHexString(body.length)).toString();
+			final long mtime = (stat.getMtime() / 1000L) * 1000L;
+			this.stat = stat;
+			this.body = body;
+			this.gzipBody = gzipBody;
+			this.gzipFile = gzipFile;
+			this.etag = "\"" + hash + "\"";
+			this.gzipEtag = "\"" + hash + "-gz\"";
+			this.lastModifiedTime = mtime;
+			this.lastModified = DateConvert.toRfc822(true, new Date(mtime));
+			this.contentType = contentType;
+			this.fileContentType = fileContentType;
+			this.size = body.length + (gzipBody == null || gzipFile ? 0 : gzipBody.length);
+			this.accessTime = System.currentTimeMillis();
+		}
+
+		/**
+		 * 送信するBodyを取得.
+		 *
+		 * @param gzip
+		 *            gzip圧縮されたBodyを利用する場合は[true].
+		 * @return byte[]
+		 */
+		public byte[] getBody(boolean gzip) {
+			return gzip ? gzipBody : body;
+		}
+
+		/**
+		 * 送信するBodyに対するETagを取得.
+		 *
+		 * @param gzip
+		 *            gzip圧縮されたBodyを利用する場合は[true].
+		 * @return String
+		 */
+		public String getEtag(boolean gzip) {
+			return gzip ? gzipEtag : etag;
+		}
+
+		/**
+		 * gzip圧縮されたBodyが存在するかチェック.
+		 *
+		 * @return boolean
+		 */
+		public boolean isGzip() {
+			return gzipBody != null;
+		}
+
+		/**
+		 * ファイル自体がgzipファイルかチェック.
+		 *
+		 * @return boolean
+		 */
+		public boolean isGzipFile() {
+			return gzipFile;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public long getLastModifiedTime() {
+			return lastModifiedTime;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * ファイル自体のmimeTypeを取得.
+		 * gzipファイルをgzip非対応のクライアントにそのまま送信する場合に利用します.
+		 *
+		 * @return String
+		 */
+		public String getFileContentType() {
+			return fileContentType;
+		}
+
+		/**
+		 * 生成済みヘッダを取得.
+		 *
+		 * @param no
+		 *            ヘッダ番号を設定します.
+		 * @return byte[] 存在しない場合は[null]が返却されます.
+		 */
+		public byte[] getHeader(int no) {
+			return headers[no];
+		}
+
+		/**
+		 * 生成済みヘッダを設定.
+		 *
+		 * @param no
+		 *            ヘッダ番号を設定します.
+		 * @param header
+		 *            ヘッダ情報を設定します.
+		 */
+		public void setHeader(int no, byte[] header) {
+			headers[no] = header;
+		}
+	}
+
+	// キャッシュ情報.
+	private final Map<String, Element> cache = new ConcurrentHashMap<String, Element>();
+
+	// 最大キャッシュサイズ(byte).
+	private final long maxSize;
+
+	// キャッシュ対象の最大ファイルサイズ(byte).
+	private final long maxFileSize;
+
+	// 現在のキャッシュサイズ(byte).
+	private final AtomicLong size = new AtomicLong(0L);
+
+	// 統計情報.
+	private final AtomicLong hitCount = new AtomicLong(0L);
+	private final AtomicLong missCount = new AtomicLong(0L);
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param maxSize
+	 *            最大キャッシュサイズ(byte)を設定します.
+	 * @param maxFileSize
+	 *            キャッシュ対象の最大ファイルサイズ(byte)を設定します.
+	 * @param wp
+	 *            更新通知を受けるWatchPathを設定します.
+	 */
+	public StaticFileCache(long maxSize, long maxFileSize, WatchPath wp) {
+		this.maxSize = maxSize;
+		this.maxFileSize = maxFileSize > maxSize ? maxSize : maxFileSize;
+		if (wp != null) {
+			wp.addListener(this);
+		}
+	}
+
+	/**
+	 * WatchPathからの更新通知.
+	 *
+	 * @param name
+	 *            更新されたファイルのフルパスが設定されます.
+	 */
+	@Override
+	public void update(String name) {
+		remove(name);
+		if (name.endsWith(".gz")) {
+			remove(name.substring(0, name.length() - 3));
+		}
+	}
+
+	/**
+	 * キャッシュ情報を取得.
+	 * 存在しない場合は、ファイルを読み込んでキャッシュします.
+	 *
+	 * @param wp
+	 *            WatchPathを設定します.
+	 * @param mime
+	 *            MimeTypeを設定します.
+	 * @param path
+	 *            対象のファイルパスを設定します.
+	 * @return Element キャッシュ対象外の場合は[null]が返却されます.
+	 */
+	public Element get(WatchPath wp, MimeType mime, String path) {
+		final WatchPath.StatObject stat = wp.get(path);
+		if (stat == null || maxSize <= 0L || stat.getLength() > maxFileSize) {
+			return null;
+		}
+		Element ret = cache.get(path);
+		// WatchPathで管理しているStat情報が変わっていない場合は、キャッシュ利用.
+		if (ret != null && ret.stat == stat) {
+			ret.accessTime = System.currentTimeMillis();
+			hitCount.incrementAndGet();
+			return ret;
+		}
+		missCount.incrementAndGet();
+		try {
+			ret = load(mime, path, stat);
+		} catch (Exception e) {
+			return null;
+		}
+		final Element old = cache.put(path, ret);
+		if (old != null) {
+			size.addAndGet(-old.size);
+		}
+		if (size.addAndGet(ret.size) > maxSize) {
+			removeLru();
+		}
+		return ret;
+	}
+
+	/**
+	 * キャッシュ情報を削除.
+	 *
+	 * @param path
+	 *            対象のファイルパスを設定します.
+	 */
+	public void remove(String path) {
+		final Element e = cache.remove(path);
+		if (e != null) {
+			size.addAndGet(-e.size);
+		}
+	}
+
+	/**
+	 * キャッシュ情報を全て削除.
+	 */
+	public void clear() {
+		final Iterator<String> it = cache.keySet().iterator();
+		while (it.hasNext()) {
+			remove(it.next());
+		}
+	}
+
+	/**
+	 * キャッシュ数を取得.
+	 *
+	 * @return int
+	 */
+	public int count() {
+		return cache.size();
+	}
+
+	/**
+	 * 現在のキャッシュサイズ(byte)を取得.
+	 *
+	 * @return long
+	 */
+	public long size() {
+		return size.get();
+	}
+
+	/**
+	 * キャッシュヒット数を取得.
+	 *
+	 * @return long
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * キャッシュミス数を取得.
+	 *
+	 * @return long
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	// 最大サイズを超えた場合は、一番古いアクセスのものから削除.
+	private final void removeLru() {
+		String target;
+		long time;
+		Entry<String, Element> e;
+		Iterator<Entry<String, Element>> it;
+		while (size.get() > maxSize && !cache.isEmpty()) {
+			target = null;
+			time = Long.MAX_VALUE;
+			it = cache.entrySet().iterator();
+			while (it.hasNext()) {
+				e = it.next();
+				if (e.getValue().accessTime < time) {
+					time = e.getValue().accessTime;
+					target = e.getKey();
+				}
+			}
+			if (target == null) {
+				break;
+			}
+			remove(target);
+		}
+	}
+
+	// ファイルを読み込んでキャッシュ要素を作成.
+	private static final Element load(MimeType mime, String path, WatchPath.StatObject stat) throws IOException {
+		final byte[] body = readFile(path, stat.getLength());
+		final boolean gzipFile = path.endsWith(".gz");
+		final String contentType = mime.getUrl(gzipFile ? path.substring(0, path.length() - 3) : path);
+		byte[] gzipBody = null;
+		if (gzipFile) {
+			// 圧縮済みファイル.
+			gzipBody = body;
+		} else if (body.length > HttpConstants.NOT_GZIP_BODY_LENGTH && isGzipMime(contentType)) {
+			// 圧縮した結果が小さくなる場合のみ保持.
+			gzipBody = pressGzip(body);
+			if (gzipBody.length >= body.length) {
+				gzipBody = null;
+			}
+		}
+		return new Element(stat, body, gzipBody, gzipFile, contentType, gzipFile ? mime.getUrl(path) : contentType);
+	}
+
+	// gzip圧縮対象のmimeTypeかチェック.
+	private static final boolean isGzipMime(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		final int len = GZIP_MIME.length;
+		for (int i = 0; i < len; i++) {
+			if (contentType.startsWith(GZIP_MIME[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ファイル読み込み.
+	private static final byte[] readFile(String path, long length) throws IOException {
+		final byte[] ret = new byte[(int) length];
+		InputStream in = null;
+		try {
+			in = new FileInputStream(path);
+			int len;
+			int off = 0;
+			while (off < ret.length && (len = in.read(ret, off, ret.length - off)) != -1) {
+				off += len;
+			}
+			if (off != ret.length || in.read() != -1) {
+				throw new IOException("File length has been changed: " + path);
+			}
+			in.close();
+			in = null;
+			return ret;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (Exception e) {
+				}
+			}
+		}
+	}
+
+	// gzip圧縮.
+	private static final byte[] pressGzip(byte[] b) throws IOException {
+		final ByteArrayOutputStream bo = new ByteArrayOutputStream(b.length >> 1);
+		final GZIPOutputStream go = new GZIPOutputStream(bo);
+		go.write(b);
+		go.flush();
+		go.finish();
+		go.close();
+		return bo.toByteArray();
+	}
+}
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.security.KeyStore;
@@ -127,6 +128,50 @@ final class CreateSocket {
 		}
 	}
 
+	/**
+	 * 名前解決済みのアドレスでSocket作成.
+	 * SSLの場合は、接続先ドメイン名でSSLSocketを生成するので、SNIと共通のSSLContextによる
+	 * TLSセッションの再利用が行われます.
+	 *
+	 * @param ssl
+	 *            [true]の場合、SSLで接続します.
+	 * @param host
+	 *            接続先ドメイン名を設定します.
+	 * @param addr
+	 *            名前解決済みの接続先アドレスを設定します.
+	 * @param port
+	 *            対象のポート番号を設定します.
+	 * @param connectTimeout
+	 *            接続タイムアウト値を設定します.
+	 * @param readTimeout
+	 *            受信タイムアウト値を設定します.
+	 * @exception IOException
+	 *                I/O例外.
+	 */
+	public static final Socket create(boolean ssl, String host, InetAddress addr, int port, int connectTimeout,
+			int readTimeout) throws IOException {
+		Socket ret = new Socket();
+		try {
+			setSocketOption(ret, readTimeout);
+			// 持続的接続で送受信を繰り返すので、Nagleアルゴリズムは無効.
+			ret.setTcpNoDelay(true);
+			ret.connect(new InetSocketAddress(addr, port), connectTimeout);
+			if (ssl) {
+				final SSLSocket s = (SSLSocket) ((SSLSocketFactory) getSSLSocketFactory())
+					.createSocket(ret, host, port, true);
+				ret = s;
+				s.startHandshake();
+			}
+		} catch (IOException e) {
+			try {
+				ret.close();
+			} catch (Exception ee) {
+			}
+			throw e;
+		}
+		return ret;
+	}
+
 	/** SSLSocket生成. **/
 	private static final Socket createSSL(String addr, int port, int timeout) throws IOException {
 		SSLSocket ret = null;
@@ -1,13 +1,11 @@
 package rhigin.http.client;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URLEncoder;
 import java.util.Iterator;
 import java.util.Map;
@@ -39,7 +37,6 @@ public class HttpClient {
 		}
 	}
 	private static final int MAX_BINARY_BODY_LENGTH = 0x00100000 * 5; // 5Mbyte.
-	private static final int TIMEOUT = 30000;
 	private static final int MAX_RETRY = 9;
 	private static final String DEF_USER_AGENT = "rhigin";
 	private static final String DEF_MIN_USER_AGENT = "rhigin_m";
@@ -192,10 +189,24 @@ public class HttpClient {
 	 *               accessKey: アクセスキーを用いたHttp or Https通信を行う場合に利用します.
 	 *               authCode: アクセスキーを用いたHttp or Https通信を行う場合に利用します.
 	 *               accessKeyClient: RhiginAccessKeyClientで管理されているAccessKeyを利用する場合は true を設定します.
+	 *               timeout: このリクエストの受信タイムアウト(ミリ秒)を設定します.
 	 * @return HttpResult 返却データが返されます.
 	 */
-	@SuppressWarnings("unchecked")
 	public static final HttpResult connect(String method, String url, Map option) {
+		return connect(method, url, option, null);
+	}
+
+	/**
+	 * HttpClient接続.
+	 *
+	 * @param method 対象のMethodを設定します.
+	 * @param url    対象のURLを設定します.
+	 * @param option 対象のオプションを設定します.
+	 * @param handle 別スレッドから中断する場合は、実行中の接続の参照を設定します.
+	 * @return HttpResult 返却データが返されます.
+	 */
+	@SuppressWarnings("unchecked")
+	static final HttpResult connect(String method, String url, Map option, HttpClientHandle handle) {
 		Object params = null;
 		Map header = null;
 		boolean bodyFile = false;
@@ -203,7 +214,14 @@ public class HttpClient {
 		boolean blowser = true;
 		String accessKey = null;
 		String authCode = null;
+		int timeout = -1;
 		if (option != null) {
+			// リクエスト単位の受信タイムアウト(ミリ秒).
+			Object t = option.get("timeout");
+			if(t != null && Converter.isNumeric(t)) {
+				timeout = Converter.convertInt(t);
+			}
+			t = null;
 			// パラメータ定義.
 			params = option.get("params");
 			if(params == null) {
@@ -284,7 +302,8 @@ public class HttpClient {
 		String location;
 		int cnt = 0;
 		while (true) {
-			ret = _connect(minHeader, blowser, bodyFile, accessKey, authCode, method, url, params, header);
+			ret = _connect(minHeader, blowser, bodyFile, accessKey, authCode, timeout, method, url, params, header,
+				handle);
 			if (!((status = ret.getStatus()) == 301 || status == 302 || status == 303 || status == 307 || status == 308) ||
 				(location = ret.getHeader("location")) == null) {
 				break;
@@ -303,10 +322,10 @@ public class HttpClient {
 
 	// 接続処理.
 	private static final HttpResult _connect(boolean minHeader, boolean blowser, boolean bodyFile, String akey, String acode,
-			String method, String url, Object params, Map header) {
-		Socket socket = null;
-		InputStream in = null;
-		OutputStream out = null;
+			int timeout, String method, String url, Object params, Map header, HttpClientHandle handle) {
+		final HttpClientPool pool = HttpClientPool.getInstance();
+		HttpClientConnection conn = null;
+		boolean fresh = false;
 		try {
 			// 解析.
 			method = method.toUpperCase();
@@ -316,45 +335,84 @@ public class HttpClient {
 			} else if (params instanceof Map) {
 				params = convertParams((Map) params);
 			}
-			// リクエスト送信.
-			socket = createSocket(urlArray);
-			out = new BufferedOutputStream(socket.getOutputStream());
-			createHttpRequest(minHeader, blowser, akey, acode, out, method, urlArray, params, header);
-			out.flush();
-			// レスポンス受信.
-			in = new BufferedInputStream(socket.getInputStream());
-			HttpResult ret = receive(bodyFile, url, akey, acode, in);
-			in.close();
-			in = null;
-			out.close();
-			out = null;
-			socket.close();
-			socket = null;
-			return ret;
-		} catch(Exception e) {
-			throw new HttpClientException(500, e);
-		} finally {
-			if (in != null) {
-				try {
-					in.close();
-				} catch (Exception ee) {
+			// HEADはBody長が不定なので持続的接続を利用しない.
+			final boolean keepAlive = pool.isKeepAlive() && NoULCode.eqs(method, "head") == -1;
+			// InputStream送信は再送できないので、再利用接続の切断時にリトライしない.
+			final boolean retry = !(params instanceof InputStream);
+			// リクエスト送信後の切断は、相手先で処理された可能性があるので、副作用のないメソッドのみリトライする.
+			final boolean idempotent = retry && NoULCode.eqs(method, "get", "head", "options") != -1;
+			final boolean[] reuse = new boolean[1];
+			while (true) {
+				// リクエスト送信.
+				conn = keepAlive ? pool.borrow(urlArray, fresh) : pool.borrow(urlArray, true);
+				// 中断済みの場合は処理しない.
+				if (handle != null && !handle.set(conn)) {
+					throw new IOException("Connection cancelled: " + url);
 				}
-			}
-			if (out != null) {
+				HttpResult ret = null;
+				boolean sent = false;
+				boolean received = false;
 				try {
-					out.close();
-				} catch (Exception ee) {
+					if (timeout > 0) {
+						conn.setReadTimeout(timeout);
+					}
+					final OutputStream out = conn.getOutputStream();
+					createHttpRequest(minHeader, blowser, keepAlive, akey, acode, out, method, urlArray, params, header);
+					out.flush();
+					sent = true;
+					// レスポンスの先頭１バイトを受信できるかチェック.
+					final InputStream in = conn.getInputStream();
+					in.mark(1);
+					if (in.read() != -1) {
+						received = true;
+						in.reset();
+					} else if (idempotent && conn.isReused() && !isCancel(handle)) {
+						// 再利用した接続が相手先で切断されていた場合は、新規接続でリトライ.
+						pool.close(conn);
+						conn = null;
+						fresh = true;
+						continue;
+					}
+					// レスポンス受信.
+					reuse[0] = false;
+					ret = receive(bodyFile, url, akey, acode, in, reuse);
+				} catch (SocketTimeoutException se) {
+					pool.readTimeout();
+					throw se;
+				} catch (IOException ie) {
+					// 再利用した接続が相手先で切断されていた場合は、送信完了前か、
+					// 副作用のないメソッドでレスポンス受信前の場合のみ、新規接続でリトライ.
+					if (retry && conn.isReused() && !received && (!sent || idempotent) && !isCancel(handle)) {
+						pool.close(conn);
+						conn = null;
+						fresh = true;
+						continue;
+					}
+					throw ie;
 				}
-			}
-			if (socket != null) {
-				try {
-					socket.close();
-				} catch (Exception ee) {
+				// 中断済みの場合、接続はクローズされている.
+				if (handle != null && !handle.set(null)) {
+					conn = null;
+					return ret;
 				}
+				pool.release(conn, keepAlive && reuse[0]);
+				conn = null;
+				return ret;
+			}
+		} catch(Exception e) {
+			throw new HttpClientException(500, e);
+		} finally {
+			if (conn != null) {
+				pool.close(conn);
 			}
 		}
 	}
 
+	// 中断済みかチェック.
+	private static final boolean isCancel(HttpClientHandle handle) {
+		return handle != null && handle.isCancel();
+	}
+
 	// URLをパース.
 	private static final String[] parseUrl(String url) throws IOException {
 		int b = 0;
@@ -421,14 +479,8 @@ public class HttpClient {
 		return buf.toString();
 	}
 
-	// ソケット生成.
-	private static final Socket createSocket(String[] urlArray) throws IOException {
-		return CreateSocket.create("https".equals(urlArray[0]), urlArray[1], Integer.parseInt("" + urlArray[2]),
-				TIMEOUT);
-	}
-
 	// HTTPリクエストを作成.
-	private static final void createHttpRequest(boolean minHeader, boolean blowser,
+	private static final void createHttpRequest(boolean minHeader, boolean blowser, boolean keepAlive,
 			String akey, String acode, OutputStream out, String method,
 			String[] urlArray, Object params, Map header)
 		throws IOException {
@@ -503,7 +555,7 @@ public class HttpClient {
 			}
 			buf.append("Accept-Encoding:gzip,deflate\r\n");
 		}
-		buf.append("Connection:close\r\n");
+		buf.append(keepAlive ? "Connection:keep-alive\r\n" : "Connection:close\r\n");
 		
 		// accessKeyが設定されている場合.
 		if(akey != null) {
@@ -698,8 +750,9 @@ public class HttpClient {
 	private static final byte[] END_HEADER = ("\r\n\r\n").getBytes();
 
 	// データ受信.
-	private static final HttpResult receive(boolean bodyFileFlg, String url, String akey, String acode, InputStream in)
-		throws IOException {
+	// 受信後に接続を再利用できる場合は reuse[0] に[true]がセットされます.
+	private static final HttpResult receive(boolean bodyFileFlg, String url, String akey, String acode, InputStream in,
+		boolean[] reuse) throws IOException {
 		int len;
 		final byte[] binary = new byte[4096];
 		ByteArrayIO buffer = new ByteArrayIO();
@@ -709,6 +762,8 @@ public class HttpClient {
 		byte[] b = null;
 		int status = -1;
 		String message = "";
+		// HTTP/1.1でBody長が明確な場合のみ、接続を再利用できる.
+		boolean keepAlive = false;
 		HttpBodyFile bodyFile = null;
 		HttpResult result = null;
 		// chunked用.
@@ -734,6 +789,7 @@ public class HttpClient {
 							buffer.read(b);
 							String top = new String(b, "UTF8");
 							b = null;
+							keepAlive = top.startsWith("HTTP/1.1 ");
 							pp = top.indexOf(" ");
 							if(pp == -1) {
 								ppp = -1;
@@ -769,8 +825,16 @@ public class HttpClient {
 							if (NoULCode.eqs("chunked", value) != -1) {
 								bodyLength = -1;
 								chunkedBuffer = new ByteArrayIO();
+							} else {
+								// Body長が不明.
+								keepAlive = false;
 							}
 						}
+						// 相手先が切断する場合.
+						if (keepAlive && (value = result.getHeader("connection")) != null
+							&& value.toLowerCase().indexOf("close") != -1) {
+							keepAlive = false;
+						}
 						// gzip.
 						gzip = result.isResponseGzip();
 					} else {
@@ -791,6 +855,7 @@ public class HttpClient {
 
 					// バッファに受信中のデータを出力.
 					int bufLen;
+					keepAlive = false;
 					bodyFile = new HttpBodyFile();
 					byte[] buf = binary;
 					ByteArrayIO io = (bodyLength != -1) ? buffer : chunkedBuffer;
@@ -807,6 +872,7 @@ public class HttpClient {
 				if (bodyLength == 0) {
 					// 0byteデータ.
 					result.setResponseBody(new byte[0]);
+					reuse[0] = keepAlive && buffer.size() == 0;
 					return result;
 				}
 				// bodyサイズが設定されている.
@@ -818,6 +884,7 @@ public class HttpClient {
 					} else if (buffer.size() >= bodyLength) {
 						b = new byte[bodyLength];
 						buffer.read(b);
+						reuse[0] = keepAlive && buffer.size() == 0;
 						if (gzip) {
 							b = ungzip(b, binary, buffer);
 						}
@@ -849,6 +916,8 @@ public class HttpClient {
 									result.setReponseBodyFile(bodyFile);
 									bodyFile = null;
 								} else {
+									// 終端の改行のみが残っている場合は再利用できる.
+									reuse[0] = keepAlive && buffer.size() == 2;
 									b = chunkedBuffer.toByteArray();
 									if (gzip) {
 										b = ungzip(b, binary, buffer);
@@ -0,0 +1,214 @@
+package rhigin.http.client;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rhigin.util.ArrayMap;
+import rhigin.util.VirtualThreads;
+
+/**
+ * HttpClientの並列実行.
+ *
+ * 複数のHTTPリクエストを並列で実行して、リクエスト順に結果を返却します.
+ * 仮想スレッドが利用可能な場合は仮想スレッドで、そうでない場合はI/O用のスレッドプールで実行します.
+ * 呼び出し元は全ての結果が揃うか、全体の締め切り時間まで待機するので、処理時間は一番遅いリクエスト程度になります.
+ */
+@SuppressWarnings("rawtypes")
+public final class HttpClientBatch {
+	protected HttpClientBatch() {
+	}
+
+	// 実行スレッド.
+	private static volatile ExecutorService executor = null;
+	private static final Object sync = new Object();
+
+	// スレッドプールのアイドル時間(秒).
+	private static final long KEEP_ALIVE_SECOND = 60L;
+
+	/**
+	 * １つのリクエスト.
+	 */
+	public static final class Request {
+		private final String method;
+		private final String url;
+		private final Map option;
+
+		/**
+		 * コンストラクタ.
+		 *
+		 * @param method Httpメソッドを設定します.
+		 * @param url    接続先URLを設定します.
+		 * @param option HttpClient.connectのオプションを設定します.
+		 */
+		public Request(String method, String url, Map option) {
+			this.method = method == null ? "GET" : method;
+			this.url = url;
+			this.option = option;
+		}
+
+		public String getMethod() {
+			return method;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public Map getOption() {
+			return option;
+		}
+	}
+
+	// 実行スレッドを取得.
+	private static final ExecutorService getExecutor() {
+		ExecutorService ret = executor;
+		if (ret == null) {
+			synchronized (sync) {
+				if ((ret = executor) == null) {
+					ret = VirtualThreads.newExecutor();
+					if (ret == null) {
+						final int len = HttpClientPool.getInstance().getBatchThread();
+						final ThreadPoolExecutor t = new ThreadPoolExecutor(len, len, KEEP_ALIVE_SECOND,
+							TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+								private final AtomicInteger no = new AtomicInteger(0);
+
+								@Override
+								public Thread newThread(Runnable r) {
+									final Thread ret = new Thread(r, "httpClient-" + no.incrementAndGet());
+									ret.setDaemon(true);
+									return ret;
+								}
+							});
+						t.allowCoreThreadTimeOut(true);
+						ret = t;
+					}
+					executor = ret;
+				}
+			}
+		}
+		return ret;
+	}
+
+	// リクエスト実行処理.
+	private static final class Task implements Callable<HttpResult> {
+		private final Request req;
+		// 通信中の接続.
+		private final HttpClientHandle handle = new HttpClientHandle();
+
+		Task(Request req) {
+			this.req = req;
+		}
+
+		@Override
+		public HttpResult call() throws Exception {
+			final HttpResult ret = HttpClient.connect(req.getMethod(), req.getUrl(), req.getOption(), handle);
+			// 締め切り後に受信完了した場合は破棄.
+			if (handle.isCancel()) {
+				if (ret != null) {
+					ret.clear();
+				}
+				return null;
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * 複数のリクエストを並列実行.
+	 *
+	 * @param requests
+	 *            実行するリクエスト群を設定します.
+	 * @param timeout
+	 *            全体の締め切り時間(ミリ秒)を設定します. [0]以下の場合は締め切りなしです.
+	 * @return Object[] リクエスト順に結果が返却されます. 成功した場合はHttpResult、失敗した場合は
+	 *         {url, error, timeout} のMapが格納されます.
+	 */
+	public static final Object[] execute(List<Request> requests, long timeout) {
+		final int len = requests.size();
+		final Object[] ret = new Object[len];
+		if (len == 0) {
+			return ret;
+		}
+		final ExecutorService ex = getExecutor();
+		final Task[] tasks = new Task[len];
+		final Future[] futures = new Future[len];
+		for (int i = 0; i < len; i++) {
+			tasks[i] = new Task(requests.get(i));
+			futures[i] = ex.submit(tasks[i]);
+		}
+		final long end = timeout > 0 ? System.currentTimeMillis() + timeout : -1L;
+		try {
+			for (int i = 0; i < len; i++) {
+				try {
+					if (end == -1L) {
+						ret[i] = futures[i].get();
+					} else {
+						ret[i] = futures[i].get(Math.max(1L, end - System.currentTimeMillis()),
+							TimeUnit.MILLISECONDS);
+					}
+				} catch (TimeoutException te) {
+					// 通信中のリクエストは、接続をクローズして受信待ちを中断する.
+					tasks[i].handle.cancel();
+					if (!futures[i].cancel(true)) {
+						// 締め切り直後に完了した場合は破棄.
+						discard(futures[i]);
+					}
+					ret[i] = error(tasks[i].req, "Deadline exceeded.", true);
+				} catch (ExecutionException ee) {
+					final Throwable t = ee.getCause() == null ? ee : ee.getCause();
+					ret[i] = error(tasks[i].req, t.getMessage(), isTimeout(t));
+				}
+			}
+		} catch (InterruptedException ie) {
+			for (int i = 0; i < len; i++) {
+				tasks[i].handle.cancel();
+				futures[i].cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new HttpClientException(500, ie);
+		}
+		return ret;
+	}
+
+	// 完了済みの結果を破棄.
+	private static final void discard(Future f) {
+		try {
+			final Object o = f.get();
+			if (o instanceof HttpResult) {
+				((HttpResult) o).clear();
+			}
+		} catch (Exception e) {
+		}
+	}
+
+	// 受信タイムアウトによる例外かチェック.
+	private static final boolean isTimeout(Throwable t) {
+		while (t != null) {
+			if (t instanceof SocketTimeoutException) {
+				return true;
+			}
+			t = t.getCause();
+		}
+		return false;
+	}
+
+	// エラー結果を生成.
+	private static final Map<String, Object> error(Request req, String message, boolean timeout) {
+		final Map<String, Object> ret = new ArrayMap<String, Object>();
+		ret.put("url", req.getUrl());
+		ret.put("error", message);
+		ret.put("timeout", timeout);
+		return ret;
+	}
+}
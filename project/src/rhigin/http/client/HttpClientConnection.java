@@ -0,0 +1,148 @@
+package rhigin.http.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * HttpClientの接続.
+ *
+ * HttpClientPoolでプーリングされる１つの持続的接続を管理します.
+ */
+final class HttpClientConnection {
+	private final String route;
+	private final String host;
+	private Socket socket;
+	private final InputStream in;
+	private final OutputStream out;
+	private long lastTime;
+	private int useCount;
+	private int readTimeout = -1;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param route  接続先(protocol://host:port)を設定します.
+	 * @param host   接続先ドメイン名を設定します.
+	 * @param socket 接続済みのSocketを設定します.
+	 * @exception IOException I/O例外.
+	 */
+	HttpClientConnection(String route, String host, Socket socket) throws IOException {
+		this.route = route;
+		this.host = host;
+		this.socket = socket;
+		this.in = new BufferedInputStream(socket.getInputStream());
+		this.out = new BufferedOutputStream(socket.getOutputStream());
+		this.lastTime = System.currentTimeMillis();
+		this.useCount = 0;
+	}
+
+	/**
+	 * 接続先を取得.
+	 *
+	 * @return String
+	 */
+	String getRoute() {
+		return route;
+	}
+
+	/**
+	 * 接続先ドメイン名を取得.
+	 *
+	 * @return String
+	 */
+	String getHost() {
+		return host;
+	}
+
+	/**
+	 * InputStreamを取得.
+	 *
+	 * @return InputStream
+	 */
+	InputStream getInputStream() {
+		return in;
+	}
+
+	/**
+	 * OutputStreamを取得.
+	 *
+	 * @return OutputStream
+	 */
+	OutputStream getOutputStream() {
+		return out;
+	}
+
+	/**
+	 * プーリングから再利用された接続かチェック.
+	 *
+	 * @return boolean [true]の場合、再利用された接続です.
+	 */
+	boolean isReused() {
+		return useCount > 1;
+	}
+
+	/**
+	 * 利用開始.
+	 */
+	void use() {
+		useCount++;
+	}
+
+	/**
+	 * 最終利用時間を更新.
+	 */
+	void touch() {
+		lastTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * 最終利用時間を取得.
+	 *
+	 * @return long
+	 */
+	long getLastTime() {
+		return lastTime;
+	}
+
+	/**
+	 * 接続中かチェック.
+	 *
+	 * @return boolean [true]の場合、接続中です.
+	 */
+	boolean isOpen() {
+		final Socket s = socket;
+		return s != null && !s.isClosed() && s.isConnected() && !s.isInputShutdown() && !s.isOutputShutdown();
+	}
+
+	/**
+	 * 受信タイムアウトを設定.
+	 *
+	 * @param timeout 受信タイムアウト(ミリ秒)を設定します.
+	 * @exception IOException I/O例外.
+	 */
+	void setReadTimeout(int timeout) throws IOException {
+		final Socket s = socket;
+		if (s != null && readTimeout != timeout) {
+			s.setSoTimeout(timeout);
+			readTimeout = timeout;
+		}
+	}
+
+	/**
+	 * クローズ.
+	 */
+	void close() {
+		final Socket s = socket;
+		socket = null;
+		if (s != null) {
+			try {
+				s.close();
+			} catch (Exception e) {
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package rhigin.http.client;
+
+/**
+ * 実行中のHttpClient接続の参照.
+ *
+ * 別スレッドから通信中の接続をクローズして、受信待ちを中断するために利用します.
+ * 中断後は、新しい接続の利用とリトライは行いません.
+ */
+final class HttpClientHandle {
+	private HttpClientConnection conn = null;
+	private boolean cancel = false;
+
+	/**
+	 * 利用中の接続を設定.
+	 *
+	 * @param c 利用中の接続を設定します. 利用終了の場合は[null]を設定します.
+	 * @return boolean [false]の場合、中断済みです.
+	 */
+	synchronized boolean set(HttpClientConnection c) {
+		if (cancel) {
+			return false;
+		}
+		conn = c;
+		return true;
+	}
+
+	/**
+	 * 中断.
+	 * 利用中の接続が存在する場合はクローズします.
+	 */
+	synchronized void cancel() {
+		cancel = true;
+		if (conn != null) {
+			conn.close();
+			conn = null;
+		}
+	}
+
+	/**
+	 * 中断済みかチェック.
+	 *
+	 * @return boolean [true]の場合、中断済みです.
+	 */
+	synchronized boolean isCancel() {
+		return cancel;
+	}
+}
@@ -0,0 +1,427 @@
+package rhigin.http.client;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import rhigin.RhiginConfig;
+import rhigin.net.NetConstants;
+import rhigin.util.ArrayMap;
+import rhigin.util.Converter;
+
+/**
+ * HttpClientの接続プール.
+ *
+ * 接続先(protocol://host:port)単位で、HTTP/1.1の持続的接続をプーリングします.
+ * 一定時間利用されていない接続は破棄し、DNSの名前解決結果は[NetConstants.NET_DNS_CACHE_SECOND]秒キャッシュします.
+ * https接続は共通のSSLContextで生成するので、新規接続時もTLSセッションが再利用されます.
+ *
+ * 定義はconf/httpClient.jsonで行います.
+ */
+public final class HttpClientPool {
+	/** コンフィグ名. **/
+	public static final String CONFIG_NAME = "httpClient";
+
+	/** デフォルトの接続先毎の最大プーリング数. **/
+	public static final int DEF_MAX_PER_ROUTE = 8;
+
+	/** デフォルトのアイドルタイムアウト(ミリ秒). **/
+	public static final int DEF_IDLE_TIMEOUT = 10000;
+
+	/** デフォルトの接続タイムアウト(ミリ秒). **/
+	public static final int DEF_CONNECT_TIMEOUT = 30000;
+
+	/** デフォルトの受信タイムアウト(ミリ秒). **/
+	public static final int DEF_READ_TIMEOUT = 30000;
+
+	/** デフォルトの並列実行スレッド数. **/
+	public static final int DEF_BATCH_THREAD = 64;
+
+	// アイドル接続の破棄チェック間隔(ミリ秒).
+	private static final long EVICT_INTERVAL = 1000L;
+
+	// シングルトン.
+	private static final HttpClientPool INSTANCE = new HttpClientPool();
+
+	/**
+	 * オブジェクトを取得.
+	 *
+	 * @return HttpClientPool
+	 */
+	public static final HttpClientPool getInstance() {
+		return INSTANCE;
+	}
+
+	// 定義.
+	private volatile boolean loadConfig = false;
+	private boolean keepAlive = true;
+	private int maxPerRoute = DEF_MAX_PER_ROUTE;
+	private int idleTimeout = DEF_IDLE_TIMEOUT;
+	private int connectTimeout = DEF_CONNECT_TIMEOUT;
+	private int readTimeout = DEF_READ_TIMEOUT;
+	private int batchThread = DEF_BATCH_THREAD;
+
+	// 接続先毎のアイドル接続.
+	private final Map<String, ConcurrentLinkedDeque<HttpClientConnection>> routes =
+		new ConcurrentHashMap<String, ConcurrentLinkedDeque<HttpClientConnection>>();
+
+	// DNSキャッシュ(ドメイン名, [InetAddress, 有効期限]).
+	private final Map<String, Object[]> dnsCache = new ConcurrentHashMap<String, Object[]>();
+
+	// 最終破棄チェック時間.
+	private final AtomicLong lastEvict = new AtomicLong(0L);
+
+	// 統計情報.
+	private final LongAdder connectCount = new LongAdder();
+	private final LongAdder reuseCount = new LongAdder();
+	private final LongAdder evictCount = new LongAdder();
+	private final LongAdder connectTime = new LongAdder();
+	private final LongAdder connectTimeoutCount = new LongAdder();
+	private final LongAdder readTimeoutCount = new LongAdder();
+	private final LongAdder dnsHitCount = new LongAdder();
+	private final LongAdder dnsMissCount = new LongAdder();
+
+	private HttpClientPool() {
+	}
+
+	// コンフィグ情報を読み込む.
+	@SuppressWarnings("rawtypes")
+	private final void loadConfig() {
+		if (loadConfig) {
+			return;
+		}
+		synchronized (this) {
+			if (loadConfig) {
+				return;
+			}
+			final RhiginConfig rc = RhiginConfig.getMainConfig();
+			if (rc != null && rc.has(CONFIG_NAME)) {
+				final Map conf = rc.get(CONFIG_NAME);
+				Object o;
+				if ((o = conf.get("keepAlive")) != null) {
+					keepAlive = Converter.convertBool(o);
+				}
+				if ((o = conf.get("maxPerRoute")) != null && Converter.isNumeric(o)) {
+					maxPerRoute = Converter.convertInt(o);
+				}
+				if ((o = conf.get("idleTimeout")) != null && Converter.isNumeric(o)) {
+					idleTimeout = Converter.convertInt(o);
+				}
+				if ((o = conf.get("connectTimeout")) != null && Converter.isNumeric(o)) {
+					connectTimeout = Converter.convertInt(o);
+				}
+				if ((o = conf.get("readTimeout")) != null && Converter.isNumeric(o)) {
+					readTimeout = Converter.convertInt(o);
+				}
+				if ((o = conf.get("batchThread")) != null && Converter.isNumeric(o)) {
+					batchThread = Converter.convertInt(o);
+				}
+			}
+			loadConfig = true;
+		}
+	}
+
+	/**
+	 * 持続的接続が有効かチェック.
+	 *
+	 * @return boolean [true]の場合、持続的接続が有効です.
+	 */
+	public boolean isKeepAlive() {
+		loadConfig();
+		return keepAlive && maxPerRoute > 0;
+	}
+
+	/**
+	 * 並列実行のスレッド数を取得.
+	 *
+	 * @return int
+	 */
+	public int getBatchThread() {
+		loadConfig();
+		return batchThread <= 0 ? DEF_BATCH_THREAD : batchThread;
+	}
+
+	/**
+	 * 接続を取得.
+	 *
+	 * @param urlArray
+	 *            [protocol, domain, port, path]を設定します.
+	 * @param fresh
+	 *            [true]の場合、プーリングされた接続を利用せずに新規接続します.
+	 * @return HttpClientConnection
+	 * @exception IOException
+	 *                I/O例外.
+	 */
+	HttpClientConnection borrow(String[] urlArray, boolean fresh) throws IOException {
+		loadConfig();
+		final String route = urlArray[0] + "://" + urlArray[1] + ":" + urlArray[2];
+		evict(false);
+		if (!fresh && isKeepAlive()) {
+			final ConcurrentLinkedDeque<HttpClientConnection> q = routes.get(route);
+			if (q != null) {
+				HttpClientConnection c;
+				final long now = System.currentTimeMillis();
+				while ((c = q.pollFirst()) != null) {
+					if (c.isOpen() && now - c.getLastTime() < idleTimeout) {
+						reuseCount.increment();
+						c.use();
+						return c;
+					}
+					evictCount.increment();
+					c.close();
+				}
+			}
+		}
+		final HttpClientConnection ret = connect(route, urlArray);
+		ret.setReadTimeout(readTimeout);
+		ret.use();
+		return ret;
+	}
+
+	/**
+	 * 接続を返却.
+	 *
+	 * @param c
+	 *            対象の接続を設定します.
+	 * @param reuse
+	 *            [true]の場合、再利用可能な接続です.
+	 */
+	void release(HttpClientConnection c, boolean reuse) {
+		if (!reuse || !isKeepAlive() || !c.isOpen()) {
+			c.close();
+			return;
+		}
+		ConcurrentLinkedDeque<HttpClientConnection> q = routes.get(c.getRoute());
+		if (q == null) {
+			final ConcurrentLinkedDeque<HttpClientConnection> n = new ConcurrentLinkedDeque<HttpClientConnection>();
+			q = routes.putIfAbsent(c.getRoute(), n);
+			if (q == null) {
+				q = n;
+			}
+		}
+		if (q.size() >= maxPerRoute) {
+			c.close();
+			return;
+		}
+		// リクエスト単位で変更された受信タイムアウトを戻す.
+		try {
+			c.setReadTimeout(readTimeout);
+		} catch (IOException e) {
+			c.close();
+			return;
+		}
+		// 直近に利用した接続から再利用する.
+		c.touch();
+		q.offerFirst(c);
+	}
+
+	/**
+	 * 接続を破棄.
+	 *
+	 * @param c
+	 *            対象の接続を設定します.
+	 */
+	void close(HttpClientConnection c) {
+		if (c != null) {
+			c.close();
+		}
+	}
+
+	/**
+	 * 受信タイムアウトを記録.
+	 */
+	void readTimeout() {
+		readTimeoutCount.increment();
+	}
+
+	// 新規接続.
+	private final HttpClientConnection connect(String route, String[] urlArray) throws IOException {
+		final String host = urlArray[1];
+		final InetAddress addr = resolve(host);
+		final long startTime = System.nanoTime();
+		try {
+			final HttpClientConnection ret = new HttpClientConnection(route, host,
+				CreateSocket.create("https".equals(urlArray[0]), host, addr, Integer.parseInt(urlArray[2]),
+					connectTimeout, readTimeout));
+			connectCount.increment();
+			return ret;
+		} catch (SocketTimeoutException se) {
+			connectTimeoutCount.increment();
+			dnsCache.remove(host);
+			throw se;
+		} catch (IOException ie) {
+			// 接続先アドレスが変更された可能性があるので、DNSキャッシュを削除.
+			dnsCache.remove(host);
+			throw ie;
+		} finally {
+			connectTime.add(System.nanoTime() - startTime);
+		}
+	}
+
+	// DNSキャッシュを利用して名前解決.
+	private final InetAddress resolve(String host) throws IOException {
+		final long now = System.currentTimeMillis();
+		final Object[] c = dnsCache.get(host);
+		if (c != null && (Long) c[1] > now) {
+			dnsHitCount.increment();
+			return (InetAddress) c[0];
+		}
+		dnsMissCount.increment();
+		final InetAddress ret = InetAddress.getByName(host);
+		dnsCache.put(host, new Object[] { ret, now + (NetConstants.NET_DNS_CACHE_SECOND * 1000L) });
+		return ret;
+	}
+
+	/**
+	 * アイドルタイムアウトした接続を破棄.
+	 *
+	 * @param force
+	 *            [true]の場合、チェック間隔に関係なく実行します.
+	 */
+	public void evict(boolean force) {
+		final long now = System.currentTimeMillis();
+		final long last = lastEvict.get();
+		if (!force && (now - last < EVICT_INTERVAL || !lastEvict.compareAndSet(last, now))) {
+			return;
+		}
+		HttpClientConnection c;
+		final Iterator<ConcurrentLinkedDeque<HttpClientConnection>> it = routes.values().iterator();
+		while (it.hasNext()) {
+			final Iterator<HttpClientConnection> qi = it.next().iterator();
+			while (qi.hasNext()) {
+				c = qi.next();
+				if (!c.isOpen() || now - c.getLastTime() >= idleTimeout) {
+					qi.remove();
+					evictCount.increment();
+					c.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 全てのアイドル接続を破棄.
+	 */
+	public void clear() {
+		HttpClientConnection c;
+		final Iterator<ConcurrentLinkedDeque<HttpClientConnection>> it = routes.values().iterator();
+		while (it.hasNext()) {
+			final ConcurrentLinkedDeque<HttpClientConnection> q = it.next();
+			while ((c = q.pollFirst()) != null) {
+				c.close();
+			}
+		}
+		dnsCache.clear();
+	}
+
+	/**
+	 * プーリング中のアイドル接続数を取得.
+	 *
+	 * @return int
+	 */
+	public int getIdleCount() {
+		int ret = 0;
+		final Iterator<ConcurrentLinkedDeque<HttpClientConnection>> it = routes.values().iterator();
+		while (it.hasNext()) {
+			ret += it.next().size();
+		}
+		return ret;
+	}
+
+	/**
+	 * 新規接続数を取得.
+	 *
+	 * @return long
+	 */
+	public long getConnectCount() {
+		return connectCount.sum();
+	}
+
+	/**
+	 * 接続の再利用数を取得.
+	 *
+	 * @return long
+	 */
+	public long getReuseCount() {
+		return reuseCount.sum();
+	}
+
+	/**
+	 * 破棄したアイドル接続数を取得.
+	 *
+	 * @return long
+	 */
+	public long getEvictCount() {
+		return evictCount.sum();
+	}
+
+	/**
+	 * 新規接続の累計時間を取得.
+	 *
+	 * @return long 累計時間(ナノ秒)が返却されます.
+	 */
+	public long getConnectTime() {
+		return connectTime.sum();
+	}
+
+	/**
+	 * 接続タイムアウト数を取得.
+	 *
+	 * @return long
+	 */
+	public long getConnectTimeoutCount() {
+		return connectTimeoutCount.sum();
+	}
+
+	/**
+	 * 受信タイムアウト数を取得.
+	 *
+	 * @return long
+	 */
+	public long getReadTimeoutCount() {
+		return readTimeoutCount.sum();
+	}
+
+	/**
+	 * DNSキャッシュのヒット数を取得.
+	 *
+	 * @return long
+	 */
+	public long getDnsHitCount() {
+		return dnsHitCount.sum();
+	}
+
+	/**
+	 * DNSキャッシュのミス数を取得.
+	 *
+	 * @return long
+	 */
+	public long getDnsMissCount() {
+		return dnsMissCount.sum();
+	}
+
+	/**
+	 * 統計情報をMapで取得.
+	 *
+	 * @return Map
+	 */
+	public Map<String, Object> toMap() {
+		final Map<String, Object> ret = new ArrayMap<String, Object>();
+		ret.put("idle", getIdleCount());
+		ret.put("connect", getConnectCount());
+		ret.put("reuse", getReuseCount());
+		ret.put("evict", getEvictCount());
+		ret.put("connectTime", getConnectTime());
+		ret.put("connectTimeout", getConnectTimeoutCount());
+		ret.put("readTimeout", getReadTimeoutCount());
+		ret.put("dnsHit", getDnsHitCount());
+		ret.put("dnsMiss", getDnsMissCount());
+		return ret;
+	}
+}
@@ -2,7 +2,10 @@ package rhigin.http.execute;
 
 import java.io.StringReader;
 
+import org.mozilla.javascript.Script;
+
 import rhigin.RhiginException;
+import rhigin.http.Http;
 import rhigin.http.HttpElement;
 import rhigin.http.HttpWorkerThread;
 import rhigin.http.Request;
@@ -11,6 +14,7 @@ import rhigin.keys.RhiginAccessKeyConstants;
 import rhigin.scripts.ExecuteScript;
 import rhigin.scripts.RhiginContext;
 import rhigin.scripts.ScriptConstants;
+import rhigin.scripts.compile.SourceCompileCache;
 
 /**
  * Rhigin実行命令: 受信したjavascript構文を実行する.
@@ -36,8 +40,8 @@ public class RhiginExecuteByJs implements RhiginExecute {
 			// 実行するjavascript構文を取得.
 			final String execJs = req.getBodyText();
 			
-			// コンテキスト生成・設定.
-			RhiginContext context = new RhiginContext();
+			// コンテキスト取得・設定(スレッド単位で再利用).
+			RhiginContext context = ExecuteScript.recycleContext();
 			context.setAttribute("request", req);
 			context.setAttribute("response", res);
 			context.setAttribute(HttpWorkerThread.redirect.getName(), HttpWorkerThread.redirect);
@@ -46,8 +50,16 @@ public class RhiginExecuteByJs implements RhiginExecute {
 			Object ret = "";
 			try {
 				// スクリプトの実行.
-				ret = ExecuteScript.execute(context, new StringReader(execJs),
+				// 同じスクリプトが繰り返し送信される場合に備えて、コンパイル結果をキャッシュする.
+				final SourceCompileCache cache = Http.getExecuteJsCache();
+				if(cache != null) {
+					final Script compiled = cache.get(execJs,
+						NAME, ScriptConstants.HEADER, ScriptConstants.FOOTER, 1);
+					ret = ExecuteScript.execute(context, compiled);
+				} else {
+					ret = ExecuteScript.execute(context, new StringReader(execJs),
 						NAME, ScriptConstants.HEADER, ScriptConstants.FOOTER, 1);
+				}
 			} catch(RhiginException re) {
 				throw re;
 			} catch(Exception e) {
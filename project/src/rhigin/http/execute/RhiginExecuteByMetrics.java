@@ -0,0 +1,51 @@
+package rhigin.http.execute;
+
+import java.io.ByteArrayInputStream;
+
+import rhigin.RhiginException;
+import rhigin.http.HttpElement;
+import rhigin.http.HttpMetrics;
+import rhigin.http.Request;
+import rhigin.http.Response;
+import rhigin.util.Alphabet;
+
+/**
+ * Rhigin実行命令: Httpリクエストのメトリクスを取得.
+ */
+public class RhiginExecuteByMetrics implements RhiginExecute {
+	/** 登録名. **/
+	public static final String NAME = "metrics";
+	
+	/** Prometheusテキスト形式のコンテンツタイプ. **/
+	private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	public RhiginExecuteByMetrics() {}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public Object execute(HttpElement em, Request req, Response res, String executeCode) {
+		// /*metrics 命令.
+		if(executeCode == null || executeCode.isEmpty() || "/".equals(executeCode)
+			|| Alphabet.indexOf(executeCode, "/json") == 0) {
+			return HttpMetrics.getInstance().toMap();
+		// /*metrics/prometheus 命令.
+		} else if(Alphabet.indexOf(executeCode, "/prometheus") == 0) {
+			try {
+				res.put("Content-Type", PROMETHEUS_CONTENT_TYPE);
+				return new ByteArrayInputStream(HttpMetrics.getInstance().toPrometheus().getBytes("UTF8"));
+			} catch(Exception e) {
+				throw new RhiginException(e);
+			}
+		// /*metrics/reset 命令.
+		} else if(Alphabet.indexOf(executeCode, "/reset") == 0) {
+			HttpMetrics.getInstance().reset();
+			return HttpMetrics.getInstance().toMap();
+		} else {
+			throw new RhiginException("No instruction is set or an instruction that does not exist is set.");
+		}
+	}
+}
@@ -0,0 +1,346 @@
+package rhigin.logs;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import rhigin.util.Wait;
+
+/**
+ * 非同期ログ出力.
+ *
+ * 複数スレッドからのログ出力をロックフリーなリングバッファに格納し、
+ * １つの書き込みスレッドで、ファイルをオープンしたままバッチ出力します.
+ */
+final class AsyncLogWriter extends Thread {
+	/** リングバッファのデフォルトサイズ. **/
+	protected static final int DEF_BUFFER_SIZE = 8192;
+
+	/** バッファが満杯の場合は、空くまで待機. **/
+	protected static final int OVERFLOW_BLOCK = 0;
+
+	/** バッファが満杯の場合は、trace,debugログを破棄. それ以外は待機. **/
+	protected static final int OVERFLOW_DROP_DEBUG = 1;
+
+	/** バッファが満杯の場合は、全てのログを破棄. **/
+	protected static final int OVERFLOW_DROP_ALL = 2;
+
+	/** １度にまとめて書き込むログ数. **/
+	private static final int BATCH_LENGTH = 512;
+
+	/** 書き込みスレッドの待機時間. **/
+	private static final int WAIT_TIME = 1000;
+
+	/** ログ出力情報. **/
+	private static final class LogLine {
+		final String name;
+		final long fileSize;
+		final String logDir;
+		final String format;
+
+		LogLine(String name, long fileSize, String logDir, String format) {
+			this.name = name;
+			this.fileSize = fileSize;
+			this.logDir = logDir;
+			this.format = format;
+		}
+	}
+
+	/** オープン中のログファイル. **/
+	private static final class LogFile {
+		final String name;
+		final String logDir;
+		final File stat;
+		OutputStream out;
+		long size;
+		int dateKey;
+
+		LogFile(String name, String logDir) {
+			this.name = name;
+			this.logDir = logDir;
+			this.stat = new File(logDir + name + ".log");
+		}
+
+		void open(int nowKey) throws Exception {
+			final File dir = new File(logDir);
+			if (!dir.isDirectory()) {
+				dir.mkdirs();
+			}
+			if (stat.isFile()) {
+				size = stat.length();
+				dateKey = LogFactory.dateKey(new Date(stat.lastModified()));
+			} else {
+				size = 0L;
+				dateKey = nowKey;
+			}
+			out = new BufferedOutputStream(new FileOutputStream(stat, true));
+		}
+
+		void close() {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (Exception e) {
+				}
+				out = null;
+			}
+		}
+
+		void write(byte[] b, long fileSize, int nowKey) throws Exception {
+			if (out == null) {
+				open(nowKey);
+			}
+			// ファイルサイズの最大値を超える場合、または日付が変わった場合.
+			if (size > 0L && ((fileSize > 0 && size + b.length > fileSize) || dateKey != nowKey)) {
+				out.flush();
+				close();
+				LogFactory.rotate(new File(logDir), name, logDir, stat, new Date(stat.lastModified()));
+				open(nowKey);
+			}
+			out.write(b);
+			size += b.length;
+		}
+	}
+
+	// リングバッファ.
+	private final int mask;
+	private final LogLine[] buffer;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong(0L);
+	private long head = 0L;
+
+	private final int overflow;
+	private final AtomicLong droppedCount = new AtomicLong(0L);
+	private final Wait wait = new Wait();
+	private final Map<String, LogFile> files = new HashMap<String, LogFile>();
+
+	private volatile boolean stopFlag = true;
+	private volatile boolean exitFlag = false;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param bufferSize
+	 *            リングバッファのサイズを設定します. ２の累乗に切り上げられます.
+	 * @param overflow
+	 *            バッファが満杯の場合の処理方法を設定します.
+	 */
+	protected AsyncLogWriter(int bufferSize, int overflow) {
+		if (bufferSize < 16) {
+			bufferSize = 16;
+		}
+		int len = Integer.highestOneBit(bufferSize);
+		if (len < bufferSize) {
+			len <<= 1;
+		}
+		this.mask = len - 1;
+		this.buffer = new LogLine[len];
+		this.sequences = new AtomicLongArray(len);
+		for (int i = 0; i < len; i++) {
+			sequences.set(i, i);
+		}
+		this.overflow = overflow;
+	}
+
+	/**
+	 * overflowの文字列から処理方法を取得.
+	 *
+	 * @param name
+	 * @return int
+	 */
+	protected static final int overflowPolicy(String name) {
+		if (name != null) {
+			name = name.trim().toLowerCase().replace("-", "").replace("_", "");
+			if ("dropdebug".equals(name)) {
+				return OVERFLOW_DROP_DEBUG;
+			} else if ("dropall".equals(name)) {
+				return OVERFLOW_DROP_ALL;
+			}
+		}
+		return OVERFLOW_BLOCK;
+	}
+
+	protected void startThread() {
+		stopFlag = false;
+		setName("rhigin-log-writer");
+		setDaemon(true);
+		start();
+	}
+
+	/**
+	 * 書き込みスレッドを停止.
+	 * 未出力のログを全て出力してから終了します.
+	 */
+	protected void stopThread() {
+		stopFlag = true;
+		signal();
+		try {
+			join(WAIT_TIME * 5);
+		} catch (Exception e) {
+		}
+	}
+
+	protected boolean isStopThread() {
+		return stopFlag;
+	}
+
+	protected boolean isExitThread() {
+		return exitFlag;
+	}
+
+	/**
+	 * 破棄されたログ数を取得.
+	 *
+	 * @return long
+	 */
+	protected long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * ログ出力を追加.
+	 *
+	 * @return boolean [false]の場合、書き込みスレッドが停止しているので同期出力が必要です.
+	 */
+	protected boolean offer(String name, long fileSize, int typeNo, String logDir, String format) {
+		final LogLine line = new LogLine(name, fileSize, logDir, format);
+		final boolean drop = overflow == OVERFLOW_DROP_ALL || (overflow == OVERFLOW_DROP_DEBUG && typeNo <= 1);
+		while (!stopFlag) {
+			if (push(line)) {
+				signal();
+				return true;
+			} else if (drop) {
+				droppedCount.incrementAndGet();
+				return true;
+			}
+			// バッファが空くまで待機.
+			signal();
+			LockSupport.parkNanos(50000L);
+		}
+		return false;
+	}
+
+	// 書き込みスレッドが待機中の場合は起こす.
+	private final void signal() {
+		if (wait.isWait()) {
+			try {
+				wait.signal();
+			} catch (Exception e) {
+			}
+		}
+	}
+
+	// リングバッファに追加.
+	private final boolean push(LogLine line) {
+		long pos, dif;
+		int idx;
+		while (true) {
+			pos = tail.get();
+			idx = (int) (pos & mask);
+			dif = sequences.get(idx) - pos;
+			if (dif == 0L) {
+				if (tail.compareAndSet(pos, pos + 1L)) {
+					break;
+				}
+			} else if (dif < 0L) {
+				// 満杯.
+				return false;
+			}
+		}
+		buffer[idx] = line;
+		sequences.set(idx, pos + 1L);
+		return true;
+	}
+
+	// リングバッファから取得(書き込みスレッドのみ).
+	private final LogLine poll() {
+		final int idx = (int) (head & mask);
+		if (sequences.get(idx) != head + 1L) {
+			return null;
+		}
+		final LogLine ret = buffer[idx];
+		buffer[idx] = null;
+		sequences.set(idx, head + mask + 1L);
+		head++;
+		return ret;
+	}
+
+	public void run() {
+		try {
+			while (!stopFlag) {
+				if (drain() == 0) {
+					wait.await(WAIT_TIME);
+				}
+			}
+		} catch (Throwable t) {
+		} finally {
+			stopFlag = true;
+			// 未出力のログを出力.
+			try {
+				while (drain() > 0)
+					;
+			} catch (Throwable t) {
+			}
+			closeAll();
+			exitFlag = true;
+		}
+	}
+
+	// リングバッファ内容をまとめて出力.
+	private final int drain() {
+		int cnt = 0;
+		LogLine line;
+		LogFile f;
+		final int nowKey = LogFactory.dateKey(new Date());
+		final StringBuilder console = new StringBuilder();
+		while (cnt < BATCH_LENGTH && (line = poll()) != null) {
+			cnt++;
+			final String key = line.logDir + line.name;
+			if ((f = files.get(key)) == null) {
+				f = new LogFile(line.name, line.logDir);
+				files.put(key, f);
+			}
+			try {
+				f.write(line.format.getBytes("UTF8"), line.fileSize, nowKey);
+			} catch (Exception e) {
+				f.close();
+			}
+			console.append(line.format);
+		}
+		if (cnt > 0) {
+			flushAll();
+			System.out.print(console);
+		}
+		return cnt;
+	}
+
+	private final void flushAll() {
+		final Iterator<LogFile> it = files.values().iterator();
+		while (it.hasNext()) {
+			final LogFile f = it.next();
+			if (f.out != null) {
+				try {
+					f.out.flush();
+				} catch (Exception e) {
+					f.close();
+				}
+			}
+		}
+	}
+
+	private final void closeAll() {
+		final Iterator<LogFile> it = files.values().iterator();
+		while (it.hasNext()) {
+			it.next().close();
+		}
+		files.clear();
+	}
+}
@@ -15,6 +15,8 @@ import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 
 import rhigin.RhiginConstants;
+import rhigin.downs.CallbackShutdown;
+import rhigin.downs.ShutdownHook;
 import rhigin.util.Converter;
 import rhigin.util.FileUtil;
 
@@ -146,21 +148,119 @@ public class LogFactory {
 		}
 	}
 
-	// ログ出力処理.
+	// 日付比較用の値を取得.
 	@SuppressWarnings("deprecation")
+	protected static final int dateKey(Date d) {
+		return (d.getYear() & 31) | ((d.getMonth() & 31) << 9) | ((d.getDate() & 31) << 18);
+	}
+
+	// 現在のログファイルをリネームして、gzip圧縮する.
+	protected static final void rotate(final File dir, final String name, final String logDir,
+			final File stat, final Date date) {
+		// 現在のログファイルをリネームして、新しいログファイルに移行する.
+		int p, v;
+		String n;
+		int cnt = -1;
+		File renameToStat = null;
+		final String fileName = name + ".log";
+		final String targetName = fileName + "." + dateString(date) + ".";
+
+		// nameでjava内同期.
+		final String sync = name.intern();
+		synchronized (sync) {
+			// 指定フォルダ内から、targetNameの条件とマッチするものを検索.
+			String[] list = dir.list(new FilenameFilter() {
+				public boolean accept(final File file, final String str) {
+					return str.indexOf(targetName) == 0;
+				}
+			});
+			// そこの一番高いカウント値＋１の値を取得.
+			int len = (list == null) ? 0 : list.length;
+			for (int i = 0; i < len; i++) {
+				n = list[i];
+				p = n.lastIndexOf(".");
+				v = Converter.parseInt(n.substring(p + 1));
+				if (cnt < v) {
+					cnt = v;
+				}
+			}
+			// 今回のファイルをリネーム.
+			stat.renameTo(renameToStat = new File(logDir + targetName + (cnt + 1)));
+		}
+
+		// リネーム先ファイル名.
+		final String tname = logDir + targetName + (cnt + 1);
+		final File tstat = renameToStat;
+
+		// gzip圧縮(スレッド実行).
+		Thread t = new Thread() {
+			public void run() {
+				try {
+					int len;
+					byte[] b = new byte[1024];
+					InputStream in = new BufferedInputStream(new FileInputStream(tname));
+					OutputStream out = null;
+					try {
+						out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tname + ".gz")));
+						while ((len = in.read(b)) != -1) {
+							out.write(b, 0, len);
+						}
+						out.flush();
+						out.close();
+						out = null;
+						in.close();
+						in = null;
+						tstat.delete();
+					} catch (Exception e) {
+					} finally {
+						if (out != null) {
+							try {
+								out.close();
+							} catch (Exception e) {
+							}
+						}
+						if (in != null) {
+							try {
+								in.close();
+							} catch (Exception e) {
+							}
+						}
+					}
+				} catch (Exception e) {
+				}
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+		t = null;
+	}
+
+	// ログ出力処理.
 	public static final void write(final String name, final int logLevel, final long fileSize, final int typeNo,
 			final String logDir, final Object... args) {
 		// 指定されたログレベル以下はログ出力させない場合.
 		if (typeNo < logLevel) {
 			return;
 		}
+		final String format = format(numberLogLevelByStr(typeNo), args);
+
+		// 非同期ログ出力が有効な場合.
+		final AsyncLogWriter w = asyncWriter;
+		if (w != null && w.offer(name, fileSize, typeNo, logDir, format)) {
+			return;
+		}
+		writeFile(name, fileSize, logDir, format);
+	}
+
+	// 同期でのログファイル出力.
+	protected static final void writeFile(final String name, final long fileSize, final String logDir,
+			final String format) {
 		// ログ出力先がない場合は作成.
 		final File dir = new File(logDir);
 		if (!dir.isDirectory()) {
 			dir.mkdirs();
 		}
 
-		final String format = format(numberLogLevelByStr(typeNo), args);
 		final String fileName = name + ".log";
 		final File stat = new File(logDir + fileName);
 		final Date date = new Date(stat.lastModified());
@@ -168,90 +268,79 @@ public class LogFactory {
 
 		// ファイルサイズの最大値が設定されていて、その最大値が増える場合.
 		// また、現在のログファイルの日付が、現在の日付と一致しない場合.
-		if (stat.isFile() && ((fileSize > 0 && stat.length() + format.length() > fileSize) || ((date.getYear() & 31)
-				| ((date.getMonth() & 31) << 9) | ((date.getDate() & 31) << 18)) != ((now.getYear() & 31)
-						| ((now.getMonth() & 31) << 9) | ((now.getDate() & 31) << 18)))) {
+		if (stat.isFile() && ((fileSize > 0 && stat.length() + format.length() > fileSize) ||
+				dateKey(date) != dateKey(now))) {
 			// 現在のログファイルをリネームして、新しいログファイルに移行する.
-			int p, v;
-			String n;
-			int cnt = -1;
-			File renameToStat = null;
-			final String targetName = fileName + "." + dateString(date) + ".";
-
-			// nameでjava内同期.
-			final String sync = name.intern();
-			synchronized (sync) {
-				// 指定フォルダ内から、targetNameの条件とマッチするものを検索.
-				String[] list = dir.list(new FilenameFilter() {
-					public boolean accept(final File file, final String str) {
-						return str.indexOf(targetName) == 0;
-					}
-				});
-				// そこの一番高いカウント値＋１の値を取得.
-				int len = (list == null) ? 0 : list.length;
-				for (int i = 0; i < len; i++) {
-					n = list[i];
-					p = n.lastIndexOf(".");
-					v = Converter.parseInt(n.substring(p + 1));
-					if (cnt < v) {
-						cnt = v;
-					}
-				}
-				// 今回のファイルをリネーム.
-				stat.renameTo(renameToStat = new File(logDir + targetName + (cnt + 1)));
-			}
-
-			// リネーム先ファイル名.
-			final String tname = logDir + targetName + (cnt + 1);
-			final File tstat = renameToStat;
-
-			// gzip圧縮(スレッド実行).
-			Thread t = new Thread() {
-				public void run() {
-					try {
-						int len;
-						byte[] b = new byte[1024];
-						InputStream in = new BufferedInputStream(new FileInputStream(tname));
-						OutputStream out = null;
-						try {
-							out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tname + ".gz")));
-							while ((len = in.read(b)) != -1) {
-								out.write(b, 0, len);
-							}
-							out.flush();
-							out.close();
-							out = null;
-							in.close();
-							in = null;
-							tstat.delete();
-						} catch (Exception e) {
-						} finally {
-							if (out != null) {
-								try {
-									out.close();
-								} catch (Exception e) {
-								}
-							}
-							if (in != null) {
-								try {
-									in.close();
-								} catch (Exception e) {
-								}
-							}
-						}
-					} catch (Exception e) {
-					}
-				}
-			};
-			t.setDaemon(true);
-			t.start();
-			t = null;
+			rotate(dir, name, logDir, stat, date);
 		}
 		// ログ出力.
 		appendFile(logDir + fileName, format);
 		System.out.print(format);
 	}
 
+	// 非同期ログ出力.
+	private static volatile AsyncLogWriter asyncWriter = null;
+
+	/**
+	 * 非同期ログ出力を開始.
+	 * 
+	 * @param bufferSize
+	 *            リングバッファのサイズを設定します.
+	 * @param overflow
+	 *            リングバッファが満杯の場合の処理方法を設定します.
+	 *            [block], [dropDebug], [dropAll] のどれかを設定します.
+	 */
+	public static final synchronized void startAsync(int bufferSize, String overflow) {
+		if (asyncWriter != null) {
+			return;
+		}
+		final AsyncLogWriter w = new AsyncLogWriter(bufferSize, AsyncLogWriter.overflowPolicy(overflow));
+		w.startThread();
+		asyncWriter = w;
+		// システム終了時に未出力のログを出力する.
+		try {
+			ShutdownHook.registHook(new CallbackShutdown() {
+				public void execution() {
+					stopAsync();
+					exitShutdown();
+				}
+			});
+		} catch (Exception e) {
+		}
+	}
+
+	/**
+	 * 非同期ログ出力を停止.
+	 * 未出力のログは全て出力されます.
+	 */
+	public static final synchronized void stopAsync() {
+		final AsyncLogWriter w = asyncWriter;
+		if (w == null) {
+			return;
+		}
+		w.stopThread();
+		asyncWriter = null;
+	}
+
+	/**
+	 * 非同期ログ出力中かチェック.
+	 * 
+	 * @return boolean [true]の場合、非同期でログ出力しています.
+	 */
+	public static final boolean isAsync() {
+		return asyncWriter != null;
+	}
+
+	/**
+	 * 非同期ログ出力で破棄されたログ数を取得.
+	 * 
+	 * @return long 破棄されたログ数が返却されます.
+	 */
+	public static final long getDroppedCount() {
+		final AsyncLogWriter w = asyncWriter;
+		return w == null ? 0L : w.getDroppedCount();
+	}
+
 	/**
 	 * ログ基本設定.
 	 * 
@@ -308,6 +397,17 @@ public class LogFactory {
 		}
 		setting(level, fileSize, dir);
 
+		// 非同期ログ出力の設定.
+		Object o = json.get("async");
+		if (o != null && Converter.isBool(o) && Converter.convertBool(o)) {
+			int bufferSize = AsyncLogWriter.DEF_BUFFER_SIZE;
+			if (Converter.isNumeric(json.get("asyncBufferSize"))) {
+				bufferSize = Converter.convertInt(json.get("asyncBufferSize"));
+			}
+			o = json.get("overflow");
+			startAsync(bufferSize, o == null ? null : "" + o);
+		}
+
 		// コンフィグ情報として保持.
 		config = json;
 	}
@@ -31,6 +31,16 @@ public final class NetConstants {
 	 * NioElement ByteArrayIOバッファサイズ.
 	 */
 	public static final int NIO_ELEMENT_BUFFER_SIZE = 512;
+
+	/**
+	 * NioReadBuffer スラブサイズ.
+	 */
+	public static final int NIO_READ_BUFFER_SLAB_SIZE = 2048;
+
+	/**
+	 * NioReadBuffer フリーリストで保持する最大スラブ数.
+	 */
+	public static final int NIO_READ_BUFFER_POOL_SIZE = 8192;
 	
 	/** ipPermission.json名. **/
 	public static final String IP_PERMISSION_JSON = "ipPermission";
@@ -0,0 +1,327 @@
+package rhigin.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.SelectionKey;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rhigin.util.VirtualThreads;
+
+/**
+ * 送信データを別スレッドで生成するInputStream.
+ *
+ * DBからの読み込み等のブロッキング処理を伴うデータ生成を実行スレッドで行い、
+ * 生成済みのデータを一定数までバッファします.
+ * Nioの送信処理は生成済みのデータのみを送信し、生成待ちの場合はOP_WRITEを解除して、
+ * データ生成後にOP_WRITEを再開するので、Nioスレッドでデータ生成処理は実行されません.
+ */
+public abstract class NioAsyncInputStream extends InputStream {
+	/** バッファする生成済みデータの最大数. **/
+	private static final int MAX_CHUNK = 4;
+
+	// スレッドプールのアイドル時間(秒).
+	private static final long KEEP_ALIVE_SECOND = 60L;
+
+	// chunked終端.
+	private static final byte[] CHUNK_END = new byte[] { '0', '\r', '\n', '\r', '\n' };
+
+	// 実行スレッド.
+	private static volatile ExecutorService executor = null;
+	private static final Object executorSync = new Object();
+
+	// 生成済みデータ.
+	private final LinkedList<byte[]> queue = new LinkedList<byte[]>();
+	private final Object sync = new Object();
+	private byte[] data = null;
+	private int position = 0;
+
+	// 状態.
+	private boolean running = false;
+	private boolean end = false;
+	private boolean closed = false;
+	private boolean cleaned = false;
+	private boolean chunked = false;
+	private boolean chunkEnd = false;
+	private IOException error = null;
+
+	// OP_WRITEを解除した通信要素.
+	private NioElement waiting = null;
+
+	// データ生成処理.
+	private final Runnable producer = new Runnable() {
+		@Override
+		public void run() {
+			produceLoop();
+		}
+	};
+
+	// 終了処理.
+	private final Runnable cleaner = new Runnable() {
+		@Override
+		public void run() {
+			callCleanup();
+		}
+	};
+
+	/**
+	 * 送信データを生成.
+	 * この処理は実行スレッドで呼び出されます.
+	 *
+	 * @return byte[] 生成したデータが返却されます. [null]の場合は終端です.
+	 * @exception Exception 例外.
+	 */
+	protected abstract byte[] produce() throws Exception;
+
+	/**
+	 * 終了処理.
+	 * 生成終了かクローズ後に１度だけ、実行スレッドで呼び出されます.
+	 */
+	protected abstract void cleanup();
+
+	/**
+	 * chunked形式で出力するか設定.
+	 * 読み込み開始前に設定します.
+	 *
+	 * @param chunked [true]の場合、生成データをchunked形式で出力します.
+	 */
+	public void setChunked(boolean chunked) {
+		synchronized (sync) {
+			this.chunked = chunked;
+		}
+	}
+
+	/**
+	 * Nioの送信処理から生成済みのデータを読み込む.
+	 * 生成待ちの場合は、通信要素のOP_WRITEを解除し、データ生成後に再開します.
+	 *
+	 * @param em  対象の通信要素を設定します.
+	 * @param b   読み込み先のバイナリを設定します.
+	 * @param off 読み込み先のオフセット値を設定します.
+	 * @param len 読み込み長を設定します.
+	 * @return int 読み込んだ長さが返却されます. [0]の場合は生成待ち、[-1]の場合は終端です.
+	 * @exception IOException I/O例外.
+	 */
+	public int read(NioElement em, byte[] b, int off, int len) throws IOException {
+		synchronized (sync) {
+			final int ret = take(b, off, len);
+			if (ret != 0) {
+				return ret;
+			}
+			startProduce();
+			// 生成後に再開するので、それまでOP_WRITEを解除.
+			waiting = em;
+			em.interestOps(SelectionKey.OP_READ);
+			return 0;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		final byte[] b = new byte[1];
+		while (true) {
+			final int ret = read(b, 0, 1);
+			if (ret == -1) {
+				return -1;
+			} else if (ret == 1) {
+				return b[0] & 0x00ff;
+			}
+		}
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len <= 0) {
+			return 0;
+		}
+		synchronized (sync) {
+			while (true) {
+				final int ret = take(b, off, len);
+				if (ret != 0) {
+					return ret;
+				}
+				startProduce();
+				try {
+					sync.wait();
+				} catch (InterruptedException ie) {
+					throw new InterruptedIOException();
+				}
+			}
+		}
+	}
+
+	@Override
+	public int available() throws IOException {
+		synchronized (sync) {
+			return data == null ? 0 : data.length - position;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		boolean clean;
+		synchronized (sync) {
+			closed = true;
+			queue.clear();
+			data = null;
+			waiting = null;
+			sync.notifyAll();
+			clean = isCleanup();
+		}
+		// 終了処理はNioスレッドで行わない.
+		if (clean) {
+			getExecutor().execute(cleaner);
+		}
+	}
+
+	// 生成済みのデータを取得.
+	private final int take(byte[] b, int off, int len) throws IOException {
+		if (data == null || position >= data.length) {
+			data = null;
+			if (!queue.isEmpty()) {
+				data = queue.removeFirst();
+				position = 0;
+				// 空きができたので生成を再開.
+				startProduce();
+			} else if (error != null) {
+				throw error;
+			} else if (closed) {
+				return -1;
+			} else if (end) {
+				if (!chunked || chunkEnd) {
+					return -1;
+				}
+				chunkEnd = true;
+				data = CHUNK_END;
+				position = 0;
+			} else {
+				return 0;
+			}
+		}
+		final int ret = Math.min(len, data.length - position);
+		System.arraycopy(data, position, b, off, ret);
+		position += ret;
+		return ret;
+	}
+
+	// データ生成処理を開始.
+	private final void startProduce() {
+		if (!running && !end && !closed && queue.size() < MAX_CHUNK) {
+			running = true;
+			getExecutor().execute(producer);
+		}
+	}
+
+	// 終了処理が必要かチェック.
+	private final boolean isCleanup() {
+		if (!cleaned && !running && (end || closed)) {
+			cleaned = true;
+			return true;
+		}
+		return false;
+	}
+
+	// バッファが一杯になるまでデータを生成.
+	private final void produceLoop() {
+		byte[] b;
+		NioElement em;
+		boolean clean;
+		while (true) {
+			synchronized (sync) {
+				if (end || closed || queue.size() >= MAX_CHUNK) {
+					running = false;
+					clean = isCleanup();
+					break;
+				}
+			}
+			IOException err = null;
+			try {
+				b = produce();
+			} catch (IOException ie) {
+				b = null;
+				err = ie;
+			} catch (Exception e) {
+				b = null;
+				err = new IOException(e);
+			}
+			synchronized (sync) {
+				if (err != null) {
+					error = err;
+					end = true;
+				} else if (b == null) {
+					end = true;
+				} else if (b.length > 0 && !closed) {
+					queue.addLast(chunked ? chunk(b) : b);
+				}
+				em = waiting;
+				waiting = null;
+				sync.notifyAll();
+			}
+			// OP_WRITEを再開.
+			if (em != null) {
+				try {
+					em.startWrite();
+				} catch (Exception e) {
+				}
+			}
+		}
+		if (clean) {
+			callCleanup();
+		}
+	}
+
+	// 終了処理を実行.
+	private final void callCleanup() {
+		try {
+			cleanup();
+		} catch (Exception e) {
+		}
+	}
+
+	// chunked形式に変換.
+	private static final byte[] chunk(byte[] b) {
+		final byte[] head = (Integer.toHexString(b.length) + "\r\n").getBytes();
+		final byte[] ret = new byte[head.length + b.length + 2];
+		System.arraycopy(head, 0, ret, 0, head.length);
+		System.arraycopy(b, 0, ret, head.length, b.length);
+		ret[ret.length - 2] = '\r';
+		ret[ret.length - 1] = '\n';
+		return ret;
+	}
+
+	// 実行スレッドを取得.
+	private static final ExecutorService getExecutor() {
+		ExecutorService ret = executor;
+		if (ret == null) {
+			synchronized (executorSync) {
+				if ((ret = executor) == null) {
+					ret = VirtualThreads.newExecutor();
+					if (ret == null) {
+						final int len = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+						final ThreadPoolExecutor t = new ThreadPoolExecutor(len, len, KEEP_ALIVE_SECOND,
+							TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+								private final AtomicInteger no = new AtomicInteger(0);
+
+								@Override
+								public Thread newThread(Runnable r) {
+									final Thread ret = new Thread(r, "nioAsync-" + no.incrementAndGet());
+									ret.setDaemon(true);
+									return ret;
+								}
+							});
+						t.allowCoreThreadTimeOut(true);
+						ret = t;
+					}
+					executor = ret;
+				}
+			}
+		}
+		return ret;
+	}
+}
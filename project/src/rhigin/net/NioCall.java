@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 
 /**
  * Nioコールバック.
@@ -74,10 +75,42 @@ public abstract class NioCall {
 		InputStream in = em.getSendData();
 		final byte[] sendTempBinary = em.getSendTempBinary();
 		while (true) {
+			// 送信データが全て読み込み済みの場合.
+			if (in == null) {
+				// 送信あまりが存在しない場合は処理終了.
+				return buf.position() != 0;
+			}
 			// FileChannelで処理できる場合.
 			if (in instanceof FileInputStream) {
-				// dataBinaryを使わず、直接FileにDirectByteBufferの読み込みを行う.
 				FileChannel ch = ((FileInputStream) in).getChannel();
+				// 送信バッファが空の場合は、transferToでSocketChannelに直接転送する.
+				if (buf.position() == 0 && em.getKey() != null) {
+					final long pos = ch.position();
+					final long size = ch.size();
+					if (pos < size) {
+						final long len = ch.transferTo(pos, size - pos, (SocketChannel) em.getKey().channel());
+						ch.position(pos + len);
+						// 送信あまりが存在する場合は、次のOP_WRITEで続きを転送.
+						if (pos + len < size) {
+							return true;
+						}
+					}
+					// 現在の inputStream を破棄.
+					InputStream endInputStream = em.removeSendData();
+					if (endInputStream != null) {
+						try {
+							endInputStream.close();
+						} catch (Exception e) {
+						}
+					}
+					in = em.getSendData();
+					if (in != null) {
+						continue;
+					}
+					// 処理終了.
+					return false;
+				}
+				// 送信バッファに残りがある場合は、dataBinaryを使わず、直接FileにDirectByteBufferの読み込みを行う.
 				// データ終端.
 				if (ch.read(buf) == -1) {
 					// 現在の inputStream を破棄.
@@ -105,7 +138,16 @@ public abstract class NioCall {
 			} else {
 				// 一旦バイナリデータにセット.
 				int len = buf.limit() - buf.position();
-				len = in.read(sendTempBinary, 0, len);
+				if (in instanceof NioAsyncInputStream) {
+					// 別スレッドで生成するデータは、生成済みの分のみ取得する.
+					len = ((NioAsyncInputStream) in).read(em, sendTempBinary, 0, len);
+					if (len == 0) {
+						// 生成待ちの場合は、OP_WRITEが解除されて生成後に再開される.
+						return true;
+					}
+				} else {
+					len = in.read(sendTempBinary, 0, len);
+				}
 				if (len == -1) {
 					// 現在の inputStream を破棄.
 					InputStream endInputStream = em.removeSendData();
@@ -136,6 +178,19 @@ public abstract class NioCall {
 		}
 	}
 
+	/**
+	 * アイドルタイムアウトチェック.
+	 * 
+	 * @param em
+	 *            対象のBaseNioElementオブジェクトが設定されます.
+	 * @param now
+	 *            現在時間(ミリ秒)が設定されます.
+	 * @return boolean [true]の場合、対象の要素はクローズされます.
+	 */
+	public boolean isIdleTimeout(NioElement em, long now) {
+		return false;
+	}
+
 	/**
 	 * Receive処理.
 	 * 
@@ -9,6 +9,9 @@ import java.util.Iterator;
 
 /**
  * 基本Nio処理. accept,read,writeのnioイベントを１つのスレッドで処理します。
+ * 
+ * リアクター数が２以上の場合は、このスレッドはacceptのみを処理し、
+ * acceptされたSocketChannelをラウンドロビンで各NioReactorに振り分けます.
  */
 public class NioCore extends Thread {
 	private static final int SELECTOR_TIMEOUT = NetConstants.SELECTOR_TIMEOUT;
@@ -19,6 +22,8 @@ public class NioCore extends Thread {
 	private boolean tcpNoDeley;
 	private ServerSocketChannel server;
 	private NioCall call;
+	private int reactorLength;
+	private NioReactor[] reactors;
 
 	private volatile boolean stopFlag = true;
 	private volatile boolean exitFlag = false;
@@ -36,6 +41,26 @@ public class NioCore extends Thread {
 	 */
 	public NioCore(int byteBufferLength, int socketSendBuffer, int socketRecvBuffer, boolean keepAlive,
 			boolean tcpNoDeley, ServerSocketChannel server, NioCall call) {
+		this(byteBufferLength, socketSendBuffer, socketRecvBuffer, keepAlive, tcpNoDeley, server, call, 1);
+	}
+
+	/**
+	 * コンストラクタ.
+	 * 
+	 * @param byteBufferLength
+	 * @param socketSendBuffer
+	 * @param socketRecvBuffer
+	 * @param keepAlive
+	 * @param tcpNoDeley
+	 * @param server
+	 * @param call
+	 * @param reactorLength
+	 *            read,writeを処理するリアクタースレッド数を設定します.
+	 *            [1]以下の場合は、このスレッドでaccept,read,writeを処理します.
+	 */
+	public NioCore(int byteBufferLength, int socketSendBuffer, int socketRecvBuffer, boolean keepAlive,
+			boolean tcpNoDeley, ServerSocketChannel server, NioCall call, int reactorLength) {
+		this.reactorLength = reactorLength <= 1 ? 1 : reactorLength;
 		this.byteBufferLength = byteBufferLength;
 		this.socketSendBuffer = socketSendBuffer;
 		this.socketRecvBuffer = socketRecvBuffer;
@@ -55,6 +80,15 @@ public class NioCore extends Thread {
 		stopFlag = true;
 	}
 
+	/**
+	 * リアクタースレッド数を取得.
+	 * 
+	 * @return int リアクタースレッド数が返却されます.
+	 */
+	public int getReactorLength() {
+		return reactorLength;
+	}
+
 	public boolean isStopThread() {
 		return stopFlag;
 	}
@@ -74,12 +108,16 @@ public class NioCore extends Thread {
 				try {
 					selector = new NioSelector();
 					selector.register(server, SelectionKey.OP_ACCEPT);
+					// リアクタースレッドを生成.
+					startReactor();
 					d = executeThread(selector);
 				} catch (Exception e) {
 					call.error(e);
 				}
 			}
 		} finally {
+			// リアクタースレッドを停止.
+			stopReactor();
 			// セレクタクローズ.
 			if (selector != null) {
 				try {
@@ -104,11 +142,148 @@ public class NioCore extends Thread {
 		}
 	}
 
+	/** リアクタースレッドを生成. **/
+	private final void startReactor() throws Exception {
+		if (reactorLength <= 1) {
+			return;
+		}
+		final NioReactor[] r = new NioReactor[reactorLength];
+		for (int i = 0; i < reactorLength; i++) {
+			r[i] = new NioReactor(i, byteBufferLength, call);
+			r[i].startThread();
+		}
+		reactors = r;
+	}
+
+	/** リアクタースレッドを停止. **/
+	private final void stopReactor() {
+		final NioReactor[] r = reactors;
+		reactors = null;
+		if (r == null) {
+			return;
+		}
+		final int len = r.length;
+		for (int i = 0; i < len; i++) {
+			r[i].stopThread();
+		}
+		// リアクタースレッド停止待ち.
+		boolean allEndFlag = false;
+		while (!allEndFlag) {
+			allEndFlag = true;
+			for (int i = 0; i < len; i++) {
+				if (!r[i].isExitThread()) {
+					allEndFlag = false;
+					break;
+				}
+			}
+			if (!allEndFlag) {
+				try {
+					Thread.sleep(5);
+				} catch (Exception e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * 読み込み処理および書き込み処理.
+	 * 
+	 * @param key
+	 *            対象のSelectionKeyを設定します.
+	 * @param ops
+	 *            対象のreadyOpsを設定します.
+	 * @param buf
+	 *            処理スレッドのByteBufferを設定します.
+	 * @param cl
+	 *            対象のNioCallを設定します.
+	 * @exception IOException
+	 *                IO例外.
+	 */
+	protected static final void executeReadWrite(final SelectionKey key, final int ops, final ByteBuffer buf,
+			final NioCall cl) throws IOException {
+		final int OP_READ = SelectionKey.OP_READ;
+		final int OP_WRITE = SelectionKey.OP_WRITE;
+		if ((ops & OP_WRITE) != OP_WRITE && (ops & OP_READ) != OP_READ) {
+			return;
+		}
+		// 必要情報の取得に失敗
+		final NioElement em = (NioElement) key.attachment();
+		if (em == null) {
+			NioUtil.destroyKey(key);
+			return;
+		}
+		// ソケットチャネルを取得.
+		final SocketChannel ch = (SocketChannel) key.channel();
+		// 書き込み可能処理.
+		if ((ops & OP_WRITE) == OP_WRITE) {
+			// 送信前処理.
+			buf.clear();
+			final NioSendLess sl = em.getSendLess();
+			sl.setting(buf);
+			// [call] 送信処理.
+			if (!cl.send(em, buf)) {
+				em.clear();
+				return;
+			}
+			// 書き込み処理後.
+			buf.flip();
+			if (buf.remaining() > 0) {
+				// 書き込み対象のデータが存在する場合.
+				if (ch.write(buf) < 0) {
+					// 通信エラー.
+					em.clear();
+					return;
+				}
+				// 送信あまりがある場合.
+				sl.evacuate(buf);
+			}
+		}
+
+		// 読み込み可能処理.
+		if ((ops & OP_READ) == OP_READ) {
+			// 受信処理.
+			buf.clear();
+			if (ch.read(buf) < 0) {
+				// 通信エラー.
+				em.clear();
+				return;
+			}
+			buf.flip();
+			// [call] 受信処理.
+			if (!cl.receive(em, buf)) {
+				em.clear();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * アイドルタイムアウトした要素をクローズ.
+	 * 
+	 * @param selector
+	 *            対象のセレクタを設定します.
+	 * @param cl
+	 *            対象のNioCallを設定します.
+	 * @param now
+	 *            現在時間(ミリ秒)を設定します.
+	 */
+	protected static final void executeIdleTimeout(final NioSelector selector, final NioCall cl, final long now) {
+		NioElement em;
+		final Iterator<SelectionKey> it = selector.regKeys();
+		while (it.hasNext()) {
+			try {
+				if ((em = (NioElement) it.next().attachment()) != null && cl.isIdleTimeout(em, now)) {
+					em.clear();
+				}
+			} catch (Exception e) {
+			}
+		}
+	}
+
 	/** 処理スレッド. **/
 	private final ThreadDeath executeThread(final NioSelector selector) {
 		final int OP_ACCEPT = SelectionKey.OP_ACCEPT;
 		final int OP_READ = SelectionKey.OP_READ;
-		final int OP_WRITE = SelectionKey.OP_WRITE;
 		final int ssb = socketSendBuffer;
 		final int srb = socketRecvBuffer;
 		final boolean kpF = keepAlive;
@@ -116,23 +291,30 @@ public class NioCore extends Thread {
 		final ByteBuffer buf = ByteBuffer.allocateDirect(byteBufferLength);
 		final ServerSocketChannel sc = server;
 		final NioCall cl = call;
+		final NioReactor[] rs = reactors;
+		final int rsLen = rs == null ? 0 : rs.length;
+		int rsNo = 0;
 		ThreadDeath ret = null;
 		boolean endFlag = false;
+		long now;
+		long nextIdleCheck = 0L;
 		int ops;
 		Iterator<SelectionKey> it;
 		SelectionKey key = null;
 		SocketChannel ch = null;
 		NioElement em = null;
-		NioSendLess sl = null;
 		while (!endFlag && !stopFlag) {
 			key = null;
 			em = null;
-			sl = null;
 			try {
 				while (!endFlag && !stopFlag) {
 					key = null;
 					em = null;
-					sl = null;
+					// アイドルタイムアウトチェック.
+					if ((now = System.currentTimeMillis()) >= nextIdleCheck) {
+						executeIdleTimeout(selector, cl, now);
+						nextIdleCheck = now + SELECTOR_TIMEOUT;
+					}
 					if (!selector.select(SELECTOR_TIMEOUT)) {
 						continue;
 					}
@@ -140,7 +322,6 @@ public class NioCore extends Thread {
 					while (it.hasNext()) {
 						key = null;
 						em = null;
-						sl = null;
 						try {
 							// 今回処理対象の内容を取得.
 							key = it.next();
@@ -164,6 +345,14 @@ public class NioCore extends Thread {
 								}
 								// ソケット初期化.
 								if (NioUtil.initSocket(ch, ssb, srb, kpF, tnF)) {
+									// リアクタースレッドが存在する場合は、ラウンドロビンで振り分ける.
+									if (rsLen > 0) {
+										rs[rsNo].register(ch);
+										if (++rsNo >= rsLen) {
+											rsNo = 0;
+										}
+										continue;
+									}
 									// 要素の登録.
 									em = cl.createElement();
 									em.registor(selector, ch, OP_READ);
@@ -180,59 +369,7 @@ public class NioCore extends Thread {
 								}
 							}
 							// (Socket)読み込み処理および書き込み処理.
-							if ((ops & OP_WRITE) == OP_WRITE || (ops & OP_READ) == OP_READ) {
-								// 必要情報の取得に失敗
-								if ((em = (NioElement) key.attachment()) == null) {
-									if (key != null) {
-										NioUtil.destroyKey(key);
-									}
-									continue;
-								}
-								// ソケットチャネルを取得.
-								ch = (SocketChannel) key.channel();
-								// 書き込み可能処理.
-								if ((ops & OP_WRITE) == OP_WRITE) {
-									// 送信前処理.
-									buf.clear();
-									sl = em.getSendLess();
-									sl.setting(buf);
-									// [call] 送信処理.
-									if (!cl.send(em, buf)) {
-										em.clear();
-										continue;
-									}
-									// 書き込み処理後.
-									buf.flip();
-									if (buf.remaining() > 0) {
-										// 書き込み対象のデータが存在する場合.
-										if (ch.write(buf) < 0) {
-											// 通信エラー.
-											em.clear();
-											continue;
-										}
-										// 送信あまりがある場合.
-										sl.evacuate(buf);
-									}
-									sl = null;
-								}
-
-								// 読み込み可能処理.
-								if ((ops & OP_READ) == OP_READ) {
-									// 受信処理.
-									buf.clear();
-									if (ch.read(buf) < 0) {
-										// 通信エラー.
-										em.clear();
-										continue;
-									}
-									buf.flip();
-									// [call] 受信処理.
-									if (!cl.receive(em, buf)) {
-										em.clear();
-										continue;
-									}
-								}
-							}
+							executeReadWrite(key, ops, buf, cl);
 						} catch (IOException e) {
 							if (key != null) {
 								NioUtil.destroyKey(key);
@@ -0,0 +1,213 @@
+package rhigin.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Nioリアクタースレッド. NioCoreでacceptされたSocketChannelを受け取り、
+ * 専用のSelectorとByteBufferでread,writeのnioイベントを処理します.
+ */
+public class NioReactor extends Thread {
+	private static final int SELECTOR_TIMEOUT = NetConstants.SELECTOR_TIMEOUT;
+	private final int no;
+	private final int byteBufferLength;
+	private final NioCall call;
+	private final byte[] sendTempBinary;
+	private final Queue<SocketChannel> acceptQueue = new ConcurrentLinkedQueue<SocketChannel>();
+	private NioSelector selector;
+
+	private volatile boolean stopFlag = true;
+	private volatile boolean exitFlag = false;
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param no
+	 * @param byteBufferLength
+	 * @param call
+	 * @exception Exception
+	 */
+	public NioReactor(int no, int byteBufferLength, NioCall call) throws Exception {
+		this.no = no;
+		this.byteBufferLength = byteBufferLength;
+		this.call = call;
+		this.sendTempBinary = new byte[byteBufferLength];
+		this.selector = new NioSelector();
+	}
+
+	public void startThread() {
+		stopFlag = false;
+		setDaemon(true);
+		start();
+	}
+
+	public void stopThread() {
+		stopFlag = true;
+		final NioSelector s = selector;
+		if (s != null) {
+			s.wakeup();
+		}
+	}
+
+	public boolean isStopThread() {
+		return stopFlag;
+	}
+
+	public boolean isExitThread() {
+		return exitFlag;
+	}
+
+	/**
+	 * リアクター番号を取得.
+	 *
+	 * @return int リアクター番号が返却されます.
+	 */
+	public int getNo() {
+		return no;
+	}
+
+	/**
+	 * acceptされたSocketChannelを登録.
+	 *
+	 * @param ch
+	 *            初期化済みのSocketChannelを設定します.
+	 */
+	public void register(SocketChannel ch) {
+		acceptQueue.offer(ch);
+		final NioSelector s = selector;
+		if (s != null) {
+			s.wakeup();
+		}
+	}
+
+	public void run() {
+		ThreadDeath d = null;
+		try {
+			d = executeThread(selector);
+		} finally {
+			// セレクタクローズ.
+			final NioSelector s = selector;
+			selector = null;
+			if (s != null) {
+				try {
+					s.close();
+				} catch (Exception e) {
+				}
+			}
+			// 未登録のSocketChannelをクローズ.
+			SocketChannel ch;
+			while ((ch = acceptQueue.poll()) != null) {
+				try {
+					ch.close();
+				} catch (Exception e) {
+				}
+			}
+			exitFlag = true;
+		}
+		if (d != null) {
+			throw d;
+		}
+	}
+
+	/** acceptされたSocketChannelをセレクタに登録. **/
+	private final void registerAccept(final NioSelector selector, final NioCall cl) {
+		SocketChannel ch;
+		NioElement em;
+		while ((ch = acceptQueue.poll()) != null) {
+			em = null;
+			try {
+				// 要素の登録.
+				em = cl.createElement();
+				// 送信テンポラリバッファはリアクター単位で利用する.
+				em.setSendTempBinary(sendTempBinary);
+				em.registor(selector, ch, SelectionKey.OP_READ);
+				// [call] accept処理コール.
+				if (!cl.accept(em)) {
+					em.clear();
+				}
+			} catch (Exception e) {
+				if (em != null) {
+					em.clear();
+				} else {
+					try {
+						ch.close();
+					} catch (Exception ee) {
+					}
+				}
+			}
+		}
+	}
+
+	/** 処理スレッド. **/
+	private final ThreadDeath executeThread(final NioSelector selector) {
+		final ByteBuffer buf = ByteBuffer.allocateDirect(byteBufferLength);
+		final NioCall cl = call;
+		ThreadDeath ret = null;
+		boolean endFlag = false;
+		long now;
+		long nextIdleCheck = 0L;
+		Iterator<SelectionKey> it;
+		SelectionKey key = null;
+		while (!endFlag && !stopFlag) {
+			key = null;
+			try {
+				while (!endFlag && !stopFlag) {
+					key = null;
+					// acceptされたSocketChannelを登録.
+					if (!acceptQueue.isEmpty()) {
+						registerAccept(selector, cl);
+					}
+					// アイドルタイムアウトチェック.
+					if ((now = System.currentTimeMillis()) >= nextIdleCheck) {
+						NioCore.executeIdleTimeout(selector, cl, now);
+						nextIdleCheck = now + SELECTOR_TIMEOUT;
+					}
+					if (!selector.select(SELECTOR_TIMEOUT)) {
+						continue;
+					}
+					it = selector.iterator();
+					while (it.hasNext()) {
+						key = null;
+						try {
+							// 今回処理対象の内容を取得.
+							key = it.next();
+							it.remove();
+							// 対象キーが存在しない場合は処理しない.
+							if (key == null || !key.isValid()) {
+								// 取得情報が無効な場合は、オブジェクトクローズ.
+								if (key != null) {
+									NioUtil.destroyKey(key);
+								}
+								continue;
+							}
+							// (Socket)読み込み処理および書き込み処理.
+							NioCore.executeReadWrite(key, key.readyOps(), buf, cl);
+						} catch (IOException e) {
+							if (key != null) {
+								NioUtil.destroyKey(key);
+								key = null;
+							}
+						}
+					}
+				}
+			} catch (Throwable to) {
+				if (key != null) {
+					NioUtil.destroyKey(key);
+					key = null;
+				}
+				if (to instanceof InterruptedException) {
+					endFlag = true;
+				} else if (to instanceof ThreadDeath) {
+					endFlag = true;
+					ret = (ThreadDeath) to;
+				}
+			}
+		}
+		return ret;
+	}
+}
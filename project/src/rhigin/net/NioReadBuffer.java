@@ -1,56 +1,196 @@
 package rhigin.net;
 
+import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import rhigin.util.AtomicNumber;
 
 /**
  * Atomicにデータ受信を行うためのNio受信用バッファ.
+ *
+ * 受信データは固定長のスラブ(byte[])を連結して格納し、
+ * 読み込み済みのスラブは全体で共有するフリーリストに戻して再利用します.
+ *
+ * 書き込みはNioスレッド、読み込みはワーカースレッドのそれぞれ１スレッドで行います.
+ * クリア時は保持しているスラブをフリーリストに戻すので、クリア後は利用できません.
  */
 public class NioReadBuffer {
-	private final Queue<byte[]> buffer = new ConcurrentLinkedQueue<byte[]>();
+	/** スラブサイズ. **/
+	private static final int SLAB_SIZE = NetConstants.NIO_READ_BUFFER_SLAB_SIZE;
+
+	/** フリーリストで保持する最大スラブ数. **/
+	private static final int POOL_SIZE = NetConstants.NIO_READ_BUFFER_POOL_SIZE;
+
+	/** スラブのフリーリスト. **/
+	private static final Queue<byte[]> POOL = new ConcurrentLinkedQueue<byte[]>();
+	private static final AtomicNumber POOL_LENGTH = new AtomicNumber(0);
+
+	/** スラブを取得. **/
+	private static final byte[] getSlab() {
+		final byte[] ret = POOL.poll();
+		if (ret != null) {
+			POOL_LENGTH.remove(1);
+			return ret;
+		}
+		return new byte[SLAB_SIZE];
+	}
+
+	/** スラブを返却. **/
+	private static final void releaseSlab(byte[] b) {
+		if (POOL_LENGTH.get() < POOL_SIZE) {
+			POOL_LENGTH.add(1);
+			POOL.offer(b);
+		}
+	}
+
+	/**
+	 * フリーリストで保持しているスラブ数を取得.
+	 *
+	 * @return int
+	 */
+	public static final int poolSize() {
+		return POOL_LENGTH.get();
+	}
+
+	/** 連結されたスラブ. **/
+	private static final class Chunk {
+		final byte[] data;
+		// 読み込み位置(読み込みスレッドのみ).
+		int start;
+		// 書き込み位置(書き込みスレッドのみ更新).
+		volatile int end;
+		volatile Chunk next;
+
+		Chunk(byte[] data) {
+			this.data = data;
+		}
+	}
+
+	// 利用状態(下位ビットは処理中の数).
+	private static final int DESTROYED = 0x40000000;
+	private static final int RELEASED = 0x20000000;
+
 	private final AtomicNumber bufferLength = new AtomicNumber(0);
-	private byte[] topBuffer = null;
+	private final AtomicInteger state = new AtomicInteger(0);
+	private volatile Chunk head = null;
+	private Chunk tail = null;
 
 	/**
 	 * データクリア.
+	 *
+	 * 保持しているスラブをフリーリストに戻します.
+	 * 読み込み、書き込み処理中の場合は、その処理の終了時にフリーリストに戻します.
 	 */
 	public void clear() {
-		topBuffer = null;
-		buffer.clear();
+		int s;
+		while (true) {
+			s = state.get();
+			if ((s & DESTROYED) != 0) {
+				return;
+			} else if (state.compareAndSet(s, s | DESTROYED)) {
+				break;
+			}
+		}
+		if (s == 0) {
+			release();
+		}
+	}
+
+	// 処理開始.
+	private final boolean enter() {
+		int s;
+		while (true) {
+			s = state.get();
+			if ((s & DESTROYED) != 0) {
+				return false;
+			} else if (state.compareAndSet(s, s + 1)) {
+				return true;
+			}
+		}
+	}
+
+	// 処理終了.
+	private final void exit() {
+		if (state.decrementAndGet() == DESTROYED) {
+			release();
+		}
+	}
+
+	// クリア済みで処理中でない場合に、保持しているスラブをフリーリストに戻す.
+	private final void release() {
+		if (!state.compareAndSet(DESTROYED, DESTROYED | RELEASED)) {
+			return;
+		}
+		Chunk c = head;
+		head = null;
+		tail = null;
 		bufferLength.set(0);
+		while (c != null) {
+			releaseSlab(c.data);
+			c = c.next;
+		}
 	}
 
 	/**
 	 * 現在の格納バイナリ長を取得.
-	 * 
+	 *
 	 * @return
 	 */
 	public int size() {
 		return bufferLength.get();
 	}
 
+	// 書き込み先のスラブを取得.
+	private final Chunk writeChunk() {
+		Chunk t = tail;
+		if (t == null) {
+			t = new Chunk(getSlab());
+			tail = t;
+			head = t;
+		} else if (t.end == t.data.length) {
+			final Chunk c = new Chunk(getSlab());
+			t.next = c;
+			tail = t = c;
+		}
+		return t;
+	}
+
 	/**
 	 * 書き込み処理.
-	 * 
+	 *
 	 * @param buf
 	 */
 	public void write(ByteBuffer buf) {
-		final int bufLen = buf.remaining();
-		if (bufLen <= 0) {
+		int len = buf.remaining();
+		if (len <= 0 || !enter()) {
 			return;
 		}
-		final byte[] bin = new byte[bufLen];
-		buf.get(bin);
-		buffer.offer(bin);
-		bufferLength.add(bin.length);
+		try {
+			int e, n;
+			Chunk t;
+			final int all = len;
+			while (len > 0) {
+				t = writeChunk();
+				e = t.end;
+				if ((n = t.data.length - e) > len) {
+					n = len;
+				}
+				buf.get(t.data, e, n);
+				t.end = e + n;
+				len -= n;
+			}
+			bufferLength.add(all);
+		} finally {
+			exit();
+		}
 	}
 
 	/**
 	 * 書き込み処理.
-	 * 
+	 *
 	 * @param b
 	 */
 	public void write(byte[] b) {
@@ -59,7 +199,7 @@ public class NioReadBuffer {
 
 	/**
 	 * 書き込み処理.
-	 * 
+	 *
 	 * @param b
 	 * @param len
 	 */
@@ -69,21 +209,51 @@ public class NioReadBuffer {
 
 	/**
 	 * 書き込み処理.
-	 * 
+	 *
 	 * @param b
 	 * @param off
 	 * @param len
 	 */
 	public void write(byte[] b, int off, int len) {
-		final byte[] bin = new byte[len];
-		System.arraycopy(b, off, bin, 0, len);
-		buffer.offer(bin);
-		bufferLength.add(bin.length);
+		if (len <= 0 || !enter()) {
+			return;
+		}
+		try {
+			int e, n;
+			Chunk t;
+			final int all = len;
+			while (len > 0) {
+				t = writeChunk();
+				e = t.end;
+				if ((n = t.data.length - e) > len) {
+					n = len;
+				}
+				System.arraycopy(b, off, t.data, e, n);
+				t.end = e + n;
+				off += n;
+				len -= n;
+			}
+			bufferLength.add(all);
+		} finally {
+			exit();
+		}
+	}
+
+	// 読み込み対象のスラブを取得.
+	// 読み込み済みで、書き込みも終わっているスラブはフリーリストに戻す.
+	private final Chunk readChunk() {
+		Chunk h = head;
+		while (h != null && h.start == h.data.length && h.next != null) {
+			head = h.next;
+			releaseSlab(h.data);
+			h = head;
+		}
+		return h;
 	}
 
 	/**
 	 * 読み込み処理.
-	 * 
+	 *
 	 * @param b
 	 * @return
 	 */
@@ -93,7 +263,7 @@ public class NioReadBuffer {
 
 	/**
 	 * 読み込み処理.
-	 * 
+	 *
 	 * @param b
 	 * @param len
 	 * @return
@@ -104,121 +274,92 @@ public class NioReadBuffer {
 
 	/**
 	 * 読み込み処理.
-	 * 
+	 *
 	 * @param b
 	 * @param off
 	 * @param len
 	 * @return
 	 */
 	public int read(byte[] b, int off, int len) {
-		int bufLen, etcLen;
-		int ret = 0;
-		byte[] etcBuf;
-		byte[] buf = null;
-
-		// 前回読み込み中のTOPデータが存在する場合.
-		buf = topBuffer;
-		topBuffer = null;
-		if (buf != null) {
-			if (len < (bufLen = buf.length)) {
-				etcLen = len;
-				System.arraycopy(buf, 0, b, off, etcLen);
-				etcBuf = new byte[bufLen - etcLen];
-				System.arraycopy(buf, etcLen, etcBuf, 0, bufLen - etcLen);
-				topBuffer = etcBuf;
-				ret = etcLen;
-				bufferLength.remove(etcLen);
-				return ret;
-			}
-			System.arraycopy(buf, 0, b, off, bufLen);
-			off += bufLen;
-			ret = bufLen;
-			bufferLength.remove(bufLen);
-			if (len <= ret) {
-				return ret;
-			}
-		}
-		// 断片化されたバイナリを結合.
-		while ((buf = buffer.poll()) != null) {
-			if (len < ret + (bufLen = buf.length)) {
-				// １つの塊のデータの読み込みに対して、残りが発生する場合.
-				// 次の処理で読み込む.
-				etcLen = len - ret;
-				System.arraycopy(buf, 0, b, off, etcLen);
-				etcBuf = new byte[bufLen - etcLen];
-				System.arraycopy(buf, etcLen, etcBuf, 0, bufLen - etcLen);
-				topBuffer = etcBuf;
-				ret += etcLen;
-				bufferLength.remove(etcLen);
-				return ret;
-			}
-			System.arraycopy(buf, 0, b, off, bufLen);
-			off += bufLen;
-			ret += bufLen;
-			bufferLength.remove(bufLen);
-			if (len <= ret) {
-				return ret;
-			}
-		}
-		return ret;
+		return read(b, off, len, false);
 	}
 
 	/**
 	 * スキップ.
-	 * 
+	 *
 	 * @param len
 	 * @return
 	 */
 	public int skip(int len) {
-		int bufLen, etcLen;
-		int ret = 0;
-		byte[] etcBuf;
-		byte[] buf = null;
-
-		// 前回読み込み中のTOPデータが存在する場合.
-		buf = topBuffer;
-		topBuffer = null;
-		if (buf != null) {
-			if (len < (bufLen = buf.length)) {
-				etcLen = len;
-				etcBuf = new byte[bufLen - etcLen];
-				System.arraycopy(buf, etcLen, etcBuf, 0, bufLen - etcLen);
-				topBuffer = etcBuf;
-				ret = etcLen;
-				bufferLength.remove(etcLen);
-				return ret;
+		return read(null, 0, len, true);
+	}
+
+	// 読み込み、スキップ処理.
+	private final int read(byte[] b, int off, int len, boolean skip) {
+		if (!enter()) {
+			return 0;
+		}
+		try {
+			int s, n;
+			int ret = 0;
+			Chunk h;
+			while (ret < len && (h = readChunk()) != null) {
+				s = h.start;
+				if ((n = h.end - s) <= 0) {
+					break;
+				} else if (n > len - ret) {
+					n = len - ret;
+				}
+				if (!skip) {
+					System.arraycopy(h.data, s, b, off + ret, n);
+				}
+				h.start = s + n;
+				ret += n;
 			}
-			ret = bufLen;
-			bufferLength.remove(bufLen);
-			if (len <= ret) {
-				return ret;
+			if (ret > 0) {
+				bufferLength.remove(ret);
 			}
+			return ret;
+		} finally {
+			exit();
 		}
-		// 断片化されたバイナリを結合.
-		while ((buf = buffer.poll()) != null) {
-			if (len < ret + (bufLen = buf.length)) {
-				// １つの塊のデータの読み込みに対して、残りが発生する場合.
-				// 次の処理で読み込む.
-				etcLen = len - ret;
-				etcBuf = new byte[bufLen - etcLen];
-				System.arraycopy(buf, etcLen, etcBuf, 0, bufLen - etcLen);
-				topBuffer = etcBuf;
-				ret += etcLen;
-				bufferLength.remove(etcLen);
-				return ret;
-			}
-			ret += bufLen;
-			bufferLength.remove(bufLen);
-			if (len <= ret) {
+	}
+
+	/**
+	 * 文字列として読み込み.
+	 *
+	 * 対象の範囲が１つのスラブ内に収まる場合は、中間のバイナリを生成せずに文字列変換します.
+	 *
+	 * @param len
+	 *            読み込む長さを設定します.
+	 * @param charset
+	 *            文字コードを設定します.
+	 * @return String
+	 * @throws UnsupportedEncodingException
+	 */
+	public String readString(int len, String charset) throws UnsupportedEncodingException {
+		if (len <= 0 || !enter()) {
+			return "";
+		}
+		try {
+			final Chunk h = readChunk();
+			if (h != null && h.end - h.start >= len) {
+				final String ret = new String(h.data, h.start, len, charset);
+				h.start += len;
+				bufferLength.remove(len);
 				return ret;
 			}
+		} finally {
+			exit();
 		}
-		return ret;
+		final byte[] b = new byte[len];
+		final int rlen = read(b, 0, len);
+		return new String(b, 0, rlen, charset);
 	}
 
 	/**
 	 * バイナリ検索.
-	 * 
+	 *
 	 * @param index
 	 * @return
 	 */
@@ -228,105 +369,87 @@ public class NioReadBuffer {
 
 	/**
 	 * バイナリ検索.
-	 * 
+	 *
 	 * @param index
 	 * @param pos
 	 * @return
 	 */
 	public int indexOf(byte[] index, int pos) {
-		int i, j, bufLen, startPos, off;
-		int bp, np;
-		int cnt = 0;
-		int eqCnt = 0;
-		byte[] buf = null;
-		Object[] array = buffer.toArray();
-		final int len = array.length;
+		if (!enter()) {
+			return -1;
+		}
+		try {
+			return search(index, pos);
+		} finally {
+			exit();
+		}
+	}
+
+	// バイナリ検索.
+	private final int search(byte[] index, int pos) {
+		int i, j, k, e, ee;
+		Chunk c, cc;
+		byte[] buf, bb;
+		if (pos < 0) {
+			pos = 0;
+		}
+		// データサイズを超えている場合.
+		if (pos >= size()) {
+			return -1;
+		}
 		final byte top = index[0];
 		final int indexLen = index.length;
-		bp = 0;
-		off = 0;
-		// posの位置を算出.
-		if (pos > 0) {
-			// データサイズを超えている場合.
-			if (pos >= size()) {
-				return -1;
-			}
-			// topBufferが存在する場合.
-			if (topBuffer != null) {
-				bp = -1;
-				bufLen = topBuffer.length;
-				if (bufLen > pos) {
-					off = pos;
-					cnt = pos;
-				} else {
-					cnt += bufLen;
-					bp = 0;
-				}
-			}
-			// topBufferが存在しないか、topBuffer内の範囲でoffが確定できなかった場合.
-			if (off == 0) {
-				// posの位置まで移動.
-				for (int p = 0; p < len; p++) {
-					bufLen = ((byte[]) array[bp]).length;
-					if (cnt + bufLen > pos) {
-						off = pos - cnt;
-						break;
-					}
-					cnt += bufLen;
-					bp++;
-				}
+		// posの位置まで移動.
+		int cnt = 0;
+		c = readChunk();
+		i = c == null ? 0 : c.start;
+		while (c != null) {
+			e = c.end;
+			if (pos - cnt < e - i) {
+				i += pos - cnt;
 				cnt = pos;
+				break;
 			}
-		} else if (topBuffer != null) {
-			// topBufferが存在する場合開始位置を、-1にする.
-			bp = -1;
+			cnt += e - i;
+			c = c.next;
+			i = 0;
 		}
-		// toArrayで配列化された内容を元に、検索.
-		for (; bp < len; bp++) {
-			buf = (bp == -1) ? topBuffer : (byte[]) array[bp];
-			bufLen = buf.length;
-			for (i = off; i < bufLen; i++) {
+		// スラブを跨いで検索.
+		for (; c != null; c = c.next, i = 0) {
+			buf = c.data;
+			e = c.end;
+			for (; i < e; i++, cnt++) {
 				// 先頭のindex条件が一致.
-				if (top == buf[i]) {
-					// indexデータ数が１つの場合.
-					if (indexLen == 1) {
-						return cnt;
-					}
-					eqCnt = 0;
-					startPos = i;
-
-					// 跨ったデータのチェック用.
-					for (np = bp; np < len; np++) {
-						buf = (np == -1) ? topBuffer : (byte[]) array[np];
-						bufLen = buf.length;
-						// 一致するかチェックする.
-						for (j = startPos; j < bufLen; j++) {
-							if (index[eqCnt++] != buf[j]) {
-								eqCnt = -1;
-								break;
-							} else if (eqCnt >= indexLen) {
-								break;
-							}
-						}
-						// 不一致.
-						if (eqCnt == -1) {
-							// 元に戻す.
-							buf = (bp == -1) ? topBuffer : (byte[]) array[bp];
-							bufLen = buf.length;
-							break;
+				if (top != buf[i]) {
+					continue;
+				}
+				// 跨ったデータのチェック.
+				cc = c;
+				bb = buf;
+				ee = e;
+				j = i + 1;
+				for (k = 1; k < indexLen; k++, j++) {
+					if (j >= ee) {
+						if ((cc = cc.next) == null) {
+							// 残りのデータが足りないので、以降一致することはない.
+							return -1;
 						}
-						// 一致.
-						else if (eqCnt == indexLen) {
-							// 一致条件を返却.
-							return cnt;
+						bb = cc.data;
+						ee = cc.end;
+						j = 0;
+						if (ee == 0) {
+							return -1;
 						}
-						// 次のまたがった情報を取得.
-						startPos = 0;
 					}
+					if (index[k] != bb[j]) {
+						break;
+					}
+				}
+				// 一致.
+				if (k == indexLen) {
+					return cnt;
 				}
-				cnt++;
 			}
-			off = 0;
 		}
 		return -1;
 	}
@@ -7,11 +7,13 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 
 import org.mozilla.javascript.Callable;
+import org.mozilla.javascript.CompilerEnvirons;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.optimizer.ClassCompiler;
 
 import rhigin.RhiginConfig;
 import rhigin.RhiginConstants;
@@ -243,6 +245,54 @@ public class ExecuteScript {
 		return ret;
 	}
 
+	// topLevelオブジェクトをスレッドに設定.
+	static final void setTopLevel(RhiginTopLevel t) {
+		topLevels.set(t);
+	}
+
+	// スレッドのtopLevelオブジェクトを削除.
+	static final RhiginTopLevel removeTopLevel() {
+		final RhiginTopLevel ret = topLevels.get();
+		topLevels.remove();
+		return ret;
+	}
+
+	// [ThreadLocal]: 再利用するスコープ情報.
+	private static final ThreadLocal<RhiginScopeCache> scopeCaches = new ThreadLocal<RhiginScopeCache>();
+
+	private static final RhiginScopeCache getScopeCache() {
+		RhiginScopeCache ret = scopeCaches.get();
+		if (ret == null) {
+			ret = new RhiginScopeCache();
+			scopeCaches.set(ret);
+		}
+		return ret;
+	}
+
+	// 再利用するスコープ情報をスレッドに設定.
+	static final void setScopeCache(RhiginScopeCache c) {
+		scopeCaches.set(c);
+	}
+
+	// スレッドの再利用するスコープ情報を削除.
+	static final RhiginScopeCache removeScopeCache() {
+		final RhiginScopeCache ret = scopeCaches.get();
+		scopeCaches.remove();
+		return ret;
+	}
+
+	/**
+	 * カレントスレッドで再利用するRhiginContextを取得.
+	 * リクエスト毎にRhiginContextを生成せずに、スレッド単位で保持したものをクリアして返却します.
+	 * 返却されたRhiginContextは、同一スレッドの次の呼び出しでクリアされるので、
+	 * スクリプト実行の外側(HTTPリクエスト単位等)でのみ利用してください.
+	 * 
+	 * @return RhiginContext クリアされたRhiginContextが返却されます.
+	 */
+	public static final RhiginContext recycleContext() {
+		return getScopeCache().getContext();
+	}
+
 	// [ThreadLocal]: RhiginContextオブジェクトのカレントスレッド管理.
 	private static final ThreadLocal<RhiginContext> currentRhiginContext = new ThreadLocal<RhiginContext>();
 
@@ -310,6 +360,23 @@ public class ExecuteScript {
 		//if (headerScript.isEmpty() && footerScript.isEmpty()) {
 		//	return r;
 		//}
+		return new StringReader(getScriptSource(r, headerScript, footerScript));
+	}
+
+	/**
+	 * ヘッダ、フッタを付与して変換したコンパイル対象のスクリプトを取得.
+	 * 
+	 * @param r
+	 *            readerを設定します.
+	 * @param headerScript
+	 *            ヘッダに追加するスクリプトを設定します.
+	 * @param footerScript
+	 *            フッタに追加するスクリプトを設定します.
+	 * @return String コンパイル対象のスクリプトが返却されます.
+	 * @throws Exception
+	 *             例外.
+	 */
+	public static final String getScriptSource(Reader r, String headerScript, String footerScript) throws Exception {
 		int len;
 		char[] c = new char[1024];
 		StringBuilder buf = new StringBuilder(headerScript);
@@ -319,7 +386,53 @@ public class ExecuteScript {
 		c = null;
 		buf.append(footerScript);
 
-		return new StringReader(JsChangesCode.changeCode(buf.toString()));
+		return JsChangesCode.changeCode(buf.toString());
+	}
+
+	/**
+	 * getScriptSourceで変換したスクリプトをclassファイル群にコンパイル.
+	 * 
+	 * @param source
+	 *            getScriptSourceで変換したスクリプトを設定します.
+	 * @param name
+	 *            スクリプトファイル名を設定します.
+	 * @param lineNo
+	 *            ライン開始番号を設定します.
+	 * @param className
+	 *            生成するScriptのクラス名を設定します.
+	 * @return Object[] [クラス名, classファイルのバイナリ]の繰り返しが返却されます.
+	 * @throws Exception
+	 *             例外.
+	 */
+	public static final Object[] compileClass(String source, String name, int lineNo, String className)
+			throws Exception {
+		name = (name == null || name.isEmpty()) ? NO_SCRIPT_NAME : name;
+		Context ctx = ContextFactory.getGlobal().enterContext();
+		try {
+			final CompilerEnvirons env = new CompilerEnvirons();
+			env.initFromContext(ctx);
+			return new ClassCompiler(env).compileToClassFiles(source, name, lineNo, className);
+		} finally {
+			Context.exit();
+			EntityFunctions.exit();
+		}
+	}
+
+	/**
+	 * コンパイル条件(Rhinoのバージョン、言語バージョン、最適化レベル)を取得.
+	 * この内容が変わった場合は、classファイル群を再利用できません.
+	 * 
+	 * @return String
+	 */
+	public static final String getCompileVersion() {
+		Context ctx = ContextFactory.getGlobal().enterContext();
+		try {
+			return new StringBuilder(ctx.getImplementationVersion()).append("/").append(SCRIPT_LANGUAGE_VERSION)
+				.append("/").append(SCRIPT_COMPILE_OPTIMIZE_LEVEL).toString();
+		} finally {
+			Context.exit();
+			EntityFunctions.exit();
+		}
 	}
 
 	/**
@@ -392,9 +505,10 @@ public class ExecuteScript {
 			currentRhiginContext.set(context);
 			resetRhiginContextFlag = true;
 		}
+		final RhiginScopeCache scopeCache = getScopeCache();
 		try {
 			// 実行処理.
-			RhiginScriptable scope = new RhiginScriptable(context);
+			RhiginScriptable scope = scopeCache.enter(context);
 			scope.setPrototype(getTopLevel());
 			settingRhiginObject(ctx, scope);
 			final Object ret = compiled.exec(ctx, scope);
@@ -418,6 +532,7 @@ public class ExecuteScript {
 		} catch(Throwable t) {
 			throw new RhiginWrapException(t);
 		} finally {
+			scopeCache.exit();
 			if(resetRhiginContextFlag) {
 				currentRhiginContext.set(null);
 			}
@@ -535,9 +650,10 @@ public class ExecuteScript {
 			currentRhiginContext.set(context);
 			resetRhiginContextFlag = true;
 		}
+		final RhiginScopeCache scopeCache = getScopeCache();
 		try {
 			// 対象ソースをコンパイル.
-			RhiginScriptable scope = new RhiginScriptable(context);
+			RhiginScriptable scope = scopeCache.enter(context);
 			scope.setPrototype(getTopLevel());
 			settingRhiginObject(ctx, scope);
 			Script compiled = ctx.compileReader(getScript(r, headerScript, footerScript), name, lineNo, null);
@@ -563,6 +679,7 @@ public class ExecuteScript {
 		} catch(Throwable t) {
 			throw new RhiginWrapException(t);
 		} finally {
+			scopeCache.exit();
 			if(resetRhiginContextFlag) {
 				currentRhiginContext.set(null);
 			}
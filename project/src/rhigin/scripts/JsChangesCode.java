@@ -1,14 +1,33 @@
 package rhigin.scripts;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import rhigin.util.Converter;
 import rhigin.util.Indent;
 import rhigin.util.OList;
 
 /**
  * Javascriptのコードチェンジ・拡張処理.
+ * 
+ * Template literalとtextblocksの変換は、ソースを１回走査して行います.
+ * 変換結果はソース内容をキーにキャッシュするので、同じ内容のソースは再変換しません.
  */
 public class JsChangesCode {
 	
+	// 変換結果キャッシュの最大数.
+	private static final int MAX_CACHE = 256;
+	
+	// 変換結果キャッシュの最大文字数(ソースと変換結果の合計).
+	private static final long MAX_CACHE_LENGTH = 0x00800000L;
+	
+	// 変換結果キャッシュ(ソース内容 => 変換結果).
+	private static final Map<String, String> cache = new ConcurrentHashMap<String, String>();
+	
+	// 変換結果キャッシュの現在の文字数.
+	private static final AtomicLong cacheLength = new AtomicLong(0L);
+	
 	/**
 	 * javascriptのコードチェンジ・拡張処理.
 	 * 
@@ -16,9 +35,24 @@ public class JsChangesCode {
 	 * @return
 	 */
 	public static final String changeCode(String src) {
-		src = templateLiteral(src);
-		src = textBlocks(src);
-		return src;
+		// 変換対象が存在しない場合は、そのまま返却.
+		if(!isChange(src)) {
+			return src;
+		}
+		String ret = cache.get(src);
+		if(ret == null) {
+			ret = rewrite(src, true, true);
+			final long len = (long)src.length() + ret.length();
+			// 最大数か最大文字数を超える場合は、キャッシュを作り直す.
+			if(cache.size() >= MAX_CACHE || cacheLength.addAndGet(len) > MAX_CACHE_LENGTH) {
+				cache.clear();
+				cacheLength.set(len);
+			}
+			if(len <= MAX_CACHE_LENGTH) {
+				cache.put(src, ret);
+			}
+		}
+		return ret;
 	}
 	
 	/**
@@ -28,42 +62,7 @@ public class JsChangesCode {
 	 * @return
 	 */
 	public static final String templateLiteral(String src) {
-		int p, pp;
-		int b = 0;
-		p = indexOfBt(src, b);
-		if(p == -1) {
-			return src;
-		}
-		final StringBuilder buf = new StringBuilder((int)(src.length() * 1.5));
-		while(true) {
-			buf.append(src.substring(b, p));
-			pp = indexOfBt(src, p + 1);
-			if(pp == -1) {
-				buf.append(src.substring(p));
-				break;
-			}
-			buf.append(innerTextBlock(src.substring(p + 1, pp)));
-			b = pp + 1;
-			p = indexOfBt(src, b);
-			if(p == -1) {
-				buf.append(src.substring(b));
-				break;
-			}
-		}
-		return buf.toString();
-	}
-	
-	// バックティック文字の検索.
-	private static final int indexOfBt(String src, int off) {
-		int p;
-		while((p = Converter.indexOfNoCote(src, "`", off)) != -1) {
-			if(p > 0 && src.charAt(p-1) == '\\') {
-				off = p + 1;
-				continue;
-			}
-			return p;
-		}
-		return -1;
+		return rewrite(src, true, false);
 	}
 	
 	/**
@@ -73,74 +72,161 @@ public class JsChangesCode {
 	 * @return
 	 */
 	public static final String textBlocks(String src) {
-		// \r の条件を削除.
-		src = Converter.changeString(src, "\r", "");
-		// textBlock開始位置を検索.
-		int p = src.indexOf("\"\"\"");
-		if(p == -1) {
-			return src;
-		}
+		return rewrite(src, false, true);
+	}
+	
+	// 変換対象(バックティック, \r, """)が存在するかチェック.
+	private static final boolean isChange(String src) {
 		char c;
-		int n = -1;
-		int len = src.length();
-		// textBlocks開始位置の場合は """\nで終わってる必要があるので、そのチェック.
-		for(int i = p + 3; i < len; i ++) {
+		int dq = 0;
+		final int len = src.length();
+		for(int i = 0; i < len; i ++) {
 			c = src.charAt(i);
-			if(c == '\n') {
-				n = i + 1;
-				break;
-			// スペースやタブは許可.
-			} else if(!(c == ' ' || c == '\t')) {
-				// 構成がおかしい場合は、ソース自体を返却する.
-				return src;
+			if(c == '`' || c == '\r') {
+				return true;
+			} else if(c == '\"') {
+				if(++ dq == 3) {
+					return true;
+				}
+			} else {
+				dq = 0;
 			}
 		}
-		if(n == -1) {
-			// 構成がおかしい場合は、ソース自体を返却する.
-			return src;
+		return false;
+	}
+	
+	// Template literalとtextblocksを１回の走査で変換.
+	private static final String rewrite(String src, boolean template, boolean textBlock) {
+		final String ret = rewrite(src, template, textBlock, textBlock);
+		if(ret == null) {
+			// textblocksの構成がおかしい場合は、textblocksの変換を行わない.
+			return rewrite(src, template, false, true);
 		}
-		int start = n;
-		int b = 0;
-		final StringBuilder buf = new StringBuilder((int)(len * 1.5));
-		while(true) {
-			// textBlockの終端を検索.
-			n = src.indexOf("\"\"\"", start);
-			if(n == -1) {
-				buf.append(src.substring(b));
-				break;
+		return ret;
+	}
+	
+	// Template literalとtextblocksを１回の走査で変換.
+	// textblocksの構成がおかしい場合は[null]返却.
+	private static final String rewrite(String src, boolean template, boolean textBlock, boolean cr) {
+		char c;
+		int p, n;
+		char bef = 0;
+		int cote = -1;
+		boolean yenFlag = false;
+		final int len = src.length();
+		final StringBuilder buf = new StringBuilder(len + (len >> 2));
+		int i = 0;
+		while(i < len) {
+			c = src.charAt(i);
+			// \r の条件を削除.
+			if(cr && c == '\r') {
+				i ++;
+				continue;
 			}
-			buf.append(src.substring(b, p));
-			buf.append(innerTextBlock(src.substring(start, n)));
-			b = n + 3;
-			// 次の開始位置を検索.
-			p = src.indexOf("\"\"\"", b);
-			if(p == -1) {
-				buf.append(src.substring(b));
-				break;
+			// textblocksの開始(コーテーションの内外に関係なく検出).
+			if(textBlock && c == '\"' && src.startsWith("\"\"\"", i)) {
+				if((n = textBlockStart(src, i)) == -1) {
+					return null;
+				}
+				if((p = src.indexOf("\"\"\"", n)) == -1) {
+					// 終端が存在しない場合は、以降のtextblocksは変換しない.
+					textBlock = false;
+				} else {
+					buf.append(innerTextBlock(cutCr(src, n, p)));
+					i = p + 3;
+					bef = 0;
+					cote = -1;
+					continue;
+				}
 			}
-			n = -1;
-			// textBlocks開始位置の場合は """\nで終わってる必要があるので、そのチェック.
-			for(int i = p + 3; i < len; i ++) {
-				c = src.charAt(i);
-				if(c == '\n') {
-					n = i + 1;
-					break;
-					// スペースやタブは許可.
-				} else if(!(c == ' ' || c == '\t')) {
-					// 構成がおかしい場合は、ソース自体を返却する.
-					return src;
+			// コーテーション内.
+			if(cote != -1) {
+				if(bef != '\\' && c == cote) {
+					yenFlag = false;
+					cote = -1;
+				} else if(c == '\\' && bef == '\\') {
+					yenFlag = true;
+				} else {
+					yenFlag = false;
 				}
+				buf.append(c);
+			// コーテーションの開始.
+			} else if(bef != '\\' && (c == '\'' || c == '\"')) {
+				cote = c;
+				buf.append(c);
+			// Template literalの開始.
+			} else if(template && c == '`' && (i == 0 || src.charAt(i - 1) != '\\')) {
+				if((p = indexOfBt(src, i + 1)) == -1) {
+					// 終端が存在しない場合は、以降のTemplate literalは変換しない.
+					template = false;
+					buf.append(c);
+				} else {
+					buf.append(innerTextBlock(cr ? cutCr(src, i + 1, p) : src.substring(i + 1, p)));
+					i = p + 1;
+					bef = 0;
+					continue;
+				}
+			} else {
+				buf.append(c);
 			}
-			if(n == -1) {
-				// 構成がおかしい場合は、ソース自体を返却する.
-				return src;
+			if(yenFlag) {
+				yenFlag = false;
+				bef = 0;
+			} else {
+				bef = c;
 			}
-			// 次の開始位置をセット.
-			start = n;
+			i ++;
 		}
 		return buf.toString();
 	}
 	
+	// textblocksの開始位置の場合は """\n で終わってる必要があるので、そのチェック.
+	// 開始位置の場合は、内容の開始位置が返却されます.
+	private static final int textBlockStart(String src, int off) {
+		char c;
+		final int len = src.length();
+		for(int i = off + 3; i < len; i ++) {
+			c = src.charAt(i);
+			if(c == '\n') {
+				return i + 1;
+			// スペースやタブは許可.
+			} else if(!(c == ' ' || c == '\t' || c == '\r')) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+	
+	// \r を除外して切り出し.
+	private static final String cutCr(String src, int start, int end) {
+		int p = src.indexOf('\r', start);
+		if(p == -1 || p >= end) {
+			return src.substring(start, end);
+		}
+		final StringBuilder buf = new StringBuilder(end - start);
+		buf.append(src, start, p);
+		char c;
+		for(int i = p + 1; i < end; i ++) {
+			if((c = src.charAt(i)) != '\r') {
+				buf.append(c);
+			}
+		}
+		return buf.toString();
+	}
+	
+	// バックティック文字の検索.
+	private static final int indexOfBt(String src, int off) {
+		int p;
+		while((p = Converter.indexOfNoCote(src, "`", off)) != -1) {
+			if(p > 0 && src.charAt(p-1) == '\\') {
+				off = p + 1;
+				continue;
+			}
+			return p;
+		}
+		return -1;
+	}
+	
 	// テキストブロック内の処理.
 	private static final String innerTextBlock(String src) {
 		// 改行単位に区分け.
@@ -1,5 +1,13 @@
 package rhigin.scripts;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.Iterator;
 import java.util.List;
@@ -25,9 +33,6 @@ import rhigin.util.ObjectList;
 public final class Json {
 	protected Json() {}
 
-	private static final int TYPE_ARRAY = 0;
-	private static final int TYPE_MAP = 1;
-	
 	private static JsonOriginCode ORIGIN_CODE = null;
 	
 	/**
@@ -55,9 +60,37 @@ public final class Json {
 	 */
 	public static final String encode(Object target) {
 		StringBuilder buf = new StringBuilder();
-		encodeObject(buf, target, target);
+		try {
+			encodeObject(buf, target, target);
+		} catch (IOException e) {
+			throw new RhiginException(500, e);
+		}
 		return buf.toString();
 	}
+
+	/**
+	 * JSON変換.
+	 * 
+	 * @param target 対象のターゲットオブジェクトを設定します.
+	 * @param out 変換されたJSON情報の出力先を設定します.
+	 * @exception IOException I/O例外.
+	 */
+	public static final void encode(Object target, Writer out) throws IOException {
+		encodeObject(out, target, target);
+		out.flush();
+	}
+
+	/**
+	 * JSON変換.
+	 * 
+	 * @param target 対象のターゲットオブジェクトを設定します.
+	 * @param out 変換されたJSON情報の出力先を設定します.
+	 *            UTF8で出力されます.
+	 * @exception IOException I/O例外.
+	 */
+	public static final void encode(Object target, OutputStream out) throws IOException {
+		encode(target, new BufferedWriter(new OutputStreamWriter(out, "UTF8")));
+	}
 	
 	/**
 	 * JSON形式から、オブジェクト変換.
@@ -83,22 +116,10 @@ public final class Json {
 		}
 		// 前後の無駄なスペース、タブ、改行などを除く.
 		json = json.trim();
-		List<Object> list;
-		int[] n = new int[1];
 		while (true) {
-			// token解析が必要な場合.
 			// [ ... ] or { .... }
 			if (json.startsWith("[") || json.startsWith("{")) {
-				// JSON形式をToken化.
-				list = analysisJsonToken(json);
-				// Token解析処理.
-				if ("[".equals(list.get(0))) {
-					// List解析.
-					return createJsonInfo(n, list, TYPE_ARRAY, 0, list.size());
-				} else {
-					// Map解析.
-					return createJsonInfo(n, list, TYPE_MAP, 0, list.size());
-				}
+				return new Parser(json).parse();
 			// (...) のような形式の場合は、このカッコを無視して再処理.
 			} else if (json.startsWith("(") && json.endsWith(")")) {
 				json = json.substring(1, json.length() - 1).trim();
@@ -110,8 +131,40 @@ public final class Json {
 		return decodeJsonValue(json);
 	}
 
+	/**
+	 * JSON形式から、オブジェクト変換.
+	 * 文字列に変換せずに、Readerから直接解析します.
+	 * 
+	 * @param in 対象のReaderを設定します.
+	 * @return Object 変換されたJSON情報が返されます.
+	 * @exception IOException I/O例外.
+	 */
+	public static final Object decode(Reader in) throws IOException {
+		if (in == null) {
+			return null;
+		}
+		return new Parser(in).parse();
+	}
+
+	/**
+	 * JSON形式から、オブジェクト変換.
+	 * 文字列に変換せずに、InputStreamから直接解析します.
+	 * 
+	 * @param in 対象のInputStreamを設定します.
+	 * @param charset 文字コードを設定します. [null]の場合はUTF8.
+	 * @return Object 変換されたJSON情報が返されます.
+	 * @exception IOException I/O例外.
+	 */
+	public static final Object decode(InputStream in, String charset) throws IOException {
+		if (in == null) {
+			return null;
+		}
+		return decode(new InputStreamReader(in, charset == null ? "UTF8" : charset));
+	}
+
 	/** [encodeJSON]jsonコンバート. **/
-	private static final void encodeObject(final StringBuilder buf, final Object base, Object target) {
+	private static final void encodeObject(final Appendable buf, final Object base, Object target)
+		throws IOException {
 		if(Undefined.isUndefined(target)) {
 			target = null;
 		} else if(target != null) {
@@ -136,6 +189,8 @@ public final class Json {
 				}
 			} catch(RhiginException re) {
 				throw re;
+			} catch(IOException io) {
+				throw io;
 			} catch(Exception e) {
 				throw new RhiginException(500, e);
 			}
@@ -155,9 +210,9 @@ public final class Json {
 				encodeJsonList(buf, base, (List) target);
 			}
 		} else if (target instanceof Number || target instanceof Boolean) {
-			buf.append(target);
+			buf.append(target.toString());
 		} else if (target instanceof Character || target instanceof CharSequence) {
-			buf.append("\"").append(target).append("\"");
+			buf.append("\"").append(target.toString()).append("\"");
 		} else if (target instanceof byte[]) {
 			buf.append("null");
 		} else if (target instanceof char[]) {
@@ -183,7 +238,8 @@ public final class Json {
 	}
 
 	/** [encodeJSON]jsonMapコンバート. **/
-	private static final void encodeJsonMap(final StringBuilder buf, final Object base, final Map map) {
+	private static final void encodeJsonMap(final Appendable buf, final Object base, final Map map)
+		throws IOException {
 		boolean flg = false;
 		Map mp = (Map) map;
 		Iterator it = mp.keySet().iterator();
@@ -205,7 +261,8 @@ public final class Json {
 	}
 
 	/** [encodeJSON]jsonListコンバート. **/
-	private static final void encodeJsonList(final StringBuilder buf, final Object base, final List list) {
+	private static final void encodeJsonList(final Appendable buf, final Object base, final List list)
+		throws IOException {
 		boolean flg = false;
 		List lst = (List) list;
 		buf.append("[");
@@ -225,7 +282,8 @@ public final class Json {
 	}
 
 	/** [encodeJSON]json配列コンバート. **/
-	private static final void encodeJsonArray(final StringBuilder buf, final Object base, final Object list) {
+	private static final void encodeJsonArray(final Appendable buf, final Object base, final Object list)
+		throws IOException {
 		boolean flg = false;
 		int len = Array.getLength(list);
 		buf.append("[");
@@ -307,187 +365,216 @@ public final class Json {
 		return json;
 	}
 
-	/** JSON_Token_解析処理 **/
-	private static final List<Object> analysisJsonToken(String json) {
-		int s = -1;
-		char c;
-		int cote = -1;
-		int bef = -1;
-		int len = json.length();
-		List<Object> ret = new ObjectList<Object>();
-		// Token解析.
-		for (int i = 0; i < len; i++) {
-			c = json.charAt(i);
-			// コーテーション内.
-			if (cote != -1) {
-				// コーテーションの終端.
-				if (bef != '\\' && cote == c) {
-					ret.add(json.substring(s - 1, i + 1));
-					cote = -1;
-					s = i + 1;
+	/**
+	 * Json解析処理.
+	 * 
+	 * 文字単位で１度だけ走査して、List,Mapを直接生成します.
+	 */
+	private static final class Parser {
+		private static final int BUFFER_LENGTH = 4096;
+		private final String str;
+		private final Reader reader;
+		private final char[] buf;
+		private final StringBuilder value = new StringBuilder();
+		private int pos;
+		private int len;
+		private int no;
+
+		Parser(String json) {
+			this.str = json;
+			this.reader = null;
+			this.buf = null;
+			this.pos = 0;
+			this.len = json.length();
+		}
+
+		Parser(Reader in) {
+			this.str = null;
+			this.reader = in;
+			this.buf = new char[BUFFER_LENGTH];
+			this.pos = 0;
+			this.len = 0;
+		}
+
+		/** １文字取得. **/
+		private final int next() {
+			if (str != null) {
+				if (pos < len) {
+					no++;
+					return str.charAt(pos++);
 				}
-			}
-			// コーテーション開始.
-			else if (bef != '\\' && (c == '\'' || c == '\"')) {
-				cote = c;
-				if (s != -1 && s != i && bef != ' ' && bef != '　' && bef != '\t' && bef != '\n' && bef != '\r') {
-					ret.add(json.substring(s, i + 1));
+				return -1;
+			} else if (pos >= len) {
+				try {
+					len = reader.read(buf, 0, BUFFER_LENGTH);
+				} catch (IOException e) {
+					throw new RhiginException(500, e);
 				}
-				s = i + 1;
-				bef = -1;
-			}
-			// ワード区切り.
-			else if (c == '[' || c == ']' || c == '{' || c == '}' || c == '(' || c == ')' || c == ':' || c == ';'
-					|| c == ',' || (c == '.' && (bef < '0' || bef > '9'))) {
-				if (s != -1 && s != i && bef != ' ' && bef != '　' && bef != '\t' && bef != '\n' && bef != '\r') {
-					ret.add(json.substring(s, i));
+				pos = 0;
+				if (len <= 0) {
+					len = 0;
+					return -1;
 				}
-				ret.add(new String(new char[] { c }));
-				s = i + 1;
 			}
-			// 連続空間区切り.
-			else if (c == ' ' || c == '　' || c == '\t' || c == '\n' || c == '\r') {
-				if (s != -1 && s != i && bef != ' ' && bef != '　' && bef != '\t' && bef != '\n' && bef != '\r') {
-					ret.add(json.substring(s, i));
-				}
-				s = -1;
+			no++;
+			return buf[pos++];
+		}
+
+		/** 直前の１文字を戻す. **/
+		private final void back() {
+			pos--;
+			no--;
+		}
+
+		/** 空白判別. **/
+		private static final boolean isSpace(int c) {
+			return c == ' ' || c == '　' || c == '\t' || c == '\n' || c == '\r';
+		}
+
+		/** 空白以外の文字まで読み込む. **/
+		private final int skipSpace() {
+			int c;
+			while (isSpace(c = next()))
+				;
+			return c;
+		}
+
+		/** 解析処理. **/
+		final Object parse() {
+			final int c = skipSpace();
+			if (c == '[') {
+				return parseArray();
+			} else if (c == '{') {
+				return parseMap();
+			} else if (c == -1) {
+				return decodeJsonValue("");
 			}
-			// その他文字列.
-			else if (s == -1) {
-				s = i;
+			// それ以外の場合は、文字列として処理.
+			final StringBuilder b = new StringBuilder();
+			b.append((char) c);
+			int n;
+			while ((n = next()) != -1) {
+				b.append((char) n);
 			}
-			bef = c;
+			return decode(b.toString());
 		}
-		return ret;
-	}
 
-	/** Json-Token解析. **/
-	@SuppressWarnings("unchecked")
-	private static final Object createJsonInfo(int[] n, List<Object> token, int type, int no, int len) {
-		String value;
-		StringBuilder before = null;
-		// List.
-		if (type == TYPE_ARRAY) {
-			List<Object> ret = new JavaScriptable.GetList(new ObjectList<Object>());
-			int flg = 0;
-			for (int i = no + 1; i < len; i++) {
-				value = (String) token.get(i);
-				if (",".equals(value) || "]".equals(value)) {
-					if ("]".equals(value)) {
-						if (flg == 1) {
-							if (before != null) {
-								ret.add(decodeJsonValue(before.toString()));
-							}
-						}
-						n[0] = i;
-						return ret;
-					} else {
-						if (flg == 1) {
-							if (before == null) {
-								ret.add(null);
-							} else {
-								ret.add(decodeJsonValue(before.toString()));
-							}
-						}
+		/**
+		 * 1つの要素を取得.
+		 * コーテーションは付与されたまま返却されます.
+		 * 
+		 * @param key [true]の場合、Mapのキーとして取得します.
+		 * @return String 要素が無い場合は[null]が返却されます.
+		 */
+		private final String parseValue(boolean key) {
+			int c;
+			int bef = -1;
+			int cote = -1;
+			boolean space = false;
+			final StringBuilder b = value;
+			b.setLength(0);
+			while ((c = next()) != -1) {
+				// コーテーション内.
+				if (cote != -1) {
+					b.append((char) c);
+					if (bef != '\\' && cote == c) {
+						cote = -1;
 					}
-					before = null;
-					flg = 0;
-				} else if ("[".equals(value)) {
-					ret.add(createJsonInfo(n, token, TYPE_ARRAY, i, len));
-					i = n[0];
-					before = null;
-					flg = 0;
-				} else if ("{".equals(value)) {
-					ret.add(createJsonInfo(n, token, TYPE_MAP, i, len));
-					i = n[0];
-					before = null;
-					flg = 0;
+				}
+				// 区切り文字.
+				else if (c == ',' || c == ']' || c == '}' || c == '[' || c == '{' || (key && c == ':')) {
+					back();
+					break;
+				}
+				// 連続空白は、１つの空白にまとめる.
+				else if (isSpace(c)) {
+					space = b.length() > 0;
 				} else {
-					if (before == null) {
-						before = new StringBuilder();
-						before.append(value);
-					} else {
-						before.append(" ").append(value);
+					if (space) {
+						b.append(' ');
+						space = false;
+					}
+					b.append((char) c);
+					// コーテーション開始.
+					if (bef != '\\' && (c == '\'' || c == '\"')) {
+						cote = c;
 					}
-					flg = 1;
 				}
+				bef = c;
 			}
-			n[0] = len - 1;
-			return ret;
+			return b.length() == 0 ? null : b.toString();
 		}
-		// map.
-		else if (type == TYPE_MAP) {
-			Map<Object, Object> ret;
-			// ret = new HashMap<Object, Object>();
-			ret = new JsMap();
-			String key = null;
-			for (int i = no + 1; i < len; i++) {
-				value = (String) token.get(i);
-				if (":".equals(value)) {
-					if (key == null) {
-						throw new RhiginException(500, "Map format is invalid(No:" + i + ")");
-					}
-				} else if (",".equals(value) || "}".equals(value)) {
-					if ("}".equals(value)) {
-						if (key != null) {
-							if (before == null) {
-								ret.put(key, decodeJsonValue(null));
-							} else {
-								ret.put(key, decodeJsonValue(before.toString()));
-							}
-						}
-						n[0] = i;
-						return ret;
-					} else {
-						if (key == null) {
-							if (before == null) {
-								continue;
-							}
-							throw new RhiginException(500, "Map format is invalid(No:" + i + ")");
-						}
-						if (before == null) {
-							ret.put(key, decodeJsonValue(null));
-						} else {
-							ret.put(key, decodeJsonValue(before.toString()));
-						}
-						before = null;
-						key = null;
-					}
-				} else if ("[".equals(value)) {
-					if (key == null) {
-						throw new RhiginException(500, "Map format is invalid(No:" + i + ")");
-					}
-					ret.put(key, createJsonInfo(n, token, TYPE_ARRAY, i, len));
-					i = n[0];
-					key = null;
-					before = null;
-				} else if ("{".equals(value)) {
-					if (key == null) {
-						throw new RhiginException(500, "Map format is invalid(No:" + i + ")");
-					}
-					ret.put(key, createJsonInfo(n, token, TYPE_MAP, i, len));
-					i = n[0];
-					key = null;
-					before = null;
-				} else if (key == null) {
-					key = value;
-					if ((key.startsWith("'") && key.endsWith("'")) || (key.startsWith("\"") && key.endsWith("\""))) {
-						key = key.substring(1, key.length() - 1).trim();
-					}
+
+		/** List解析. **/
+		@SuppressWarnings("unchecked")
+		private final List<Object> parseArray() {
+			int c;
+			String v;
+			final List<Object> ret = new JavaScriptable.GetList(new ObjectList<Object>());
+			while (true) {
+				c = skipSpace();
+				if (c == -1 || c == ']') {
+					return ret;
+				} else if (c == ',') {
+					continue;
+				} else if (c == '[') {
+					ret.add(parseArray());
+				} else if (c == '{') {
+					ret.add(parseMap());
+				} else if (c == '}') {
+					throw new RhiginException(500, "Array format is invalid(No:" + no + ")");
 				} else {
-					if (before == null) {
-						before = new StringBuilder();
-						before.append(value);
-					} else {
-						before.append(" ").append(value);
+					back();
+					if ((v = parseValue(false)) != null) {
+						ret.add(decodeJsonValue(v));
 					}
 				}
 			}
-			n[0] = len - 1;
-			return ret;
 		}
-		// その他.
-		throw new RhiginException(500, "Failed to parse JSON.");
+
+		/** Map解析. **/
+		@SuppressWarnings("unchecked")
+		private final Map<Object, Object> parseMap() {
+			int c;
+			String key;
+			final Map<Object, Object> ret = new JsMap();
+			while (true) {
+				c = skipSpace();
+				if (c == -1 || c == '}') {
+					return ret;
+				} else if (c == ',') {
+					continue;
+				} else if (c == ':' || c == '[' || c == '{' || c == ']') {
+					throw new RhiginException(500, "Map format is invalid(No:" + no + ")");
+				}
+				// キー取得.
+				back();
+				key = parseValue(true);
+				if ((key.startsWith("'") && key.endsWith("'")) || (key.startsWith("\"") && key.endsWith("\""))) {
+					key = key.substring(1, key.length() - 1).trim();
+				}
+				c = skipSpace();
+				if (c == ':') {
+					c = skipSpace();
+				}
+				// 要素取得.
+				if (c == -1) {
+					return ret;
+				} else if (c == '[') {
+					ret.put(key, parseArray());
+				} else if (c == '{') {
+					ret.put(key, parseMap());
+				} else if (c == ',') {
+					ret.put(key, decodeJsonValue(null));
+				} else if (c == '}') {
+					ret.put(key, decodeJsonValue(null));
+					return ret;
+				} else {
+					back();
+					ret.put(key, decodeJsonValue(parseValue(false)));
+				}
+			}
+		}
 	}
 	
 	/** 大文字、小文字関係なく比較. **/
@@ -21,6 +21,16 @@ public class RhiginContext implements Scriptable {
 	public void setBaseFunctions(FixedKeyValues<String, Object> bf) {
 		baseFunctions = bf;
 	}
+	
+	/**
+	 * 再利用のために内容をクリア.
+	 */
+	public void clear() {
+		bindings.clear();
+		baseFunctions = null;
+		prototype = null;
+		parentScope = null;
+	}
 
 	public boolean hasAttribute(String name) {
 		if (name == null) {
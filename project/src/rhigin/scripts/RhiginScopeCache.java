@@ -0,0 +1,47 @@
+package rhigin.scripts;
+
+/**
+ * スクリプト実行スコープの再利用.
+ *
+ * リクエスト毎に生成していたRhiginContextと、最上位のスクリプト実行で生成していたRhiginScriptableを
+ * スレッド単位で保持して、リセットして再利用します.
+ * ネストしたスクリプト実行(require等)のスコープは、戻り値のFunction等から参照され続けるので再利用しません.
+ */
+final class RhiginScopeCache {
+	private final RhiginContext context = new RhiginContext();
+	private final RhiginScriptable scope = new RhiginScriptable(context);
+	private int depth = 0;
+
+	/**
+	 * リセットしたRhiginContextを取得.
+	 *
+	 * @return RhiginContext
+	 */
+	RhiginContext getContext() {
+		context.clear();
+		return context;
+	}
+
+	/**
+	 * スクリプト実行開始時のスコープを取得.
+	 *
+	 * @param c 対象のRhiginContextを設定します.
+	 * @return RhiginScriptable 最上位の実行の場合は、リセットされた再利用スコープが返却されます.
+	 */
+	RhiginScriptable enter(RhiginContext c) {
+		if (depth++ == 0) {
+			scope.reset(c);
+			return scope;
+		}
+		return new RhiginScriptable(c);
+	}
+
+	/**
+	 * スクリプト実行終了.
+	 */
+	void exit() {
+		if (depth > 0) {
+			depth--;
+		}
+	}
+}
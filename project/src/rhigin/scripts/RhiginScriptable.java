@@ -32,6 +32,16 @@ final class RhiginScriptable implements Scriptable {
 	public RhiginContext getContext() {
 		return context;
 	}
+
+	// 再利用のためにリセット.
+	void reset(RhiginContext c) {
+		this.context = (c == null) ? new RhiginContext() : c;
+		if(_indexedProps != null) {
+			_indexedProps.clear();
+		}
+		prototype = null;
+		parent = null;
+	}
 	
 	private Map<Object, Object> getIndexProps() {
 		if(_indexedProps == null) {
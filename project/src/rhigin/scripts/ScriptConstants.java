@@ -15,4 +15,10 @@ public class ScriptConstants {
 
 	/** js呼び出しのフッタスクリプト. **/
 	public static final String FOOTER = "\n})(this);";
+
+	/** requireのヘッダスクリプト. **/
+	public static final String REQUIRE_HEADER = "'use strict';(function(_g){var _$def_$exports={};var module= {exports:_$def_$exports};var exports=_$def_$exports;\n";
+
+	/** requireのフッタスクリプト. **/
+	public static final String REQUIRE_FOOTER = "\nreturn (module.exports!=_$def_$exports)?module.exports:exports;})(this);";
 }
@@ -0,0 +1,65 @@
+package rhigin.scripts;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import rhigin.scripts.function.RandomFunction;
+import rhigin.util.UniqueId;
+import rhigin.util.Xor128;
+
+/**
+ * スクリプト実行スレッドの状態.
+ *
+ * スクリプトはtopLevelオブジェクト、再利用スコープ、乱数発生、UniqueIdをスレッド単位で保持しますが、
+ * 仮想スレッドのように処理毎にスレッドが生成される場合は、その都度生成されてしまいます.
+ * この状態をプーリングして、実行スレッドに貸し出すことで、同時実行数分だけの生成に抑えます.
+ */
+public final class ScriptThreadState {
+	// 返却された状態.
+	private static final ConcurrentLinkedQueue<ScriptThreadState> pool = new ConcurrentLinkedQueue<ScriptThreadState>();
+
+	private final Xor128 xor128 = new Xor128(System.nanoTime());
+	private RhiginTopLevel topLevel = null;
+	private RhiginScopeCache scopeCache = null;
+	private UniqueId uniqueId = null;
+
+	private ScriptThreadState() {
+	}
+
+	/**
+	 * 状態を取得して、カレントスレッドに設定.
+	 *
+	 * @return ScriptThreadState 利用後は[release]で返却してください.
+	 */
+	public static final ScriptThreadState acquire() {
+		ScriptThreadState ret = pool.poll();
+		if (ret == null) {
+			ret = new ScriptThreadState();
+		}
+		RandomFunction.init(ret.xor128);
+		ExecuteScript.setTopLevel(ret.topLevel);
+		ExecuteScript.setScopeCache(ret.scopeCache);
+		UniqueIdManager.set(ret.uniqueId);
+		return ret;
+	}
+
+	/**
+	 * カレントスレッドから外して返却.
+	 * 実行中に生成されたtopLevelオブジェクト等は、次の利用で再利用されます.
+	 */
+	public void release() {
+		RandomFunction.remove();
+		topLevel = ExecuteScript.removeTopLevel();
+		scopeCache = ExecuteScript.removeScopeCache();
+		uniqueId = UniqueIdManager.remove();
+		pool.offer(this);
+	}
+
+	/**
+	 * プーリング中の状態数を取得.
+	 *
+	 * @return int
+	 */
+	public static final int poolSize() {
+		return pool.size();
+	}
+}
@@ -27,4 +27,22 @@ public class UniqueIdManager {
 		}
 		return ret;
 	}
+
+	/**
+	 * スレッドにUniqueIdを設定.
+	 * @param id 設定するUniqueIdを設定します.
+	 */
+	public static final void set(UniqueId id) {
+		local.set(id);
+	}
+
+	/**
+	 * スレッドのUniqueIdを削除.
+	 * @return UniqueId 設定されていたUniqueIdが返却されます.
+	 */
+	public static final UniqueId remove() {
+		final UniqueId ret = local.get();
+		local.remove();
+		return ret;
+	}
 }
@@ -4,32 +4,31 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.mozilla.javascript.Script;
 
 import rhigin.RhiginException;
 import rhigin.http.Http;
 import rhigin.http.HttpInfo;
+import rhigin.logs.Log;
+import rhigin.logs.LogFactory;
 import rhigin.scripts.ExecuteScript;
 import rhigin.util.FileUtil;
-import rhigin.util.LruCache;
 import rhigin.util.WatchPath;
 
 /**
- * Rhiginコンパイルキャッシュ コンパイルされた、キャッシュ情報は、全体で管理するのではなく、スレッド単位で作成します.
+ * Rhiginコンパイルキャッシュ. コンパイルされた、キャッシュ情報は、スレッド単位で作成するのではなく、全体で共有します.
+ * 
+ * 同一スクリプトのコンパイルは１つのスレッドのみが行い、他のスレッドはその完了を待ちます.
  */
 public class CompileCache {
-	private static final ThreadLocal<LruCache<String, ScriptElement>> cache = new ThreadLocal<LruCache<String, ScriptElement>>();
-
-	// threadlocal: キャッシュオブジェクト(LRU)を取得.
-	private static final LruCache<String, ScriptElement> getCache(int size) {
-		LruCache<String, ScriptElement> ret = cache.get();
-		if (ret == null) {
-			ret = new LruCache<String, ScriptElement>(size);
-			cache.set(ret);
-		}
-		return ret;
-	}
+	private static final Log LOG = LogFactory.create();
 
 	// jsファイル文字コード.
 	private static final String CHARSET = "UTF8";
@@ -41,10 +40,29 @@ public class CompileCache {
 	private static final int MAX_CACHE_SIZE = 4096;
 	private int maxCacheSize;
 
+	// 純粋なモジュールの宣言.
+	private static final String PURE_DIRECTIVE = "'use pure'";
+	private static final String PURE_DIRECTIVE_DQ = "\"use pure\"";
+
 	// ベースディレクトリ.
 	private static final String DEF_BASE_DIR = ".";
 	private String baseDir = "";
 
+	// キャッシュ情報.
+	private final Map<String, ScriptElement> cache = new ConcurrentHashMap<String, ScriptElement>();
+
+	// コンパイル結果(classファイル)の永続キャッシュ.
+	private volatile CompileClassCache classCache = null;
+
+	// コンパイル中のロックオブジェクト.
+	private final Map<String, Object> compileLocks = new ConcurrentHashMap<String, Object>();
+
+	// 統計情報.
+	private final AtomicLong hitCount = new AtomicLong(0L);
+	private final AtomicLong missCount = new AtomicLong(0L);
+	private final AtomicLong compileCount = new AtomicLong(0L);
+	private final AtomicLong compileTime = new AtomicLong(0L);
+
 	/**
 	 * 初期化.
 	 */
@@ -95,47 +113,170 @@ public class CompileCache {
 		}
 	}
 
-	// キャッシュオブジェクトを取得.
-	private LruCache<String, ScriptElement> cache() {
-		return getCache(maxCacheSize);
+	/**
+	 * コンパイル結果(classファイル)の永続キャッシュを設定.
+	 * 
+	 * @param c
+	 *            永続キャッシュを設定します. [null]の場合は利用しません.
+	 */
+	public void setClassCache(CompileClassCache c) {
+		classCache = c;
+	}
+
+	/**
+	 * コンパイル結果(classファイル)の永続キャッシュを取得.
+	 * 
+	 * @return CompileClassCache 利用しない場合は[null]が返却されます.
+	 */
+	public CompileClassCache getClassCache() {
+		return classCache;
 	}
 
 	/**
 	 * キャッシュクリア.
 	 */
 	public void clear() {
-		cache().clear();
+		cache.clear();
+	}
+
+	/**
+	 * キャッシュ数を取得.
+	 * 
+	 * @return int キャッシュ数が返却されます.
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * キャッシュヒット数を取得.
+	 * 
+	 * @return long キャッシュヒット数が返却されます.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * キャッシュミス数を取得.
+	 * 
+	 * @return long キャッシュミス数が返却されます.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * コンパイル数を取得.
+	 * 
+	 * @return long コンパイル数が返却されます.
+	 */
+	public long getCompileCount() {
+		return compileCount.get();
+	}
+
+	/**
+	 * コンパイルの累計時間を取得.
+	 * 
+	 * @return long コンパイルの累計時間(ナノ秒)が返却されます.
+	 */
+	public long getCompileTime() {
+		return compileTime.get();
+	}
+
+	// 最大管理データ数を超えた場合は、一番利用されていないキャッシュを削除.
+	private final void removeLru() {
+		while (cache.size() > maxCacheSize) {
+			String key = null;
+			long min = Long.MAX_VALUE;
+			final Iterator<Entry<String, ScriptElement>> it = cache.entrySet().iterator();
+			while (it.hasNext()) {
+				final Entry<String, ScriptElement> e = it.next();
+				if (e.getValue().getAccessTime() < min) {
+					min = e.getValue().getAccessTime();
+					key = e.getKey();
+				}
+			}
+			if (key == null) {
+				break;
+			}
+			cache.remove(key);
+		}
+	}
+
+	// スクリプトの先頭に'use pure'宣言が存在するかチェック(先頭の空白、コメントは読み飛ばす).
+	private static final boolean isPure(String src) {
+		int p;
+		final int len = src.length();
+		int i = 0;
+		while (i < len) {
+			final char c = src.charAt(i);
+			if (c == '\uFEFF' || Character.isWhitespace(c)) {
+				i++;
+			} else if (src.startsWith("//", i)) {
+				if ((p = src.indexOf('\n', i)) == -1) {
+					return false;
+				}
+				i = p + 1;
+			} else if (src.startsWith("/*", i)) {
+				if ((p = src.indexOf("*/", i + 2)) == -1) {
+					return false;
+				}
+				i = p + 2;
+			} else {
+				return src.startsWith(PURE_DIRECTIVE, i) || src.startsWith(PURE_DIRECTIVE_DQ, i);
+			}
+		}
+		return false;
 	}
 
 	// キャッシュ情報が古いかキャッシュに存在しない場合は、ファイルからコンパイル結果を作成してロードする.
-	private static final ScriptElement load(LruCache<String, ScriptElement> c, String key, String jsName, long time,
+	private final ScriptElement load(String key, String jsName, long time,
 			String headerScript, String footerScript, int lineNo) throws Exception {
-		BufferedReader r = null;
+		// ファイルが存在しない場合.
+		if (time == -1) {
+			// キャッシュに情報が存在する場合.
+			cache.remove(key);
+			// ファイルが存在しないことを示すエラー返却.
+			throw new CompileException(404);
+		}
+		// 同一スクリプトのコンパイルは１つのスレッドのみで行う.
+		Object lock = compileLocks.get(key);
+		if (lock == null) {
+			final Object n = new Object();
+			lock = compileLocks.putIfAbsent(key, n);
+			if (lock == null) {
+				lock = n;
+			}
+		}
 		try {
-			// ファイルが存在しない場合.
-			if (time == -1) {
-				// キャッシュに情報が存在する場合.
-				if (c.contains(key)) {
-					c.remove(key);
+			synchronized (lock) {
+				// 他のスレッドでコンパイル済みの場合.
+				ScriptElement em = cache.get(key);
+				if (em != null && time == em.getTime() && em.isHeader(headerScript)) {
+					return em;
 				}
-				// ファイルが存在しないことを示すエラー返却.
-				throw new CompileException(404);
-			}
-			// ファイルを読み込んでキャッシュセット.
-			r = new BufferedReader(new InputStreamReader(new FileInputStream(jsName), CHARSET));
-			Script sc = ExecuteScript.compile(r, key, headerScript, footerScript, lineNo);
-			r.close();
-			r = null;
-			ScriptElement em = new ScriptElement(sc, jsName, time);
-			c.put(key, em);
-			return em;
-		} finally {
-			if (r != null) {
-				try {
-					r.close();
-				} catch (Exception e) {
+				// ファイルを読み込んでキャッシュセット.
+				final long startTime = System.nanoTime();
+				final String src = FileUtil.getFileString(jsName, CHARSET);
+				final CompileClassCache cc = classCache;
+				Script sc;
+				if (cc != null) {
+					// 永続キャッシュに同じ内容のコンパイル結果が存在する場合は、それを利用.
+					sc = cc.get(ExecuteScript.getScriptSource(new StringReader(src), headerScript, footerScript),
+						key, lineNo);
+				} else {
+					sc = ExecuteScript.compile(new StringReader(src), key, headerScript, footerScript, lineNo);
 				}
+				compileTime.addAndGet(System.nanoTime() - startTime);
+				compileCount.incrementAndGet();
+				em = new ScriptElement(sc, jsName, time, isPure(src), headerScript);
+				cache.put(key, em);
+				removeLru();
+				return em;
 			}
+		} finally {
+			compileLocks.remove(key, lock);
 		}
 	}
 
@@ -160,6 +301,29 @@ public class CompileCache {
 			if (!jsName.toLowerCase().endsWith(".js")) {
 				jsName += ".js";
 			}
+			return getByFullPath(jsName, headerScript, footerScript);
+		} catch (CompileException ce) {
+			throw ce;
+		} catch (Exception e) {
+			throw new CompileException(500, e);
+		}
+	}
+
+	/**
+	 * フルパス変換済みのファイル名でキャッシュ情報をロード＆取得.
+	 * 
+	 * @param jsName
+	 *            ロードするファイル名をフルパス(拡張子.jsを含む)で設定します.
+	 * @param headerScript
+	 *            ヘッダに追加するスクリプトを設定します.
+	 * @param footerScript
+	 *            フッタに追加するスクリプトを設定します.
+	 * @return ScriptElement スクリプト要素が返却されます.
+	 * @exception CompileException
+	 *                コンパイル例外.
+	 */
+	public ScriptElement getByFullPath(String jsName, String headerScript, String footerScript) {
+		try {
 			// 現在のファイル時間を取得.
 			long time = WatchPath.getInstance().getMtime(jsName);
 			if(time == -1) {
@@ -169,13 +333,17 @@ public class CompileCache {
 			final String key = jsName.startsWith(baseDir) ?
 				jsName.substring(baseDir.length()) : jsName;
 			// 現在のキャッシュ情報を取得.
-			final LruCache<String, ScriptElement> c = cache();
-			ScriptElement ret = c.get(key);
+			ScriptElement ret = cache.get(key);
 			// キャッシュ情報が無いか、キャッシュ情報が更新された場合.
-			if (ret == null || time != ret.getTime()) {
+			// 別のヘッダでコンパイルされている場合(requireと実行スクリプトの両方で利用される場合など)も再コンパイルする.
+			if (ret == null || time != ret.getTime() || !ret.isHeader(headerScript)) {
+				missCount.incrementAndGet();
 				// データロード.
-				ret = load(c, key, jsName, time, headerScript, footerScript, 1 - ExecuteScript.getEnterCount(headerScript));
+				ret = load(key, jsName, time, headerScript, footerScript, 1 - ExecuteScript.getEnterCount(headerScript));
+			} else {
+				hitCount.incrementAndGet();
 			}
+			ret.access();
 			return ret;
 		} catch (CompileException ce) {
 			throw ce;
@@ -222,10 +390,12 @@ public class CompileCache {
 		}
 	}
 	
-	// threadローカルでCompileCacaheを管理.
-	private static final ThreadLocal<CompileCache> threadCache = new ThreadLocal<CompileCache>();
+	// 全体で共有するCompileCache.
+	private static volatile CompileCache sharedCache = null;
+	private static final Object sharedSync = new Object();
 	private static int baseCacheSize = -1;
 	private static String baseCacheDir = null;
+	private static String baseClassCacheDir = null;
 	
 	/**
 	 * コンパイルキャッシュ定義をセット.
@@ -233,15 +403,35 @@ public class CompileCache {
 	 * @param cacheDir
 	 */
 	public static final void setBaseCache(Integer cacheSize, String cacheDir) {
-		if(cacheSize == null || cacheSize <= 0) {
-			baseCacheSize = -1;
-		} else {
-			baseCacheSize = cacheSize;
+		synchronized(sharedSync) {
+			if(cacheSize == null || cacheSize <= 0) {
+				baseCacheSize = -1;
+			} else {
+				baseCacheSize = cacheSize;
+			}
+			if(cacheDir == null || cacheDir.isEmpty()) {
+				baseCacheDir = null;
+			} else {
+				baseCacheDir = cacheDir;
+			}
+			// 定義が変更されたので再作成させる.
+			sharedCache = null;
 		}
-		if(cacheDir == null || cacheDir.isEmpty()) {
-			baseCacheDir = null;
-		} else {
-			baseCacheDir = cacheDir;
+	}
+
+	/**
+	 * コンパイル結果(classファイル)の永続キャッシュ先を設定.
+	 * @param classCacheDir
+	 */
+	public static final void setBaseClassCache(String classCacheDir) {
+		synchronized(sharedSync) {
+			if(classCacheDir == null || classCacheDir.isEmpty()) {
+				baseClassCacheDir = null;
+			} else {
+				baseClassCacheDir = classCacheDir;
+			}
+			// 定義が変更されたので再作成させる.
+			sharedCache = null;
 		}
 	}
 
@@ -250,19 +440,34 @@ public class CompileCache {
 	 * @return
 	 */
 	public static final CompileCache getCache() {
-		// 別スレッドを作成した場合の拡張対応.
-		CompileCache ret = threadCache.get();
+		CompileCache ret = sharedCache;
 		if (ret == null) {
-			if(baseCacheSize == -1 || baseCacheDir == null) {
-				HttpInfo info = Http.getHttpInfo();
-				if (info != null) {
-					ret = new CompileCache(
-						baseCacheSize == -1 ? info.getCompileCacheSize() : baseCacheSize,
-						baseCacheDir == null ? info.getCompileCacheRootDir() : baseCacheDir);
-					threadCache.set(ret);
+			synchronized(sharedSync) {
+				if ((ret = sharedCache) == null) {
+					HttpInfo info = Http.getHttpInfo();
+					if(baseCacheSize == -1 || baseCacheDir == null) {
+						if (info != null) {
+							ret = new CompileCache(
+								baseCacheSize == -1 ? info.getCompileCacheSize() : baseCacheSize,
+								baseCacheDir == null ? info.getCompileCacheRootDir() : baseCacheDir);
+						}
+					} else {
+						ret = new CompileCache(baseCacheSize, baseCacheDir);
+					}
+					if (ret != null) {
+						final String dir = baseClassCacheDir != null ? baseClassCacheDir :
+							(info == null ? null : info.getCompileClassCacheDir());
+						if (dir != null && !dir.isEmpty()) {
+							try {
+								ret.setClassCache(new CompileClassCache(dir));
+							} catch (Exception e) {
+								// 永続キャッシュが利用できない場合は、通常のコンパイルで処理する.
+								LOG.warn("Failed to use compile class cache: " + dir, e);
+							}
+						}
+						sharedCache = ret;
+					}
 				}
-			} else {
-				ret = new CompileCache(baseCacheSize, baseCacheDir);
 			}
 		}
 		return ret;
@@ -0,0 +1,196 @@
+package rhigin.scripts.compile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.javascript.DefiningClassLoader;
+import org.mozilla.javascript.Script;
+
+import rhigin.scripts.ExecuteScript;
+import rhigin.util.Converter;
+import rhigin.util.FileUtil;
+
+/**
+ * コンパイル結果(classファイル)の永続キャッシュ.
+ *
+ * スクリプトをRhinoのclassファイル群にコンパイルして、変換後のスクリプト内容のハッシュ値をファイル名として
+ * キャッシュディレクトリに保存します. 再起動後に同じ内容のスクリプトをロードする場合は、保存されている
+ * classファイル群を読み込むだけで、コンパイル処理を行いません.
+ */
+public class CompileClassCache {
+
+	// キャッシュファイルの拡張子.
+	private static final String EXTENSION = ".rjc";
+
+	// キャッシュファイルの識別子.
+	private static final int MAGIC = 0x524a4301;
+
+	// 生成するScriptのクラス名.
+	private static final String CLASS_NAME_HEAD = "rhigin.scripts.compile.gen.S";
+
+	// キャッシュディレクトリ.
+	private final String dir;
+
+	// コンパイル条件.
+	private final String version;
+
+	// 統計情報.
+	private final AtomicLong loadCount = new AtomicLong(0L);
+	private final AtomicLong storeCount = new AtomicLong(0L);
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param dir
+	 *            キャッシュディレクトリを設定します.
+	 * @exception Exception
+	 *                例外.
+	 */
+	public CompileClassCache(String dir) throws Exception {
+		if (!FileUtil.isDir(dir)) {
+			FileUtil.mkdirs(dir);
+		}
+		this.dir = FileUtil.getFullPath(dir) + "/";
+		this.version = ExecuteScript.getCompileVersion();
+	}
+
+	/**
+	 * キャッシュディレクトリを取得.
+	 *
+	 * @return String
+	 */
+	public String getDir() {
+		return dir;
+	}
+
+	/**
+	 * キャッシュから読み込んだ数を取得.
+	 *
+	 * @return long
+	 */
+	public long getLoadCount() {
+		return loadCount.get();
+	}
+
+	/**
+	 * キャッシュに保存した数を取得.
+	 *
+	 * @return long
+	 */
+	public long getStoreCount() {
+		return storeCount.get();
+	}
+
+	/**
+	 * スクリプトを取得.
+	 * キャッシュに存在しない場合は、コンパイルしてキャッシュに保存します.
+	 *
+	 * @param source
+	 *            ExecuteScript.getScriptSourceで変換したスクリプトを設定します.
+	 * @param name
+	 *            スクリプトファイル名を設定します.
+	 * @param lineNo
+	 *            ライン開始番号を設定します.
+	 * @return Script コンパイル結果が返却されます.
+	 * @exception Exception
+	 *                例外.
+	 */
+	public Script get(String source, String name, int lineNo) throws Exception {
+		final String hash = hash(source, name, lineNo);
+		final String className = CLASS_NAME_HEAD + hash;
+		final String fileName = dir + hash + EXTENSION;
+		if (FileUtil.isFile(fileName)) {
+			try {
+				final Script ret = define(className, read(fileName));
+				loadCount.incrementAndGet();
+				return ret;
+			} catch (Exception e) {
+				// 壊れたキャッシュファイルは削除して再コンパイル.
+				try {
+					FileUtil.removeFile(fileName);
+				} catch (Exception ee) {
+				}
+			}
+		}
+		final Object[] classes = ExecuteScript.compileClass(source, name, lineNo, className);
+		final Script ret = define(className, classes);
+		try {
+			write(fileName, classes);
+			storeCount.incrementAndGet();
+		} catch (Exception e) {
+			// 保存できない場合も、コンパイル結果は利用する.
+		}
+		return ret;
+	}
+
+	// キャッシュキーを生成.
+	private final String hash(String source, String name, int lineNo) throws Exception {
+		return Converter.sha256(version, name + ":" + lineNo, source);
+	}
+
+	// classファイル群を定義してScriptを生成.
+	private static final Script define(String className, Object[] classes) throws Exception {
+		final DefiningClassLoader loader = new DefiningClassLoader(CompileClassCache.class.getClassLoader());
+		Class<?> main = null;
+		for (int i = 0; i < classes.length; i += 2) {
+			final Class<?> c = loader.defineClass((String) classes[i], (byte[]) classes[i + 1]);
+			loader.linkClass(c);
+			if (className.equals(classes[i])) {
+				main = c;
+			}
+		}
+		if (main == null) {
+			throw new IOException("Script class not found: " + className);
+		}
+		return (Script) main.getConstructor().newInstance();
+	}
+
+	// キャッシュファイルを読み込む.
+	private static final Object[] read(String fileName) throws Exception {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(FileUtil.getFile(fileName)));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Invalid cache file: " + fileName);
+		}
+		final int len = in.readInt();
+		final Object[] ret = new Object[len << 1];
+		for (int i = 0; i < len; i++) {
+			ret[i << 1] = in.readUTF();
+			final byte[] b = new byte[in.readInt()];
+			in.readFully(b);
+			ret[(i << 1) + 1] = b;
+		}
+		return ret;
+	}
+
+	// キャッシュファイルを書き込む.
+	// 他プロセスと同時に書き込む場合を考慮して、一時ファイルに書き込んでから置き換える.
+	private static final void write(String fileName, Object[] classes) throws Exception {
+		final ByteArrayOutputStream bo = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bo);
+		out.writeInt(MAGIC);
+		out.writeInt(classes.length >> 1);
+		for (int i = 0; i < classes.length; i += 2) {
+			final byte[] b = (byte[]) classes[i + 1];
+			out.writeUTF((String) classes[i]);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+		out.flush();
+		final File tmp = File.createTempFile("rjc", ".tmp", new File(fileName).getParentFile());
+		try {
+			FileUtil.setFile(true, tmp.getPath(), bo.toByteArray());
+			Files.move(tmp.toPath(), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmp.delete();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package rhigin.scripts.compile;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import rhigin.RhiginConstants;
+import rhigin.http.HttpRouteTable;
+import rhigin.scripts.ScriptConstants;
+import rhigin.util.FileUtil;
+import rhigin.util.ObjectList;
+import rhigin.util.WatchPath;
+
+/**
+ * スクリプトの事前コンパイル.
+ *
+ * WatchPathで管理している[./application]と[./lib]配下の全てのスクリプトを、
+ * Fork/Joinプールで並列にコンパイルしてCompileCacheにロードします.
+ * 起動直後のリクエストで、スクリプト毎のコンパイル処理が発生しないようにします.
+ */
+public final class Precompile {
+	protected Precompile() {
+	}
+
+	/**
+	 * 事前コンパイル結果.
+	 */
+	public static final class Result {
+		private int count;
+		private long time;
+		private final List<String> errors = new ObjectList<String>();
+
+		/**
+		 * コンパイルしたスクリプト数を取得.
+		 *
+		 * @return int
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * 処理時間(ミリ秒)を取得.
+		 *
+		 * @return long
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * コンパイルエラーの内容を取得.
+		 *
+		 * @return List<String>
+		 */
+		public List<String> getErrors() {
+			return errors;
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder("precompile: ").append(count).append(" scripts, ").append(errors.size())
+					.append(" errors, ").append(time).append(" ms").toString();
+		}
+	}
+
+	/**
+	 * 事前コンパイル.
+	 *
+	 * @param cache
+	 *            ロード先のCompileCacheを設定します.
+	 * @param wp
+	 *            対象のWatchPathを設定します.
+	 * @param thread
+	 *            コンパイルスレッド数を設定します. [0]以下の場合はCPU数となります.
+	 * @return Result 事前コンパイル結果が返却されます.
+	 * @exception Exception
+	 *                例外.
+	 */
+	public static final Result execute(final CompileCache cache, WatchPath wp, int thread) throws Exception {
+		final long startTime = System.currentTimeMillis();
+		final Result ret = new Result();
+		if (cache == null || wp == null) {
+			return ret;
+		}
+		// ライブラリ配下はrequireで、それ以外は実行スクリプトとしてコンパイル.
+		final String libDir = FileUtil.isDir(RhiginConstants.DIR_LIB) ? FileUtil.getFullPath(RhiginConstants.DIR_LIB)
+				: null;
+		final List<Callable<String>> tasks = new ObjectList<Callable<String>>();
+		final List<WatchPath.StatObject> list = wp.getStatList();
+		final int len = list.size();
+		for (int i = 0; i < len; i++) {
+			final WatchPath.StatObject stat = list.get(i);
+			final String name = stat.getFullPath();
+			// ブラウザ用のJSはサーバ実行しないので対象外.
+			if (!stat.isFile() || !name.endsWith(".js") || HttpRouteTable.isBrowserJsPath(name)) {
+				continue;
+			}
+			final boolean lib = libDir != null && libDir.equals(stat.getTopDir());
+			tasks.add(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					try {
+						if (lib) {
+							cache.getByFullPath(name, ScriptConstants.REQUIRE_HEADER, ScriptConstants.REQUIRE_FOOTER);
+						} else {
+							cache.getByFullPath(name, ScriptConstants.HEADER, ScriptConstants.FOOTER);
+						}
+						return null;
+					} catch (Exception e) {
+						Throwable t = e.getCause() == null ? e : e.getCause();
+						return name + ": " + t.getMessage();
+					}
+				}
+			});
+		}
+		if (thread <= 0) {
+			thread = java.lang.Runtime.getRuntime().availableProcessors();
+		}
+		final ForkJoinPool pool = new ForkJoinPool(thread);
+		try {
+			final List<Future<String>> results = pool.invokeAll(tasks);
+			final int rlen = results.size();
+			for (int i = 0; i < rlen; i++) {
+				final String err = results.get(i).get();
+				if (err != null) {
+					ret.errors.add(err);
+				}
+			}
+			ret.count = rlen;
+		} finally {
+			pool.shutdown();
+		}
+		ret.time = System.currentTimeMillis() - startTime;
+		return ret;
+	}
+}
@@ -9,11 +9,26 @@ public class ScriptElement {
 	private Script script;
 	private String name;
 	private long time;
+	private volatile long accessTime;
+	private boolean pure;
+	private String header;
+	private volatile Object exports;
 
 	public ScriptElement(Script s, String n, long t) {
+		this(s, n, t, false);
+	}
+
+	public ScriptElement(Script s, String n, long t, boolean p) {
+		this(s, n, t, p, null);
+	}
+
+	public ScriptElement(Script s, String n, long t, boolean p, String h) {
 		script = s;
 		name = n;
 		time = t;
+		pure = p;
+		header = h;
+		accessTime = System.nanoTime();
 	}
 
 	public Script getScript() {
@@ -27,4 +42,59 @@ public class ScriptElement {
 	public long getTime() {
 		return time;
 	}
+
+	/**
+	 * コンパイル時に付与したヘッダが一致するかチェック.
+	 * 
+	 * @param h
+	 *            ヘッダに追加するスクリプトを設定します.
+	 * @return boolean [true]の場合、一致します.
+	 */
+	public boolean isHeader(String h) {
+		return header == h || (header != null && header.equals(h));
+	}
+
+	/**
+	 * 最終アクセス時間を更新.
+	 */
+	public void access() {
+		accessTime = System.nanoTime();
+	}
+
+	/**
+	 * 最終アクセス時間を取得.
+	 * 
+	 * @return long 最終アクセス時間(ナノ秒)が返却されます.
+	 */
+	public long getAccessTime() {
+		return accessTime;
+	}
+
+	/**
+	 * 純粋なモジュール('use pure'宣言あり)かチェック.
+	 * 
+	 * @return boolean [true]の場合、実行結果(exports)を再利用できます.
+	 */
+	public boolean isPure() {
+		return pure;
+	}
+
+	/**
+	 * キャッシュされたモジュールの実行結果(exports)を取得.
+	 * 
+	 * @return Object 未実行の場合は[null]が返却されます.
+	 */
+	public Object getExports() {
+		return exports;
+	}
+
+	/**
+	 * モジュールの実行結果(exports)をキャッシュ.
+	 * 
+	 * @param e
+	 *            実行結果を設定します.
+	 */
+	public void setExports(Object e) {
+		exports = e;
+	}
 }
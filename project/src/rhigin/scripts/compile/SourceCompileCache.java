@@ -0,0 +1,137 @@
+package rhigin.scripts.compile;
+
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.javascript.Script;
+
+import rhigin.scripts.ExecuteScript;
+import rhigin.util.Converter;
+import rhigin.util.LruCache;
+
+/**
+ * スクリプト内容をキーとしたコンパイル結果のLRUキャッシュ.
+ *
+ * ファイルを持たないスクリプト(executejsで受信したスクリプト等)のコンパイル結果を、
+ * スクリプト内容とヘッダ、フッタのハッシュ値をキーとして保持します.
+ * 同じ内容のスクリプトを繰り返し実行する場合に、構文解析とclass生成を省略します.
+ * 全てのワーカースレッドで共有します.
+ */
+public class SourceCompileCache {
+
+	/** デフォルトの最大管理数. **/
+	private static final int DEF_MAX_SIZE = 64;
+
+	// LRUキャッシュ.
+	private LruCache<String, Script> cache;
+
+	// 最大管理数.
+	private final int maxSize;
+
+	// 同期.
+	private final Object sync = new Object();
+
+	// 統計情報.
+	private final AtomicLong hitCount = new AtomicLong(0L);
+	private final AtomicLong missCount = new AtomicLong(0L);
+
+	/**
+	 * コンストラクタ.
+	 */
+	public SourceCompileCache() {
+		this(DEF_MAX_SIZE);
+	}
+
+	/**
+	 * コンストラクタ.
+	 *
+	 * @param maxSize
+	 *            最大管理数を設定します.
+	 */
+	public SourceCompileCache(int maxSize) {
+		this.maxSize = maxSize <= 0 ? DEF_MAX_SIZE : maxSize;
+		this.cache = new LruCache<String, Script>(this.maxSize);
+	}
+
+	/**
+	 * キャッシュを全て削除.
+	 */
+	public void clear() {
+		synchronized (sync) {
+			cache = new LruCache<String, Script>(maxSize);
+		}
+	}
+
+	/**
+	 * 管理数を取得.
+	 *
+	 * @return int
+	 */
+	public int size() {
+		synchronized (sync) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * ヒット数を取得.
+	 *
+	 * @return long
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * ミス数を取得.
+	 *
+	 * @return long
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * コンパイル済みのスクリプトを取得.
+	 * キャッシュに存在しない場合は、コンパイルしてキャッシュに登録します.
+	 *
+	 * @param source
+	 *            スクリプト内容を設定します.
+	 * @param name
+	 *            スクリプト名を設定します.
+	 * @param headerScript
+	 *            ヘッダに追加するスクリプトを設定します.
+	 * @param footerScript
+	 *            フッタに追加するスクリプトを設定します.
+	 * @param lineNo
+	 *            ライン開始番号を設定します.
+	 * @return Script コンパイル結果が返却されます.
+	 * @exception Exception
+	 *                例外.
+	 */
+	public Script get(String source, String name, String headerScript, String footerScript, int lineNo)
+			throws Exception {
+		final String key = hash(source, name, headerScript, footerScript, lineNo);
+		Script ret;
+		synchronized (sync) {
+			ret = cache.get(key);
+		}
+		if (ret != null) {
+			hitCount.incrementAndGet();
+			return ret;
+		}
+		missCount.incrementAndGet();
+		// 同じスクリプトを同時にコンパイルする場合があるが、結果は同じなので後勝ちで登録する.
+		ret = ExecuteScript.compile(new StringReader(source), name, headerScript, footerScript, lineNo);
+		synchronized (sync) {
+			cache.put(key, ret);
+		}
+		return ret;
+	}
+
+	// キャッシュキーを生成.
+	private static final String hash(String source, String name, String headerScript, String footerScript,
+			int lineNo) throws Exception {
+		return Converter.sha256(name + ":" + lineNo, headerScript, footerScript, source);
+	}
+}
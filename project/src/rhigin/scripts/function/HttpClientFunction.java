@@ -1,5 +1,7 @@
 package rhigin.scripts.function;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.mozilla.javascript.Context;
@@ -7,9 +9,12 @@ import org.mozilla.javascript.Scriptable;
 
 import rhigin.RhiginException;
 import rhigin.http.client.HttpClient;
+import rhigin.http.client.HttpClientBatch;
 import rhigin.scripts.RhiginFunction;
 import rhigin.util.ArrayMap;
+import rhigin.util.Converter;
 import rhigin.util.FixedKeyValues;
+import rhigin.util.ObjectList;
 
 /**
  * [js]HttpClient.
@@ -26,6 +31,13 @@ import rhigin.util.FixedKeyValues;
  *                        の量を少し減らせます.
  *               accessKey: アクセスキーを用いたHttp or Https通信を行う場合に利用します.
  *               authCode: アクセスキーを用いたHttp or Https通信を行う場合に利用します.
+ *               timeout: このリクエストの受信タイムアウト(ミリ秒)を設定します.
+ * 
+ * httpClient.all(requests, option)
+ *   複数のリクエストを並列実行して、リクエスト順に結果を配列で返却します.
+ *   requests: [{method, url, params, header, timeout ...}, ...] or [[method, url, option], ...] で設定.
+ *   option: timeout: 全体の締め切り時間(ミリ秒)を設定します.
+ *   失敗したリクエストの結果は {url, error, timeout} となります.
  */
 public class HttpClientFunction extends RhiginFunction {
 	private static final HttpClientFunction THIS = new HttpClientFunction();
@@ -87,6 +99,107 @@ public class HttpClientFunction extends RhiginFunction {
 		return argsException();
 	}
 
+	@Override
+	public Object get(String arg0, Scriptable arg1) {
+		if (AllFunction.NAME.equals(arg0)) {
+			return AllFunction.THIS;
+		}
+		return super.get(arg0, arg1);
+	}
+
+	@Override
+	public boolean has(String arg0, Scriptable arg1) {
+		return AllFunction.NAME.equals(arg0) || super.has(arg0, arg1);
+	}
+
+	@Override
+	public Object[] getIds() {
+		final Object[] ids = super.getIds();
+		final Object[] ret = new Object[ids.length + 1];
+		System.arraycopy(ids, 0, ret, 0, ids.length);
+		ret[ids.length] = AllFunction.NAME;
+		return ret;
+	}
+
+	// httpClient.all(requests, option).
+	private static final class AllFunction extends RhiginFunction {
+		private static final String NAME = "all";
+		private static final AllFunction THIS = new AllFunction();
+
+		@Override
+		public String getName() {
+			return NAME;
+		}
+
+		@Override
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		public final Object jcall(Context ctx, Scriptable scope, Scriptable thisObj, Object[] args) {
+			if (args.length >= 1 && args[0] instanceof List) {
+				long timeout = -1L;
+				if (args.length >= 2 && args[1] instanceof Map) {
+					final Object t = ((Map) args[1]).get("timeout");
+					if (t != null && Converter.isNumeric(t)) {
+						timeout = Converter.convertLong(t);
+					}
+				}
+				final List list = (List) args[0];
+				final int len = list.size();
+				final List<HttpClientBatch.Request> requests = new ObjectList<HttpClientBatch.Request>(len);
+				for (int i = 0; i < len; i++) {
+					requests.add(request(list.get(i)));
+				}
+				try {
+					return new ObjectList<Object>(HttpClientBatch.execute(requests, timeout));
+				} catch (RhiginException re) {
+					throw re;
+				} catch (Exception e) {
+					throw new RhiginException(500, e);
+				}
+			}
+			return argsException(NAME);
+		}
+
+		// １つのリクエスト条件を生成.
+		// 別スレッドで実行されるので、オプションはjsオブジェクトからコピーする.
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		private static final HttpClientBatch.Request request(Object o) {
+			if (o instanceof List) {
+				final List l = (List) o;
+				if (l.size() >= 2) {
+					final Map option = l.size() >= 3 && l.get(2) instanceof Map ? copy((Map) l.get(2)) : null;
+					return new HttpClientBatch.Request("" + l.get(0), "" + l.get(1), option);
+				}
+			} else if (o instanceof Map) {
+				final Map m = (Map) o;
+				final Object url = m.get("url");
+				if (url != null) {
+					final Object method = m.get("method");
+					final Map option = copy(m);
+					option.remove("method");
+					option.remove("url");
+					return new HttpClientBatch.Request(method == null ? null : "" + method, "" + url, option);
+				}
+			}
+			throw new RhiginException(400, "Invalid request for httpClient.all: " + o);
+		}
+
+		// オプションをコピー.
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		private static final Map copy(Map m) {
+			final Map ret = new ArrayMap();
+			final Iterator it = m.keySet().iterator();
+			while (it.hasNext()) {
+				final Object k = it.next();
+				Object v = m.get(k);
+				if (v instanceof Map && ("header".equals(k) || "headers".equals(k))) {
+					v = copy((Map) v);
+				}
+				ret.put(k, v);
+			}
+			return ret;
+		}
+	}
+
 	/**
 	 * スコープにライブラリを登録.
 	 * 
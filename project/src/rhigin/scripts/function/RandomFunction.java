@@ -63,6 +63,13 @@ public class RandomFunction extends RhiginFunction {
 	public static final Xor128 get() {
 		return RandomFunction.getInstance().getXor128();
 	}
+
+	/**
+	 * スレッドのxor128乱数発生オブジェクトを削除.
+	 */
+	public static final void remove() {
+		RandomFunction.getInstance().xor128.remove();
+	}
 	/**
 	 * スコープにライブラリを登録.
 	 * 
@@ -5,15 +5,24 @@ import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.Undefined;
 
 import rhigin.RhiginException;
+import rhigin.scripts.ExecuteScript;
 import rhigin.scripts.JavaRequire;
+import rhigin.scripts.RhiginContext;
 import rhigin.scripts.RhiginFunction;
 import rhigin.scripts.ScriptConstants;
 import rhigin.scripts.compile.CompileCache;
+import rhigin.scripts.compile.ScriptElement;
 import rhigin.util.Converter;
 import rhigin.util.FixedKeyValues;
 
 /**
  * [Function]: require.
+ * 
+ * モジュールのスクリプト先頭に 'use pure'; が宣言されている場合は、純粋なモジュールとして
+ * 実行結果(exports)をコンパイル済みスクリプトのバージョン単位でキャッシュして、
+ * 以降のrequireではスクリプトを実行せずに再利用します.
+ * 純粋なモジュールはリクエスト毎のオブジェクト(request, params等)を参照しない独立したスコープで実行され、
+ * exportsは全スレッドで共有されるので、モジュール内で状態を変更しないようにしてください.
  */
 public final class RequireFunction extends RhiginFunction {
 	private static final RequireFunction THIS = new RequireFunction();
@@ -39,8 +48,8 @@ public final class RequireFunction extends RhiginFunction {
 
 
 	// ヘッダ・フッタ.
-	private static final String HEADER_SCRIPT = "'use strict';(function(_g){var _$def_$exports={};var module= {exports:_$def_$exports};var exports=_$def_$exports;\n";
-	private static final String FOOTER_SCRIPT = "\nreturn (module.exports!=_$def_$exports)?module.exports:exports;})(this);";
+	private static final String HEADER_SCRIPT = ScriptConstants.REQUIRE_HEADER;
+	private static final String FOOTER_SCRIPT = ScriptConstants.REQUIRE_FOOTER;
 
 	@Override
 	public String getName() {
@@ -71,7 +80,30 @@ public final class RequireFunction extends RhiginFunction {
 				throw new RhiginException(500, "The specified class is not an inherited object of 'JavaRequire': " + args[0], e);
 			}
 		}
-		return CompileCache.eval(path, HEADER_SCRIPT, FOOTER_SCRIPT);
+		final CompileCache cache = CompileCache.getCache();
+		if (cache == null) {
+			return CompileCache.noCacheByEval(path, HEADER_SCRIPT, FOOTER_SCRIPT);
+		}
+		try {
+			final ScriptElement se = cache.get(path, HEADER_SCRIPT, FOOTER_SCRIPT);
+			if (!se.isPure()) {
+				return ExecuteScript.eval(se.getScript());
+			}
+			// 純粋なモジュールの場合は、キャッシュされたexportsを利用.
+			Object ret = se.getExports();
+			if (ret == null) {
+				// 呼び出し元のRhiginContextを参照しないように、独立したコンテキストで実行.
+				ret = ExecuteScript.execute(new RhiginContext(), se.getScript());
+				if (ret != null) {
+					se.setExports(ret);
+				}
+			}
+			return ret;
+		} catch (RhiginException re) {
+			throw re;
+		} catch (Exception e) {
+			throw new RhiginException(500, e);
+		}
 	}
 
 	/**
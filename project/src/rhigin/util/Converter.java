@@ -6,6 +6,7 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -1206,6 +1207,31 @@ public final class Converter {
 		return ret;
 	}
 
+	/**
+	 * 文字列群のSHA-256ハッシュを16進数文字列で取得.
+	 * 各文字列はUTF8で変換し、区切りに[0]を挟んでハッシュ化します.
+	 * 
+	 * @param values 対象の文字列群を設定します.
+	 * @return String 16進数のハッシュ値が返却されます.
+	 * @exception Exception 例外.
+	 */
+	public static final String sha256(String... values) throws Exception {
+		final MessageDigest md = MessageDigest.getInstance("SHA-256");
+		final int len = values.length;
+		for (int i = 0; i < len; i++) {
+			if (i != 0) {
+				md.update((byte) 0);
+			}
+			md.update(values[i].getBytes("UTF8"));
+		}
+		final byte[] b = md.digest();
+		final StringBuilder buf = new StringBuilder(b.length << 1);
+		for (int i = 0; i < b.length; i++) {
+			buf.append(Character.forDigit((b[i] >> 4) & 0x0f, 16)).append(Character.forDigit(b[i] & 0x0f, 16));
+		}
+		return buf.toString();
+	}
+
 	// ゼロサプレス.
 	private static final void _z2(StringBuilder buf, String no) {
 		buf.append("00".substring(no.length())).append(no);
@@ -1,5 +1,8 @@
 package rhigin.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -18,6 +21,8 @@ import java.util.concurrent.atomic.AtomicReference;
  * 高速リフレクション.
  * 
  * リフレクションオブジェクトをキャッシュして高速化を図っています.
+ * また、クラス、メソッド名、引数の型の組み合わせ毎に選択したメソッドを、引数の変換処理を組み込んだ
+ * MethodHandleとしてキャッシュして、２回目以降の呼び出しでは選択処理を省略します.
  */
 @SuppressWarnings("rawtypes")
 public class FastReflect {
@@ -132,6 +137,25 @@ public class FastReflect {
 			CONV_TABLE = m;
 		}
 
+		/** パラメータ変換処理. **/
+		private static final MethodHandle CONVERT_NUMBER;
+		private static final MethodHandle CONVERT_STRING;
+		private static final MethodHandle CONVERT_PARAMS;
+
+		static {
+			try {
+				MethodHandles.Lookup l = MethodHandles.lookup();
+				CONVERT_NUMBER = l.findStatic(Util.class, "convertNumberPrimitive",
+					MethodType.methodType(Object.class, Object.class, int.class, int.class));
+				CONVERT_STRING = l.findStatic(Util.class, "convertString",
+					MethodType.methodType(Object.class, Object.class));
+				CONVERT_PARAMS = l.findStatic(Util.class, "convertParams",
+					MethodType.methodType(Object[].class, Object[].class, Class[].class));
+			} catch (Exception e) {
+				throw new FastReflectException(e);
+			}
+		}
+
 		/**
 		 * パラメータに対する型を取得.
 		 * 
@@ -394,6 +418,60 @@ public class FastReflect {
 			return ret;
 		}
 
+		/**
+		 * 引数の内容によって、一致点数と変換結果が変わるかチェック.
+		 * 文字列の引数をプリミティブ型の引数として扱う場合は、文字列の内容で結果が変わります.
+		 * 
+		 * @param src  チェック元を設定します.
+		 * @param dest チェック先を設定します.
+		 * @return boolean [true]の場合、引数の内容によって結果が変わります.
+		 */
+		public static final boolean isValueDepend(Class[] src, Class[] dest) {
+			Class s;
+			int len = src.length;
+			for (int i = 0; i < len; i++) {
+				s = src[i];
+				if (dest[i] == STRING && s != STRING && PRIMITIVE.contains(s)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * パラメータ変換処理を取得.
+		 * convertParamsの１つの引数に対する変換と同じ処理を行います.
+		 * 
+		 * @param s 変換先のパラメータタイプを設定します.
+		 * @param d 引数の型を設定します.
+		 * @return MethodHandle 変換処理が返されます. 変換が不要な場合は[null]が返されます.
+		 */
+		public static final MethodHandle convertHandle(Class s, Class d) {
+			if (d == null || s == d) {
+				return null;
+			} else if (NUMBER_PRIMITIVE.contains(s) && NUMBER_PRIMITIVE.contains(d)) {
+				return MethodHandles.insertArguments(CONVERT_NUMBER, 1, CONV_TABLE.get(s), CONV_TABLE.get(d));
+			} else if (s == STRING && (PRIMITIVE.contains(d))) {
+				return CONVERT_STRING;
+			}
+			return null;
+		}
+
+		/**
+		 * パラメータ変換処理を取得.
+		 * 
+		 * @param types 変換対象のパラメータタイプを設定します.
+		 * @return MethodHandle 引数群をconvertParamsで変換する処理が返されます.
+		 */
+		public static final MethodHandle convertParamsHandle(Class[] types) {
+			return MethodHandles.insertArguments(CONVERT_PARAMS, 1, (Object) types);
+		}
+
+		/** プリミティブから、文字列変換. **/
+		private static final Object convertString(Object o) {
+			return o.toString();
+		}
+
 		/** 指定タイプに対して文字列から、数値変換. **/
 		private static final Object convertNumber(int type, String s) {
 			s = s.trim().toLowerCase();
@@ -665,6 +743,11 @@ public class FastReflect {
 		private final AtomicReference<ConstructorObject> constructors = new AtomicReference<ConstructorObject>();
 		private final AtomicReference<MethodObject> methods = new AtomicReference<MethodObject>();
 
+		// 解決済みの呼び出し先.
+		private final Map<CallKey, CallSite> callSites = new ConcurrentHashMap<CallKey, CallSite>();
+		private final Map<String, FieldSite> fieldSites = new ConcurrentHashMap<String, FieldSite>();
+		private final Map<String, FieldSite> staticFieldSites = new ConcurrentHashMap<String, FieldSite>();
+
 		protected ClassElement(Class clazz) {
 			try {
 				this.clazz = clazz;
@@ -830,6 +913,147 @@ public class FastReflect {
 			return m.invoke(result, target, name, cl, types, args);
 		}
 
+		/**
+		 * このクラスで指定条件のメソッドを選択.
+		 * 
+		 * @param staticFlag [true]の場合、staticメソッドを選択します.
+		 * @param name       対象のメソッド名を設定します.
+		 * @param cl         対象のクラスローダを設定します.
+		 * @param types      対象のパラメータタイプを設定します.
+		 * @param args       引数パラメータ型群を設定します.
+		 * @return CallSite 選択結果が返されます.
+		 */
+		public final CallSite resolveMethod(boolean staticFlag, String name, ClassLoader cl, Class[] types, Object[] args) {
+			MethodObject m = methods.get();
+			if (m == null) {
+				m = new MethodObject(clazz);
+				while (!methods.compareAndSet(methods.get(), m))
+					;
+			}
+			return m.resolve(staticFlag, name, cl, types, args);
+		}
+
+		/**
+		 * このクラスで指定条件のコンストラクタを選択.
+		 * 
+		 * @param types 対象のパラメータタイプを設定します.
+		 * @param args  引数パラメータ型群を設定します.
+		 * @param cl    対象のクラスローダを設定します.
+		 * @return CallSite 選択結果が返されます.
+		 */
+		public final CallSite resolveConstructor(Class[] types, Object[] args, ClassLoader cl) {
+			ConstructorObject c = constructors.get();
+			if (c == null) {
+				c = new ConstructorObject(clazz);
+				while (!constructors.compareAndSet(constructors.get(), c))
+					;
+			}
+			return c.resolve(cl, types, args);
+		}
+
+		/**
+		 * 指定条件のメソッドの呼び出し先を取得.
+		 * スーパークラスを含めて選択したメソッドを、呼び出し条件毎にキャッシュします.
+		 * 
+		 * @param staticFlag [true]の場合、staticメソッドを選択します.
+		 * @param name       対象のメソッド名を設定します.
+		 * @param cl         対象のクラスローダを設定します.
+		 * @param types      対象のパラメータタイプを設定します.
+		 * @param args       引数パラメータ型群を設定します.
+		 * @return CallSite 呼び出し先が返されます. 引数の内容によって選択結果が変わる場合や、
+		 *                  メソッドが存在しない場合は[null]が返されます.
+		 */
+		public final CallSite methodSite(boolean staticFlag, String name, ClassLoader cl, Class[] types, Object[] args) {
+			final CallKey key = new CallKey(staticFlag, name, types);
+			CallSite ret = callSites.get(key);
+			if (ret != null) {
+				return ret;
+			}
+			ClassElement em = this;
+			String spclazz;
+			while (true) {
+				if ((ret = em.resolveMethod(staticFlag, name, cl, types, args)) == null) {
+					return null;
+				} else if (ret != CallSite.NOT_FOUND) {
+					break;
+				}
+				spclazz = em.getSuperClassName();
+				if (spclazz == null) {
+					return null;
+				}
+				em = FACTORY.getClass(cl, spclazz);
+			}
+			if (callSites.size() < MAX_CALL_SITE) {
+				callSites.put(key, ret);
+			}
+			return ret;
+		}
+
+		/**
+		 * 指定条件のコンストラクタの呼び出し先を取得.
+		 * スーパークラスを含めて選択したコンストラクタを、呼び出し条件毎にキャッシュします.
+		 * 
+		 * @param types 対象のパラメータタイプを設定します.
+		 * @param args  引数パラメータ型群を設定します.
+		 * @param cl    対象のクラスローダを設定します.
+		 * @return CallSite 呼び出し先が返されます. 引数の内容によって選択結果が変わる場合や、
+		 *                  コンストラクタが存在しない場合は[null]が返されます.
+		 */
+		public final CallSite constructorSite(Class[] types, Object[] args, ClassLoader cl) {
+			final CallKey key = new CallKey(false, null, types);
+			CallSite ret = callSites.get(key);
+			if (ret != null) {
+				return ret;
+			}
+			ClassElement em = this;
+			String superName;
+			while (true) {
+				if ((ret = em.resolveConstructor(types, args, cl)) == null) {
+					return null;
+				} else if (ret != CallSite.NOT_FOUND) {
+					break;
+				}
+				superName = em.getSuperClassName();
+				if (superName == null || OBJECT_NAME.equals(superName)) {
+					return null;
+				}
+				em = FACTORY.getClass(cl, superName);
+			}
+			if (callSites.size() < MAX_CALL_SITE) {
+				callSites.put(key, ret);
+			}
+			return ret;
+		}
+
+		/**
+		 * 指定フィールドのアクセス先を取得.
+		 * スーパークラスを含めて検索したフィールドを、フィールド名毎にキャッシュします.
+		 * 
+		 * @param staticFlag [true]の場合、staticアクセス用として取得します.
+		 * @param name       対象のフィールド名を設定します.
+		 * @param cl         対象のクラスローダを設定します.
+		 * @return FieldSite アクセス先が返されます. フィールドが存在しない場合は[null]が返されます.
+		 */
+		public final FieldSite fieldSite(boolean staticFlag, String name, ClassLoader cl) {
+			final Map<String, FieldSite> sites = staticFlag ? staticFieldSites : fieldSites;
+			FieldSite ret = sites.get(name);
+			if (ret != null) {
+				return ret;
+			}
+			ClassElement em = this;
+			String superName;
+			Field f;
+			while ((f = em.getField(staticFlag, name)) == null) {
+				superName = em.getSuperClassName();
+				if (superName == null) {
+					return null;
+				}
+				em = FACTORY.getClass(cl, superName);
+			}
+			ret = FieldSite.create(f);
+			sites.put(name, ret);
+			return ret;
+		}
 	}
 
 	// クラス要素ファクトリ.
@@ -1033,6 +1257,59 @@ public class FastReflect {
 				throw new FastReflectException(e);
 			}
 		}
+
+		/**
+		 * コンストラクタの呼び出し先を選択.
+		 * 選択条件はnewInstanceと同じです.
+		 * 
+		 * @param cl    対象のクラスローダを設定します.
+		 * @param types 対象のパラメータタイプを設定します.
+		 * @param args  引数パラメータ型群を設定します.
+		 * @return CallSite 呼び出し先が返されます. 存在しない場合は[CallSite.NOT_FOUND]が返されます.
+		 *                  引数の内容によって選択結果が変わる場合は[null]が返されます.
+		 */
+		public CallSite resolve(ClassLoader cl, Class[] types, Object[] args) {
+			ConstractorElement emt;
+			int len = list.length;
+			int argsLen = (args == null) ? 0 : args.length;
+			try {
+				if (argsLen == 0) {
+					for (int i = 0; i < len; i++) {
+						if ((emt = list[i]).paramsLength == 0) {
+							return CallSite.create(emt.constructor, emt.params, types, false);
+						}
+					}
+				} else {
+					// 文字列の引数をプリミティブ型で受ける候補が存在する場合はキャッシュしない.
+					for (int i = 0; i < len; i++) {
+						if ((emt = list[i]).paramsLength == argsLen && Util.isValueDepend(emt.params, types)) {
+							return null;
+						}
+					}
+					int pf = 100 * argsLen;
+					int score = -1;
+					ConstractorElement targetEmt = null;
+					for (int i = 0; i < len; i++) {
+						if ((emt = list[i]).paramsLength == argsLen) {
+							int sc = Util.parmasScore(emt.primitives, emt.params, types, args, cl);
+							if (sc != -1 && score < sc) {
+								if (sc == pf) {
+									return CallSite.create(emt.constructor, emt.params, types, false);
+								}
+								score = sc;
+								targetEmt = emt;
+							}
+						}
+					}
+					if (targetEmt != null) {
+						return CallSite.create(targetEmt.constructor, targetEmt.params, types, true);
+					}
+				}
+				return CallSite.NOT_FOUND;
+			} catch (Exception e) {
+				throw new FastReflectException(e);
+			}
+		}
 	}
 
 	// メソッド要素.
@@ -1209,6 +1486,284 @@ public class FastReflect {
 				throw new FastReflectException(e);
 			}
 		}
+
+		/**
+		 * 指定名のメソッドの呼び出し先を選択.
+		 * 選択条件はinvokeと同じです.
+		 * 
+		 * @param staticFlag [true]の場合、staticメソッドを選択します.
+		 * @param name       対象のメソッド名を設定します.
+		 * @param cl         対象のクラスローダを設定します.
+		 * @param types      対象のパラメータタイプを設定します.
+		 * @param args       引数パラメータ型群を設定します.
+		 * @return CallSite 呼び出し先が返されます. 存在しない場合は[CallSite.NOT_FOUND]が返されます.
+		 *                  引数の内容によって選択結果が変わる場合は[null]が返されます.
+		 */
+		public CallSite resolve(boolean staticFlag, String name, ClassLoader cl, Class[] types, Object[] args) {
+			int argsLen = (args == null) ? 0 : args.length;
+			try {
+				MethodElement emt = map.get(name);
+				if (argsLen == 0) {
+					while (emt != null) {
+						if (staticFlag == emt.isStatic && argsLen == emt.paramsLength) {
+							return CallSite.create(emt.method, emt.isStatic, emt.params, types, false);
+						}
+						emt = emt.next;
+					}
+				} else {
+					// 文字列の引数をプリミティブ型で受ける候補が存在する場合はキャッシュしない.
+					MethodElement e = emt;
+					while (e != null) {
+						if (staticFlag == e.isStatic && argsLen == e.paramsLength
+							&& Util.isValueDepend(e.params, types)) {
+							return null;
+						}
+						e = e.next;
+					}
+					int pf = 100 * argsLen;
+					int score = -1;
+					MethodElement targetEmt = null;
+					while (emt != null) {
+						if (staticFlag == emt.isStatic && argsLen == emt.paramsLength) {
+							int sc = Util.parmasScore(emt.primitives, emt.params, types, args, cl);
+							if (sc != -1 && score < sc) {
+								if (sc == pf) {
+									return CallSite.create(emt.method, emt.isStatic, emt.params, types, false);
+								}
+								score = sc;
+								targetEmt = emt;
+							}
+						}
+						emt = emt.next;
+					}
+					if (targetEmt != null) {
+						return CallSite.create(targetEmt.method, targetEmt.isStatic, targetEmt.params, types, true);
+					}
+				}
+				return CallSite.NOT_FOUND;
+			} catch (Exception e) {
+				throw new FastReflectException(e);
+			}
+		}
+	}
+
+	// 呼び出し条件(クラス毎に、メソッド名と引数の型で管理).
+	private static final class CallKey {
+		private final boolean staticFlag;
+		private final String name;
+		private final Class[] types;
+		private final int hash;
+
+		protected CallKey(boolean staticFlag, String name, Class[] types) {
+			this.staticFlag = staticFlag;
+			this.name = name;
+			this.types = types;
+			this.hash = ((name == null ? 0 : name.hashCode()) * 31 + Arrays.hashCode(types)) * 31
+				+ (staticFlag ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			} else if (!(o instanceof CallKey)) {
+				return false;
+			}
+			CallKey k = (CallKey) o;
+			return hash == k.hash && staticFlag == k.staticFlag
+				&& (name == null ? k.name == null : name.equals(k.name)) && Arrays.equals(types, k.types);
+		}
+	}
+
+	// 解決済みの呼び出し先(メソッド、コンストラクタ).
+	// 引数の変換処理を組み込んだ (target, args) -> 戻り値 のMethodHandleで実行します.
+	private static final class CallSite {
+		/** 呼び出し先が存在しない. **/
+		protected static final CallSite NOT_FOUND = new CallSite(null);
+
+		private final MethodHandle handle;
+
+		private CallSite(MethodHandle handle) {
+			this.handle = handle;
+		}
+
+		/**
+		 * 実行.
+		 * 
+		 * @param target 対象のターゲットオブジェクトを設定します.
+		 * @param args   引数パラメータ型群を設定します.
+		 * @return Object 戻り値が返されます.
+		 */
+		public Object invoke(Object target, Object[] args) {
+			final Object[] params = (args == null) ? Primitive.NO_PARAM : args;
+			try {
+				return (Object) handle.invokeExact(target, params);
+			} catch (Throwable t) {
+				throw new FastReflectException(t);
+			}
+		}
+
+		/**
+		 * メソッドの呼び出し先を生成.
+		 * 
+		 * @param method   対象のメソッドを設定します.
+		 * @param isStatic staticメソッドの場合は[true]を設定します.
+		 * @param params   メソッドのパラメータタイプを設定します.
+		 * @param types    引数の型を設定します.
+		 * @param convert  引数の変換を行う場合は[true]を設定します.
+		 * @return CallSite 呼び出し先が返されます.
+		 */
+		protected static final CallSite create(Method method, boolean isStatic, Class[] params, Class[] types,
+			boolean convert) {
+			final int len = params.length;
+			MethodHandle h;
+			try {
+				h = LOOKUP.unreflect(method).asFixedArity();
+			} catch (Exception e) {
+				// MethodHandleが取得できない場合は、リフレクションで実行.
+				h = REFLECT_METHOD.bindTo(method);
+				if (convert) {
+					h = MethodHandles.filterArguments(h, 1, Util.convertParamsHandle(params));
+				}
+				return new CallSite(h);
+			}
+			if (isStatic) {
+				h = MethodHandles.dropArguments(h, 0, Object.class);
+			}
+			h = h.asType(MethodType.genericMethodType(len + 1));
+			if (convert) {
+				h = convertArguments(h, 1, params, types);
+			}
+			return new CallSite(h.asSpreader(Object[].class, len));
+		}
+
+		/**
+		 * コンストラクタの呼び出し先を生成.
+		 * 
+		 * @param constructor 対象のコンストラクタを設定します.
+		 * @param params      コンストラクタのパラメータタイプを設定します.
+		 * @param types       引数の型を設定します.
+		 * @param convert     引数の変換を行う場合は[true]を設定します.
+		 * @return CallSite 呼び出し先が返されます.
+		 */
+		protected static final CallSite create(Constructor constructor, Class[] params, Class[] types,
+			boolean convert) {
+			final int len = params.length;
+			MethodHandle h;
+			try {
+				h = LOOKUP.unreflectConstructor(constructor).asFixedArity();
+			} catch (Exception e) {
+				// MethodHandleが取得できない場合は、リフレクションで実行.
+				h = REFLECT_CONSTRUCTOR.bindTo(constructor);
+				if (convert) {
+					h = MethodHandles.filterArguments(h, 0, Util.convertParamsHandle(params));
+				}
+				return new CallSite(MethodHandles.dropArguments(h, 0, Object.class));
+			}
+			h = h.asType(MethodType.genericMethodType(len));
+			if (convert) {
+				h = convertArguments(h, 0, params, types);
+			}
+			return new CallSite(MethodHandles.dropArguments(h.asSpreader(Object[].class, len), 0, Object.class));
+		}
+
+		// 引数の変換処理を組み込む.
+		private static final MethodHandle convertArguments(MethodHandle h, int pos, Class[] params, Class[] types) {
+			MethodHandle[] filters = null;
+			MethodHandle f;
+			final int len = params.length;
+			for (int i = 0; i < len; i++) {
+				if ((f = Util.convertHandle(params[i], types[i])) != null) {
+					if (filters == null) {
+						filters = new MethodHandle[len];
+					}
+					filters[i] = f;
+				}
+			}
+			return filters == null ? h : MethodHandles.filterArguments(h, pos, filters);
+		}
+	}
+
+	// 解決済みのフィールドアクセス先.
+	private static final class FieldSite {
+		private final Field field;
+		private final MethodHandle getter;
+		private final MethodHandle setter;
+
+		private FieldSite(Field field, MethodHandle getter, MethodHandle setter) {
+			this.field = field;
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		/**
+		 * フィールド取得.
+		 * 
+		 * @param target 対象のターゲットオブジェクトを設定します.
+		 * @return Object フィールドオブジェクト内容が返されます.
+		 */
+		public Object get(Object target) {
+			try {
+				return (Object) getter.invokeExact(target);
+			} catch (Throwable t) {
+				throw new FastReflectException(t);
+			}
+		}
+
+		/**
+		 * フィールド設定.
+		 * 
+		 * @param target 対象のターゲットオブジェクトを設定します.
+		 * @param value  対象のパラメータ要素を設定します.
+		 */
+		public void set(Object target, Object value) {
+			try {
+				setter.invokeExact(target, value);
+			} catch (Throwable t) {
+				// 設定できない値の場合は、リフレクションで実行してエラー内容を合わせる.
+				try {
+					field.set(target, value);
+				} catch (Exception e) {
+					throw new FastReflectException(e);
+				}
+			}
+		}
+
+		/**
+		 * フィールドのアクセス先を生成.
+		 * 
+		 * @param f 対象のフィールドを設定します.
+		 * @return FieldSite アクセス先が返されます.
+		 */
+		protected static final FieldSite create(Field f) {
+			final boolean isStatic = Modifier.isStatic(f.getModifiers());
+			MethodHandle g, s;
+			try {
+				g = LOOKUP.unreflectGetter(f);
+				if (isStatic) {
+					g = MethodHandles.dropArguments(g, 0, Object.class);
+				}
+				g = g.asType(MethodType.methodType(Object.class, Object.class));
+			} catch (Exception e) {
+				g = REFLECT_GET.bindTo(f);
+			}
+			try {
+				// final フィールドはMethodHandleで設定できないので、リフレクションで実行(エラーとなる).
+				s = LOOKUP.unreflectSetter(f);
+				if (isStatic) {
+					s = MethodHandles.dropArguments(s, 0, Object.class);
+				}
+				s = s.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			} catch (Exception e) {
+				s = REFLECT_SET.bindTo(f);
+			}
+			return new FieldSite(f, g, s);
+		}
 	}
 	
 	// クラスファクトリ.
@@ -1217,6 +1772,33 @@ public class FastReflect {
 	// オブジェクト名.
 	private static final String OBJECT_NAME = Object.class.getName();
 
+	// クラス毎の呼び出し先の最大キャッシュ数.
+	private static final int MAX_CALL_SITE = 256;
+
+	// MethodHandle生成用.
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	// MethodHandleが取得できない場合のリフレクション実行.
+	private static final MethodHandle REFLECT_METHOD;
+	private static final MethodHandle REFLECT_CONSTRUCTOR;
+	private static final MethodHandle REFLECT_GET;
+	private static final MethodHandle REFLECT_SET;
+
+	static {
+		try {
+			REFLECT_METHOD = LOOKUP.findVirtual(Method.class, "invoke",
+				MethodType.methodType(Object.class, Object.class, Object[].class)).asFixedArity();
+			REFLECT_CONSTRUCTOR = LOOKUP.findVirtual(Constructor.class, "newInstance",
+				MethodType.methodType(Object.class, Object[].class)).asFixedArity();
+			REFLECT_GET = LOOKUP.findVirtual(Field.class, "get",
+				MethodType.methodType(Object.class, Object.class));
+			REFLECT_SET = LOOKUP.findVirtual(Field.class, "set",
+				MethodType.methodType(void.class, Object.class, Object.class));
+		} catch (Exception e) {
+			throw new FastReflectException(e);
+		}
+	}
+
 	/**
 	 * キャッシュクリア.
 	 */
@@ -1311,6 +1893,11 @@ public class FastReflect {
 		}
 		Object ret;
 		Class[] types = Util.getParamsType(args);
+		// 解決済みの呼び出し先が存在する場合は、そのまま実行.
+		CallSite cs = em.constructorSite(types, args, loader);
+		if (cs != null) {
+			return cs.invoke(null, args);
+		}
 		String superName;
 		while (true) {
 			if ((ret = em.newInstance(types, args, loader)) != null) {
@@ -1578,6 +2165,12 @@ s	 * @param name       対象のフィールド名を設定します.
 		if (em == null) {
 			throw new FastReflectException("Specified class does not exist.");
 		}
+		// 解決済みのアクセス先が存在する場合は、そのまま実行.
+		FieldSite fs = em.fieldSite((target == null), name, loader);
+		if (fs != null) {
+			fs.set(target, value);
+			return;
+		}
 		String superName;
 		while (true) {
 			Field f = em.getField((target == null), name);
@@ -1629,6 +2222,12 @@ s	 * @param name       対象のフィールド名を設定します.
 		if (em == null) {
 			throw new FastReflectException("Specified class does not exist.");
 		}
+		// 解決済みのアクセス先が存在する場合は、そのまま実行.
+		FieldSite fs = em.fieldSite((target == null), name, loader);
+		if (fs != null) {
+			fs.set(target, value);
+			return;
+		}
 		String superName;
 		while (true) {
 			Field f = em.getField((target == null), name);
@@ -1680,6 +2279,11 @@ s	 * @param name       対象のフィールド名を設定します.
 		if (em == null) {
 			throw new FastReflectException("Specified class does not exist.");
 		}
+		// 解決済みのアクセス先が存在する場合は、そのまま実行.
+		FieldSite fs = em.fieldSite((target == null), name, loader);
+		if (fs != null) {
+			return fs.get(target);
+		}
 		String superName;
 		while (true) {
 			Field f = em.getField((target == null), name);
@@ -1730,6 +2334,11 @@ s	 * @param name       対象のフィールド名を設定します.
 		if (em == null) {
 			throw new FastReflectException("Specified class does not exist.");
 		}
+		// 解決済みのアクセス先が存在する場合は、そのまま実行.
+		FieldSite fs = em.fieldSite((target == null), name, loader);
+		if (fs != null) {
+			return fs.get(target);
+		}
 		String superName;
 		while (true) {
 			Field f = em.getField((target == null), name);
@@ -1836,9 +2445,14 @@ s	 * @param name       対象のフィールド名を設定します.
 		if (em == null) {
 			throw new FastReflectException("Specified class does not exist.");
 		}
+		Class[] types = Util.getParamsType(args);
+		// 解決済みの呼び出し先が存在する場合は、そのまま実行.
+		CallSite cs = em.methodSite(target == null, name, loader, types, args);
+		if (cs != null) {
+			return cs.invoke(target, args);
+		}
 		String spclazz;
 		Object[] ret = new Object[1];
-		Class[] types = Util.getParamsType(args);
 		while (true) {
 			if (em.invoke(ret, target, name, loader, types, args)) {
 				return ret[0];
@@ -1881,8 +2495,13 @@ s	 * @param name       対象のフィールド名を設定します.
 		if (em == null) {
 			throw new FastReflectException("Specified class does not exist.");
 		}
-		Object[] ret = new Object[1];
 		Class[] types = Util.getParamsType(args);
+		// 解決済みの呼び出し先が存在する場合は、そのまま実行.
+		CallSite cs = em.methodSite(target == null, name, loader, types, args);
+		if (cs != null) {
+			return cs.invoke(target, args);
+		}
+		Object[] ret = new Object[1];
 		String spclazz;
 		while (true) {
 			if (em.invoke(ret, target, name, loader, types, args)) {
@@ -0,0 +1,125 @@
+package rhigin.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 処理時間のヒストグラム.
+ *
+ * 値はマイクロ秒で、２の累乗毎に８分割したバケットで記録します(相対誤差12.5%以内).
+ */
+public final class Histogram {
+	/** １つの２の累乗範囲の分割ビット数. **/
+	private static final int SUB_BITS = 3;
+	private static final int SUB_LENGTH = 1 << SUB_BITS;
+	private static final int SUB_MASK = SUB_LENGTH - 1;
+
+	/** 記録できる最大値の２の累乗(これを超える値は最大バケットに記録). **/
+	private static final int MAX_EXPONENT = 40;
+
+	/** バケット数. **/
+	private static final int BUCKET_LENGTH = (MAX_EXPONENT - SUB_BITS + 2) * SUB_LENGTH;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_LENGTH);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong(0L);
+
+	// バケット位置を取得.
+	private static final int index(long v) {
+		if (v < SUB_LENGTH) {
+			return v < 0L ? 0 : (int) v;
+		}
+		int e = 63 - Long.numberOfLeadingZeros(v);
+		if (e > MAX_EXPONENT) {
+			return BUCKET_LENGTH - 1;
+		}
+		return ((e - SUB_BITS + 1) << SUB_BITS) + (int) ((v >>> (e - SUB_BITS)) & SUB_MASK);
+	}
+
+	// バケットの最大値を取得.
+	private static final long highValue(int i) {
+		if (i < SUB_LENGTH) {
+			return i;
+		}
+		final int e = (i >>> SUB_BITS) + SUB_BITS - 1;
+		final long low = ((long) (SUB_LENGTH + (i & SUB_MASK))) << (e - SUB_BITS);
+		return low + (1L << (e - SUB_BITS)) - 1L;
+	}
+
+	/**
+	 * 値を記録.
+	 *
+	 * @param micros
+	 *            処理時間(マイクロ秒)を設定します.
+	 */
+	public void record(long micros) {
+		buckets.incrementAndGet(index(micros));
+		count.increment();
+		sum.add(micros);
+		long m;
+		while ((m = max.get()) < micros) {
+			if (max.compareAndSet(m, micros)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 記録件数を取得.
+	 *
+	 * @return long
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * 処理時間の合計(マイクロ秒)を取得.
+	 *
+	 * @return long
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * 処理時間の最大値(マイクロ秒)を取得.
+	 *
+	 * @return long
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * パーセンタイル値(マイクロ秒)を取得.
+	 *
+	 * @param ps
+	 *            取得するパーセンタイル(0.0 - 1.0)を昇順で設定します.
+	 * @return long[]
+	 */
+	public long[] getPercentiles(double[] ps) {
+		final int len = ps.length;
+		final long[] ret = new long[len];
+		final long[] counts = new long[BUCKET_LENGTH];
+		long total = 0L;
+		for (int i = 0; i < BUCKET_LENGTH; i++) {
+			total += (counts[i] = buckets.get(i));
+		}
+		if (total == 0L) {
+			return ret;
+		}
+		final long m = max.get();
+		long cnt = 0L;
+		int p = 0;
+		for (int i = 0; i < BUCKET_LENGTH && p < len; i++) {
+			cnt += counts[i];
+			while (p < len && cnt >= (long) Math.ceil(ps[p] * total)) {
+				ret[p++] = Math.min(highValue(i), m);
+			}
+		}
+		return ret;
+	}
+}
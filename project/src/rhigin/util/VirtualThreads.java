@@ -0,0 +1,46 @@
+package rhigin.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 仮想スレッド(Virtual Thread)の利用.
+ *
+ * Java8でコンパイルできるように、リフレクションで仮想スレッドのExecutorServiceを生成します.
+ * 仮想スレッドが利用できないJDKの場合は、生成結果は[null]となります.
+ */
+public final class VirtualThreads {
+	private VirtualThreads() {
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor.
+	private static final Method NEW_EXECUTOR;
+
+	static {
+		Method m = null;
+		try {
+			m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (Throwable t) {
+			m = null;
+		}
+		NEW_EXECUTOR = m;
+	}
+
+	/**
+	 * タスク毎に仮想スレッドで実行するExecutorServiceを生成.
+	 *
+	 * @return ExecutorService 仮想スレッドが利用できない場合は[null]が返却されます.
+	 */
+	public static final ExecutorService newExecutor() {
+		if (NEW_EXECUTOR == null) {
+			return null;
+		}
+		try {
+			return (ExecutorService) NEW_EXECUTOR.invoke(null);
+		} catch (Throwable t) {
+			// preview機能が無効な場合など.
+			return null;
+		}
+	}
+}
@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import rhigin.RhiginException;
@@ -51,6 +52,17 @@ public class WatchPath {
 		SNGL = p;
 	}
 
+	/**
+	 * ファイル更新通知.
+	 */
+	public static interface Listener {
+		/**
+		 * ファイル又はディレクトリが作成、更新、削除された場合に、監視スレッドから呼び出されます.
+		 * @param name 対象のフルパスが設定されます.
+		 */
+		public void update(String name);
+	}
+
 	/** １つのファイル or ディレクトリの管理. **/
 	public static final class StatObject {
 		String path;
@@ -197,16 +209,18 @@ public class WatchPath {
 		private Map<String, WatchKey> kman = null;
 		private Map<String, StatObject> man = null;
 		private List<String> tdir = null;
+		private List<Listener> ls = null;
 		private Flag cf = null;
 		private volatile boolean stopFlag = true;
 		private volatile boolean exitFlag = false;
 		WatchThread(WatchService s, Map<WatchKey, String> wm, Map<String, WatchKey> km,
-			Map<String, StatObject> m, List<String> t, Flag c) {
+			Map<String, StatObject> m, List<String> t, List<Listener> l, Flag c) {
 			sv = s;
 			wman = wm;
 			kman = km;
 			man = m;
 			tdir = t;
+			ls = l;
 			cf = c;
 			//outMan(man);
 		}
@@ -229,6 +243,16 @@ public class WatchPath {
 			return exitFlag;
 		}
 
+		// 更新通知.
+		private final void update(String name) {
+			final int len = ls.size();
+			for(int i = 0; i < len; i ++) {
+				try {
+					ls.get(i).update(name);
+				} catch(Exception e) {}
+			}
+		}
+
 		public void run() {
 			ThreadDeath d = null;
 			try {
@@ -301,6 +325,7 @@ public class WatchPath {
 										// ファイルのStat情報を登録.
 										man.put(name, new StatObject(tdir, name));
 									}
+									update(name);
 									
 								// 情報が更新された場合.
 								} else if(StandardWatchEventKinds.ENTRY_MODIFY.equals(kind)) {
@@ -311,6 +336,7 @@ public class WatchPath {
 										// 情報の更新.
 										man.put(name, new StatObject(tdir, name));
 									}
+									update(name);
 									
 								// 情報が削除された場合.
 								} else if(StandardWatchEventKinds.ENTRY_DELETE.equals(kind)) {
@@ -353,6 +379,7 @@ public class WatchPath {
 													}
 													// 管理マネージャから削除.
 													man.remove(p);
+													update(p);
 												}
 											}
 										} else {
@@ -360,6 +387,7 @@ public class WatchPath {
 											man.remove(name);
 										}
 									}
+									update(name);
 								} else if(StandardWatchEventKinds.OVERFLOW.equals(kind)) {
 									// overflow.
 									//System.out.println("kind: " + kind + " name:" + name + " contains:" + man.containsKey(name));
@@ -459,6 +487,9 @@ public class WatchPath {
 	/** 監視Topディレクトリ名群. **/
 	private List<String> topDirs = null;
 	
+	/** 更新通知先. **/
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	
 	/** クローズフラグ. **/
 	private final Flag closeFlag = new Flag();
 	
@@ -500,7 +531,7 @@ public class WatchPath {
 			}
 			WatchService watcher = FileSystems.getDefault().newWatchService();
 			createWatch(wm, km, watcher, targetWatchList);
-			WatchThread wt = new WatchThread(watcher, wm, km, man, topDirs, closeFlag);
+			WatchThread wt = new WatchThread(watcher, wm, km, man, topDirs, listeners, closeFlag);
 			wt.startThread();
 			this.statMan = man;
 			this.topDirs = topDirs;
@@ -567,6 +598,24 @@ public class WatchPath {
 		keyMap.put(path.toString(), k);
 	}
 	
+	/**
+	 * 更新通知先を追加.
+	 * @param l
+	 */
+	public void addListener(Listener l) {
+		if(l != null && !listeners.contains(l)) {
+			listeners.add(l);
+		}
+	}
+	
+	/**
+	 * 更新通知先を削除.
+	 * @param l
+	 */
+	public void removeListener(Listener l) {
+		listeners.remove(l);
+	}
+	
 	/**
 	 * クローズ処理.
 	 */
@@ -605,6 +654,20 @@ public class WatchPath {
 		return topDirs;
 	}
 	
+	/**
+	 * 管理している全てのStat情報を取得.
+	 * @return
+	 */
+	public List<StatObject> getStatList() {
+		checkClose();
+		final List<StatObject> ret = new ObjectList<StatObject>(statMan.size());
+		final Iterator<StatObject> it = statMan.values().iterator();
+		while(it.hasNext()) {
+			ret.add(it.next());
+		}
+		return ret;
+	}
+	
 	/**
 	 * このパスが、WatchPath対象であるかチェック.
 	 * @param name